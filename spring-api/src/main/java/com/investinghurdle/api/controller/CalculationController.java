@@ -1,6 +1,14 @@
 package com.investinghurdle.api.controller;
 
+import com.investinghurdle.api.dto.BatchCalculationResponse;
+import com.investinghurdle.api.dto.CostBasisComparisonResponse;
+import com.investinghurdle.api.dto.MultiYearCalculationResponse;
 import com.investinghurdle.api.dto.TaxCalculationResponse;
+import com.investinghurdle.api.service.BatchCalculationService;
+import com.investinghurdle.api.service.CalculationJob;
+import com.investinghurdle.api.service.CalculationJobService;
+import com.investinghurdle.api.service.LotMatching;
+import com.investinghurdle.api.service.PeriodBreakdowns;
 import com.investinghurdle.api.service.TaxCalculationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -24,8 +32,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.RejectedExecutionException;
 import util.BrokerType;
 import util.QuarterScheme;
+import util.ArithmeticMode;
 
 /**
  * REST Controller for tax calculation endpoints
@@ -38,6 +48,12 @@ public class CalculationController {
     @Autowired
     private TaxCalculationService calculationService;
 
+    @Autowired
+    private CalculationJobService jobService;
+
+    @Autowired
+    private BatchCalculationService batchService;
+
     private static final int RECENT_LIMIT = 10;
     private ConcurrentLinkedDeque<Map<String, Object>> recentCalculations = new ConcurrentLinkedDeque<>();
 
@@ -61,7 +77,8 @@ public class CalculationController {
         @ApiResponse(responseCode = "200", description = "Calculation successful",
             content = @Content(schema = @Schema(implementation = TaxCalculationResponse.class))),
         @ApiResponse(responseCode = "400", description = "Invalid file or request"),
-        @ApiResponse(responseCode = "500", description = "Calculation error")
+        @ApiResponse(responseCode = "500", description = "Calculation error"),
+        @ApiResponse(responseCode = "503", description = "Too many calculations in progress")
     })
     public ResponseEntity<?> calculateFromUpload(
             @Parameter(description = "Excel workbook file (.xlsx)")
@@ -71,9 +88,40 @@ public class CalculationController {
             @RequestParam(value = "financial_year", required = true) 
             String financialYear,
             
-            @Parameter(description = "Quarter scheme: STANDARD_Q4 or Q5_IT_PORTAL", example = "STANDARD_Q4")
+            @Parameter(description = "Quarter scheme: STANDARD_Q4, Q5_IT_PORTAL or MONTHLY", example = "STANDARD_Q4")
             @RequestParam(value = "quarter_scheme", required = false, defaultValue = "STANDARD_Q4")
-            String quarterScheme) {
+            String quarterScheme,
+
+            @Parameter(description = "Arithmetic: DOUBLE, or PAISE for exact fixed-point totals (default from configuration)", example = "PAISE")
+            @RequestParam(value = "arithmetic", required = false)
+            String arithmetic,
+
+            @Parameter(description = "Extra breakdowns from the same pass, comma-separated: MONTHLY, STANDARD_Q4, Q5_IT_PORTAL", example = "MONTHLY")
+            @RequestParam(value = "period_schemes", required = false)
+            String periodSchemes,
+
+            @Parameter(description = "Custom periods as comma-separated yyyy-MM-dd..yyyy-MM-dd ranges, returned as the CUSTOM breakdown",
+                example = "2024-04-01..2024-06-15,2024-06-16..2024-09-15")
+            @RequestParam(value = "custom_periods", required = false)
+            String customPeriods,
+
+            @Parameter(description = "Cost basis: BROKER (buy amounts as exported), or lots re-matched per symbol with FIFO, LIFO, AVERAGE or SPECIFIC_LOT (needs symbol, quantity and buy date columns)", example = "FIFO")
+            @RequestParam(value = "cost_basis", required = false)
+            String costBasis,
+
+            @Parameter(description = "Account whose open lots carry across years (letters, digits, '_' or '-'; needs a re-matching cost basis): "
+                + "matching starts from its checkpoint at the year start", example = "main")
+            @RequestParam(value = "account", required = false)
+            String account,
+
+            @Parameter(description = "Save the lots open at the year end as the account's checkpoint for the next year (needs an account)", example = "true")
+            @RequestParam(value = "save_checkpoint", required = false, defaultValue = "false")
+            boolean saveCheckpoint,
+
+            @Parameter(description = "Splits and bonus issues as comma-separated SYMBOL:yyyy-MM-dd:ratio, the ratio being shares after per share before "
+                + "(1:5 split 5, 1:1 bonus 2); the ex-date adjusts lots open before it (needs a re-matching cost basis)", example = "INFY:2024-06-14:2")
+            @RequestParam(value = "corporate_actions", required = false)
+            String corporateActions) {
         
         try {
             // Validate file type
@@ -82,19 +130,176 @@ public class CalculationController {
                     .body(createErrorResponse("Only .xlsx files are supported"));
             }
             
-            TaxCalculationResponse response = calculationService.calculateFromFile(file, financialYear, quarterScheme);
+            TaxCalculationResponse response = calculationService.calculateFromFile(file, financialYear, quarterScheme,
+                arithmetic, PeriodBreakdowns.parse(periodSchemes, customPeriods),
+                LotMatching.parse(costBasis, account, corporateActions, saveCheckpoint));
             addRecentCalculation(response);
             return ResponseEntity.ok(response);
             
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest()
                 .body(createErrorResponse(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return createBusyResponse();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(createErrorResponse("Calculation failed: " + e.getMessage()));
         }
     }
 
+    /**
+     * Calculate many workbooks, or zip archives of workbooks, in one request
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(
+        summary = "Calculate a batch of workbooks",
+        description = "Upload several Excel workbooks (.xlsx) and/or zip archives of workbooks. Each workbook is calculated in parallel; the response has one result per workbook and a consolidated total"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Batch calculated (individual workbooks may have failed)",
+            content = @Content(schema = @Schema(implementation = BatchCalculationResponse.class))),
+        @ApiResponse(responseCode = "400", description = "No workbooks or too many workbooks"),
+        @ApiResponse(responseCode = "500", description = "Calculation error")
+    })
+    public ResponseEntity<?> calculateBatch(
+            @Parameter(description = "Excel workbooks (.xlsx) or zip archives of workbooks")
+            @RequestParam("files") List<MultipartFile> files,
+
+            @Parameter(description = "Financial year (e.g., 'FY 2021-22', 'FY 2024-25')", example = "FY 2024-25")
+            @RequestParam(value = "financial_year", required = true)
+            String financialYear,
+
+            @Parameter(description = "Quarter scheme: STANDARD_Q4, Q5_IT_PORTAL or MONTHLY", example = "STANDARD_Q4")
+            @RequestParam(value = "quarter_scheme", required = false, defaultValue = "STANDARD_Q4")
+            String quarterScheme,
+
+            @Parameter(description = "Arithmetic: DOUBLE, or PAISE for exact fixed-point totals (default from configuration)", example = "PAISE")
+            @RequestParam(value = "arithmetic", required = false)
+            String arithmetic) {
+
+        try {
+            BatchCalculationResponse response = batchService.calculate(files, financialYear, quarterScheme, arithmetic);
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(createErrorResponse(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(createErrorResponse("Batch calculation failed: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Calculate every financial year in one workbook
+     */
+    @PostMapping(value = "/multi-year", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(
+        summary = "Calculate all financial years in a workbook",
+        description = "Upload an Excel workbook (.xlsx) spanning several financial years. Rows are split by the financial year of their sell date in one read, and each year gets its own result with that year's quarters and LTCG exemption"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Calculation successful",
+            content = @Content(schema = @Schema(implementation = MultiYearCalculationResponse.class))),
+        @ApiResponse(responseCode = "400", description = "Invalid file or request"),
+        @ApiResponse(responseCode = "500", description = "Calculation error"),
+        @ApiResponse(responseCode = "503", description = "Too many calculations in progress")
+    })
+    public ResponseEntity<?> calculateMultiYear(
+            @Parameter(description = "Excel workbook file (.xlsx)")
+            @RequestParam("file") MultipartFile file,
+
+            @Parameter(description = "Quarter scheme: STANDARD_Q4, Q5_IT_PORTAL or MONTHLY", example = "STANDARD_Q4")
+            @RequestParam(value = "quarter_scheme", required = false, defaultValue = "STANDARD_Q4")
+            String quarterScheme,
+
+            @Parameter(description = "Arithmetic: DOUBLE, or PAISE for exact fixed-point totals (default from configuration)", example = "PAISE")
+            @RequestParam(value = "arithmetic", required = false)
+            String arithmetic) {
+
+        try {
+            if (!file.getOriginalFilename().endsWith(".xlsx")) {
+                return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Only .xlsx files are supported"));
+            }
+
+            MultiYearCalculationResponse response = calculationService.calculateMultiYear(file, quarterScheme, arithmetic);
+            response.getResults().forEach(this::addRecentCalculation);
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(createErrorResponse(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return createBusyResponse();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(createErrorResponse("Multi-year calculation failed: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Upload Excel workbook and compare cost basis methods for one financial year.
+     */
+    @PostMapping(value = "/cost-basis-comparison", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(
+        summary = "Compare cost basis methods",
+        description = "Upload an Excel workbook (.xlsx) and get one result per cost basis method (BROKER, FIFO, LIFO, AVERAGE, SPECIFIC_LOT). The workbook is read once and every method re-matches the same parsed rows"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Calculation successful",
+            content = @Content(schema = @Schema(implementation = CostBasisComparisonResponse.class))),
+        @ApiResponse(responseCode = "400", description = "Invalid file or request"),
+        @ApiResponse(responseCode = "500", description = "Calculation error"),
+        @ApiResponse(responseCode = "503", description = "Too many calculations in progress")
+    })
+    public ResponseEntity<?> compareCostBasis(
+            @Parameter(description = "Excel workbook file (.xlsx)")
+            @RequestParam("file") MultipartFile file,
+
+            @Parameter(description = "Financial year (e.g., 'FY 2021-22', 'FY 2024-25')", example = "FY 2024-25")
+            @RequestParam(value = "financial_year", required = true)
+            String financialYear,
+
+            @Parameter(description = "Quarter scheme: STANDARD_Q4, Q5_IT_PORTAL or MONTHLY", example = "STANDARD_Q4")
+            @RequestParam(value = "quarter_scheme", required = false, defaultValue = "STANDARD_Q4")
+            String quarterScheme,
+
+            @Parameter(description = "Arithmetic: DOUBLE, or PAISE for exact fixed-point totals (default from configuration)", example = "PAISE")
+            @RequestParam(value = "arithmetic", required = false)
+            String arithmetic,
+
+            @Parameter(description = "Methods to compare, comma-separated (default: all)", example = "FIFO,LIFO,AVERAGE")
+            @RequestParam(value = "cost_bases", required = false)
+            String costBases,
+
+            @Parameter(description = "Splits and bonus issues as comma-separated SYMBOL:yyyy-MM-dd:ratio, the ratio being shares after per share before "
+                + "(1:5 split 5, 1:1 bonus 2); the ex-date adjusts lots open before it; BROKER ignores them", example = "INFY:2024-06-14:2")
+            @RequestParam(value = "corporate_actions", required = false)
+            String corporateActions) {
+
+        try {
+            if (!file.getOriginalFilename().endsWith(".xlsx")) {
+                return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Only .xlsx files are supported"));
+            }
+
+            CostBasisComparisonResponse response = calculationService.compareCostBasis(file, financialYear,
+                quarterScheme, arithmetic, LotMatching.parseMethods(costBases),
+                LotMatching.parseActions(corporateActions));
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(createErrorResponse(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return createBusyResponse();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(createErrorResponse("Cost basis comparison failed: " + e.getMessage()));
+        }
+    }
+
     /**
      * Upload Excel workbook and download an Excel summary report.
      */
@@ -106,7 +311,8 @@ public class CalculationController {
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Export successful"),
         @ApiResponse(responseCode = "400", description = "Invalid file or request"),
-        @ApiResponse(responseCode = "500", description = "Export error")
+        @ApiResponse(responseCode = "500", description = "Export error"),
+        @ApiResponse(responseCode = "503", description = "Too many calculations in progress")
     })
     public ResponseEntity<?> exportExcel(
             @Parameter(description = "Excel workbook file (.xlsx)")
@@ -116,9 +322,13 @@ public class CalculationController {
             @RequestParam(value = "financial_year", required = true)
             String financialYear,
 
-            @Parameter(description = "Quarter scheme: STANDARD_Q4 or Q5_IT_PORTAL", example = "STANDARD_Q4")
+            @Parameter(description = "Quarter scheme: STANDARD_Q4, Q5_IT_PORTAL or MONTHLY", example = "STANDARD_Q4")
             @RequestParam(value = "quarter_scheme", required = false, defaultValue = "STANDARD_Q4")
-            String quarterScheme) {
+            String quarterScheme,
+
+            @Parameter(description = "Arithmetic: DOUBLE, or PAISE for exact fixed-point totals (default from configuration)", example = "PAISE")
+            @RequestParam(value = "arithmetic", required = false)
+            String arithmetic) {
 
         try {
             if (!file.getOriginalFilename().endsWith(".xlsx")) {
@@ -126,7 +336,7 @@ public class CalculationController {
                     .body(createErrorResponse("Only .xlsx files are supported"));
             }
 
-            byte[] bytes = calculationService.exportExcel(file, financialYear, quarterScheme);
+            byte[] bytes = calculationService.exportExcel(file, financialYear, quarterScheme, arithmetic);
             String filename = "tax-summary-" + System.currentTimeMillis() + ".xlsx";
             return ResponseEntity.ok()
                 .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
@@ -137,12 +347,138 @@ public class CalculationController {
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest()
                 .body(createErrorResponse(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return createBusyResponse();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(createErrorResponse("Export failed: " + e.getMessage()));
         }
     }
     
+    /**
+     * Submit a workbook for asynchronous calculation
+     */
+    @PostMapping(value = "/jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(
+        summary = "Submit asynchronous calculation",
+        description = "Upload an Excel workbook (.xlsx) and get a job id. Poll /calculations/jobs/{id} for progress and fetch the result from /calculations/jobs/{id}/result"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Job accepted"),
+        @ApiResponse(responseCode = "400", description = "Invalid file or request"),
+        @ApiResponse(responseCode = "503", description = "Job queue is full")
+    })
+    public ResponseEntity<?> submitJob(
+            @Parameter(description = "Excel workbook file (.xlsx)")
+            @RequestParam("file") MultipartFile file,
+
+            @Parameter(description = "Financial year (e.g., 'FY 2021-22', 'FY 2024-25')", example = "FY 2024-25")
+            @RequestParam(value = "financial_year", required = true)
+            String financialYear,
+
+            @Parameter(description = "Quarter scheme: STANDARD_Q4, Q5_IT_PORTAL or MONTHLY", example = "STANDARD_Q4")
+            @RequestParam(value = "quarter_scheme", required = false, defaultValue = "STANDARD_Q4")
+            String quarterScheme,
+
+            @Parameter(description = "Arithmetic: DOUBLE, or PAISE for exact fixed-point totals (default from configuration)", example = "PAISE")
+            @RequestParam(value = "arithmetic", required = false)
+            String arithmetic,
+
+            @Parameter(description = "Extra breakdowns from the same pass, comma-separated: MONTHLY, STANDARD_Q4, Q5_IT_PORTAL", example = "MONTHLY")
+            @RequestParam(value = "period_schemes", required = false)
+            String periodSchemes,
+
+            @Parameter(description = "Custom periods as comma-separated yyyy-MM-dd..yyyy-MM-dd ranges, returned as the CUSTOM breakdown",
+                example = "2024-04-01..2024-06-15,2024-06-16..2024-09-15")
+            @RequestParam(value = "custom_periods", required = false)
+            String customPeriods,
+
+            @Parameter(description = "Cost basis: BROKER (buy amounts as exported), or lots re-matched per symbol with FIFO, LIFO, AVERAGE or SPECIFIC_LOT (needs symbol, quantity and buy date columns)", example = "FIFO")
+            @RequestParam(value = "cost_basis", required = false)
+            String costBasis,
+
+            @Parameter(description = "Account whose open lots carry across years (letters, digits, '_' or '-'; needs a re-matching cost basis): "
+                + "matching starts from its checkpoint at the year start", example = "main")
+            @RequestParam(value = "account", required = false)
+            String account,
+
+            @Parameter(description = "Save the lots open at the year end as the account's checkpoint for the next year (needs an account)", example = "true")
+            @RequestParam(value = "save_checkpoint", required = false, defaultValue = "false")
+            boolean saveCheckpoint,
+
+            @Parameter(description = "Splits and bonus issues as comma-separated SYMBOL:yyyy-MM-dd:ratio, the ratio being shares after per share before "
+                + "(1:5 split 5, 1:1 bonus 2); the ex-date adjusts lots open before it (needs a re-matching cost basis)", example = "INFY:2024-06-14:2")
+            @RequestParam(value = "corporate_actions", required = false)
+            String corporateActions) {
+
+        try {
+            if (!file.getOriginalFilename().endsWith(".xlsx")) {
+                return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Only .xlsx files are supported"));
+            }
+
+            CalculationJob job = jobService.submit(file, financialYear, quarterScheme, arithmetic,
+                PeriodBreakdowns.parse(periodSchemes, customPeriods),
+                LotMatching.parse(costBasis, account, corporateActions, saveCheckpoint));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(createJobStatus(job));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(createErrorResponse(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return createBusyResponse();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(createErrorResponse("Job submission failed: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Status and progress of an asynchronous calculation
+     */
+    @GetMapping("/jobs/{jobId}")
+    @Operation(summary = "Get job status", description = "Returns job status and the number of rows processed so far")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Job found"),
+        @ApiResponse(responseCode = "404", description = "Unknown or expired job")
+    })
+    public ResponseEntity<?> getJobStatus(@PathVariable("jobId") String jobId) {
+        CalculationJob job = jobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(createErrorResponse("Job not found: " + jobId));
+        }
+        return ResponseEntity.ok(createJobStatus(job));
+    }
+
+    /**
+     * Result of a finished asynchronous calculation
+     */
+    @GetMapping("/jobs/{jobId}/result")
+    @Operation(summary = "Get job result", description = "Returns the calculation result once the job has completed")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Calculation result",
+            content = @Content(schema = @Schema(implementation = TaxCalculationResponse.class))),
+        @ApiResponse(responseCode = "202", description = "Job still queued or running"),
+        @ApiResponse(responseCode = "404", description = "Unknown or expired job")
+    })
+    public ResponseEntity<?> getJobResult(@PathVariable("jobId") String jobId) {
+        CalculationJob job = jobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(createErrorResponse("Job not found: " + jobId));
+        }
+        switch (job.getStatus()) {
+            case COMPLETED:
+                return ResponseEntity.ok(job.getResult());
+            case FAILED:
+                HttpStatus status = job.isInvalidInput() ? HttpStatus.BAD_REQUEST : HttpStatus.INTERNAL_SERVER_ERROR;
+                return ResponseEntity.status(status).body(createErrorResponse(job.getError()));
+            default:
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(createJobStatus(job));
+        }
+    }
+    
     /**
      * Calculate using default configuration file
      */
@@ -154,7 +490,8 @@ public class CalculationController {
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Calculation successful",
             content = @Content(schema = @Schema(implementation = TaxCalculationResponse.class))),
-        @ApiResponse(responseCode = "500", description = "Calculation error")
+        @ApiResponse(responseCode = "500", description = "Calculation error"),
+        @ApiResponse(responseCode = "503", description = "Too many calculations in progress")
     })
     public ResponseEntity<?> calculateDefault(
             @Parameter(description = "Financial year", example = "FY 2021-22")
@@ -165,6 +502,8 @@ public class CalculationController {
             addRecentCalculation(response);
             return ResponseEntity.ok(response);
             
+        } catch (RejectedExecutionException e) {
+            return createBusyResponse();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(createErrorResponse("Calculation failed: " + e.getMessage()));
@@ -177,13 +516,14 @@ public class CalculationController {
     @GetMapping("/config")
     @Operation(
         summary = "Get runtime configuration defaults",
-        description = "Returns default financial year, default quarter scheme, supported quarter schemes, supported brokers, and upload directory"
+        description = "Returns default financial year, default quarter scheme, supported quarter schemes, supported arithmetic modes, supported brokers, and upload directory"
     )
     public ResponseEntity<Map<String, Object>> getRuntimeConfig() {
         Map<String, Object> response = new HashMap<>();
         response.put("default_financial_year", defaultFinancialYear);
         response.put("default_quarter_scheme", DEFAULT_QUARTER_SCHEME);
         response.put("supported_quarter_schemes", QuarterScheme.values());
+        response.put("supported_arithmetic", ArithmeticMode.values());
         response.put("supported_brokers", BrokerType.values());
         response.put("upload_dir", uploadDir);
         return ResponseEntity.ok(response);
@@ -221,7 +561,8 @@ public class CalculationController {
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Broker detected successfully"),
         @ApiResponse(responseCode = "400", description = "Invalid file"),
-        @ApiResponse(responseCode = "500", description = "Detection error")
+        @ApiResponse(responseCode = "500", description = "Detection error"),
+        @ApiResponse(responseCode = "503", description = "Too many calculations in progress")
     })
     public ResponseEntity<?> detectBroker(
             @Parameter(description = "Excel workbook file (.xlsx)")
@@ -232,6 +573,8 @@ public class CalculationController {
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest()
                 .body(createErrorResponse(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return createBusyResponse();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(createErrorResponse("Broker detection failed: " + e.getMessage()));
@@ -286,6 +629,42 @@ public class CalculationController {
         }
     }
     
+    /**
+     * Create job status map
+     */
+    private Map<String, Object> createJobStatus(CalculationJob job) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("job_id", job.getId());
+        status.put("status", job.getStatus().name());
+        status.put("file_name", job.getFileName());
+        status.put("financial_year", job.getFinancialYear());
+        status.put("quarter_scheme", job.getQuarterScheme());
+        status.put("arithmetic", job.getArithmetic());
+        status.put("rows_processed", job.getRowsProcessed());
+        status.put("submitted_at", job.getSubmittedAt().toString());
+        if (job.getStartedAt() != null) {
+            status.put("started_at", job.getStartedAt().toString());
+        }
+        if (job.getFinishedAt() != null) {
+            status.put("finished_at", job.getFinishedAt().toString());
+        }
+        if (job.getError() != null) {
+            status.put("error", job.getError());
+        }
+        status.put("status_url", "/calculations/jobs/" + job.getId());
+        status.put("result_url", "/calculations/jobs/" + job.getId() + "/result");
+        return status;
+    }
+    
+    /**
+     * 503 with Retry-After when the job queue or the calculation limiter is full
+     */
+    private ResponseEntity<Map<String, Object>> createBusyResponse() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header("Retry-After", "5")
+            .body(createErrorResponse("Too many calculations in progress, retry later"));
+    }
+
     /**
      * Create error response map
      */
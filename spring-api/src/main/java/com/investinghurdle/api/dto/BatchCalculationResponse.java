@@ -0,0 +1,86 @@
+package com.investinghurdle.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+
+/**
+ * Batch calculation response: one result per workbook plus a consolidated total
+ */
+@Schema(description = "Batch tax calculation results")
+public class BatchCalculationResponse {
+
+    @Schema(description = "Financial year for the calculation", example = "FY 2024-25")
+    @JsonProperty("financial_year")
+    private String financialYear;
+
+    @Schema(description = "Quarter scheme used for all workbooks", example = "STANDARD_Q4")
+    @JsonProperty("quarter_scheme")
+    private String quarterScheme;
+
+    @Schema(description = "Number of workbooks in the batch", example = "120")
+    @JsonProperty("files_total")
+    private int filesTotal;
+
+    @Schema(description = "Number of workbooks calculated successfully", example = "118")
+    @JsonProperty("files_completed")
+    private int filesCompleted;
+
+    @Schema(description = "Number of workbooks that failed", example = "2")
+    @JsonProperty("files_failed")
+    private int filesFailed;
+
+    @Schema(description = "Per-workbook results, in upload order")
+    @JsonProperty("results")
+    private List<BatchItemResponse> results;
+
+    @Schema(description = "Totals across all completed workbooks. LTCG exemption and taxable LTCG are summed per workbook.")
+    @JsonProperty("consolidated")
+    private TaxCalculationResponse consolidated;
+
+    @Schema(description = "Processing time in milliseconds", example = "2500")
+    @JsonProperty("processing_time_ms")
+    private long processingTimeMs;
+
+    // Constructors
+    public BatchCalculationResponse() {}
+
+    public BatchCalculationResponse(String financialYear, String quarterScheme,
+                                    List<BatchItemResponse> results,
+                                    TaxCalculationResponse consolidated,
+                                    long processingTimeMs) {
+        this.financialYear = financialYear;
+        this.quarterScheme = quarterScheme;
+        this.results = results;
+        this.consolidated = consolidated;
+        this.processingTimeMs = processingTimeMs;
+        this.filesTotal = results.size();
+        this.filesCompleted = (int) results.stream().filter(BatchItemResponse::isCompleted).count();
+        this.filesFailed = filesTotal - filesCompleted;
+    }
+
+    // Getters and Setters
+    public String getFinancialYear() { return financialYear; }
+    public void setFinancialYear(String financialYear) { this.financialYear = financialYear; }
+
+    public String getQuarterScheme() { return quarterScheme; }
+    public void setQuarterScheme(String quarterScheme) { this.quarterScheme = quarterScheme; }
+
+    public int getFilesTotal() { return filesTotal; }
+    public void setFilesTotal(int filesTotal) { this.filesTotal = filesTotal; }
+
+    public int getFilesCompleted() { return filesCompleted; }
+    public void setFilesCompleted(int filesCompleted) { this.filesCompleted = filesCompleted; }
+
+    public int getFilesFailed() { return filesFailed; }
+    public void setFilesFailed(int filesFailed) { this.filesFailed = filesFailed; }
+
+    public List<BatchItemResponse> getResults() { return results; }
+    public void setResults(List<BatchItemResponse> results) { this.results = results; }
+
+    public TaxCalculationResponse getConsolidated() { return consolidated; }
+    public void setConsolidated(TaxCalculationResponse consolidated) { this.consolidated = consolidated; }
+
+    public long getProcessingTimeMs() { return processingTimeMs; }
+    public void setProcessingTimeMs(long processingTimeMs) { this.processingTimeMs = processingTimeMs; }
+}
@@ -0,0 +1,62 @@
+package com.investinghurdle.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Outcome of one workbook within a batch calculation
+ */
+@Schema(description = "Result for one workbook of a batch")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResponse {
+
+    @Schema(description = "Workbook file name (zip entries are prefixed with the archive name)", example = "clients.zip/ABC123.xlsx")
+    @JsonProperty("file_name")
+    private String fileName;
+
+    @Schema(description = "COMPLETED or FAILED", example = "COMPLETED")
+    @JsonProperty("status")
+    private String status;
+
+    @Schema(description = "Failure reason when status is FAILED")
+    @JsonProperty("error")
+    private String error;
+
+    @Schema(description = "Calculation result when status is COMPLETED")
+    @JsonProperty("result")
+    private TaxCalculationResponse result;
+
+    public BatchItemResponse() {}
+
+    public static BatchItemResponse completed(String fileName, TaxCalculationResponse result) {
+        BatchItemResponse item = new BatchItemResponse();
+        item.fileName = fileName;
+        item.status = "COMPLETED";
+        item.result = result;
+        return item;
+    }
+
+    public static BatchItemResponse failed(String fileName, String error) {
+        BatchItemResponse item = new BatchItemResponse();
+        item.fileName = fileName;
+        item.status = "FAILED";
+        item.error = error;
+        return item;
+    }
+
+    public boolean isCompleted() { return result != null; }
+
+    // Getters and Setters
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public TaxCalculationResponse getResult() { return result; }
+    public void setResult(TaxCalculationResponse result) { this.result = result; }
+}
@@ -0,0 +1,68 @@
+package com.investinghurdle.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+
+/**
+ * Cost basis comparison response: one full result per cost basis method, all from one read of the workbook
+ */
+@Schema(description = "Tax calculation results for one financial year under several cost basis methods")
+public class CostBasisComparisonResponse {
+
+    @Schema(description = "Financial year", example = "FY 2024-25")
+    @JsonProperty("financial_year")
+    private String financialYear;
+
+    @Schema(description = "Quarter scheme used for every method", example = "STANDARD_Q4")
+    @JsonProperty("quarter_scheme")
+    private String quarterScheme;
+
+    @Schema(description = "How amounts were summed: DOUBLE or PAISE (exact)", example = "DOUBLE")
+    @JsonProperty("arithmetic")
+    private String arithmetic;
+
+    @Schema(description = "Cost basis methods compared, in request order", example = "[\"FIFO\", \"LIFO\", \"AVERAGE\"]")
+    @JsonProperty("methods")
+    private List<String> methods;
+
+    @Schema(description = "Per-method results, in the order of methods")
+    @JsonProperty("results")
+    private List<TaxCalculationResponse> results;
+
+    @Schema(description = "Processing time in milliseconds", example = "300")
+    @JsonProperty("processing_time_ms")
+    private long processingTimeMs;
+
+    // Constructors
+    public CostBasisComparisonResponse() {}
+
+    public CostBasisComparisonResponse(String financialYear, String quarterScheme, String arithmetic,
+                                       List<TaxCalculationResponse> results, long processingTimeMs) {
+        this.financialYear = financialYear;
+        this.quarterScheme = quarterScheme;
+        this.arithmetic = arithmetic;
+        this.results = results;
+        this.methods = results.stream().map(TaxCalculationResponse::getCostBasis).toList();
+        this.processingTimeMs = processingTimeMs;
+    }
+
+    // Getters and Setters
+    public String getFinancialYear() { return financialYear; }
+    public void setFinancialYear(String financialYear) { this.financialYear = financialYear; }
+
+    public String getQuarterScheme() { return quarterScheme; }
+    public void setQuarterScheme(String quarterScheme) { this.quarterScheme = quarterScheme; }
+
+    public String getArithmetic() { return arithmetic; }
+    public void setArithmetic(String arithmetic) { this.arithmetic = arithmetic; }
+
+    public List<String> getMethods() { return methods; }
+    public void setMethods(List<String> methods) { this.methods = methods; }
+
+    public List<TaxCalculationResponse> getResults() { return results; }
+    public void setResults(List<TaxCalculationResponse> results) { this.results = results; }
+
+    public long getProcessingTimeMs() { return processingTimeMs; }
+    public void setProcessingTimeMs(long processingTimeMs) { this.processingTimeMs = processingTimeMs; }
+}
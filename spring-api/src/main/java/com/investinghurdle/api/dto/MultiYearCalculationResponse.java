@@ -0,0 +1,68 @@
+package com.investinghurdle.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+
+/**
+ * Multi-year calculation response: one full result per financial year found in the workbook
+ */
+@Schema(description = "Tax calculation results for every financial year in a workbook")
+public class MultiYearCalculationResponse {
+
+    @Schema(description = "Quarter scheme used for every year", example = "STANDARD_Q4")
+    @JsonProperty("quarter_scheme")
+    private String quarterScheme;
+
+    @Schema(description = "How amounts were summed: DOUBLE or PAISE (exact)", example = "DOUBLE")
+    @JsonProperty("arithmetic")
+    private String arithmetic;
+
+    @Schema(description = "Financial years found by sell date, oldest first", example = "[\"FY 2023-24\", \"FY 2024-25\"]")
+    @JsonProperty("financial_years")
+    private List<String> financialYears;
+
+    @Schema(description = "Per-year results, in the order of financial_years")
+    @JsonProperty("results")
+    private List<TaxCalculationResponse> results;
+
+    @Schema(description = "Rows left out of every year because they have no readable sell date", example = "0")
+    @JsonProperty("rows_without_sell_date")
+    private int rowsWithoutSellDate;
+
+    @Schema(description = "Processing time in milliseconds", example = "400")
+    @JsonProperty("processing_time_ms")
+    private long processingTimeMs;
+
+    // Constructors
+    public MultiYearCalculationResponse() {}
+
+    public MultiYearCalculationResponse(String quarterScheme, String arithmetic, List<TaxCalculationResponse> results,
+                                        int rowsWithoutSellDate, long processingTimeMs) {
+        this.quarterScheme = quarterScheme;
+        this.arithmetic = arithmetic;
+        this.results = results;
+        this.financialYears = results.stream().map(TaxCalculationResponse::getFinancialYear).toList();
+        this.rowsWithoutSellDate = rowsWithoutSellDate;
+        this.processingTimeMs = processingTimeMs;
+    }
+
+    // Getters and Setters
+    public String getQuarterScheme() { return quarterScheme; }
+    public void setQuarterScheme(String quarterScheme) { this.quarterScheme = quarterScheme; }
+
+    public String getArithmetic() { return arithmetic; }
+    public void setArithmetic(String arithmetic) { this.arithmetic = arithmetic; }
+
+    public List<String> getFinancialYears() { return financialYears; }
+    public void setFinancialYears(List<String> financialYears) { this.financialYears = financialYears; }
+
+    public List<TaxCalculationResponse> getResults() { return results; }
+    public void setResults(List<TaxCalculationResponse> results) { this.results = results; }
+
+    public int getRowsWithoutSellDate() { return rowsWithoutSellDate; }
+    public void setRowsWithoutSellDate(int rowsWithoutSellDate) { this.rowsWithoutSellDate = rowsWithoutSellDate; }
+
+    public long getProcessingTimeMs() { return processingTimeMs; }
+    public void setProcessingTimeMs(long processingTimeMs) { this.processingTimeMs = processingTimeMs; }
+}
@@ -0,0 +1,62 @@
+package com.investinghurdle.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * STCG, LTCG and speculation breakdown for one extra period scheme (months, custom periods, ...)
+ */
+@Schema(description = "Breakdown by the periods of one scheme")
+public class PeriodBreakdownResponse {
+
+    @Schema(description = "Period scheme", example = "MONTHLY")
+    @JsonProperty("scheme")
+    private String scheme;
+
+    @Schema(description = "STCG per period")
+    @JsonProperty("stcg")
+    private List<QuarterDetailResponse> stcg;
+
+    @Schema(description = "LTCG per period")
+    @JsonProperty("ltcg")
+    private List<QuarterDetailResponse> ltcg;
+
+    @Schema(description = "Speculation per period")
+    @JsonProperty("speculation")
+    private List<QuarterDetailResponse> speculation;
+
+    public PeriodBreakdownResponse() {}
+
+    public PeriodBreakdownResponse(String scheme, List<QuarterDetailResponse> stcg,
+                                   List<QuarterDetailResponse> ltcg, List<QuarterDetailResponse> speculation) {
+        this.scheme = scheme;
+        this.stcg = stcg;
+        this.ltcg = ltcg;
+        this.speculation = speculation;
+    }
+
+    /**
+     * Copy with its own period lists
+     */
+    public PeriodBreakdownResponse(PeriodBreakdownResponse other) {
+        this(other.scheme, copyOf(other.stcg), copyOf(other.ltcg), copyOf(other.speculation));
+    }
+
+    private static List<QuarterDetailResponse> copyOf(List<QuarterDetailResponse> list) {
+        return list == null ? null : new ArrayList<>(list);
+    }
+
+    public String getScheme() { return scheme; }
+    public void setScheme(String scheme) { this.scheme = scheme; }
+
+    public List<QuarterDetailResponse> getStcg() { return stcg; }
+    public void setStcg(List<QuarterDetailResponse> stcg) { this.stcg = stcg; }
+
+    public List<QuarterDetailResponse> getLtcg() { return ltcg; }
+    public void setLtcg(List<QuarterDetailResponse> ltcg) { this.ltcg = ltcg; }
+
+    public List<QuarterDetailResponse> getSpeculation() { return speculation; }
+    public void setSpeculation(List<QuarterDetailResponse> speculation) { this.speculation = speculation; }
+}
@@ -1,7 +1,9 @@
 package com.investinghurdle.api.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -46,6 +48,35 @@ public class TaxCalculationResponse {
     @JsonProperty("speculation_quarterly_breakdown")
     private List<QuarterDetailResponse> speculationQuarterlyBreakdown;
     
+    @Schema(description = "Extra breakdowns requested with period_schemes / custom_periods, from the same pass")
+    @JsonProperty("period_breakdowns")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<PeriodBreakdownResponse> periodBreakdowns;
+    
+    @Schema(description = "Cost basis method when lots were re-matched instead of using the broker's buy amounts", example = "FIFO")
+    @JsonProperty("cost_basis")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String costBasis;
+    
+    @Schema(description = "Day of the account's open-lot checkpoint the re-matching started from; absent when it replayed every earlier trade", example = "2024-04-01")
+    @JsonProperty("opening_checkpoint")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String openingCheckpoint;
+    
+    @Schema(description = "Day of the open-lot checkpoint saved for the account's next year, when save_checkpoint was set", example = "2025-04-01")
+    @JsonProperty("saved_checkpoint")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String savedCheckpoint;
+    
+    @Schema(description = "Sold quantity that found no open lot when re-matching; its sales count at zero cost", example = "0")
+    @JsonProperty("unmatched_sell_quantity")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double unmatchedSellQuantity;
+    
+    @Schema(description = "How amounts were summed: DOUBLE or PAISE (exact)", example = "DOUBLE")
+    @JsonProperty("arithmetic")
+    private String arithmetic;
+    
     @Schema(description = "Calculation timestamp", example = "2025-12-31T14:30:00")
     @JsonProperty("calculated_at")
     private String calculatedAt;
@@ -77,7 +108,34 @@ public class TaxCalculationResponse {
         this.calculatedAt = calculatedAt;
         this.processingTimeMs = processingTimeMs;
     }
-    
+
+    /**
+     * Copy constructor. Section DTOs are shared, breakdown lists are copied.
+     */
+    public TaxCalculationResponse(TaxCalculationResponse other) {
+        this(other.financialYear, other.brokerType, other.brokerName,
+             other.stcg, other.ltcg, other.speculation,
+             copyOf(other.stcgQuarterlyBreakdown),
+             copyOf(other.ltcgQuarterlyBreakdown),
+             copyOf(other.speculationQuarterlyBreakdown),
+             other.calculatedAt, other.processingTimeMs);
+        this.arithmetic = other.arithmetic;
+        this.costBasis = other.costBasis;
+        this.openingCheckpoint = other.openingCheckpoint;
+        this.savedCheckpoint = other.savedCheckpoint;
+        this.unmatchedSellQuantity = other.unmatchedSellQuantity;
+        if (other.periodBreakdowns != null) {
+            this.periodBreakdowns = new ArrayList<>(other.periodBreakdowns.size());
+            for (PeriodBreakdownResponse breakdown : other.periodBreakdowns) {
+                this.periodBreakdowns.add(new PeriodBreakdownResponse(breakdown));
+            }
+        }
+    }
+
+    private static List<QuarterDetailResponse> copyOf(List<QuarterDetailResponse> list) {
+        return list == null ? null : new ArrayList<>(list);
+    }
+
     // Getters and Setters
     public String getFinancialYear() { return financialYear; }
     public void setFinancialYear(String financialYear) { this.financialYear = financialYear; }
@@ -108,6 +166,24 @@ public class TaxCalculationResponse {
         this.stcgQuarterlyBreakdown = stcgQuarterlyBreakdown;
     }
     
+    public List<PeriodBreakdownResponse> getPeriodBreakdowns() { return periodBreakdowns; }
+    public void setPeriodBreakdowns(List<PeriodBreakdownResponse> periodBreakdowns) { this.periodBreakdowns = periodBreakdowns; }
+    
+    public String getCostBasis() { return costBasis; }
+    public void setCostBasis(String costBasis) { this.costBasis = costBasis; }
+    
+    public String getOpeningCheckpoint() { return openingCheckpoint; }
+    public void setOpeningCheckpoint(String openingCheckpoint) { this.openingCheckpoint = openingCheckpoint; }
+    
+    public String getSavedCheckpoint() { return savedCheckpoint; }
+    public void setSavedCheckpoint(String savedCheckpoint) { this.savedCheckpoint = savedCheckpoint; }
+    
+    public Double getUnmatchedSellQuantity() { return unmatchedSellQuantity; }
+    public void setUnmatchedSellQuantity(Double unmatchedSellQuantity) { this.unmatchedSellQuantity = unmatchedSellQuantity; }
+    
+    public String getArithmetic() { return arithmetic; }
+    public void setArithmetic(String arithmetic) { this.arithmetic = arithmetic; }
+    
     public String getCalculatedAt() { return calculatedAt; }
     public void setCalculatedAt(String calculatedAt) { this.calculatedAt = calculatedAt; }
     
@@ -0,0 +1,392 @@
+package com.investinghurdle.api.service;
+
+import com.investinghurdle.api.dto.BatchCalculationResponse;
+import com.investinghurdle.api.dto.BatchItemResponse;
+import com.investinghurdle.api.dto.LtcgResponse;
+import com.investinghurdle.api.dto.QuarterDetailResponse;
+import com.investinghurdle.api.dto.SpeculationResponse;
+import com.investinghurdle.api.dto.StcgResponse;
+import com.investinghurdle.api.dto.TaxCalculationResponse;
+import jakarta.annotation.PreDestroy;
+import logging.HurdleLogger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import util.ArithmeticMode;
+import util.Paise;
+import util.QuarterConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Calculates many statements in one request. Uploads may be individual workbooks or zip
+ * archives of workbooks; each workbook goes through the regular calculation path (and its
+ * caches) on a shared pool, and the results are summed into a consolidated total.
+ * With spring.threads.virtual.enabled each workbook gets its own virtual thread and
+ * the CalculationLimiter alone bounds how many are parsed at once. Either way no more
+ * workbooks are read off the request than the pool has threads (or parallelism with virtual
+ * threads), so a large zip is not held in memory before the heap admission check sees it.
+ */
+@Service
+public class BatchCalculationService {
+
+    @Autowired
+    private TaxCalculationService calculationService;
+
+    private final ExecutorService executor;
+    /** Workbooks read and not yet calculated, over all batches */
+    private final Semaphore inFlight;
+    private final int maxFiles;
+    private final DataSize maxEntrySize;
+
+    public BatchCalculationService(
+            @Value("${investing-hurdle.batch.parallelism:0}") int parallelism,
+            @Value("${investing-hurdle.batch.max-files:500}") int maxFiles,
+            @Value("${investing-hurdle.batch.max-entry-size:50MB}") DataSize maxEntrySize,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        if (virtualThreads) {
+            this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("calc-batch-", 1).factory());
+        } else {
+            this.executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("calc-batch-"));
+        }
+        this.inFlight = new Semaphore(threads);
+        this.maxFiles = maxFiles;
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * Calculate every workbook in the uploads. A workbook that fails is reported in its
+     * own result entry and left out of the consolidated total.
+     *
+     * @throws IllegalArgumentException if there are no workbooks or more than max-files
+     */
+    public BatchCalculationResponse calculate(List<MultipartFile> files, String financialYear,
+                                              String quarterScheme, String arithmetic) throws IOException {
+        long startTime = System.currentTimeMillis();
+        // Reject a bad year or mode for the whole batch rather than once per workbook
+        QuarterConfig.parseFinancialYear(financialYear);
+        calculationService.resolveArithmetic(arithmetic);
+        List<BatchItemResponse> results = new ArrayList<>();
+        List<Future<BatchItemResponse>> pending = new ArrayList<>();
+        int workbooks = 0;
+
+        for (MultipartFile file : files) {
+            String name = file.getOriginalFilename() != null ? file.getOriginalFilename() : "upload";
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".zip")) {
+                try (ZipInputStream zin = new ZipInputStream(file.getInputStream())) {
+                    ZipEntry entry;
+                    while ((entry = zin.getNextEntry()) != null) {
+                        if (!isWorkbookEntry(entry)) continue;
+                        checkFileCount(++workbooks);
+                        String entryName = name + "/" + entry.getName();
+                        pending.add(submit(entryName, zin, financialYear, quarterScheme, arithmetic));
+                    }
+                }
+            } else if (lower.endsWith(".xlsx")) {
+                checkFileCount(++workbooks);
+                try (InputStream in = file.getInputStream()) {
+                    pending.add(submit(name, in, financialYear, quarterScheme, arithmetic));
+                }
+            } else {
+                checkFileCount(++workbooks);
+                pending.add(CompletableFuture.completedFuture(BatchItemResponse.failed(name, "Only .xlsx and .zip files are supported")));
+            }
+        }
+        if (workbooks == 0) {
+            throw new IllegalArgumentException("No .xlsx workbooks found in the upload");
+        }
+
+        for (Future<BatchItemResponse> future : pending) {
+            results.add(await(future));
+        }
+
+        TaxCalculationResponse consolidated = consolidate(results, financialYear,
+            calculationService.resolveArithmetic(arithmetic));
+        long processingTime = System.currentTimeMillis() - startTime;
+        HurdleLogger.info("Batch of " + results.size() + " workbooks calculated in " + processingTime + "ms");
+        return new BatchCalculationResponse(financialYear, calculationService.resolveScheme(quarterScheme).name(),
+            results, consolidated, processingTime);
+    }
+
+    /**
+     * Copy one workbook off the request stream and queue its calculation, first waiting
+     * until fewer workbooks than the in-flight limit are read and not yet calculated
+     */
+    private Future<BatchItemResponse> submit(String name, InputStream in, String financialYear,
+                                             String quarterScheme, String arithmetic) throws IOException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch calculation interrupted", e);
+        }
+        boolean queued = false;
+        try {
+            UploadedWorkbook upload;
+            try {
+                upload = calculationService.openUpload(name, in, maxEntrySize.toBytes());
+            } catch (IllegalArgumentException e) {
+                return CompletableFuture.completedFuture(BatchItemResponse.failed(name, e.getMessage()));
+            }
+            if (upload.getSize() == 0) {
+                upload.close();
+                return CompletableFuture.completedFuture(BatchItemResponse.failed(name, "File is empty"));
+            }
+
+            Future<BatchItemResponse> future;
+            try {
+                future = executor.submit(() -> {
+                    try (upload) {
+                        return BatchItemResponse.completed(name,
+                            calculationService.calculate(upload, financialYear, quarterScheme, arithmetic,
+                                PeriodBreakdowns.NONE, LotMatching.BROKER, null));
+                    } catch (IllegalArgumentException e) {
+                        return BatchItemResponse.failed(name, e.getMessage());
+                    } catch (RejectedExecutionException e) {
+                        return BatchItemResponse.failed(name, e.getMessage() + ", retry later");
+                    } catch (Exception e) {
+                        HurdleLogger.error("Batch calculation failed for " + name + ": " + e.getMessage(), e);
+                        return BatchItemResponse.failed(name, "Calculation failed: " + e.getMessage());
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                upload.close();
+                throw e;
+            }
+            queued = true;
+            return future;
+        } finally {
+            // Once queued, the task releases the permit when its workbook is calculated
+            if (!queued) {
+                inFlight.release();
+            }
+        }
+    }
+
+    private static BatchItemResponse await(Future<BatchItemResponse> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch calculation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch calculation failed", e.getCause());
+        }
+    }
+
+    private void checkFileCount(int count) {
+        if (count > maxFiles) {
+            throw new IllegalArgumentException("Batch exceeds the maximum of " + maxFiles + " workbooks");
+        }
+    }
+
+    /**
+     * Workbook entries of a zip, skipping folders, macOS metadata and Excel lock files
+     */
+    private static boolean isWorkbookEntry(ZipEntry entry) {
+        if (entry.isDirectory()) return false;
+        String path = entry.getName();
+        String baseName = path.substring(path.lastIndexOf('/') + 1);
+        return !path.startsWith("__MACOSX/")
+            && !baseName.startsWith("~$")
+            && !baseName.startsWith("._")
+            && baseName.toLowerCase(Locale.ROOT).endsWith(".xlsx");
+    }
+
+    /**
+     * Sum the completed results. Quarterly breakdowns are added quarter by quarter, which
+     * lines up because every workbook in the batch uses the same year and scheme.
+     * In PAISE mode every amount is summed as whole paise and converted to rupees once,
+     * as PeriodAccumulator does, so the total carries no drift from adding doubles.
+     */
+    TaxCalculationResponse consolidate(List<BatchItemResponse> items, String financialYear,
+                                       ArithmeticMode arithmeticMode) {
+        boolean exact = arithmeticMode == ArithmeticMode.PAISE;
+        Sum stcgSell = new Sum(exact), stcgBuy = new Sum(exact), stcg = new Sum(exact);
+        Sum ltcgSell = new Sum(exact), ltcgBuy = new Sum(exact), ltcg = new Sum(exact);
+        Sum exemption = new Sum(exact), taxableLtcg = new Sum(exact);
+        Sum specSell = new Sum(exact), specBuy = new Sum(exact), speculation = new Sum(exact);
+        Sum turnover = new Sum(exact);
+        QuarterSums stcgQuarters = new QuarterSums(exact);
+        QuarterSums ltcgQuarters = new QuarterSums(exact);
+        QuarterSums speculationQuarters = new QuarterSums(exact);
+        String brokerType = null;
+        String brokerName = null;
+
+        for (BatchItemResponse item : items) {
+            TaxCalculationResponse result = item.getResult();
+            if (result == null) continue;
+
+            if (brokerType == null) {
+                brokerType = result.getBrokerType();
+                brokerName = result.getBrokerName();
+            } else if (!brokerType.equals(result.getBrokerType())) {
+                brokerType = "MULTIPLE";
+                brokerName = "Multiple brokers";
+            }
+
+            StcgResponse s = result.getStcg();
+            if (s != null) {
+                stcgSell.add(s.getFullValueOfConsideration());
+                stcgBuy.add(s.getCostOfAcquisition());
+                stcg.add(s.getTotalStcg());
+            }
+            LtcgResponse l = result.getLtcg();
+            if (l != null) {
+                ltcgSell.add(l.getFullValueOfConsideration());
+                ltcgBuy.add(l.getCostOfAcquisition());
+                ltcg.add(l.getTotalLtcg());
+                exemption.add(l.getExemptionLimit());
+                taxableLtcg.add(l.getTaxableLtcg());
+            }
+            SpeculationResponse sp = result.getSpeculation();
+            if (sp != null) {
+                specSell.add(sp.getFullValueOfConsideration());
+                specBuy.add(sp.getCostOfAcquisition());
+                speculation.add(sp.getProfitLoss());
+                turnover.add(sp.getTotalTurnover());
+            }
+
+            stcgQuarters.add(result.getStcgQuarterlyBreakdown());
+            ltcgQuarters.add(result.getLtcgQuarterlyBreakdown());
+            speculationQuarters.add(result.getSpeculationQuarterlyBreakdown());
+        }
+
+        String calculatedAt = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        TaxCalculationResponse consolidated = new TaxCalculationResponse(
+            financialYear, brokerType, brokerName,
+            new StcgResponse(stcgSell.get(), stcgBuy.get(), stcg.get()),
+            new LtcgResponse(ltcgSell.get(), ltcgBuy.get(), ltcg.get(), exemption.get(), taxableLtcg.get()),
+            new SpeculationResponse(specSell.get(), specBuy.get(), speculation.get(), turnover.get()),
+            stcgQuarters.toList(),
+            ltcgQuarters.toList(),
+            speculationQuarters.toList(),
+            calculatedAt, 0
+        );
+        consolidated.setArithmetic(arithmeticMode.name());
+        return consolidated;
+    }
+
+    /**
+     * Running total of rupee amounts, kept in paise when exact
+     */
+    private static final class Sum {
+        private final boolean exact;
+        private double rupees;
+        private long paise;
+
+        Sum(boolean exact) {
+            this.exact = exact;
+        }
+
+        void add(double amount) {
+            if (exact) {
+                paise += Paise.of(amount);
+            } else {
+                rupees += amount;
+            }
+        }
+
+        double get() {
+            return exact ? Paise.toRupees(paise) : rupees;
+        }
+    }
+
+    /**
+     * Quarter-by-quarter totals of one breakdown. The first workbook's quarters supply the
+     * labels and dates; later breakdowns are added up to the shorter of the two lengths.
+     */
+    private static final class QuarterSums {
+        private final boolean exact;
+        private List<QuarterDetailResponse> quarters;
+        private Sum[] amount, sell, buy, turnover;
+
+        QuarterSums(boolean exact) {
+            this.exact = exact;
+        }
+
+        void add(List<QuarterDetailResponse> breakdown) {
+            if (breakdown == null) return;
+            if (quarters == null) {
+                quarters = breakdown;
+                amount = sums(breakdown.size());
+                sell = sums(breakdown.size());
+                buy = sums(breakdown.size());
+                turnover = sums(breakdown.size());
+            }
+            for (int i = 0; i < Math.min(quarters.size(), breakdown.size()); i++) {
+                QuarterDetailResponse q = breakdown.get(i);
+                sell[i].add(value(q.getFullValueOfConsideration()));
+                buy[i].add(value(q.getCostOfAcquisition()));
+                if (quarters.get(i).getSpeculationAmount() != null) {
+                    amount[i].add(value(q.getSpeculationAmount()));
+                    turnover[i].add(value(q.getSpeculationTurnover()));
+                } else if (quarters.get(i).getLtcgAmount() != null) {
+                    amount[i].add(value(q.getLtcgAmount()));
+                } else {
+                    amount[i].add(value(q.getStcgAmount()));
+                }
+            }
+        }
+
+        List<QuarterDetailResponse> toList() {
+            List<QuarterDetailResponse> total = new ArrayList<>();
+            if (quarters == null) return total;
+
+            for (int i = 0; i < quarters.size(); i++) {
+                QuarterDetailResponse a = quarters.get(i);
+                if (a.getSpeculationAmount() != null) {
+                    total.add(QuarterDetailResponse.forSpeculation(a.getQuarterNumber(), a.getQuarterCode(),
+                        a.getQuarterName(), a.getStartDate(), a.getEndDate(),
+                        amount[i].get(), sell[i].get(), buy[i].get(), turnover[i].get()));
+                } else if (a.getLtcgAmount() != null) {
+                    total.add(QuarterDetailResponse.forLtcg(a.getQuarterNumber(), a.getQuarterCode(),
+                        a.getQuarterName(), a.getStartDate(), a.getEndDate(), amount[i].get(), sell[i].get(), buy[i].get()));
+                } else {
+                    total.add(QuarterDetailResponse.forStcg(a.getQuarterNumber(), a.getQuarterCode(),
+                        a.getQuarterName(), a.getStartDate(), a.getEndDate(), amount[i].get(), sell[i].get(), buy[i].get()));
+                }
+            }
+            return total;
+        }
+
+        private Sum[] sums(int size) {
+            Sum[] sums = new Sum[size];
+            for (int i = 0; i < size; i++) {
+                sums[i] = new Sum(exact);
+            }
+            return sums;
+        }
+    }
+
+    private static double value(Double d) {
+        return d != null ? d : 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
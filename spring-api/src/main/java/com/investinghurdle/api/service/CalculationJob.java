@@ -0,0 +1,85 @@
+package com.investinghurdle.api.service;
+
+import com.investinghurdle.api.dto.TaxCalculationResponse;
+
+import java.time.Instant;
+
+/**
+ * State of an asynchronous calculation submitted through the jobs API
+ */
+public class CalculationJob {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    private final String id;
+    private final String fileName;
+    private final String financialYear;
+    private final String quarterScheme;
+    private final String arithmetic;
+    private final PeriodBreakdowns periodBreakdowns;
+    private final LotMatching lotMatching;
+    private final Instant submittedAt = Instant.now();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile int rowsProcessed;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile TaxCalculationResponse result;
+    private volatile String error;
+    private volatile boolean invalidInput;
+
+    CalculationJob(String id, String fileName, String financialYear, String quarterScheme, String arithmetic,
+                   PeriodBreakdowns periodBreakdowns, LotMatching lotMatching) {
+        this.id = id;
+        this.fileName = fileName;
+        this.financialYear = financialYear;
+        this.quarterScheme = quarterScheme;
+        this.arithmetic = arithmetic;
+        this.periodBreakdowns = periodBreakdowns;
+        this.lotMatching = lotMatching;
+    }
+
+    void markRunning() {
+        this.startedAt = Instant.now();
+        this.status = Status.RUNNING;
+    }
+
+    void updateProgress(int rowsProcessed) {
+        this.rowsProcessed = rowsProcessed;
+    }
+
+    void complete(TaxCalculationResponse result) {
+        this.result = result;
+        this.finishedAt = Instant.now();
+        this.status = Status.COMPLETED;
+    }
+
+    void fail(String error, boolean invalidInput) {
+        this.error = error;
+        this.invalidInput = invalidInput;
+        this.finishedAt = Instant.now();
+        this.status = Status.FAILED;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    public String getId() { return id; }
+    public String getFileName() { return fileName; }
+    public String getFinancialYear() { return financialYear; }
+    public String getQuarterScheme() { return quarterScheme; }
+    public String getArithmetic() { return arithmetic; }
+    public PeriodBreakdowns getPeriodBreakdowns() { return periodBreakdowns; }
+    public LotMatching getLotMatching() { return lotMatching; }
+    public Instant getSubmittedAt() { return submittedAt; }
+    public Status getStatus() { return status; }
+    public int getRowsProcessed() { return rowsProcessed; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public TaxCalculationResponse getResult() { return result; }
+    public String getError() { return error; }
+
+    /** True when the job failed because the workbook or parameters were invalid */
+    public boolean isInvalidInput() { return invalidInput; }
+}
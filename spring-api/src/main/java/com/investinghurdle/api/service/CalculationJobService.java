@@ -0,0 +1,120 @@
+package com.investinghurdle.api.service;
+
+import jakarta.annotation.PreDestroy;
+import logging.HurdleLogger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import util.QuarterConfig;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs uploaded calculations off the request thread on a bounded pool of
+ * investing-hurdle.max-processing-threads workers, and keeps finished jobs for polling until they expire.
+ * Workers are virtual threads when spring.threads.virtual.enabled is set.
+ */
+@Service
+public class CalculationJobService {
+
+    @Autowired
+    private TaxCalculationService calculationService;
+
+    private final ThreadPoolExecutor executor;
+    private final Duration retention;
+    private final Map<String, CalculationJob> jobs = new ConcurrentHashMap<>();
+
+    public CalculationJobService(
+            @Value("${investing-hurdle.max-processing-threads:4}") int maxProcessingThreads,
+            @Value("${investing-hurdle.jobs.queue-capacity:32}") int queueCapacity,
+            @Value("${investing-hurdle.jobs.retention:1h}") Duration retention,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        int threads = Math.max(1, maxProcessingThreads);
+        this.executor = new ThreadPoolExecutor(
+            threads, threads,
+            60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            virtualThreads ? Thread.ofVirtual().name("calc-job-", 1).factory() : new CustomizableThreadFactory("calc-job-"),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+        this.retention = retention;
+    }
+
+    /**
+     * Snapshot the upload and queue it for calculation
+     *
+     * @throws RejectedExecutionException if the job queue is full
+     */
+    public CalculationJob submit(MultipartFile file, String financialYear, String quarterScheme,
+                                 String arithmetic, PeriodBreakdowns periodBreakdowns,
+                                 LotMatching lotMatching) throws IOException {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        // Reject a bad year or mode now rather than as a failed job
+        QuarterConfig.parseFinancialYear(financialYear);
+        calculationService.resolveArithmetic(arithmetic);
+        purgeExpired();
+
+        // The multipart file is gone once the request ends, so copy it first
+        UploadedWorkbook upload = calculationService.openUpload(file);
+        CalculationJob job = new CalculationJob(UUID.randomUUID().toString(), file.getOriginalFilename(),
+            financialYear, quarterScheme, arithmetic, periodBreakdowns, lotMatching);
+        jobs.put(job.getId(), job);
+
+        try {
+            executor.execute(() -> run(job, upload));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            upload.close();
+            throw e;
+        }
+        HurdleLogger.info("Queued calculation job " + job.getId() + " for " + job.getFileName());
+        return job;
+    }
+
+    /**
+     * Job by id, or null if unknown or expired
+     */
+    public CalculationJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    private void run(CalculationJob job, UploadedWorkbook upload) {
+        job.markRunning();
+        try (upload) {
+            job.complete(calculationService.calculate(upload, job.getFinancialYear(), job.getQuarterScheme(),
+                job.getArithmetic(), job.getPeriodBreakdowns(), job.getLotMatching(), job::updateProgress));
+            HurdleLogger.info("Calculation job " + job.getId() + " completed (" + job.getRowsProcessed() + " rows)");
+        } catch (IllegalArgumentException e) {
+            job.fail(e.getMessage(), true);
+        } catch (RejectedExecutionException e) {
+            job.fail(e.getMessage() + ", retry later", false);
+        } catch (Exception e) {
+            HurdleLogger.error("Calculation job " + job.getId() + " failed: " + e.getMessage(), e);
+            job.fail("Calculation failed: " + e.getMessage(), false);
+        }
+    }
+
+    private void purgeExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,84 @@
+package com.investinghurdle.api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps how many workbooks are parsed at once, whatever thread they arrive on. With virtual
+ * threads every request gets its own thread, so this is what bounds CPU and heap use.
+ * Callers wait up to calculation-wait-timeout for a permit before being turned away.
+ */
+@Component
+public class CalculationLimiter {
+
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final Duration waitTimeout;
+    private final Counter rejected;
+
+    public CalculationLimiter(MeterRegistry meterRegistry,
+                              @Value("${investing-hurdle.max-concurrent-calculations:0}") int maxConcurrent,
+                              @Value("${investing-hurdle.calculation-wait-timeout:30s}") Duration waitTimeout) {
+        this.maxConcurrent = maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors();
+        this.permits = new Semaphore(this.maxConcurrent, true);
+        this.waitTimeout = waitTimeout;
+
+        this.rejected = Counter.builder("hurdle.calculations.rejected")
+            .description("Calculations turned away after waiting for a permit").register(meterRegistry);
+        Gauge.builder("hurdle.calculations.active", this, CalculationLimiter::getActive)
+            .description("Calculations holding a permit").register(meterRegistry);
+    }
+
+    /**
+     * Wait for a permit; release it by closing the returned handle
+     *
+     * @throws RejectedExecutionException if no permit frees up within the wait timeout
+     */
+    public Permit acquire() {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a calculation slot", e);
+        }
+        if (!acquired) {
+            rejected.increment();
+            throw new RejectedExecutionException("Too many calculations in progress");
+        }
+        return new Permit();
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * Held permit; close() releases it once
+     */
+    public final class Permit implements AutoCloseable {
+        private boolean released;
+
+        private Permit() {}
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.investinghurdle.api.service;
+
+import com.investinghurdle.api.dto.TaxCalculationResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Caches calculation results by workbook content hash, financial year and quarter scheme,
+ * so re-uploading the same statement skips parsing.
+ * Entries are evicted least-recently-used beyond max-entries and after the TTL.
+ */
+@Component
+public class CalculationResultCache {
+
+    private final ExpiringLruCache<TaxCalculationResponse> cache;
+
+    public CalculationResultCache(
+            MeterRegistry meterRegistry,
+            @Value("${investing-hurdle.result-cache.max-entries:256}") int maxEntries,
+            @Value("${investing-hurdle.result-cache.ttl:30m}") Duration ttl) {
+        this.cache = new ExpiringLruCache<>("hurdle.result.cache", meterRegistry, maxEntries, ttl);
+    }
+
+    public boolean isEnabled() {
+        return cache.isEnabled();
+    }
+
+    /**
+     * Build the cache key from the workbook content hash, financial year, quarter scheme, arithmetic,
+     * extra period breakdowns and cost basis method
+     */
+    public String keyFor(String contentHash, String financialYear, String quarterScheme, String arithmetic,
+                         String periodBreakdowns, String costBasis) {
+        return contentHash + "|" + financialYear + "|" + quarterScheme + "|" + arithmetic + "|" + periodBreakdowns
+            + "|" + costBasis;
+    }
+
+    /**
+     * Cached result for the key, or null on a miss.
+     * A copy is returned so callers can set per-request fields freely.
+     */
+    public TaxCalculationResponse get(String key) {
+        TaxCalculationResponse cached = cache.get(key);
+        return cached == null ? null : new TaxCalculationResponse(cached);
+    }
+
+    public void put(String key, TaxCalculationResponse response) {
+        cache.put(key, new TaxCalculationResponse(response));
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+}
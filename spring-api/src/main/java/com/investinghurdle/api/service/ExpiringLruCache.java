@@ -0,0 +1,97 @@
+package com.investinghurdle.api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small thread-safe LRU map with a per-entry TTL, publishing gets/evictions/size metrics under a name prefix
+ */
+class ExpiringLruCache<V> {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<String, Entry<V>> entries;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    ExpiringLruCache(String metricPrefix, MeterRegistry meterRegistry, int maxEntries, Duration ttl) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                if (size() > ExpiringLruCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        this.hits = Counter.builder(metricPrefix + ".gets").tag("result", "hit")
+            .description("Cache lookups").register(meterRegistry);
+        this.misses = Counter.builder(metricPrefix + ".gets").tag("result", "miss")
+            .description("Cache lookups").register(meterRegistry);
+        this.evictions = Counter.builder(metricPrefix + ".evictions")
+            .description("Entries evicted by size or TTL").register(meterRegistry);
+        Gauge.builder(metricPrefix + ".size", this, ExpiringLruCache::size)
+            .description("Cached entries").register(meterRegistry);
+    }
+
+    boolean isEnabled() {
+        return maxEntries > 0 && ttlNanos > 0;
+    }
+
+    /**
+     * Value for the key, or null if absent or expired
+     */
+    synchronized V get(String key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+            entries.remove(key);
+            evictions.increment();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    synchronized void put(String key, V value) {
+        if (!isEnabled()) return;
+        long now = System.nanoTime();
+        purgeExpired(now);
+        entries.put(key, new Entry<>(value, now + ttlNanos));
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void purgeExpired(long now) {
+        Iterator<Entry<V>> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().expiresAt - now <= 0) {
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAt) {}
+}
@@ -0,0 +1,189 @@
+package com.investinghurdle.api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import logging.HurdleLogger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import params.FlexibleEquityLoader;
+import util.WorkbookFootprint;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admits workbook parses against a global heap budget. Each parse reserves its estimated
+ * footprint (from the package size, sheet dimensions and shared string count) before the
+ * workbook is opened and releases it when done; callers wait while the budget is exhausted
+ * and are turned away after admission.wait-timeout.
+ */
+@Component
+public class HeapAdmissionController {
+
+    /** XSSFCell + XMLBeans CTCell + row bookkeeping, per cell of the declared used range */
+    static final long DOM_BYTES_PER_CELL = 600;
+    /** XMLBeans DOM size per byte of worksheet XML (measured ~16x on broker statements) */
+    static final long DOM_BYTES_PER_XML_BYTE = 16;
+    /** Per data row for the streaming reader: TransactionStore columns plus per-row parse garbage */
+    static final long STREAMING_BYTES_PER_ROW = 128;
+    /** Worksheet XML per row of a typical statement, to count rows when the dimension is missing */
+    static final long XML_BYTES_PER_ROW = 512;
+    static final long BYTES_PER_SHARED_STRING = 160;
+    /** Uncompressed XML per byte of package, when the parts could not be surveyed */
+    static final long XML_BYTES_PER_PACKAGE_BYTE = 10;
+    static final long BASE_COST = DataSize.ofMegabytes(4).toBytes();
+
+    private final long budget;
+    private final Duration waitTimeout;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition budgetFreed = lock.newCondition();
+    private long reserved;
+    private int reservations;
+
+    private final Counter rejected;
+    private final Counter waited;
+
+    public HeapAdmissionController(MeterRegistry meterRegistry,
+                                   @Value("${investing-hurdle.admission.heap-budget:0}") DataSize heapBudget,
+                                   @Value("${investing-hurdle.admission.wait-timeout:10s}") Duration waitTimeout) {
+        this.budget = heapBudget != null && heapBudget.toBytes() > 0
+            ? heapBudget.toBytes()
+            : Runtime.getRuntime().maxMemory() / 2;
+        this.waitTimeout = waitTimeout;
+
+        this.rejected = Counter.builder("hurdle.admission.rejected")
+            .description("Parses turned away because the heap budget stayed exhausted").register(meterRegistry);
+        this.waited = Counter.builder("hurdle.admission.waits")
+            .description("Parses that had to wait for heap budget").register(meterRegistry);
+        Gauge.builder("hurdle.admission.reserved", this, HeapAdmissionController::getReserved)
+            .baseUnit("bytes").description("Heap currently reserved by running parses").register(meterRegistry);
+        Gauge.builder("hurdle.admission.budget", this, HeapAdmissionController::getBudget)
+            .baseUnit("bytes").description("Heap budget for parses").register(meterRegistry);
+        Gauge.builder("hurdle.admission.reservations", this, HeapAdmissionController::getReservations)
+            .description("Parses holding a reservation").register(meterRegistry);
+    }
+
+    /**
+     * Estimated peak heap for parsing a workbook in the given mode. Declared sheet dimensions
+     * and worksheet XML size are both used and the larger wins, since either can understate.
+     * A package opened from memory rather than a file is also inflated in memory by POI, so
+     * its XML is counted too.
+     */
+    public long estimate(WorkbookFootprint footprint, FlexibleEquityLoader.ReadMode readMode, boolean fromMemory) {
+        long xmlBytes = footprint.getSheetXmlBytes() > 0
+            ? footprint.getSheetXmlBytes()
+            : footprint.getCompressedSize() * XML_BYTES_PER_PACKAGE_BYTE;
+        long strings = footprint.getSharedStrings() * BYTES_PER_SHARED_STRING;
+
+        long parse;
+        if (readMode == FlexibleEquityLoader.ReadMode.STREAMING) {
+            long rows = Math.max(footprint.getMaxRows(), xmlBytes / XML_BYTES_PER_ROW);
+            parse = rows * STREAMING_BYTES_PER_ROW;
+        } else {
+            parse = Math.max(footprint.getTotalCells() * DOM_BYTES_PER_CELL, xmlBytes * DOM_BYTES_PER_XML_BYTE);
+        }
+        return BASE_COST + parse + strings + (fromMemory ? xmlBytes : 0);
+    }
+
+    /**
+     * True if a parse of this cost can ever be admitted without exceeding the budget
+     */
+    public boolean fits(long bytes) {
+        return bytes <= budget;
+    }
+
+    /**
+     * Reserve heap for one parse, waiting for running parses to release theirs if needed.
+     * A single estimate above the whole budget is capped at the budget, so it runs alone.
+     *
+     * @throws RejectedExecutionException if the budget does not free up within the wait timeout
+     */
+    public Reservation reserve(long bytes) {
+        long amount = Math.min(Math.max(bytes, 0), budget);
+        long remainingNanos = waitTimeout.toNanos();
+        lock.lock();
+        try {
+            if (reserved + amount > budget) {
+                waited.increment();
+            }
+            while (reserved + amount > budget) {
+                if (remainingNanos <= 0) {
+                    rejected.increment();
+                    HurdleLogger.warn("Heap budget exhausted: " + reserved + " of " + budget
+                        + " bytes reserved, " + amount + " requested");
+                    throw new RejectedExecutionException("Not enough memory to process this workbook right now");
+                }
+                remainingNanos = budgetFreed.awaitNanos(remainingNanos);
+            }
+            reserved += amount;
+            reservations++;
+            return new Reservation(amount);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for heap budget", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long amount) {
+        lock.lock();
+        try {
+            reserved -= amount;
+            reservations--;
+            budgetFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public long getReserved() {
+        lock.lock();
+        try {
+            return reserved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getReservations() {
+        lock.lock();
+        try {
+            return reservations;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserved heap; close() returns it to the budget once
+     */
+    public final class Reservation implements AutoCloseable {
+        private final long amount;
+        private boolean released;
+
+        private Reservation(long amount) {
+            this.amount = amount;
+        }
+
+        public long getAmount() {
+            return amount;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(amount);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.investinghurdle.api.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import util.CostBasisMethod;
+import util.LotCheckpoint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+
+/**
+ * Open-lot checkpoints of each account, one binary file per cost basis method and boundary
+ * day under output-dir/checkpoints/&lt;account&gt;/&lt;method&gt;/&lt;yyyy-MM-dd&gt;.lots, since each
+ * method leaves different lots open. A file is written next to its final name and moved
+ * into place, so readers never see a partial checkpoint.
+ */
+@Component
+public class LotCheckpointStore {
+
+    private static final String SUFFIX = ".lots";
+
+    private final Path root;
+
+    public LotCheckpointStore(@Value("${investing-hurdle.output-dir:./output}") String outputDir) {
+        this.root = Paths.get(outputDir, "checkpoints");
+    }
+
+    /**
+     * Checkpoint of the lots open at the start of the boundary day, or null if none was saved
+     *
+     * @throws IOException if the file exists but cannot be read as a checkpoint
+     */
+    public LotCheckpoint load(String account, CostBasisMethod method, long boundaryEpochDay) throws IOException {
+        Path file = pathFor(account, method, boundaryEpochDay);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            LotCheckpoint checkpoint = LotCheckpoint.read(in);
+            if (checkpoint.getBoundaryEpochDay() != boundaryEpochDay) {
+                throw new IOException("Checkpoint " + file + " is for another day");
+            }
+            return checkpoint;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Save a checkpoint under its boundary day, replacing any earlier one
+     */
+    public void save(String account, CostBasisMethod method, LotCheckpoint checkpoint) throws IOException {
+        Path file = pathFor(account, method, checkpoint.getBoundaryEpochDay());
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                checkpoint.write(out);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    Path pathFor(String account, CostBasisMethod method, long boundaryEpochDay) {
+        return root.resolve(LotMatching.checkAccount(account)).resolve(method.name())
+            .resolve(LocalDate.ofEpochDay(boundaryEpochDay) + SUFFIX);
+    }
+}
@@ -0,0 +1,194 @@
+package com.investinghurdle.api.service;
+
+import util.CorporateActions;
+import util.CostBasisMethod;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * How a calculation gets its cost basis: the broker's own amounts, or lots re-matched with a
+ * cost basis method. Re-matching for an account starts from that account's open-lot checkpoint
+ * at the financial year start and, only when asked to, saves the lots left open at its end.
+ * Splits and bonus issues, if given, adjust the re-matched lots.
+ */
+public final class LotMatching {
+
+    private static final Pattern ACCOUNT = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    public static final LotMatching BROKER = new LotMatching(CostBasisMethod.BROKER, null, null, false);
+
+    private final CostBasisMethod method;
+    private final String account;
+    private final CorporateActions corporateActions;
+    private final boolean saveCheckpoint;
+
+    private LotMatching(CostBasisMethod method, String account, CorporateActions corporateActions,
+                        boolean saveCheckpoint) {
+        this.method = method;
+        this.account = account;
+        this.corporateActions = corporateActions;
+        this.saveCheckpoint = saveCheckpoint;
+    }
+
+    /**
+     * Parse the request parameters
+     *
+     * @param costBasis cost basis method; null or blank means the broker's own amounts
+     * @param account   account whose open-lot checkpoints to use, 1-64 letters, digits, '_' or '-';
+     *                  null or blank for none
+     * @throws IllegalArgumentException for an unknown method, a malformed account, or an account
+     *                                  without re-matching
+     */
+    public static LotMatching parse(String costBasis, String account) {
+        return parse(costBasis, account, null);
+    }
+
+    /**
+     * Parse the request parameters, with splits and bonus issues
+     *
+     * @param corporateActions actions as SYMBOL:yyyy-MM-dd:ratio, comma-separated (see
+     *                         CorporateActions.parse); null or blank for none
+     * @throws IllegalArgumentException as parse(String, String), for a malformed action, or for
+     *                                  actions without re-matching
+     */
+    public static LotMatching parse(String costBasis, String account, String corporateActions) {
+        return parse(costBasis, account, corporateActions, false);
+    }
+
+    /**
+     * Parse the request parameters, saving the account's year-end checkpoint if asked to
+     *
+     * @param saveCheckpoint whether to save the lots open at the year end as the account's
+     *                       checkpoint for the next year
+     * @throws IllegalArgumentException as parse(String, String, String), or for saving a
+     *                                  checkpoint without an account
+     */
+    public static LotMatching parse(String costBasis, String account, String corporateActions,
+                                    boolean saveCheckpoint) {
+        CostBasisMethod method = CostBasisMethod.BROKER;
+        if (costBasis != null && !costBasis.isBlank()) {
+            try {
+                method = CostBasisMethod.valueOf(costBasis.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown cost basis: " + costBasis.trim()
+                    + ". Supported: " + Arrays.toString(CostBasisMethod.values()));
+            }
+        }
+
+        String accountId = null;
+        if (account != null && !account.isBlank()) {
+            accountId = checkAccount(account.trim());
+            if (method == CostBasisMethod.BROKER) {
+                throw new IllegalArgumentException("An account needs a cost basis other than "
+                    + CostBasisMethod.BROKER + ": broker amounts do not use open lots");
+            }
+        }
+
+        CorporateActions actions = parseActions(corporateActions);
+        if (actions != null && method == CostBasisMethod.BROKER) {
+            throw new IllegalArgumentException("Corporate actions need a cost basis other than "
+                + CostBasisMethod.BROKER + ": broker amounts do not use open lots");
+        }
+        if (saveCheckpoint && accountId == null) {
+            throw new IllegalArgumentException("Saving a checkpoint needs an account");
+        }
+        return method == CostBasisMethod.BROKER ? BROKER : new LotMatching(method, accountId, actions, saveCheckpoint);
+    }
+
+    /**
+     * Re-matching with the given method and no account
+     */
+    public static LotMatching of(CostBasisMethod method) {
+        return of(method, null);
+    }
+
+    /**
+     * Re-matching with the given method, no account and the given actions (null for none);
+     * BROKER ignores the actions
+     */
+    public static LotMatching of(CostBasisMethod method, CorporateActions corporateActions) {
+        return method == CostBasisMethod.BROKER ? BROKER : new LotMatching(method, null, corporateActions, false);
+    }
+
+    /**
+     * Parse splits and bonus issues; null for none
+     *
+     * @throws IllegalArgumentException for a malformed action
+     */
+    public static CorporateActions parseActions(String corporateActions) {
+        CorporateActions actions = CorporateActions.parse(corporateActions);
+        return actions.isEmpty() ? null : actions;
+    }
+
+    /**
+     * Parse a comma-separated list of cost basis methods to compare; null or blank means all
+     *
+     * @throws IllegalArgumentException for an unknown method
+     */
+    public static List<CostBasisMethod> parseMethods(String costBases) {
+        if (costBases == null || costBases.isBlank()) {
+            return List.of(CostBasisMethod.values());
+        }
+        Set<CostBasisMethod> methods = new LinkedHashSet<>();
+        for (String name : costBases.split(",")) {
+            if (name.isBlank()) continue;
+            methods.add(parse(name, null).getMethod());
+        }
+        return List.copyOf(methods);
+    }
+
+    /**
+     * @throws IllegalArgumentException unless the account id is 1-64 letters, digits, '_' or '-'
+     */
+    static String checkAccount(String account) {
+        if (account == null || !ACCOUNT.matcher(account).matches()) {
+            throw new IllegalArgumentException("Account must be 1-64 letters, digits, '_' or '-'");
+        }
+        return account;
+    }
+
+    public CostBasisMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * Account whose checkpoints are used, or null
+     */
+    public String getAccount() {
+        return account;
+    }
+
+    /**
+     * Whether the lots open at the year end are saved as the account's next checkpoint
+     */
+    public boolean isSaveCheckpoint() {
+        return saveCheckpoint;
+    }
+
+    /**
+     * Splits and bonus issues applied to the re-matched lots, or null
+     */
+    public CorporateActions getCorporateActions() {
+        return corporateActions;
+    }
+
+    public boolean isBroker() {
+        return method == CostBasisMethod.BROKER;
+    }
+
+    /**
+     * Results with an account depend on its saved checkpoints, so they are not cached
+     */
+    public boolean isCacheable() {
+        return account == null;
+    }
+
+    public String cacheKey() {
+        return corporateActions == null ? method.name() : method.name() + "|" + corporateActions;
+    }
+}
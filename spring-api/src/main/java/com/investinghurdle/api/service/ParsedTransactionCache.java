@@ -0,0 +1,54 @@
+package com.investinghurdle.api.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import util.ColumnMapping;
+import util.TransactionStore;
+
+import java.time.Duration;
+
+/**
+ * Caches the transaction rows parsed from a workbook, keyed by content hash only.
+ * A request for another financial year or quarter scheme re-aggregates the cached rows instead of re-reading the file.
+ */
+@Component
+public class ParsedTransactionCache {
+
+    /**
+     * Rows parsed from one workbook, with the column mapping they were read with
+     */
+    public record ParsedTransactions(ColumnMapping columnMapping, TransactionStore transactions) {}
+
+    private final ExpiringLruCache<ParsedTransactions> cache;
+
+    public ParsedTransactionCache(
+            MeterRegistry meterRegistry,
+            @Value("${investing-hurdle.transaction-cache.max-entries:64}") int maxEntries,
+            @Value("${investing-hurdle.transaction-cache.ttl:30m}") Duration ttl) {
+        this.cache = new ExpiringLruCache<>("hurdle.transaction.cache", meterRegistry, maxEntries, ttl);
+    }
+
+    public boolean isEnabled() {
+        return cache.isEnabled();
+    }
+
+    /**
+     * Parsed rows for the workbook content hash, or null on a miss
+     */
+    public ParsedTransactions get(String contentHash) {
+        return cache.get(contentHash);
+    }
+
+    public void put(String contentHash, ColumnMapping columnMapping, TransactionStore transactions) {
+        cache.put(contentHash, new ParsedTransactions(columnMapping, transactions));
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+}
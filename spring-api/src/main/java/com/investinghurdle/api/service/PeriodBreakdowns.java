@@ -0,0 +1,147 @@
+package com.investinghurdle.api.service;
+
+import util.Quarter;
+import util.QuarterConfig;
+import util.QuarterScheme;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Extra period breakdowns requested alongside the main quarter scheme: any of the built-in
+ * schemes (e.g. MONTHLY) plus one set of custom date ranges. All of them are summed in the
+ * same pass over the rows as the main breakdown.
+ */
+public final class PeriodBreakdowns {
+
+    /** Label of the custom periods in the response */
+    public static final String CUSTOM = "CUSTOM";
+
+    public static final PeriodBreakdowns NONE = new PeriodBreakdowns(List.of(), null, "");
+
+    private final List<QuarterScheme> schemes;
+    private final QuarterConfig custom;
+    private final String key;
+
+    private PeriodBreakdowns(List<QuarterScheme> schemes, QuarterConfig custom, String key) {
+        this.schemes = schemes;
+        this.custom = custom;
+        this.key = key;
+    }
+
+    /**
+     * Parse the request parameters
+     *
+     * @param periodSchemes comma-separated scheme names, e.g. "MONTHLY,Q5_IT_PORTAL"; null or blank for none
+     * @param customPeriods comma-separated ISO date ranges, e.g. "2024-04-01..2024-06-15,2024-06-16..2024-09-15";
+     *                      null or blank for none
+     * @throws IllegalArgumentException if a scheme is unknown or a range is malformed, reversed or overlapping
+     */
+    public static PeriodBreakdowns parse(String periodSchemes, String customPeriods) {
+        Set<QuarterScheme> schemes = new LinkedHashSet<>();
+        if (periodSchemes != null) {
+            for (String name : periodSchemes.split(",")) {
+                if (name.isBlank()) continue;
+                try {
+                    schemes.add(QuarterScheme.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown period scheme: " + name.trim()
+                        + ". Supported: " + Arrays.toString(QuarterScheme.values()));
+                }
+            }
+        }
+
+        QuarterConfig custom = null;
+        if (customPeriods != null && !customPeriods.isBlank()) {
+            custom = parseCustom(customPeriods);
+        }
+        if (schemes.isEmpty() && custom == null) {
+            return NONE;
+        }
+
+        StringBuilder key = new StringBuilder();
+        for (QuarterScheme scheme : schemes) {
+            key.append(scheme).append(',');
+        }
+        if (custom != null) {
+            for (Quarter period : custom.getQuarters()) {
+                key.append(period.getStartDate()).append("..").append(period.getEndDate()).append(',');
+            }
+        }
+        return new PeriodBreakdowns(List.copyOf(schemes), custom, key.toString());
+    }
+
+    private static QuarterConfig parseCustom(String customPeriods) {
+        List<Quarter> periods = new ArrayList<>();
+        for (String range : customPeriods.split(",")) {
+            if (range.isBlank()) continue;
+            String[] bounds = range.trim().split("\\.\\.");
+            if (bounds.length != 2) {
+                throw new IllegalArgumentException("Custom period must be start..end: " + range.trim());
+            }
+            LocalDate start;
+            LocalDate end;
+            try {
+                start = LocalDate.parse(bounds[0].trim());
+                end = LocalDate.parse(bounds[1].trim());
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Custom period dates must be yyyy-MM-dd: " + range.trim());
+            }
+            if (end.isBefore(start)) {
+                throw new IllegalArgumentException("Custom period ends before it starts: " + range.trim());
+            }
+            int number = periods.size() + 1;
+            periods.add(new Quarter("P" + number, "Period " + number, start, end));
+        }
+        if (periods.size() > QuarterConfig.MAX_PERIODS) {
+            throw new IllegalArgumentException("At most " + QuarterConfig.MAX_PERIODS + " custom periods are supported");
+        }
+
+        List<Quarter> sorted = new ArrayList<>(periods);
+        sorted.sort(Comparator.comparing(Quarter::getStartDate));
+        for (int i = 1; i < sorted.size(); i++) {
+            if (!sorted.get(i).getStartDate().isAfter(sorted.get(i - 1).getEndDate())) {
+                throw new IllegalArgumentException("Custom periods overlap: " + sorted.get(i - 1).getCode()
+                    + " and " + sorted.get(i).getCode());
+            }
+        }
+
+        QuarterConfig config = new QuarterConfig(CUSTOM);
+        periods.forEach(config::addQuarter);
+        return config.freeze();
+    }
+
+    public boolean isEmpty() {
+        return key.isEmpty();
+    }
+
+    /**
+     * Period configs by response label, in request order with the custom periods last
+     */
+    public Map<String, QuarterConfig> configsFor(String financialYear) {
+        Map<String, QuarterConfig> configs = new LinkedHashMap<>();
+        for (QuarterScheme scheme : schemes) {
+            configs.put(scheme.name(), QuarterConfig.forFinancialYear(financialYear, scheme));
+        }
+        if (custom != null) {
+            configs.put(CUSTOM, custom);
+        }
+        return configs;
+    }
+
+    /**
+     * Canonical form for result cache keys; empty when there are no extra breakdowns
+     */
+    public String cacheKey() {
+        return key;
+    }
+}
@@ -2,35 +2,44 @@ package com.investinghurdle.api.service;
 
 import com.investinghurdle.api.dto.*;
 import params.FlexibleEquityLoader;
+import params.WorkbookSource;
 import util.Quarter;
 import util.QuarterConfig;
 import util.QuarterScheme;
+import util.ArithmeticMode;
 import util.ExcelHeaderDetector;
 import util.ColumnMapping;
+import util.CorporateActions;
+import util.CostBasisMethod;
 import util.ExcelSummaryExporter;
+import util.LotCheckpoint;
+import util.PeriodAccumulator;
+import util.PortfolioFifoEngine;
+import util.TransactionStore;
 import logging.HurdleLogger;
-import java.io.FileInputStream;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Cell;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
 
 /**
  * Service for tax calculations
@@ -39,41 +48,141 @@ import java.util.UUID;
 @Service
 public class TaxCalculationService {
     
+    @Autowired
+    private CalculationResultCache resultCache;
+    
+    @Autowired
+    private ParsedTransactionCache transactionCache;
+    
+    @Autowired
+    private CalculationLimiter limiter;
+    
+    @Autowired
+    private HeapAdmissionController admission;
+    
+    @Autowired
+    private LotCheckpointStore checkpointStore;
+    
     @Value("${investing-hurdle.upload-dir:./uploads}")
     private String uploadDir;
     
     @Value("${investing-hurdle.default-financial-year:FY 2021-22}")
     private String defaultFinancialYear;
     
+    /**
+     * Workbooks larger than this are read with the streaming (SAX) loader instead of a full DOM
+     */
+    @Value("${investing-hurdle.streaming-threshold:10MB}")
+    private DataSize streamingThreshold = DataSize.ofMegabytes(10);
+    
+    /**
+     * Arithmetic for requests that do not choose one: DOUBLE or PAISE (exact fixed-point)
+     */
+    @Value("${investing-hurdle.arithmetic:DOUBLE}")
+    private ArithmeticMode defaultArithmetic = ArithmeticMode.DOUBLE;
+    
+    /**
+     * Sum large statements in parallel row chunks on the common fork/join pool
+     */
+    @Value("${investing-hurdle.parallel-aggregation:true}")
+    private boolean parallelAggregation = true;
+    
+    /**
+     * Uploads up to this size are parsed straight from the request; larger ones are spilled to upload-dir
+     */
+    @Value("${investing-hurdle.in-memory-upload-threshold:10MB}")
+    private DataSize inMemoryUploadThreshold = DataSize.ofMegabytes(10);
+    
     /**
      * Process uploaded Excel workbook and calculate taxes
      */
     public TaxCalculationResponse calculateFromFile(MultipartFile file, String financialYear, String quarterScheme) throws Exception {
-        long startTime = System.currentTimeMillis();
-        
+        return calculateFromFile(file, financialYear, quarterScheme, null);
+    }
+    
+    /**
+     * Process uploaded Excel workbook and calculate taxes with the given arithmetic (null for the default)
+     */
+    public TaxCalculationResponse calculateFromFile(MultipartFile file, String financialYear, String quarterScheme,
+                                                    String arithmetic) throws Exception {
+        return calculateFromFile(file, financialYear, quarterScheme, arithmetic, PeriodBreakdowns.NONE);
+    }
+    
+    /**
+     * Process uploaded Excel workbook, adding the requested extra period breakdowns from the same pass
+     */
+    public TaxCalculationResponse calculateFromFile(MultipartFile file, String financialYear, String quarterScheme,
+                                                    String arithmetic, PeriodBreakdowns periodBreakdowns)
+            throws Exception {
+        return calculateFromFile(file, financialYear, quarterScheme, arithmetic, periodBreakdowns,
+            LotMatching.BROKER);
+    }
+    
+    /**
+     * Process uploaded Excel workbook with the given cost basis method and optional account checkpoints
+     */
+    public TaxCalculationResponse calculateFromFile(MultipartFile file, String financialYear, String quarterScheme,
+                                                    String arithmetic, PeriodBreakdowns periodBreakdowns,
+                                                    LotMatching lotMatching) throws Exception {
         // Validate file
         if (file.isEmpty()) {
             throw new IllegalArgumentException("File is empty");
         }
         
-        // Save uploaded file temporarily
-        String uploadedFilePath = saveUploadedFile(file);
+        // Read the upload in memory, or into a spill file if it is large
+        try (UploadedWorkbook upload = openUpload(file)) {
+            return calculate(upload, financialYear, quarterScheme, arithmetic, periodBreakdowns, lotMatching, null);
+        }
+    }
+    
+    /**
+     * Calculate taxes for an upload snapshot, reporting rows processed to the optional progress listener
+     */
+    TaxCalculationResponse calculate(UploadedWorkbook upload, String financialYear, String quarterScheme,
+                                     String arithmetic, PeriodBreakdowns periodBreakdowns,
+                                     LotMatching lotMatching, IntConsumer progressListener) throws Exception {
+        long startTime = System.currentTimeMillis();
+        String contentHash = upload.getContentHash();
+        ArithmeticMode arithmeticMode = resolveArithmetic(arithmetic);
         
-        try {
-            // Use existing EquityLoader logic (will integrate in next step)
-            // For now, return mock data based on existing calculations
-            TaxCalculationResponse response = performCalculation(uploadedFilePath, financialYear, quarterScheme);
-            
-            long processingTime = System.currentTimeMillis() - startTime;
-            response.setProcessingTimeMs(processingTime);
-            response.setCalculatedAt(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            
-            return response;
-            
-        } finally {
-            // Clean up temporary file
-            cleanupFile(uploadedFilePath);
+        // Same statement, year and scheme as an earlier request: reuse its result
+        String resultKey = null;
+        if (resultCache.isEnabled() && lotMatching.isCacheable()) {
+            resultKey = resultCache.keyFor(contentHash, financialYear, resolveScheme(quarterScheme).name(),
+                arithmeticMode.name(), periodBreakdowns.cacheKey(), lotMatching.cacheKey());
+            TaxCalculationResponse cached = resultCache.get(resultKey);
+            if (cached != null) {
+                cached.setProcessingTimeMs(System.currentTimeMillis() - startTime);
+                return cached;
+            }
         }
+        
+        TaxCalculationResponse response;
+        try (CalculationLimiter.Permit permit = limiter.acquire()) {
+            ParsedTransactionCache.ParsedTransactions parsed =
+                transactionCache.isEnabled() ? transactionCache.get(contentHash) : null;
+            if (parsed != null) {
+                // Same statement, different year or scheme: re-aggregate the parsed rows
+                response = performCalculation(parsed, financialYear, quarterScheme, arithmeticMode,
+                    periodBreakdowns, lotMatching, progressListener);
+            } else {
+                FlexibleEquityLoader.ReadMode readMode = selectReadMode(upload);
+                try (HeapAdmissionController.Reservation reservation = reserveHeap(upload, readMode);
+                     WorkbookSource source = upload.open(readMode)) {
+                    response = performCalculation(source, contentHash, financialYear, quarterScheme, arithmeticMode,
+                        periodBreakdowns, lotMatching, progressListener);
+                }
+            }
+        }
+        
+        long processingTime = System.currentTimeMillis() - startTime;
+        response.setProcessingTimeMs(processingTime);
+        response.setCalculatedAt(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        
+        if (resultKey != null) {
+            resultCache.put(resultKey, response);
+        }
+        return response;
     }
     
     /**
@@ -87,7 +196,13 @@ public class TaxCalculationService {
         // Use existing default configuration file
         String defaultFilePath = "./configuration/tax_2122_.xlsx";
         
-        TaxCalculationResponse response = performCalculation(defaultFilePath, fy, "STANDARD_Q4");
+        TaxCalculationResponse response;
+        try (CalculationLimiter.Permit permit = limiter.acquire();
+             WorkbookSource source = WorkbookSource.open(new File(defaultFilePath),
+                selectReadMode(Files.size(Paths.get(defaultFilePath))))) {
+            response = performCalculation(source, null, fy, "STANDARD_Q4", defaultArithmetic,
+                PeriodBreakdowns.NONE, LotMatching.BROKER, null);
+        }
         
         long processingTime = System.currentTimeMillis() - startTime;
         response.setProcessingTimeMs(processingTime);
@@ -97,188 +212,330 @@ public class TaxCalculationService {
     }
 
     /**
-     * Generate Excel summary report for an uploaded workbook.
+     * Calculate every financial year in an uploaded workbook from one read: rows are
+     * partitioned by the financial year of their sell date and each year gets its own
+     * quarters and LTCG exemption
      */
-    public byte[] exportExcel(MultipartFile file, String financialYear, String quarterScheme) throws Exception {
-        TaxCalculationResponse response = calculateFromFile(file, financialYear, quarterScheme);
+    public MultiYearCalculationResponse calculateMultiYear(MultipartFile file, String quarterScheme,
+                                                           String arithmetic) throws Exception {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("File is empty");
+        }
 
-        File temp = File.createTempFile("tax-summary-", ".xlsx");
-        try {
-            new ExcelSummaryExporter().export(temp, response);
-            return Files.readAllBytes(temp.toPath());
-        } finally {
-            Files.deleteIfExists(temp.toPath());
+        long startTime = System.currentTimeMillis();
+        QuarterScheme scheme = resolveScheme(quarterScheme);
+        ArithmeticMode arithmeticMode = resolveArithmetic(arithmetic);
+
+        FlexibleEquityLoader loader;
+        try (UploadedWorkbook upload = openUpload(file);
+             CalculationLimiter.Permit permit = limiter.acquire()) {
+            String contentHash = upload.getContentHash();
+            ParsedTransactionCache.ParsedTransactions parsed =
+                transactionCache.isEnabled() ? transactionCache.get(contentHash) : null;
+            if (parsed != null) {
+                loader = new FlexibleEquityLoader(parsed.transactions(), parsed.columnMapping(), null);
+                initializeMultiYear(loader, scheme, arithmeticMode);
+            } else {
+                FlexibleEquityLoader.ReadMode readMode = selectReadMode(upload);
+                try (HeapAdmissionController.Reservation reservation = reserveHeap(upload, readMode);
+                     WorkbookSource source = upload.open(readMode)) {
+                    loader = new FlexibleEquityLoader(source, null);
+                    initializeMultiYear(loader, scheme, arithmeticMode);
+                }
+                if (transactionCache.isEnabled()) {
+                    transactionCache.put(contentHash, loader.getColumnMapping(), loader.getTransactions());
+                }
+            }
+        }
+
+        String calculatedAt = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        List<TaxCalculationResponse> results = new ArrayList<>(loader.getFinancialYears().size());
+        for (Map.Entry<String, PeriodAccumulator> year : loader.getFinancialYears().entrySet()) {
+            QuarterConfig quarterConfig = QuarterConfig.forFinancialYear(year.getKey(), scheme);
+            TaxCalculationResponse response = buildResponse(year.getValue(), quarterConfig,
+                loader.getColumnMapping(), year.getKey());
+            response.setCalculatedAt(calculatedAt);
+            results.add(response);
+        }
+
+        TransactionStore transactions = loader.getTransactions();
+        int undated = 0;
+        for (int i = 0; i < transactions.size(); i++) {
+            if (transactions.getSellEpochDay(i) == TransactionStore.NO_DATE) {
+                undated++;
+            }
+        }
+        return new MultiYearCalculationResponse(scheme.name(), arithmeticMode.name(), results, undated,
+            System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Calculate one financial year with several cost basis methods from one read of the
+     * workbook: BROKER comes from the parsed rows, every other method re-matches the same
+     * rows in memory, applying the corporate actions if any
+     *
+     * @param corporateActions splits and bonus issues for the re-matched lots; null for none
+     */
+    public CostBasisComparisonResponse compareCostBasis(MultipartFile file, String financialYear, String quarterScheme,
+                                                        String arithmetic, List<CostBasisMethod> methods,
+                                                        CorporateActions corporateActions)
+            throws Exception {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("File is empty");
+        }
+
+        long startTime = System.currentTimeMillis();
+        QuarterConfig quarterConfig = QuarterConfig.forFinancialYear(financialYear, resolveScheme(quarterScheme));
+        ArithmeticMode arithmeticMode = resolveArithmetic(arithmetic);
+
+        FlexibleEquityLoader loader;
+        try (UploadedWorkbook upload = openUpload(file);
+             CalculationLimiter.Permit permit = limiter.acquire()) {
+            String contentHash = upload.getContentHash();
+            ParsedTransactionCache.ParsedTransactions parsed =
+                transactionCache.isEnabled() ? transactionCache.get(contentHash) : null;
+            if (parsed != null) {
+                loader = new FlexibleEquityLoader(parsed.transactions(), parsed.columnMapping(), quarterConfig);
+                initializeComparison(loader, arithmeticMode);
+            } else {
+                FlexibleEquityLoader.ReadMode readMode = selectReadMode(upload);
+                try (HeapAdmissionController.Reservation reservation = reserveHeap(upload, readMode);
+                     WorkbookSource source = upload.open(readMode)) {
+                    loader = new FlexibleEquityLoader(source, quarterConfig);
+                    initializeComparison(loader, arithmeticMode);
+                }
+                if (transactionCache.isEnabled()) {
+                    transactionCache.put(contentHash, loader.getColumnMapping(), loader.getTransactions());
+                }
+            }
+
+            String calculatedAt = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            List<TaxCalculationResponse> results = new ArrayList<>(methods.size());
+            for (CostBasisMethod method : methods) {
+                TaxCalculationResponse response = buildResponse(loader, financialYear, Map.of(),
+                    LotMatching.of(method, corporateActions));
+                response.setCostBasis(method.name());
+                response.setCalculatedAt(calculatedAt);
+                results.add(response);
+            }
+            return new CostBasisComparisonResponse(financialYear, resolveScheme(quarterScheme).name(),
+                arithmeticMode.name(), results, System.currentTimeMillis() - startTime);
         }
     }
+
+    private void initializeComparison(FlexibleEquityLoader loader, ArithmeticMode arithmeticMode) throws Exception {
+        loader.setArithmeticMode(arithmeticMode);
+        loader.setAggregationPool(parallelAggregation ? ForkJoinPool.commonPool() : null);
+        loader.initialize();
+    }
+
+    private void initializeMultiYear(FlexibleEquityLoader loader, QuarterScheme scheme,
+                                     ArithmeticMode arithmeticMode) throws Exception {
+        loader.setFinancialYearScheme(scheme);
+        loader.setArithmeticMode(arithmeticMode);
+        loader.setAggregationPool(parallelAggregation ? ForkJoinPool.commonPool() : null);
+        loader.initialize();
+    }
+
+    /**
+     * Generate Excel summary report for an uploaded workbook.
+     */
+    public byte[] exportExcel(MultipartFile file, String financialYear, String quarterScheme,
+                              String arithmetic) throws Exception {
+        TaxCalculationResponse response = calculateFromFile(file, financialYear, quarterScheme, arithmetic);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ExcelSummaryExporter().export(out, response);
+        return out.toByteArray();
+    }
     
     /**
-     * Perform actual calculation using FlexibleEquityLoader (supports multiple brokers)
+     * Perform actual calculation using FlexibleEquityLoader (supports multiple brokers).
+     * When a content hash is given, the parsed rows are cached for later re-aggregation.
      */
-    private TaxCalculationResponse performCalculation(String filePath, String financialYear, String quarterScheme) throws Exception {
-        QuarterScheme scheme = QuarterScheme.STANDARD_Q4;
-        try {
-            scheme = QuarterScheme.valueOf(quarterScheme);
-        } catch (Exception ignored) {}
-        // Create QuarterConfig dynamically for any financial year
-        QuarterConfig quarterConfig = util.QuarterConfig.createForFinancialYear(financialYear, scheme);
+    private TaxCalculationResponse performCalculation(WorkbookSource source, String contentHash,
+                                                      String financialYear, String quarterScheme,
+                                                      ArithmeticMode arithmeticMode,
+                                                      PeriodBreakdowns periodBreakdowns,
+                                                      LotMatching lotMatching,
+                                                      IntConsumer progressListener) throws Exception {
+        // Shared QuarterConfig for this financial year and scheme
+        QuarterConfig quarterConfig = QuarterConfig.forFinancialYear(financialYear, resolveScheme(quarterScheme));
         
         // Create FlexibleEquityLoader with auto-detection
-        FlexibleEquityLoader loader = new FlexibleEquityLoader(filePath, quarterConfig);
+        FlexibleEquityLoader loader = new FlexibleEquityLoader(source, quarterConfig);
+        loader.setProgressListener(progressListener);
+        loader.setArithmeticMode(arithmeticMode);
+        loader.setAggregationPool(parallelAggregation ? ForkJoinPool.commonPool() : null);
+        Map<String, QuarterConfig> periodConfigs = periodBreakdowns.configsFor(financialYear);
+        loader.setAdditionalPeriods(new ArrayList<>(periodConfigs.values()));
         
         // Initialize and load data
         loader.initialize();
         
+        if (contentHash != null && transactionCache.isEnabled()) {
+            transactionCache.put(contentHash, loader.getColumnMapping(), loader.getTransactions());
+        }
+        return buildResponse(loader, financialYear, periodConfigs, lotMatching);
+    }
+    
+    /**
+     * Re-aggregate previously parsed rows for another financial year or quarter scheme
+     */
+    private TaxCalculationResponse performCalculation(ParsedTransactionCache.ParsedTransactions parsed,
+                                                      String financialYear, String quarterScheme,
+                                                      ArithmeticMode arithmeticMode,
+                                                      PeriodBreakdowns periodBreakdowns,
+                                                      LotMatching lotMatching,
+                                                      IntConsumer progressListener) throws Exception {
+        QuarterConfig quarterConfig = QuarterConfig.forFinancialYear(financialYear, resolveScheme(quarterScheme));
+        
+        FlexibleEquityLoader loader = new FlexibleEquityLoader(parsed.transactions(), parsed.columnMapping(), quarterConfig);
+        loader.setProgressListener(progressListener);
+        loader.setArithmeticMode(arithmeticMode);
+        loader.setAggregationPool(parallelAggregation ? ForkJoinPool.commonPool() : null);
+        Map<String, QuarterConfig> periodConfigs = periodBreakdowns.configsFor(financialYear);
+        loader.setAdditionalPeriods(new ArrayList<>(periodConfigs.values()));
+        loader.initialize();
+        
+        return buildResponse(loader, financialYear, periodConfigs, lotMatching);
+    }
+    
+    /**
+     * Build the API response from an initialized loader, re-matching lots first unless the
+     * broker's cost basis is used
+     */
+    private TaxCalculationResponse buildResponse(FlexibleEquityLoader loader, String financialYear,
+                                                 Map<String, QuarterConfig> periodConfigs,
+                                                 LotMatching lotMatching) throws IOException {
+        PeriodAccumulator periods = loader.getPeriods();
+        List<PeriodAccumulator> additionalPeriods = loader.getAdditionalPeriods();
+        LotCheckpoint opening = null;
+        LotCheckpoint saved = null;
+        double unmatchedSellQuantity = 0;
+        if (!lotMatching.isBroker()) {
+            List<QuarterConfig> configs = new ArrayList<>(1 + periodConfigs.size());
+            configs.add(loader.getQuarterConfig());
+            configs.addAll(periodConfigs.values());
+            PortfolioFifoEngine engine = new PortfolioFifoEngine(loader.getArithmeticMode(), lotMatching.getMethod());
+            engine.setPool(parallelAggregation ? ForkJoinPool.commonPool() : null);
+            engine.setCorporateActions(lotMatching.getCorporateActions());
+            if (lotMatching.getAccount() != null) {
+                // Start from the lots open on the first day of the year, stop at its last day
+                LocalDate yearStart = LocalDate.of(financialYearStart(loader.getQuarterConfig()), 4, 1);
+                opening = checkpointStore.load(lotMatching.getAccount(), lotMatching.getMethod(), yearStart.toEpochDay());
+                engine.setOpeningLots(opening);
+                engine.setLastDay(yearStart.plusYears(1).minusDays(1).toEpochDay());
+            }
+            PortfolioFifoEngine.Result matched = matchLots(engine, loader.getTransactions(), configs);
+            if (lotMatching.isSaveCheckpoint()) {
+                saved = matched.getClosingLots();
+                checkpointStore.save(lotMatching.getAccount(), lotMatching.getMethod(), saved);
+            }
+            unmatchedSellQuantity = matched.getUnmatchedSellQuantity();
+            periods = matched.getPeriods(0);
+            additionalPeriods = new ArrayList<>(periodConfigs.size());
+            for (int k = 1; k < configs.size(); k++) {
+                additionalPeriods.add(matched.getPeriods(k));
+            }
+        }
+        
+        TaxCalculationResponse response = buildResponse(periods, loader.getQuarterConfig(),
+            loader.getColumnMapping(), financialYear);
+        if (!lotMatching.isBroker()) {
+            response.setCostBasis(lotMatching.getMethod().name());
+            response.setUnmatchedSellQuantity(unmatchedSellQuantity);
+        }
+        if (opening != null) {
+            response.setOpeningCheckpoint(LocalDate.ofEpochDay(opening.getBoundaryEpochDay()).toString());
+        }
+        if (saved != null) {
+            response.setSavedCheckpoint(LocalDate.ofEpochDay(saved.getBoundaryEpochDay()).toString());
+        }
+        
+        // Extra breakdowns were summed in the order of the map
+        if (!periodConfigs.isEmpty()) {
+            List<PeriodBreakdownResponse> breakdowns = new ArrayList<>(periodConfigs.size());
+            int k = 0;
+            for (Map.Entry<String, QuarterConfig> entry : periodConfigs.entrySet()) {
+                PeriodAccumulator sums = additionalPeriods.get(k++);
+                QuarterConfig config = entry.getValue();
+                breakdowns.add(new PeriodBreakdownResponse(entry.getKey(),
+                    breakdown(sums, config, TransactionStore.STCG),
+                    breakdown(sums, config, TransactionStore.LTCG),
+                    breakdown(sums, config, TransactionStore.INTRADAY)));
+            }
+            response.setPeriodBreakdowns(breakdowns);
+        }
+        return response;
+    }
+
+    /**
+     * Start year of the financial year a quarter config covers, from its first quarter
+     */
+    private static int financialYearStart(QuarterConfig quarterConfig) {
+        return QuarterConfig.financialYearStart(quarterConfig.getQuarters().get(0).getStartDate().toEpochDay());
+    }
+
+    /**
+     * Re-match every symbol's lots with the engine's method and sum the matches per period of each config
+     */
+    private PortfolioFifoEngine.Result matchLots(PortfolioFifoEngine engine, TransactionStore transactions,
+                                                 List<QuarterConfig> configs) {
+        PortfolioFifoEngine.Result result = engine.run(transactions, configs);
+        if (transactions.size() > 0 && result.getSkippedRows() == transactions.size()) {
+            throw new IllegalArgumentException("Re-matching lots needs symbol, quantity, buy date and sell date columns; "
+                + "no row has all of them");
+        }
+        if (result.getSkippedRows() > 0 || result.getUnmatchedSellQuantity() > 0) {
+            HurdleLogger.warn("Lot matching skipped " + result.getSkippedRows() + " incomplete rows; "
+                + result.getUnmatchedSellQuantity() + " sold quantity had no open lot");
+        }
+        return result;
+    }
+    
+    /**
+     * Build the response for one financial year from its period sums
+     */
+    private TaxCalculationResponse buildResponse(PeriodAccumulator periods, QuarterConfig quarterConfig,
+                                                 ColumnMapping columnMapping, String financialYear) {
+        int total = PeriodAccumulator.TOTAL;
+        
         // Build STCG Response
         StcgResponse stcg = new StcgResponse(
-            loader.getTotalStcgSell(),
-            loader.getTotalStcgBuy(),
-            loader.getTotalStcg()
+            periods.get(TransactionStore.STCG, total, PeriodAccumulator.SELL),
+            periods.get(TransactionStore.STCG, total, PeriodAccumulator.BUY),
+            periods.getGain(TransactionStore.STCG, total)
         );
         
         // Build LTCG Response with exemption based on financial year
+        double totalLtcg = periods.getGain(TransactionStore.LTCG, total);
         double ltcgExemption = getLtcgExemptionLimit(financialYear);
-        double taxableLtcg = Math.max(0, loader.getTotalLtcg() - ltcgExemption);
+        double taxableLtcg = Math.max(0, totalLtcg - ltcgExemption);
         LtcgResponse ltcg = new LtcgResponse(
-            loader.getTotalLtcgSell(),
-            loader.getTotalLtcgBuy(),
-            loader.getTotalLtcg(),
+            periods.get(TransactionStore.LTCG, total, PeriodAccumulator.SELL),
+            periods.get(TransactionStore.LTCG, total, PeriodAccumulator.BUY),
+            totalLtcg,
             ltcgExemption,
             taxableLtcg
         );
         
         // Build Speculation Response
-        double intraProfitLoss = loader.getTotalIntraSell() - loader.getTotalIntraBuy();
         SpeculationResponse speculation = new SpeculationResponse(
-            loader.getTotalIntraSell(),
-            loader.getTotalIntraBuy(),
-            intraProfitLoss,
-            loader.getTotalIntraTurnover()
+            periods.get(TransactionStore.INTRADAY, total, PeriodAccumulator.SELL),
+            periods.get(TransactionStore.INTRADAY, total, PeriodAccumulator.BUY),
+            periods.getGain(TransactionStore.INTRADAY, total),
+            periods.get(TransactionStore.INTRADAY, total, PeriodAccumulator.TURNOVER)
         );
         
-        // Build STCG quarterly breakdown from QuarterConfig
-        List<QuarterDetailResponse> stcgQuarters = new ArrayList<>();
-        List<Quarter> configQuarters = quarterConfig.getQuarters();
+        List<QuarterDetailResponse> stcgQuarters = breakdown(periods, quarterConfig, TransactionStore.STCG);
+        List<QuarterDetailResponse> ltcgQuarters = breakdown(periods, quarterConfig, TransactionStore.LTCG);
+        List<QuarterDetailResponse> intraQuarters = breakdown(periods, quarterConfig, TransactionStore.INTRADAY);
         
-        for (int i = 0; i < configQuarters.size(); i++) {
-            Quarter q = configQuarters.get(i);
-            double stcgAmount = 0.0;
-            double stcgBuy = 0.0;
-            double stcgSell = 0.0;
-            
-            // Get STCG amount for each quarter
-            switch (i) {
-                case 0: stcgAmount = loader.getStcgQ1(); stcgBuy = loader.getStcgBuyQ1(); stcgSell = loader.getStcgSellQ1(); break;
-                case 1: stcgAmount = loader.getStcgQ2(); stcgBuy = loader.getStcgBuyQ2(); stcgSell = loader.getStcgSellQ2(); break;
-                case 2: stcgAmount = loader.getStcgQ3(); stcgBuy = loader.getStcgBuyQ3(); stcgSell = loader.getStcgSellQ3(); break;
-                case 3: stcgAmount = loader.getStcgQ4(); stcgBuy = loader.getStcgBuyQ4(); stcgSell = loader.getStcgSellQ4(); break;
-                case 4: stcgAmount = loader.getStcgQ5(); stcgBuy = loader.getStcgBuyQ5(); stcgSell = loader.getStcgSellQ5(); break;
-            }
-            
-            stcgQuarters.add(QuarterDetailResponse.forStcg(
-                i + 1,
-                q.getCode(),
-                q.getName(),
-                q.getStartDate().toString(),
-                q.getEndDate().toString(),
-                stcgAmount,
-                stcgSell,
-                stcgBuy
-            ));
-        }
-
-        // LTCG quarterly breakdown
-        List<QuarterDetailResponse> ltcgQuarters = new ArrayList<>();
-        for (int i = 0; i < configQuarters.size(); i++) {
-            Quarter q = configQuarters.get(i);
-            double amt = switch (i) {
-                case 0 -> loader.getLtcgQ1();
-                case 1 -> loader.getLtcgQ2();
-                case 2 -> loader.getLtcgQ3();
-                case 3 -> loader.getLtcgQ4();
-                case 4 -> loader.getLtcgQ5();
-                default -> 0.0;
-            };
-            double buy = switch (i) {
-                case 0 -> loader.getLtcgBuyQ1();
-                case 1 -> loader.getLtcgBuyQ2();
-                case 2 -> loader.getLtcgBuyQ3();
-                case 3 -> loader.getLtcgBuyQ4();
-                case 4 -> loader.getLtcgBuyQ5();
-                default -> 0.0;
-            };
-            double sell = switch (i) {
-                case 0 -> loader.getLtcgSellQ1();
-                case 1 -> loader.getLtcgSellQ2();
-                case 2 -> loader.getLtcgSellQ3();
-                case 3 -> loader.getLtcgSellQ4();
-                case 4 -> loader.getLtcgSellQ5();
-                default -> 0.0;
-            };
-            ltcgQuarters.add(QuarterDetailResponse.forLtcg(
-                i + 1,
-                q.getCode(),
-                q.getName(),
-                q.getStartDate().toString(),
-                q.getEndDate().toString(),
-                amt,
-                sell,
-                buy
-            ));
-        }
-
-        // Speculation quarterly breakdown (profit/loss per quarter)
-        List<QuarterDetailResponse> intraQuarters = new ArrayList<>();
-        for (int i = 0; i < configQuarters.size(); i++) {
-            Quarter q = configQuarters.get(i);
-            double amt = switch (i) {
-                case 0 -> loader.getIntraQ1();
-                case 1 -> loader.getIntraQ2();
-                case 2 -> loader.getIntraQ3();
-                case 3 -> loader.getIntraQ4();
-                case 4 -> loader.getIntraQ5();
-                default -> 0.0;
-            };
-            double buy = switch (i) {
-                case 0 -> loader.getIntraBuyQ1();
-                case 1 -> loader.getIntraBuyQ2();
-                case 2 -> loader.getIntraBuyQ3();
-                case 3 -> loader.getIntraBuyQ4();
-                case 4 -> loader.getIntraBuyQ5();
-                default -> 0.0;
-            };
-            double sell = switch (i) {
-                case 0 -> loader.getIntraSellQ1();
-                case 1 -> loader.getIntraSellQ2();
-                case 2 -> loader.getIntraSellQ3();
-                case 3 -> loader.getIntraSellQ4();
-                case 4 -> loader.getIntraSellQ5();
-                default -> 0.0;
-            };
-            double turnover = switch (i) {
-                case 0 -> loader.getIntraTurnoverQ1();
-                case 1 -> loader.getIntraTurnoverQ2();
-                case 2 -> loader.getIntraTurnoverQ3();
-                case 3 -> loader.getIntraTurnoverQ4();
-                case 4 -> loader.getIntraTurnoverQ5();
-                default -> 0.0;
-            };
-            intraQuarters.add(QuarterDetailResponse.forSpeculation(
-                i + 1,
-                q.getCode(),
-                q.getName(),
-                q.getStartDate().toString(),
-                q.getEndDate().toString(),
-                amt,
-                sell,
-                buy,
-                turnover
-            ));
-        }
-        
-        return new TaxCalculationResponse(
+        TaxCalculationResponse response = new TaxCalculationResponse(
             financialYear,
-            loader.getColumnMapping().getBrokerType().name(),
-            loader.getColumnMapping().getBrokerType().getDisplayName(),
+            columnMapping.getBrokerType().name(),
+            columnMapping.getBrokerType().getDisplayName(),
             stcg,
             ltcg,
             speculation,
@@ -288,6 +545,97 @@ public class TaxCalculationService {
             null, // Will be set by caller
             0     // Will be set by caller
         );
+        response.setArithmetic(periods.getArithmeticMode().name());
+        return response;
+    }
+    
+    /**
+     * One category's breakdown: bucket i + 1 of the accumulator is period i of the config
+     */
+    private static List<QuarterDetailResponse> breakdown(PeriodAccumulator sums, QuarterConfig config, int category) {
+        List<Quarter> quarters = config.getQuarters();
+        List<QuarterDetailResponse> details = new ArrayList<>(quarters.size());
+        for (int i = 0; i < quarters.size(); i++) {
+            Quarter q = quarters.get(i);
+            int bucket = i + 1;
+            String start = q.getStartDate().toString();
+            String end = q.getEndDate().toString();
+            double profit = sums.get(category, bucket, PeriodAccumulator.PROFIT);
+            double sell = sums.get(category, bucket, PeriodAccumulator.SELL);
+            double buy = sums.get(category, bucket, PeriodAccumulator.BUY);
+            
+            if (category == TransactionStore.STCG) {
+                details.add(QuarterDetailResponse.forStcg(bucket, q.getCode(), q.getName(), start, end, profit, sell, buy));
+            } else if (category == TransactionStore.LTCG) {
+                details.add(QuarterDetailResponse.forLtcg(bucket, q.getCode(), q.getName(), start, end, profit, sell, buy));
+            } else {
+                // Speculation: profit/loss and turnover per quarter
+                details.add(QuarterDetailResponse.forSpeculation(bucket, q.getCode(), q.getName(), start, end,
+                    profit, sell, buy, sums.get(category, bucket, PeriodAccumulator.TURNOVER)));
+            }
+        }
+        return details;
+    }
+    
+    /**
+     * Parse the requested arithmetic (case-insensitive); the configured default when none is given
+     *
+     * @throws IllegalArgumentException for an unknown arithmetic mode
+     */
+    ArithmeticMode resolveArithmetic(String arithmetic) {
+        if (arithmetic == null || arithmetic.isBlank()) {
+            return defaultArithmetic;
+        }
+        try {
+            return ArithmeticMode.valueOf(arithmetic.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown arithmetic: " + arithmetic.trim()
+                + ". Supported: " + Arrays.toString(ArithmeticMode.values()));
+        }
+    }
+    
+    /**
+     * Parse the requested quarter scheme, falling back to STANDARD_Q4
+     */
+    QuarterScheme resolveScheme(String quarterScheme) {
+        try {
+            return QuarterScheme.valueOf(quarterScheme);
+        } catch (Exception ignored) {
+            return QuarterScheme.STANDARD_Q4;
+        }
+    }
+    
+    /**
+     * Pick streaming mode for large workbooks so heap use stays flat
+     */
+    private FlexibleEquityLoader.ReadMode selectReadMode(long size) {
+        if (streamingThreshold != null && size > streamingThreshold.toBytes()) {
+            HurdleLogger.info("Workbook is " + size + " bytes, using streaming loader");
+            return FlexibleEquityLoader.ReadMode.STREAMING;
+        }
+        return FlexibleEquityLoader.ReadMode.WORKBOOK;
+    }
+    
+    /**
+     * Read mode for an upload: by size first, then streaming if its DOM could never fit the heap budget
+     */
+    private FlexibleEquityLoader.ReadMode selectReadMode(UploadedWorkbook upload) {
+        FlexibleEquityLoader.ReadMode readMode = selectReadMode(upload.getSize());
+        if (readMode == FlexibleEquityLoader.ReadMode.WORKBOOK) {
+            long domCost = admission.estimate(upload.footprint(), readMode, !upload.isSpilled());
+            if (!admission.fits(domCost)) {
+                HurdleLogger.info("Workbook would need ~" + domCost + " bytes as a DOM, using streaming loader");
+                return FlexibleEquityLoader.ReadMode.STREAMING;
+            }
+        }
+        return readMode;
+    }
+    
+    /**
+     * Reserve the estimated parse footprint from the heap budget, waiting if it is exhausted
+     */
+    private HeapAdmissionController.Reservation reserveHeap(UploadedWorkbook upload, FlexibleEquityLoader.ReadMode readMode) {
+        return admission.reserve(admission.estimate(upload.footprint(), readMode, !upload.isSpilled()));
     }
     
     /**
@@ -299,95 +647,85 @@ public class TaxCalculationService {
             throw new IllegalArgumentException("File is empty");
         }
         
-        // Save uploaded file temporarily
-        String uploadedFilePath = saveUploadedFile(file);
-        
-        try {
-            // Detect broker format
-            ExcelHeaderDetector.BrokerDetectionResult result = 
-                ExcelHeaderDetector.detectBrokerFormat(uploadedFilePath);
-            
-            ColumnMapping mapping = result.getColumnMapping();
-            
-            // Build response
-            Map<String, Object> response = new HashMap<>();
-            response.put("broker_type", result.getBrokerType().name());
-            response.put("broker_name", result.getBrokerType().getDisplayName());
-            response.put("auto_detected", result.isAutoDetected());
-            response.put("message", result.getMessage());
-            
-            // Column mapping details
-            Map<String, Object> mappingDetails = new HashMap<>();
-            mappingDetails.put("sheet_index", mapping.getSheetIndex());
-            mappingDetails.put("header_row", mapping.getHeaderRow());
-            mappingDetails.put("data_start_row", mapping.getDataStartRow());
-            mappingDetails.put("data_end_row", mapping.getDataEndRow());
-            mappingDetails.put("buy_amount_column", mapping.getBuyAmountColumn());
-            mappingDetails.put("sell_amount_column", mapping.getSellAmountColumn());
-            mappingDetails.put("sell_date_column", mapping.getSellDateColumn());
-            mappingDetails.put("days_held_column", mapping.getDaysHeldColumn());
-            mappingDetails.put("stcg_column", mapping.getStcgColumn());
-            mappingDetails.put("speculation_column", mapping.getSpeculationColumn());
-            
-            response.put("column_mapping", mappingDetails);
-
-            // Header previews (rows around detected header) to debug mismatches
-            try (FileInputStream fis2 = new FileInputStream(new File(uploadedFilePath));
-                 XSSFWorkbook wb = new XSSFWorkbook(fis2)) {
-                XSSFSheet sheet = wb.getSheetAt(mapping.getSheetIndex());
-                int[] rowsToRead = new int[] {
-                    Math.max(0, mapping.getHeaderRow() - 1),
-                    mapping.getHeaderRow(),
-                    mapping.getHeaderRow() + 1,
-                    Math.max(mapping.getHeaderRow(), mapping.getDataStartRow() - 1)
-                };
-                Map<String, Object> headerPreview = new HashMap<>();
-                headerPreview.put("sheet_index", mapping.getSheetIndex());
-                Map<Integer, String[]> rows = new HashMap<>();
-                for (int rIdx : rowsToRead) {
-                    Row r = sheet.getRow(rIdx);
-                    if (r == null) continue;
-                    int last = r.getLastCellNum();
-                    String[] cols = new String[last];
-                    for (int i = 0; i < last; i++) {
-                        Cell c = r.getCell(i);
-                        cols[i] = c == null ? "" : c.toString();
-                    }
-                    rows.put(rIdx, cols);
-                }
-                headerPreview.put("rows", rows);
-                response.put("header_preview", headerPreview);
-            } catch (Exception e) {
-                HurdleLogger.warn("Failed to read header preview: " + e.getMessage());
+        // Open the workbook once for both detection and header preview
+        try (UploadedWorkbook upload = openUpload(file);
+             CalculationLimiter.Permit permit = limiter.acquire()) {
+            FlexibleEquityLoader.ReadMode readMode = selectReadMode(upload);
+            try (HeapAdmissionController.Reservation reservation = reserveHeap(upload, readMode);
+                 WorkbookSource source = upload.open(readMode)) {
+                return describeBrokerFormat(source);
             }
-            
-            return response;
-            
-        } finally {
-            // Clean up temporary file
-            cleanupFile(uploadedFilePath);
         }
     }
     
     /**
-     * Save uploaded file to temporary location
+     * Detection result and header preview for an open workbook
      */
-    private String saveUploadedFile(MultipartFile file) throws IOException {
-        // Create upload directory if it doesn't exist
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
+    private Map<String, Object> describeBrokerFormat(WorkbookSource source) throws Exception {
+        // Detect broker format
+        ExcelHeaderDetector.BrokerDetectionResult result = source.detectBrokerFormat();
+        
+        ColumnMapping mapping = result.getColumnMapping();
+        
+        // Build response
+        Map<String, Object> response = new HashMap<>();
+        response.put("broker_type", result.getBrokerType().name());
+        response.put("broker_name", result.getBrokerType().getDisplayName());
+        response.put("auto_detected", result.isAutoDetected());
+        response.put("message", result.getMessage());
         
-        // Generate unique filename
-        String originalFilename = file.getOriginalFilename();
-        String extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-        String uniqueFilename = UUID.randomUUID().toString() + extension;
+        // Column mapping details
+        Map<String, Object> mappingDetails = new HashMap<>();
+        mappingDetails.put("sheet_index", mapping.getSheetIndex());
+        mappingDetails.put("header_row", mapping.getHeaderRow());
+        mappingDetails.put("data_start_row", mapping.getDataStartRow());
+        mappingDetails.put("data_end_row", mapping.getDataEndRow());
+        mappingDetails.put("buy_amount_column", mapping.getBuyAmountColumn());
+        mappingDetails.put("sell_amount_column", mapping.getSellAmountColumn());
+        mappingDetails.put("sell_date_column", mapping.getSellDateColumn());
+        mappingDetails.put("days_held_column", mapping.getDaysHeldColumn());
+        mappingDetails.put("stcg_column", mapping.getStcgColumn());
+        mappingDetails.put("speculation_column", mapping.getSpeculationColumn());
         
-        Path filePath = uploadPath.resolve(uniqueFilename);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+        response.put("column_mapping", mappingDetails);
+
+        // Header previews (rows around detected header) to debug mismatches
+        try {
+            Map<String, Object> headerPreview = new HashMap<>();
+            headerPreview.put("sheet_index", mapping.getSheetIndex());
+            headerPreview.put("rows", source.readHeaderPreview(mapping));
+            response.put("header_preview", headerPreview);
+        } catch (Exception e) {
+            HurdleLogger.warn("Failed to read header preview: " + e.getMessage());
+        }
         
-        return filePath.toString();
+        return response;
+    }
+    
+    /**
+     * Wrap an upload, spilling it to upload-dir only above the in-memory threshold
+     */
+    UploadedWorkbook openUpload(MultipartFile file) throws IOException {
+        UploadedWorkbook upload = UploadedWorkbook.of(file, Paths.get(uploadDir), inMemoryThresholdBytes());
+        if (upload.isSpilled()) {
+            HurdleLogger.info("Upload is " + upload.getSize() + " bytes, spilled to " + uploadDir);
+        }
+        return upload;
+    }
+    
+    /**
+     * Wrap a workbook read from a stream (e.g. a zip entry), spilling it to upload-dir only above the in-memory threshold
+     */
+    UploadedWorkbook openUpload(String name, InputStream in, long maxSize) throws IOException {
+        UploadedWorkbook upload = UploadedWorkbook.of(name, in, Paths.get(uploadDir), inMemoryThresholdBytes(), maxSize);
+        if (upload.isSpilled()) {
+            HurdleLogger.info(name + " is " + upload.getSize() + " bytes, spilled to " + uploadDir);
+        }
+        return upload;
+    }
+    
+    private long inMemoryThresholdBytes() {
+        return inMemoryUploadThreshold != null ? inMemoryUploadThreshold.toBytes() : 0;
     }
     
     /**
@@ -415,16 +753,4 @@ public class TaxCalculationService {
         // Default: ₹1 lakh exemption (for FY 2023-24 and earlier)
         return 100000.0;
     }
-    
-    /**
-     * Clean up temporary file
-     */
-    private void cleanupFile(String filePath) {
-        try {
-            Files.deleteIfExists(Paths.get(filePath));
-        } catch (IOException e) {
-            // Log but don't fail if cleanup fails
-            System.err.println("Failed to cleanup file: " + filePath);
-        }
-    }
 }
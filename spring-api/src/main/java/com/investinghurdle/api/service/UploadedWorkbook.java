@@ -0,0 +1,175 @@
+package com.investinghurdle.api.service;
+
+import params.FlexibleEquityLoader;
+import params.WorkbookSource;
+import util.WorkbookFootprint;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Snapshot of an uploaded workbook, held in memory or spilled to the upload directory
+ * when it exceeds the in-memory threshold. It stays readable after the request has ended,
+ * and its SHA-256 content hash is computed while the upload is read.
+ */
+class UploadedWorkbook implements Closeable {
+
+    private final String originalFilename;
+    private final long size;
+    private final byte[] bytes;
+    private final Path spillFile;
+    private final String contentHash;
+    private WorkbookFootprint footprint;
+
+    private UploadedWorkbook(String originalFilename, long size, byte[] bytes, Path spillFile, String contentHash) {
+        this.originalFilename = originalFilename;
+        this.size = size;
+        this.bytes = bytes;
+        this.spillFile = spillFile;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Read an upload, copying it to disk only if it is larger than the threshold
+     */
+    static UploadedWorkbook of(MultipartFile file, Path uploadPath, long inMemoryThreshold) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return of(file.getOriginalFilename(), in, uploadPath, inMemoryThreshold, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Read a workbook from a stream, e.g. a zip entry. Up to the threshold is kept in memory,
+     * anything larger is copied to the upload directory.
+     *
+     * @throws IllegalArgumentException if the stream is longer than maxSize
+     */
+    static UploadedWorkbook of(String name, InputStream in, Path uploadPath,
+                               long inMemoryThreshold, long maxSize) throws IOException {
+        MessageDigest digest = newDigest();
+        DigestInputStream digestIn = new DigestInputStream(in, digest);
+
+        int headLimit = (int) Math.min(Math.min(inMemoryThreshold, maxSize) + 1, Integer.MAX_VALUE - 8);
+        byte[] head = digestIn.readNBytes(headLimit);
+        if (head.length <= inMemoryThreshold) {
+            checkSize(name, head.length, maxSize);
+            return new UploadedWorkbook(name, head.length, head, null, hex(digest));
+        }
+
+        // Create upload directory if it doesn't exist
+        if (!Files.exists(uploadPath)) {
+            Files.createDirectories(uploadPath);
+        }
+
+        // Generate unique filename
+        String extension = name != null && name.contains(".")
+            ? name.substring(name.lastIndexOf("."))
+            : ".xlsx";
+        Path filePath = uploadPath.resolve(UUID.randomUUID().toString() + extension);
+
+        long size = head.length;
+        try (OutputStream out = Files.newOutputStream(filePath)) {
+            out.write(head);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = digestIn.read(buffer)) != -1) {
+                size += read;
+                checkSize(name, size, maxSize);
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            Files.deleteIfExists(filePath);
+            throw e;
+        }
+        return new UploadedWorkbook(name, size, null, filePath, hex(digest));
+    }
+
+    private static void checkSize(String name, long size, long maxSize) {
+        if (size > maxSize) {
+            throw new IllegalArgumentException("File " + name + " exceeds the maximum size of " + maxSize + " bytes");
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String hex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * SHA-256 of the uploaded bytes, hex encoded
+     */
+    String getContentHash() {
+        return contentHash;
+    }
+
+    boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Open the workbook, from the spill file if there is one, otherwise from memory
+     */
+    WorkbookSource open(FlexibleEquityLoader.ReadMode readMode) throws IOException {
+        if (spillFile != null) {
+            return WorkbookSource.open(spillFile.toFile(), readMode);
+        }
+        return WorkbookSource.open(new ByteArrayInputStream(bytes), readMode);
+    }
+
+    /**
+     * Sheet dimensions and part sizes, surveyed on first use without parsing the workbook.
+     * A package that cannot be surveyed gets a size-only footprint; opening it reports the real error.
+     */
+    WorkbookFootprint footprint() {
+        if (footprint == null) {
+            try {
+                footprint = spillFile != null
+                    ? WorkbookFootprint.scan(spillFile.toFile())
+                    : WorkbookFootprint.scan(new ByteArrayInputStream(bytes), size);
+            } catch (IOException | RuntimeException e) {
+                footprint = WorkbookFootprint.unknown(size);
+            }
+        }
+        return footprint;
+    }
+
+    /**
+     * Remove the spill file, if any
+     */
+    @Override
+    public void close() {
+        if (spillFile == null) return;
+        try {
+            Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            // Log but don't fail if cleanup fails
+            System.err.println("Failed to cleanup file: " + spillFile);
+        }
+    }
+}
@@ -84,6 +84,13 @@ public class HurdleLogger {
 		staticLogger.debug(message);
 	}
 	
+	/**
+	 * Guard for debug messages that are costly to build
+	 */
+	public static boolean isDebugEnabled() {
+		return staticLogger.isDebugEnabled();
+	}
+	
 	public static void warn(String message) {
 		staticLogger.warn(message);
 	}
@@ -3,7 +3,6 @@ package params;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Iterator;
 
@@ -15,6 +14,7 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import exception.InvalidSecurityException;
 import logging.HurdleLogger;
+import util.CellDecoder;
 import util.HurdleConstant;
 import util.QuarterConfig;
 
@@ -141,31 +141,25 @@ public class EquityLoader {
 				break;
 			}
 			String str = null; 
-			String DDMMYY[];
 			
 			cell = row.getCell(INDEX_BUYAMT);
 			str = cell.getStringCellValue();
-			buyValue = Double.parseDouble(str.trim());
+			buyValue = parseAmount(str);
 			
 			cell = row.getCell(INDEX_SELLAMT);
 			str = cell.getStringCellValue();
-			sellValue = Double.parseDouble(str.trim());
+			sellValue = parseAmount(str);
 			
 			cell = row.getCell(INDEX_DAYS_HOLD);
 			str = cell.getStringCellValue();
-			days = Integer.parseInt(str.trim());
+			days = (int) parseAmount(str);
 			if(days!=0) {
 				cell = row.getCell(INDEX_STCG);
 				str = cell.getStringCellValue();
-				stcg = Double.parseDouble(str.trim());
+				stcg = parseAmount(str);
 				cell = row.getCell(INDEX_SELL_DATE);
 				str = cell.getStringCellValue();
-				DDMMYY = str.split("/");
-				int DD = Integer.parseInt(DDMMYY[0]);
-				int MM = Integer.parseInt(DDMMYY[1]);
-				int YY = Integer.parseInt(DDMMYY[2]);
-				LocalDate date = LocalDate.of(YY, MM, DD);
-				int quarter = returnQuarter(date, stcg);
+				int quarter = returnQuarter(parseEpochDay(str), stcg);
 				if(quarter == 1) {
 					stcg1 += stcg;
 				} else if(quarter == 2) {
@@ -183,7 +177,7 @@ public class EquityLoader {
 			} else {
 				cell = row.getCell(INDEX_SPECUL);
 				str = cell.getStringCellValue();
-				intraTurnover = Double.parseDouble(str.trim());
+				intraTurnover = parseAmount(str);
 				if(intraTurnover < 0.0) {
 					intraTurnover = intraTurnover * (-1);
 				}
@@ -210,11 +204,27 @@ public class EquityLoader {
 		
 	}
 	
-	private int returnQuarter(LocalDate date, double stcg) {
-		if (date == null || quarterConfig == null) {
+	private int returnQuarter(long epochDay, double stcg) {
+		if (quarterConfig == null) {
 			return 0;
 		}
-		return quarterConfig.getQuarterNumber(date);
+		return quarterConfig.getQuarterNumber(epochDay);
+	}
+	
+	private static double parseAmount(String str) {
+		double value = CellDecoder.parseAmount(str);
+		if (Double.isNaN(value)) {
+			throw new NumberFormatException("For input string: \"" + str + "\"");
+		}
+		return value;
+	}
+	
+	private static long parseEpochDay(String str) {
+		long epochDay = CellDecoder.parseEpochDay(str);
+		if (epochDay == CellDecoder.NO_DATE) {
+			throw new NumberFormatException("Not a dd/MM/yyyy date: \"" + str + "\"");
+		}
+		return epochDay;
 	}
 	
 	public double getStcgQ1() {
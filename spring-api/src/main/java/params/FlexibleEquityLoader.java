@@ -1,23 +1,34 @@
 package params;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
 
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
-import exception.InvalidSecurityException;
 import logging.HurdleLogger;
+import util.ArithmeticMode;
+import util.CellDecoder;
 import util.ColumnMapping;
 import util.ExcelHeaderDetector;
+import util.PeriodAccumulator;
 import util.QuarterConfig;
+import util.QuarterScheme;
+import util.StreamingSheetReader;
+import util.TransactionStore;
 
 /**
  * Flexible Equity Loader that can handle multiple broker formats
@@ -25,94 +36,142 @@ import util.QuarterConfig;
  */
 public class FlexibleEquityLoader {
     
+    /**
+     * How the workbook is read.
+     * WORKBOOK builds the full XSSFWorkbook DOM, STREAMING reads rows through the SAX event API.
+     */
+    public enum ReadMode { WORKBOOK, STREAMING }
+    
+    private final ReadMode readMode;
+    private final WorkbookSource source;
+    private final boolean ownsSource;
     private XSSFSheet dataSheet;
-    private XSSFWorkbook workbook;
+    private boolean date1904;
     private ColumnMapping columnMapping;
     private QuarterConfig quarterConfig;
+    private final TransactionStore transactions;
     
-    private double totalStcgBuy;
-    private double totalStcgSell;
-    private double totalStcg;
-    private double totalLtcgBuy;
-    private double totalLtcgSell;
-    private double totalLtcg;
-    private double totalIntraBuy;
-    private double totalIntraSell;
-    private double totalIntraTurnover;
-    private double stcgQ1, stcgQ2, stcgQ3, stcgQ4, stcgQ5;
-    private double ltcgQ1, ltcgQ2, ltcgQ3, ltcgQ4, ltcgQ5;
-    private double intraQ1, intraQ2, intraQ3, intraQ4, intraQ5;
-
-    private final double[] stcgBuyQuarter = new double[5];
-    private final double[] stcgSellQuarter = new double[5];
-    private final double[] ltcgBuyQuarter = new double[5];
-    private final double[] ltcgSellQuarter = new double[5];
-    private final double[] intraBuyQuarter = new double[5];
-    private final double[] intraSellQuarter = new double[5];
-    private final double[] intraTurnoverQuarter = new double[5];
-
-    private enum QuarterType { STCG, LTCG, INTRADAY }
+    private int processedCount;
+    private IntConsumer progressListener;
+    private ArithmeticMode arithmeticMode = ArithmeticMode.DOUBLE;
+    private ForkJoinPool aggregationPool;
+    private PeriodAccumulator periods;
+    private List<QuarterConfig> additionalPeriods = List.of();
+    private List<PeriodAccumulator> additionalSums = List.of();
+    private QuarterScheme financialYearScheme;
+    private Map<String, PeriodAccumulator> financialYearSums = Map.of();
+    
+    private static final int PROGRESS_INTERVAL = 256;
+    
+    /** Rows summed by one aggregation task; fixed so parallel sums do not depend on core count */
+    static final int AGGREGATION_CHUNK_ROWS = 32_768;
     
     /**
      * Constructor with auto-detection
      */
     public FlexibleEquityLoader(String filePath, QuarterConfig quarterConfig) throws Exception {
+        this(filePath, quarterConfig, ReadMode.WORKBOOK);
+    }
+    
+    /**
+     * Constructor with auto-detection and explicit read mode
+     */
+    public FlexibleEquityLoader(String filePath, QuarterConfig quarterConfig, ReadMode readMode) throws Exception {
+        this(WorkbookSource.open(new File(filePath), readMode), quarterConfig, null, true);
+    }
+    
+    /**
+     * Constructor over an already opened workbook. Detection reuses the source's parsed workbook,
+     * and the caller stays responsible for closing the source.
+     */
+    public FlexibleEquityLoader(WorkbookSource source, QuarterConfig quarterConfig) throws Exception {
+        this(source, quarterConfig, null, false);
+    }
+    
+    /**
+     * Constructor over transactions parsed earlier, e.g. from a cache.
+     * initialize() only re-aggregates them for this quarter config, no workbook is read.
+     */
+    public FlexibleEquityLoader(TransactionStore transactions, ColumnMapping mapping, QuarterConfig quarterConfig) {
+        this.source = null;
+        this.ownsSource = false;
+        this.readMode = null;
+        this.transactions = transactions;
+        this.columnMapping = mapping;
         this.quarterConfig = quarterConfig;
-        
-        // Auto-detect broker format
-        ExcelHeaderDetector.BrokerDetectionResult detection = 
-            ExcelHeaderDetector.detectBrokerFormat(filePath);
-        
-        this.columnMapping = detection.getColumnMapping();
-        
-        HurdleLogger.info("Detected broker: " + detection.getBrokerType().getDisplayName());
-        HurdleLogger.info("Detection message: " + detection.getMessage());
-        HurdleLogger.info("Column mapping: " + columnMapping);
-        
-        // Load workbook and find appropriate sheet
-        initializeWorkbook(filePath);
+        this.processedCount = transactions.size();
     }
     
     /**
      * Constructor with explicit column mapping
      */
     public FlexibleEquityLoader(String filePath, QuarterConfig quarterConfig, ColumnMapping mapping) throws Exception {
-        this.quarterConfig = quarterConfig;
-        this.columnMapping = mapping;
-        
-        HurdleLogger.info("Using explicit column mapping for: " + mapping.getBrokerType().getDisplayName());
-        
-        initializeWorkbook(filePath);
+        this(WorkbookSource.open(new File(filePath), ReadMode.WORKBOOK), quarterConfig, mapping, true);
     }
     
-    private void initializeWorkbook(String filePath) throws IOException {
-        try (FileInputStream fis = new FileInputStream(new File(filePath))) {
-            this.workbook = new XSSFWorkbook(fis);
+    private FlexibleEquityLoader(WorkbookSource source, QuarterConfig quarterConfig, ColumnMapping mapping,
+                                 boolean ownsSource) throws Exception {
+        this.source = source;
+        this.ownsSource = ownsSource;
+        this.quarterConfig = quarterConfig;
+        this.readMode = source.getReadMode();
+        this.transactions = new TransactionStore();
+        
+        try {
+            if (mapping != null) {
+                this.columnMapping = mapping;
+                HurdleLogger.info("Using explicit column mapping for: " + mapping.getBrokerType().getDisplayName());
+            } else {
+                // Auto-detect broker format from the same parsed workbook
+                ExcelHeaderDetector.BrokerDetectionResult detection = source.detectBrokerFormat();
+                this.columnMapping = detection.getColumnMapping();
+                logDetection(detection);
+            }
             
             // Use the sheet index from columnMapping (no auto-switching)
-            this.dataSheet = this.workbook.getSheetAt(columnMapping.getSheetIndex());
-            
-            if (this.dataSheet == null) {
-                throw new InvalidSecurityException(
-                    InvalidSecurityException.ErrorCode.INVALID_DATA,
-                    "Data sheet not found at index: " + columnMapping.getSheetIndex()
-                );
+            source.checkSheetIndex(columnMapping.getSheetIndex());
+            if (readMode == ReadMode.WORKBOOK) {
+                this.dataSheet = source.getWorkbook().getSheetAt(columnMapping.getSheetIndex());
+                this.date1904 = source.getWorkbook().isDate1904();
             }
-            
-            HurdleLogger.info("Reading from sheet: " + this.dataSheet.getSheetName() + " (index " + columnMapping.getSheetIndex() + ")");
+            HurdleLogger.info("Reading from sheet: " + source.getSheetName(columnMapping.getSheetIndex())
+                + " (index " + columnMapping.getSheetIndex() + ")");
+        } catch (Exception e) {
+            if (ownsSource) {
+                source.close();
+            }
+            throw e;
         }
     }
     
+    private void logDetection(ExcelHeaderDetector.BrokerDetectionResult detection) {
+        HurdleLogger.info("Detected broker: " + detection.getBrokerType().getDisplayName());
+        HurdleLogger.info("Detection message: " + detection.getMessage());
+        HurdleLogger.info("Column mapping: " + columnMapping);
+    }
+    
     /**
      * Load and calculate all equity data
      */
     public void initialize() throws IOException {
         try {
-            HurdleLogger.info("Initializing Flexible Equity Loader...");
+            HurdleLogger.info("Initializing Flexible Equity Loader (" + readMode + ")...");
             System.out.println("Initializing Flexible Equity Loader with " + 
                 columnMapping.getBrokerType().getDisplayName() + " format...");
             
-            loadEquities();
+            if (source == null) {
+                HurdleLogger.info("Re-aggregating " + transactions.size() + " parsed transactions");
+            } else if (readMode == ReadMode.STREAMING) {
+                streamEquities();
+            } else {
+                loadEquities();
+            }
+            if (progressListener != null) {
+                progressListener.accept(processedCount);
+            }
+            transactions.trimToSize();
+            aggregate();
+            finishTotals();
             
             HurdleLogger.info("Flexible equity loader initialized successfully");
             System.out.println("\nFlexible equity loader initialized SUCCESSFULLY :)\n");
@@ -121,31 +180,22 @@ public class FlexibleEquityLoader {
             HurdleLogger.error("Error during initialization: " + e.getMessage(), e);
             throw e;
         } finally {
-            if (workbook != null) {
-                workbook.close();
+            if (ownsSource) {
+                source.close();
             }
         }
     }
     
     private void loadEquities() {
         Iterator<Row> rowIterator = this.dataSheet.iterator();
-        
-        double totalBuySTCG = 0;
-        double totalSellSTCG = 0;
-        double totalBuyLTCG = 0;
-        double totalSellLTCG = 0;
-        double totalBuyINTRA = 0;
-        double totalSellINTRA = 0;
-        double totalIntraTurnoverAbs = 0;
+        WorkbookRow cells = new WorkbookRow();
         
         int startRow = columnMapping.getDataStartRow();
         Integer endRow = columnMapping.getDataEndRow();
-        int rowNum = 0;
-        int processedCount = 0;
         
         while (rowIterator.hasNext()) {
             Row row = rowIterator.next();
-            rowNum = row.getRowNum();
+            int rowNum = row.getRowNum();
             
             // Skip until start row
             if (rowNum < startRow) continue;
@@ -153,253 +203,465 @@ public class FlexibleEquityLoader {
             // Stop at end row if specified
             if (endRow != null && rowNum > endRow) break;
             
-            try {
-                // Check if row is empty
-                if (isRowEmpty(row)) continue;
-                
-                // Read values using flexible column mapping
-                int daysHeld = getDaysHeld(row);
-                double buyAmount = getCellValueAsDouble(row, columnMapping.getBuyAmountColumn());
-                double sellAmount = getCellValueAsDouble(row, columnMapping.getSellAmountColumn());
-                
-                // Skip if both buy and sell are zero
-                if (buyAmount == 0 && sellAmount == 0) continue;
-                
-                processedCount++;
-                
-                LocalDate sellDate = getSellDate(row);
-                int quarterNum = getQuarterNumber(sellDate);
-
-                if (daysHeld == 0) {
-                    // Intraday/Speculation (bought and sold same day)
-                    totalBuyINTRA += buyAmount;
-                    totalSellINTRA += sellAmount;
-                    double profit = sellAmount - buyAmount;
-                    double absTurnover = Math.abs(profit); // turnover = abs(realized P&L)
-                    totalIntraTurnoverAbs += absTurnover;
-                    if (quarterNum > 0) {
-                        assignToQuarter(quarterNum, profit, QuarterType.INTRADAY);
-                        intraBuyQuarter[quarterNum - 1] += buyAmount;
-                        intraSellQuarter[quarterNum - 1] += sellAmount;
-                        intraTurnoverQuarter[quarterNum - 1] += absTurnover;
-                    }
-                } else if (daysHeld <= 365) {
-                    // STCG - Short-Term Capital Gains (held ≤ 12 months)
-                    totalBuySTCG += buyAmount;
-                    totalSellSTCG += sellAmount;
-                    
-                    // Calculate quarterly STCG
-                    double stcgValue = columnMapping.getStcgColumn() >= 0
-                        ? getCellValueAsDouble(row, columnMapping.getStcgColumn())
-                        : (sellAmount - buyAmount);
-                    if (quarterNum > 0) {
-                        assignToQuarter(quarterNum, stcgValue, QuarterType.STCG);
-                        stcgBuyQuarter[quarterNum - 1] += buyAmount;
-                        stcgSellQuarter[quarterNum - 1] += sellAmount;
-                    }
-                } else {
-                    // LTCG - Long-Term Capital Gains (held > 12 months)
-                    totalBuyLTCG += buyAmount;
-                    totalSellLTCG += sellAmount;
-                    double profit = sellAmount - buyAmount; // derive directly to avoid mixing STCG column
-                    if (quarterNum > 0) {
-                        assignToQuarter(quarterNum, profit, QuarterType.LTCG);
-                        ltcgBuyQuarter[quarterNum - 1] += buyAmount;
-                        ltcgSellQuarter[quarterNum - 1] += sellAmount;
-                    }
-                }
-                
-            } catch (Exception e) {
-                HurdleLogger.warn("Error processing row " + rowNum + ": " + e.getMessage());
-                // Continue processing other rows
-            }
+            cells.row = row;
+            addRow(cells, rowNum);
         }
+    }
+    
+    /**
+     * Streaming counterpart of loadEquities: same row rules, driven by SAX callbacks
+     */
+    private void streamEquities() throws IOException {
+        final int startRow = columnMapping.getDataStartRow();
+        final Integer endRow = columnMapping.getDataEndRow();
+        final StreamedRow cells = new StreamedRow();
         
-        // Calculate totals
-        this.totalStcgBuy = totalBuySTCG;
-        this.totalStcgSell = totalSellSTCG;
-        this.totalStcg = totalSellSTCG - totalBuySTCG;
+        source.getSheetReader().readSheet(columnMapping.getSheetIndex(), row -> {
+            int rowNum = row.getRowNum();
+            
+            // Skip until start row
+            if (rowNum < startRow) return true;
+            
+            // Stop at end row if specified
+            if (endRow != null && rowNum > endRow) return false;
+            
+            cells.row = row;
+            addRow(cells, rowNum);
+            return true;
+        });
+    }
+    
+    /**
+     * Decode one data row, whichever reader produced it, and add it to the store.
+     * A row that fails to decode is logged and skipped
+     */
+    private void addRow(RowCells row, int rowNum) {
+        try {
+            // Check if row is empty
+            if (row.isEmpty()) return;
+            
+            // Read values using flexible column mapping
+            int daysHeld = (int) row.number(columnMapping.getDaysHeldColumn());
+            double buyAmount = row.number(columnMapping.getBuyAmountColumn());
+            double sellAmount = row.number(columnMapping.getSellAmountColumn());
+            
+            // Skip if both buy and sell are zero
+            if (buyAmount == 0 && sellAmount == 0) return;
+            
+            processedCount++;
+            reportProgress();
+            
+            long sellDay = row.epochDay(columnMapping.getSellDateColumn());
+            
+            // STCG column is only consulted for short-term rows, classified as the store does
+            double stcgValue = (TransactionStore.categoryOf(daysHeld) == TransactionStore.STCG
+                    && columnMapping.getStcgColumn() >= 0)
+                ? row.number(columnMapping.getStcgColumn())
+                : (sellAmount - buyAmount);
+            
+            String symbol = row.text(columnMapping.getSymbolColumn());
+            transactions.add(buyDay(row.epochDay(columnMapping.getTradeDateColumn()), sellDay, daysHeld),
+                sellDay, symbol != null ? symbol.trim() : null, row.number(quantityColumn()),
+                daysHeld, buyAmount, sellAmount, stcgValue);
+            
+        } catch (Exception e) {
+            HurdleLogger.warn("Error processing row " + rowNum + ": " + e.getMessage());
+            // Continue processing other rows
+        }
+    }
+    
+    /**
+     * Notify the progress listener every PROGRESS_INTERVAL rows
+     */
+    private void reportProgress() {
+        if (progressListener != null && processedCount % PROGRESS_INTERVAL == 0) {
+            progressListener.accept(processedCount);
+        }
+    }
+    
+    /**
+     * Bucket the parsed transactions into year totals and one bucket per quarter of the
+     * current quarter config, plus the periods of any additional configs and, in multi-year
+     * mode, per financial year, all in the same pass.
+     * With an aggregation pool, stores larger than one chunk are summed in parallel. Chunk
+     * boundaries and merge order depend only on the row count, so results are identical
+     * whatever the number of cores.
+     */
+    private void aggregate() {
+        RangeSums sums;
+        if (aggregationPool != null && transactions.size() > AGGREGATION_CHUNK_ROWS) {
+            // Build the day tables once, before the workers read them
+            getPeriodNumber(quarterConfig, 0);
+            for (QuarterConfig config : additionalPeriods) {
+                getPeriodNumber(config, 0);
+            }
+            sums = aggregationPool.invoke(new AggregateTask(0, transactions.size()));
+        } else {
+            sums = sumRows(0, transactions.size());
+        }
+        periods = sums.periods[0];
+        additionalSums = List.of(Arrays.copyOfRange(sums.periods, 1, sums.periods.length));
         
-        this.totalLtcgBuy = totalBuyLTCG;
-        this.totalLtcgSell = totalSellLTCG;
-        this.totalLtcg = totalSellLTCG - totalBuyLTCG;
+        Map<String, PeriodAccumulator> years = new LinkedHashMap<>();
+        if (sums.byYear != null) {
+            sums.byYear.forEach((startYear, yearSums) -> years.put(QuarterConfig.financialYearLabel(startYear), yearSums));
+        }
+        financialYearSums = Collections.unmodifiableMap(years);
+    }
+    
+    /**
+     * Sum rows [from, to) into fresh accumulators: the quarter config first, then each
+     * additional config, and per financial year of the sell date in multi-year mode
+     */
+    private RangeSums sumRows(int from, int to) {
+        QuarterConfig[] extra = additionalPeriods.toArray(new QuarterConfig[0]);
+        PeriodAccumulator[] sums = new PeriodAccumulator[1 + extra.length];
+        sums[0] = new PeriodAccumulator(quarterConfig == null ? 0 : quarterConfig.getQuarterCount(), arithmeticMode);
+        for (int k = 0; k < extra.length; k++) {
+            sums[k + 1] = new PeriodAccumulator(extra[k].getQuarterCount(), arithmeticMode);
+        }
+        TreeMap<Integer, PeriodAccumulator> byYear = financialYearScheme == null ? null : new TreeMap<>();
         
-        this.totalIntraBuy = totalBuyINTRA;
-        this.totalIntraSell = totalSellINTRA;
-        this.totalIntraTurnover = totalIntraTurnoverAbs;
+        // Rows tend to be in date order, so the current year's range and config are kept at hand
+        long yearFirstDay = 0;
+        long yearLastDay = -1;
+        QuarterConfig yearConfig = null;
+        PeriodAccumulator yearSums = null;
         
-        HurdleLogger.info("Processed " + processedCount + " transaction rows");
-        HurdleLogger.info("STCG: Buy=" + totalStcgBuy + ", Sell=" + totalStcgSell + ", Total=" + totalStcg);
-        HurdleLogger.info("LTCG: Buy=" + totalLtcgBuy + ", Sell=" + totalLtcgSell + ", Total=" + totalLtcg);
-        HurdleLogger.info("Intraday: Buy=" + totalIntraBuy + ", Sell=" + totalIntraSell + ", Turnover=" + totalIntraTurnover);
+        for (int i = from; i < to; i++) {
+            long sellDay = transactions.getSellEpochDay(i);
+            sums[0].add(transactions, i, getPeriodNumber(quarterConfig, sellDay));
+            for (int k = 0; k < extra.length; k++) {
+                sums[k + 1].add(transactions, i, getPeriodNumber(extra[k], sellDay));
+            }
+            if (byYear == null || sellDay == TransactionStore.NO_DATE) {
+                continue;
+            }
+            if (sellDay < yearFirstDay || sellDay > yearLastDay) {
+                int startYear = QuarterConfig.financialYearStart(sellDay);
+                yearFirstDay = LocalDate.of(startYear, 4, 1).toEpochDay();
+                yearLastDay = LocalDate.of(startYear + 1, 3, 31).toEpochDay();
+                yearConfig = QuarterConfig.forFinancialYear(QuarterConfig.financialYearLabel(startYear), financialYearScheme);
+                yearSums = byYear.get(startYear);
+                if (yearSums == null) {
+                    yearSums = new PeriodAccumulator(yearConfig.getQuarterCount(), arithmeticMode);
+                    byYear.put(startYear, yearSums);
+                }
+            }
+            yearSums.add(transactions, i, getPeriodNumber(yearConfig, sellDay));
+        }
+        return new RangeSums(sums, byYear);
     }
     
-    private boolean isRowEmpty(Row row) {
-        for (int i = row.getFirstCellNum(); i < row.getLastCellNum(); i++) {
-            Cell cell = row.getCell(i);
-            if (cell != null && cell.getCellType() != CellType.BLANK) {
-                return false;
+    /**
+     * Accumulators for one row range: per period config, and per financial year start (null
+     * outside multi-year mode)
+     */
+    private static final class RangeSums {
+        final PeriodAccumulator[] periods;
+        final TreeMap<Integer, PeriodAccumulator> byYear;
+        
+        RangeSums(PeriodAccumulator[] periods, TreeMap<Integer, PeriodAccumulator> byYear) {
+            this.periods = periods;
+            this.byYear = byYear;
+        }
+        
+        /**
+         * Add the sums of the range that follows this one
+         */
+        RangeSums merge(RangeSums right) {
+            for (int k = 0; k < periods.length; k++) {
+                periods[k].merge(right.periods[k]);
+            }
+            if (byYear != null) {
+                right.byYear.forEach((year, sums) -> byYear.merge(year, sums, PeriodAccumulator::merge));
             }
+            return this;
         }
-        return true;
     }
     
-    private int getDaysHeld(Row row) {
-        try {
-            return (int) getCellValueAsDouble(row, columnMapping.getDaysHeldColumn());
-        } catch (Exception e) {
-            return 0; // Default to intraday if can't read
+    /**
+     * Splits a row range at chunk boundaries until one chunk is left, sums it, and merges
+     * left before right on the way back up
+     */
+    private final class AggregateTask extends RecursiveTask<RangeSums> {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        
+        AggregateTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected RangeSums compute() {
+            if (to - from <= AGGREGATION_CHUNK_ROWS) {
+                return sumRows(from, to);
+            }
+            int chunks = (to - from + AGGREGATION_CHUNK_ROWS - 1) / AGGREGATION_CHUNK_ROWS;
+            int mid = from + (chunks / 2) * AGGREGATION_CHUNK_ROWS;
+            AggregateTask left = new AggregateTask(from, mid);
+            left.fork();
+            RangeSums right = new AggregateTask(mid, to).compute();
+            return left.join().merge(right);
         }
     }
     
-    private LocalDate getSellDate(Row row) {
-        try {
-            Cell cell = row.getCell(columnMapping.getSellDateColumn());
-            if (cell == null) return null;
+    private void finishTotals() {
+        HurdleLogger.info("Processed " + processedCount + " transaction rows");
+        HurdleLogger.info("STCG: Buy=" + getTotalStcgBuy() + ", Sell=" + getTotalStcgSell() + ", Total=" + getTotalStcg());
+        HurdleLogger.info("LTCG: Buy=" + getTotalLtcgBuy() + ", Sell=" + getTotalLtcgSell() + ", Total=" + getTotalLtcg());
+        HurdleLogger.info("Intraday: Buy=" + getTotalIntraBuy() + ", Sell=" + getTotalIntraSell() + ", Turnover=" + getTotalIntraTurnover());
+    }
+    
+    /**
+     * Cell access shared by the workbook and streaming readers. Every lookup takes a column
+     * index, with -1 meaning the column is not mapped
+     */
+    private interface RowCells {
+        boolean isEmpty();
+        
+        /** Numeric value of the cell, 0 when blank, unmapped or unreadable */
+        double number(int column);
+        
+        /** Epoch day of a date or date text cell, NO_DATE otherwise */
+        long epochDay(int column);
+        
+        /** Text of a string cell, null for any other kind */
+        String text(int column);
+    }
+    
+    /**
+     * Cells of the current POI row; repointed for each row rather than reallocated
+     */
+    private final class WorkbookRow implements RowCells {
+        private Row row;
+        
+        @Override
+        public boolean isEmpty() {
+            for (int i = row.getFirstCellNum(); i < row.getLastCellNum(); i++) {
+                Cell cell = row.getCell(i);
+                if (cell != null && cell.getCellType() != CellType.BLANK) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        @Override
+        public double number(int column) {
+            if (column < 0) return 0.0;
+            Cell cell = row.getCell(column);
+            if (cell == null) return 0.0;
+            
+            try {
+                switch (cell.getCellType()) {
+                    case NUMERIC:
+                        return cell.getNumericCellValue();
+                    case STRING:
+                        return parseAmount(cell.getStringCellValue());
+                    case FORMULA:
+                        return cell.getNumericCellValue();
+                    default:
+                        return 0.0;
+                }
+            } catch (Exception e) {
+                HurdleLogger.warn("Error reading cell at column " + column + ": " + e.getMessage());
+                return 0.0;
+            }
+        }
+        
+        @Override
+        public long epochDay(int column) {
+            if (column < 0) return TransactionStore.NO_DATE;
+            Cell cell = row.getCell(column);
+            if (cell == null) return TransactionStore.NO_DATE;
             
             if (cell.getCellType() == CellType.NUMERIC) {
-                return cell.getLocalDateTimeCellValue().toLocalDate();
+                return checkDate(CellDecoder.excelSerialToEpochDay(cell.getNumericCellValue(), date1904), column);
             } else if (cell.getCellType() == CellType.STRING) {
-                String dateStr = cell.getStringCellValue();
-                return LocalDate.parse(dateStr, DateTimeFormatter.ISO_LOCAL_DATE);
+                return checkDate(CellDecoder.parseEpochDay(cell.getStringCellValue()), column);
             }
-        } catch (Exception e) {
-            HurdleLogger.warn("Could not parse sell date: " + e.getMessage());
+            return TransactionStore.NO_DATE;
+        }
+        
+        @Override
+        public String text(int column) {
+            if (column < 0) return null;
+            Cell cell = row.getCell(column);
+            if (cell == null || cell.getCellType() != CellType.STRING) return null;
+            return cell.getStringCellValue();
         }
-        return null;
     }
     
-    private double getCellValueAsDouble(Row row, int columnIndex) {
-        if (columnIndex < 0) return 0.0;
-        Cell cell = row.getCell(columnIndex);
-        if (cell == null) return 0.0;
+    /**
+     * Cells of the row the SAX reader is positioned on
+     */
+    private static final class StreamedRow implements RowCells {
+        private StreamingSheetReader.SheetRow row;
         
-        try {
-            switch (cell.getCellType()) {
-                case NUMERIC:
-                    return cell.getNumericCellValue();
-                case STRING:
-                    String value = cell.getStringCellValue().trim();
-                    if (value.isEmpty()) return 0.0;
-                    // Remove common formatting characters
-                    value = value.replaceAll("[,₹$]", "");
-                    return Double.parseDouble(value);
-                case FORMULA:
-                    return cell.getNumericCellValue();
-                default:
-                    return 0.0;
+        @Override
+        public boolean isEmpty() {
+            return row.isEmpty();
+        }
+        
+        @Override
+        public double number(int column) {
+            if (column < 0) return 0.0;
+            StreamingSheetReader.CellKind kind = row.getKind(column);
+            if (kind == null) return 0.0;
+            
+            try {
+                switch (kind) {
+                    case NUMERIC:
+                        return row.getNumeric(column);
+                    case STRING:
+                        return parseAmount(row.getString(column));
+                    case FORMULA:
+                        double result = row.getNumeric(column);
+                        if (Double.isNaN(result)) {
+                            throw new IllegalStateException("Formula result is not numeric");
+                        }
+                        return result;
+                    default:
+                        return 0.0;
+                }
+            } catch (Exception e) {
+                HurdleLogger.warn("Error reading cell at column " + column + ": " + e.getMessage());
+                return 0.0;
             }
-        } catch (Exception e) {
-            HurdleLogger.warn("Error reading cell at column " + columnIndex + ": " + e.getMessage());
-            return 0.0;
+        }
+        
+        @Override
+        public long epochDay(int column) {
+            if (column < 0) return TransactionStore.NO_DATE;
+            StreamingSheetReader.CellKind kind = row.getKind(column);
+            
+            if (kind == StreamingSheetReader.CellKind.NUMERIC) {
+                return checkDate(row.getEpochDay(column), column);
+            } else if (kind == StreamingSheetReader.CellKind.STRING) {
+                return checkDate(CellDecoder.parseEpochDay(row.getString(column)), column);
+            }
+            return TransactionStore.NO_DATE;
+        }
+        
+        @Override
+        public String text(int column) {
+            if (column < 0 || row.getKind(column) != StreamingSheetReader.CellKind.STRING) return null;
+            return row.getString(column);
         }
     }
-
-    private int getQuarterNumber(LocalDate sellDate) {
-        if (sellDate == null || quarterConfig == null) return -1;
-        util.Quarter quarter = quarterConfig.getQuarterForDate(sellDate);
-        if (quarter == null || quarter.getCode() == null || quarter.getCode().length() < 2) return -1;
-        try {
-            return Integer.parseInt(quarter.getCode().substring(1));
-        } catch (Exception e) {
-            return -1;
+    
+    /**
+     * Amount text, skipping separators and currency symbols; blank text reads as 0
+     */
+    private static double parseAmount(String text) {
+        double value = CellDecoder.parseAmount(text);
+        if (Double.isNaN(value)) {
+            throw new NumberFormatException("Not a number: " + text);
         }
+        return value;
     }
     
-    private void assignToQuarter(int quarter, double value, QuarterType type) {
-        switch (type) {
-            case STCG:
-                switch (quarter) {
-                    case 1: stcgQ1 += value; break;
-                    case 2: stcgQ2 += value; break;
-                    case 3: stcgQ3 += value; break;
-                    case 4: stcgQ4 += value; break;
-                    case 5: stcgQ5 += value; break;
-                }
-                break;
-            case LTCG:
-                switch (quarter) {
-                    case 1: ltcgQ1 += value; break;
-                    case 2: ltcgQ2 += value; break;
-                    case 3: ltcgQ3 += value; break;
-                    case 4: ltcgQ4 += value; break;
-                    case 5: ltcgQ5 += value; break;
-                }
-                break;
-            case INTRADAY:
-                switch (quarter) {
-                    case 1: intraQ1 += value; break;
-                    case 2: intraQ2 += value; break;
-                    case 3: intraQ3 += value; break;
-                    case 4: intraQ4 += value; break;
-                    case 5: intraQ5 += value; break;
-                }
-                break;
+    private static long checkDate(long epochDay, int column) {
+        if (epochDay == TransactionStore.NO_DATE) {
+            HurdleLogger.warn("Could not parse date at column " + column);
         }
+        return epochDay;
     }
     
-    // Getters
-    public double getTotalStcgBuy() { return totalStcgBuy; }
-    public double getTotalStcgSell() { return totalStcgSell; }
-    public double getTotalStcg() { return totalStcg; }
-    public double getTotalLtcgBuy() { return totalLtcgBuy; }
-    public double getTotalLtcgSell() { return totalLtcgSell; }
-    public double getTotalLtcg() { return totalLtcg; }
-    public double getTotalIntraBuy() { return totalIntraBuy; }
-    public double getTotalIntraSell() { return totalIntraSell; }
-    public double getTotalIntraTurnover() { return totalIntraTurnover; }
-    public double getStcgQ1() { return stcgQ1; }
-    public double getStcgQ2() { return stcgQ2; }
-    public double getStcgQ3() { return stcgQ3; }
-    public double getStcgQ4() { return stcgQ4; }
-    public double getStcgQ5() { return stcgQ5; }
-
-    public double getLtcgQ1() { return ltcgQ1; }
-    public double getLtcgQ2() { return ltcgQ2; }
-    public double getLtcgQ3() { return ltcgQ3; }
-    public double getLtcgQ4() { return ltcgQ4; }
-    public double getLtcgQ5() { return ltcgQ5; }
-
-    public double getIntraQ1() { return intraQ1; }
-    public double getIntraQ2() { return intraQ2; }
-    public double getIntraQ3() { return intraQ3; }
-    public double getIntraQ4() { return intraQ4; }
-    public double getIntraQ5() { return intraQ5; }
-    public double getStcgBuyQ1() { return stcgBuyQuarter[0]; }
-    public double getStcgBuyQ2() { return stcgBuyQuarter[1]; }
-    public double getStcgBuyQ3() { return stcgBuyQuarter[2]; }
-    public double getStcgBuyQ4() { return stcgBuyQuarter[3]; }
-    public double getStcgBuyQ5() { return stcgBuyQuarter[4]; }
-    public double getStcgSellQ1() { return stcgSellQuarter[0]; }
-    public double getStcgSellQ2() { return stcgSellQuarter[1]; }
-    public double getStcgSellQ3() { return stcgSellQuarter[2]; }
-    public double getStcgSellQ4() { return stcgSellQuarter[3]; }
-    public double getStcgSellQ5() { return stcgSellQuarter[4]; }
-    public double getLtcgBuyQ1() { return ltcgBuyQuarter[0]; }
-    public double getLtcgBuyQ2() { return ltcgBuyQuarter[1]; }
-    public double getLtcgBuyQ3() { return ltcgBuyQuarter[2]; }
-    public double getLtcgBuyQ4() { return ltcgBuyQuarter[3]; }
-    public double getLtcgBuyQ5() { return ltcgBuyQuarter[4]; }
-    public double getLtcgSellQ1() { return ltcgSellQuarter[0]; }
-    public double getLtcgSellQ2() { return ltcgSellQuarter[1]; }
-    public double getLtcgSellQ3() { return ltcgSellQuarter[2]; }
-    public double getLtcgSellQ4() { return ltcgSellQuarter[3]; }
-    public double getLtcgSellQ5() { return ltcgSellQuarter[4]; }
-    public double getIntraBuyQ1() { return intraBuyQuarter[0]; }
-    public double getIntraBuyQ2() { return intraBuyQuarter[1]; }
-    public double getIntraBuyQ3() { return intraBuyQuarter[2]; }
-    public double getIntraBuyQ4() { return intraBuyQuarter[3]; }
-    public double getIntraBuyQ5() { return intraBuyQuarter[4]; }
-    public double getIntraSellQ1() { return intraSellQuarter[0]; }
-    public double getIntraSellQ2() { return intraSellQuarter[1]; }
-    public double getIntraSellQ3() { return intraSellQuarter[2]; }
-    public double getIntraSellQ4() { return intraSellQuarter[3]; }
-    public double getIntraSellQ5() { return intraSellQuarter[4]; }
-    public double getIntraTurnoverQ1() { return intraTurnoverQuarter[0]; }
-    public double getIntraTurnoverQ2() { return intraTurnoverQuarter[1]; }
-    public double getIntraTurnoverQ3() { return intraTurnoverQuarter[2]; }
-    public double getIntraTurnoverQ4() { return intraTurnoverQuarter[3]; }
-    public double getIntraTurnoverQ5() { return intraTurnoverQuarter[4]; }
+    private int quantityColumn() {
+        Integer column = columnMapping.getQuantityColumn();
+        return column != null ? column : -1;
+    }
+    
+    /**
+     * Buy day from the trade date column, or sell day minus days held when there is none
+     */
+    private long buyDay(long tradeDay, long sellDay, int daysHeld) {
+        if (tradeDay != TransactionStore.NO_DATE) return tradeDay;
+        if (sellDay != TransactionStore.NO_DATE && daysHeld >= 0 && columnMapping.getDaysHeldColumn() >= 0) {
+            return sellDay - daysHeld;
+        }
+        return TransactionStore.NO_DATE;
+    }
+    
+    private static int getPeriodNumber(QuarterConfig config, long sellEpochDay) {
+        if (sellEpochDay == TransactionStore.NO_DATE || config == null) return -1;
+        int period = config.getQuarterNumber(sellEpochDay);
+        return period > 0 ? period : -1;
+    }
+    
+    /**
+     * The year sums, failing fast if they have not been computed yet
+     */
+    private PeriodAccumulator sums() {
+        if (periods == null) {
+            throw new IllegalStateException("Totals are not available before initialize()");
+        }
+        return periods;
+    }
+    
+    // Getters; the totals throw IllegalStateException before initialize()
+    public double getTotalStcgBuy() { return sums().get(TransactionStore.STCG, PeriodAccumulator.TOTAL, PeriodAccumulator.BUY); }
+    public double getTotalStcgSell() { return sums().get(TransactionStore.STCG, PeriodAccumulator.TOTAL, PeriodAccumulator.SELL); }
+    public double getTotalStcg() { return sums().getGain(TransactionStore.STCG, PeriodAccumulator.TOTAL); }
+    public double getTotalLtcgBuy() { return sums().get(TransactionStore.LTCG, PeriodAccumulator.TOTAL, PeriodAccumulator.BUY); }
+    public double getTotalLtcgSell() { return sums().get(TransactionStore.LTCG, PeriodAccumulator.TOTAL, PeriodAccumulator.SELL); }
+    public double getTotalLtcg() { return sums().getGain(TransactionStore.LTCG, PeriodAccumulator.TOTAL); }
+    public double getTotalIntraBuy() { return sums().get(TransactionStore.INTRADAY, PeriodAccumulator.TOTAL, PeriodAccumulator.BUY); }
+    public double getTotalIntraSell() { return sums().get(TransactionStore.INTRADAY, PeriodAccumulator.TOTAL, PeriodAccumulator.SELL); }
+    public double getTotalIntraTurnover() { return sums().get(TransactionStore.INTRADAY, PeriodAccumulator.TOTAL, PeriodAccumulator.TURNOVER); }
+    public double getTotalIntraProfit() { return sums().getGain(TransactionStore.INTRADAY, PeriodAccumulator.TOTAL); }
+    
+    /**
+     * Sums by category, quarter (1..n of the quarter config, 0 = whole year) and metric
+     *
+     * @throws IllegalStateException before initialize()
+     */
+    public PeriodAccumulator getPeriods() { return sums(); }
+    
+    /**
+     * Further period configs (months, custom periods, ...) summed in the same pass; set before initialize()
+     */
+    public void setAdditionalPeriods(List<QuarterConfig> additionalPeriods) { this.additionalPeriods = List.copyOf(additionalPeriods); }
+    
+    /**
+     * Sums for each additional period config, in the order they were set
+     */
+    public List<PeriodAccumulator> getAdditionalPeriods() { return additionalSums; }
+    
+    /**
+     * Multi-year mode: also sum rows per financial year of their sell date, each with the
+     * quarters of that year under the given scheme; set before initialize(). Rows without a
+     * sell date are left out of every year.
+     */
+    public void setFinancialYearScheme(QuarterScheme financialYearScheme) { this.financialYearScheme = financialYearScheme; }
+    
+    /**
+     * Sums per financial year label ("FY 2024-25"), oldest first; empty outside multi-year mode
+     */
+    public Map<String, PeriodAccumulator> getFinancialYears() { return financialYearSums; }
+    public int getProcessedCount() { return processedCount; }
+    public ReadMode getReadMode() { return readMode; }
     public ColumnMapping getColumnMapping() { return columnMapping; }
+    public TransactionStore getTransactions() { return transactions; }
+    
+    /**
+     * Receive the running count of processed rows while the workbook is read
+     */
+    public void setProgressListener(IntConsumer progressListener) { this.progressListener = progressListener; }
+    
+    /**
+     * Sum in doubles (default) or exact paise; set before initialize()
+     */
+    public void setArithmeticMode(ArithmeticMode arithmeticMode) { this.arithmeticMode = arithmeticMode; }
+    public ArithmeticMode getArithmeticMode() { return arithmeticMode; }
+    
+    /**
+     * Pool for summing large statements in parallel; null (default) sums on the calling thread
+     */
+    public void setAggregationPool(ForkJoinPool aggregationPool) { this.aggregationPool = aggregationPool; }
     public QuarterConfig getQuarterConfig() { return quarterConfig; }
 }
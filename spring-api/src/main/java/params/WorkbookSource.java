@@ -0,0 +1,182 @@
+package params;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import exception.InvalidSecurityException;
+import util.ColumnMapping;
+import util.ExcelHeaderDetector;
+import util.StreamingSheetReader;
+
+/**
+ * A workbook opened once and shared between broker detection, header preview and row loading.
+ * Depending on the read mode it wraps either a full XSSFWorkbook or a StreamingSheetReader.
+ */
+public class WorkbookSource implements Closeable {
+
+    private final FlexibleEquityLoader.ReadMode readMode;
+    private final XSSFWorkbook workbook;
+    private final StreamingSheetReader sheetReader;
+    private ExcelHeaderDetector.BrokerDetectionResult detection;
+
+    private WorkbookSource(FlexibleEquityLoader.ReadMode readMode, XSSFWorkbook workbook, StreamingSheetReader sheetReader) {
+        this.readMode = readMode;
+        this.workbook = workbook;
+        this.sheetReader = sheetReader;
+    }
+
+    /**
+     * Open a workbook file in the given read mode
+     */
+    public static WorkbookSource open(File file, FlexibleEquityLoader.ReadMode readMode) throws IOException {
+        if (readMode == FlexibleEquityLoader.ReadMode.STREAMING) {
+            return new WorkbookSource(readMode, null, new StreamingSheetReader(file));
+        }
+        try (FileInputStream fis = new FileInputStream(file)) {
+            return new WorkbookSource(readMode, new XSSFWorkbook(fis), null);
+        }
+    }
+
+    /**
+     * Open a workbook from a stream, e.g. an uploaded file kept in memory
+     */
+    public static WorkbookSource open(InputStream in, FlexibleEquityLoader.ReadMode readMode) throws IOException {
+        if (readMode == FlexibleEquityLoader.ReadMode.STREAMING) {
+            return new WorkbookSource(readMode, null, new StreamingSheetReader(in));
+        }
+        return new WorkbookSource(readMode, new XSSFWorkbook(in), null);
+    }
+
+    public FlexibleEquityLoader.ReadMode getReadMode() {
+        return readMode;
+    }
+
+    /**
+     * Parsed workbook, only available in WORKBOOK mode
+     */
+    public XSSFWorkbook getWorkbook() {
+        return workbook;
+    }
+
+    /**
+     * Streaming reader, only available in STREAMING mode
+     */
+    public StreamingSheetReader getSheetReader() {
+        return sheetReader;
+    }
+
+    /**
+     * Detect the broker format. The result is computed once and reused by later callers.
+     */
+    public ExcelHeaderDetector.BrokerDetectionResult detectBrokerFormat() throws Exception {
+        if (detection == null) {
+            detection = readMode == FlexibleEquityLoader.ReadMode.STREAMING
+                ? ExcelHeaderDetector.detectBrokerFormat(sheetReader)
+                : ExcelHeaderDetector.detectBrokerFormat(workbook);
+        }
+        return detection;
+    }
+
+    /**
+     * Read the rows around the detected header (header - 1, header, header + 1 and the row before data)
+     * as display strings, to debug column mapping mismatches
+     */
+    public Map<Integer, String[]> readHeaderPreview(ColumnMapping mapping) throws IOException {
+        int[] rowsToRead = new int[] {
+            Math.max(0, mapping.getHeaderRow() - 1),
+            mapping.getHeaderRow(),
+            mapping.getHeaderRow() + 1,
+            Math.max(mapping.getHeaderRow(), mapping.getDataStartRow() - 1)
+        };
+        Map<Integer, String[]> rows = new HashMap<>();
+
+        if (readMode == FlexibleEquityLoader.ReadMode.STREAMING) {
+            int lastRow = 0;
+            for (int rIdx : rowsToRead) {
+                lastRow = Math.max(lastRow, rIdx);
+            }
+            final int stopAfter = lastRow;
+            sheetReader.readSheet(mapping.getSheetIndex(), row -> {
+                if (row.getRowNum() > stopAfter) return false;
+                for (int rIdx : rowsToRead) {
+                    if (rIdx == row.getRowNum()) {
+                        rows.put(rIdx, previewCells(row));
+                        break;
+                    }
+                }
+                return true;
+            });
+            return rows;
+        }
+
+        XSSFSheet sheet = workbook.getSheetAt(mapping.getSheetIndex());
+        for (int rIdx : rowsToRead) {
+            Row r = sheet.getRow(rIdx);
+            if (r == null) continue;
+            int last = Math.max(0, r.getLastCellNum());
+            String[] cols = new String[last];
+            for (int i = 0; i < last; i++) {
+                Cell c = r.getCell(i);
+                cols[i] = c == null ? "" : c.toString();
+            }
+            rows.put(rIdx, cols);
+        }
+        return rows;
+    }
+
+    private static String[] previewCells(StreamingSheetReader.SheetRow row) {
+        int last = Math.max(0, row.getLastCellNum());
+        String[] cols = new String[last];
+        for (int i = 0; i < last; i++) {
+            StreamingSheetReader.CellKind kind = row.getKind(i);
+            if (kind == StreamingSheetReader.CellKind.STRING) {
+                cols[i] = row.getString(i);
+            } else if (kind == StreamingSheetReader.CellKind.NUMERIC || kind == StreamingSheetReader.CellKind.FORMULA) {
+                cols[i] = String.valueOf(row.getNumeric(i));
+            } else {
+                cols[i] = "";
+            }
+        }
+        return cols;
+    }
+
+    /**
+     * Validate that the sheet referenced by the mapping exists
+     */
+    void checkSheetIndex(int sheetIndex) {
+        int sheetCount = workbook != null ? workbook.getNumberOfSheets() : sheetReader.getNumberOfSheets();
+        if (sheetIndex < 0 || sheetIndex >= sheetCount) {
+            throw new InvalidSecurityException(
+                InvalidSecurityException.ErrorCode.INVALID_DATA,
+                "Data sheet not found at index: " + sheetIndex
+            );
+        }
+    }
+
+    /**
+     * Display name of the sheet at the given index
+     */
+    String getSheetName(int sheetIndex) {
+        return workbook != null ? workbook.getSheetName(sheetIndex) : sheetReader.getSheetName(sheetIndex);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (workbook != null) {
+            workbook.close();
+        }
+        if (sheetReader != null) {
+            sheetReader.close();
+        }
+    }
+}
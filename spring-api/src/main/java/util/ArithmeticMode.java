@@ -0,0 +1,11 @@
+package util;
+
+/**
+ * How amounts are summed during a calculation.
+ * DOUBLE => floating-point rupees, the original behaviour
+ * PAISE  => exact long paise (quantities in ten-thousandths), converted to rupees once at the end
+ */
+public enum ArithmeticMode {
+    DOUBLE,
+    PAISE
+}
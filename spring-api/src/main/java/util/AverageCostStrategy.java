@@ -0,0 +1,91 @@
+package util;
+
+/**
+ * Weighted average cost: every sale costs the average of the open lots, kept as one pool
+ * of quantity and cost. Lots are still used up oldest first, which dates the holding
+ * period; their own costs are set to the pool average only when settled.
+ */
+final class AverageCostStrategy implements CostBasisStrategy {
+
+    private double poolQuantity;
+    private double poolCost;
+    private long poolUnits;
+    private long poolPaise;
+
+    private double takenUnitCost;
+    private long takenPaise;
+
+    @Override
+    public void lotAdded(double quantity, double cost, long units, long paise) {
+        poolQuantity += quantity;
+        poolCost += cost;
+        poolUnits += units;
+        poolPaise += paise;
+    }
+
+    @Override
+    public void adjust(double ratio) {
+        poolQuantity *= ratio;
+        poolUnits = Paise.quantityUnits(poolQuantity);
+    }
+
+    @Override
+    public double take(LotQueue lots, double quantity, int lotId) {
+        double taken = lots.take(quantity);
+        if (taken <= 0) {
+            takenUnitCost = 0;
+            takenPaise = 0;
+            return taken;
+        }
+        double cost;
+        long units;
+        if (lots.isEmpty()) {
+            // The last sale out of the pool takes whatever cost is left
+            cost = poolCost;
+            units = poolUnits;
+            takenPaise = poolPaise;
+        } else {
+            cost = poolCost * taken / poolQuantity;
+            units = Math.min(Paise.quantityUnits(taken), poolUnits);
+            takenPaise = Paise.proportion(poolPaise, units, poolUnits);
+        }
+        takenUnitCost = cost / taken;
+        if (lots.isEmpty()) {
+            poolQuantity = 0;
+            poolCost = 0;
+            poolUnits = 0;
+            poolPaise = 0;
+        } else {
+            poolQuantity -= taken;
+            poolCost -= cost;
+            poolUnits -= units;
+            poolPaise -= takenPaise;
+        }
+        return taken;
+    }
+
+    @Override
+    public double takenUnitCost(LotQueue lots) {
+        return takenUnitCost;
+    }
+
+    @Override
+    public long takenPaise(LotQueue lots) {
+        return takenPaise;
+    }
+
+    @Override
+    public double pendingCost(LotQueue lots) {
+        return poolCost;
+    }
+
+    @Override
+    public long pendingPaise(LotQueue lots) {
+        return poolPaise;
+    }
+
+    @Override
+    public void settle(LotQueue lots) {
+        lots.revalue(poolCost, poolPaise);
+    }
+}
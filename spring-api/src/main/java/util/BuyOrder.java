@@ -16,6 +16,9 @@ public class BuyOrder {
 	private double totalAmount;
 	private double unitCost;
 	private double remainingQuantity;
+	// Exact remainder for ArithmeticMode.PAISE: quantity units and the cost still attached to them
+	private long remainingUnits;
+	private long remainingPaise;
 	
 	public BuyOrder(LocalDate buyDate, double quantity, double totalAmount) {
 		this.buyDate = buyDate;
@@ -23,6 +26,8 @@ public class BuyOrder {
 		this.totalAmount = totalAmount;
 		this.unitCost = quantity > 0 ? totalAmount / quantity : 0;
 		this.remainingQuantity = quantity;
+		this.remainingUnits = Paise.quantityUnits(quantity);
+		this.remainingPaise = Paise.of(totalAmount);
 	}
 	
 	public LocalDate getBuyDate() {
@@ -48,6 +53,7 @@ public class BuyOrder {
 	public void setTotalAmount(double totalAmount) {
 		this.totalAmount = totalAmount;
 		this.unitCost = quantity > 0 ? totalAmount / quantity : 0;
+		this.remainingPaise = Paise.proportion(Paise.of(totalAmount), remainingUnits, Paise.quantityUnits(quantity));
 	}
 	
 	public double getUnitCost() {
@@ -60,6 +66,8 @@ public class BuyOrder {
 	
 	public void setRemainingQuantity(double remainingQuantity) {
 		this.remainingQuantity = remainingQuantity;
+		this.remainingUnits = Paise.quantityUnits(remainingQuantity);
+		this.remainingPaise = Paise.proportion(Paise.of(totalAmount), remainingUnits, Paise.quantityUnits(quantity));
 	}
 	
 	public double allocateQuantity(double qtyToAllocate) {
@@ -70,6 +78,13 @@ public class BuyOrder {
 		return qtyToAllocate;
 	}
 	
+	/**
+	 * Cost in paise still attached to the remaining quantity
+	 */
+	public long getRemainingPaise() {
+		return remainingPaise;
+	}
+	
 	public double getCostForQuantity(double qty) {
 		return qty * unitCost;
 	}
@@ -15,6 +15,7 @@ public class BuyOrderMatch {
 	private double buyQuantity;
 	private double unitCost;
 	private double costOfAcquisition;
+	private long costOfAcquisitionPaise;
 	private LocalDate sellDate;
 	private double holdingDays;
 	
@@ -23,10 +24,20 @@ public class BuyOrderMatch {
 		this.buyQuantity = buyQuantity;
 		this.unitCost = unitCost;
 		this.costOfAcquisition = buyQuantity * unitCost;
+		this.costOfAcquisitionPaise = Paise.of(costOfAcquisition);
 		this.sellDate = sellDate;
 		this.holdingDays = java.time.temporal.ChronoUnit.DAYS.between(buyDate, sellDate);
 	}
 	
+	/**
+	 * Match with an exact cost in paise, as allocated from the buy order
+	 */
+	public BuyOrderMatch(LocalDate buyDate, double buyQuantity, double unitCost, LocalDate sellDate,
+			long costOfAcquisitionPaise) {
+		this(buyDate, buyQuantity, unitCost, sellDate);
+		this.costOfAcquisitionPaise = costOfAcquisitionPaise;
+	}
+	
 	public LocalDate getBuyDate() {
 		return buyDate;
 	}
@@ -57,6 +68,11 @@ public class BuyOrderMatch {
 	
 	public void setCostOfAcquisition(double costOfAcquisition) {
 		this.costOfAcquisition = costOfAcquisition;
+		this.costOfAcquisitionPaise = Paise.of(costOfAcquisition);
+	}
+	
+	public long getCostOfAcquisitionPaise() {
+		return costOfAcquisitionPaise;
 	}
 	
 	public LocalDate getSellDate() {
@@ -123,6 +123,40 @@ public class CSVReportExporter implements ReportExporter {
 		}
 	}
 	
+	@Override
+	public void exportDetailedTransactions(File outputFile, TransactionStore transactions) throws IOException {
+		HurdleLogger.info("Exporting detailed transactions to: " + outputFile.getAbsolutePath());
+		
+		try (FileWriter writer = new FileWriter(outputFile)) {
+			writer.append("InvestingHurdle - Detailed Transaction Report\n\n");
+			writer.append("Buy Date,Sell Date,Symbol,Quantity,Buy Amount,Sell Amount,Holding Days,");
+			writer.append("Speculation,STCG,LTCG,Transaction Type\n");
+			
+			for (int i = 0; i < transactions.size(); i++) {
+				int category = transactions.getCategory(i);
+				double profit = transactions.getProfit(i);
+				String symbol = transactions.getSymbol(i);
+				writer.append(formatDate(transactions.getBuyDate(i))).append(",");
+				writer.append(formatDate(transactions.getSellDate(i))).append(",");
+				writer.append(symbol != null ? symbol : "").append(",");
+				writer.append(formatNumber(transactions.getQuantity(i))).append(",");
+				writer.append(formatAmount(transactions.getBuyAmount(i))).append(",");
+				writer.append(formatAmount(transactions.getSellAmount(i))).append(",");
+				writer.append(String.valueOf(transactions.getDaysHeld(i))).append(",");
+				writer.append(formatAmount(category == TransactionStore.INTRADAY ? profit : 0)).append(",");
+				writer.append(formatAmount(category == TransactionStore.STCG ? profit : 0)).append(",");
+				writer.append(formatAmount(category == TransactionStore.LTCG ? profit : 0)).append(",");
+				writer.append(TransactionStore.categoryName(category)).append("\n");
+			}
+			
+			writer.flush();
+			HurdleLogger.info("Detailed transactions exported successfully: " + transactions.size() + " records");
+		} catch (IOException e) {
+			HurdleLogger.error("Failed to export detailed transactions: " + e.getMessage(), e);
+			throw e;
+		}
+	}
+	
 	@Override
 	public void exportQuarterlyReport(File outputFile, QuarterlyBreakdown breakdown) throws IOException {
 		HurdleLogger.info("Exporting quarterly report to: " + outputFile.getAbsolutePath());
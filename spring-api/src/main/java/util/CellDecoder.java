@@ -0,0 +1,249 @@
+package util;
+
+/**
+ * Allocation-free decoding of cell text: amounts with thousands separators and currency
+ * symbols, and dates as dd/MM/yyyy or yyyy-MM-dd straight to epoch day. Failures are
+ * reported as NaN / NO_DATE rather than exceptions, so bad cells cost nothing extra.
+ */
+public final class CellDecoder {
+
+    /** Epoch day returned for text that is not a date */
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    /** Largest mantissa a double holds exactly */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private CellDecoder() {}
+
+    /**
+     * Parse a number such as "1,23,456.78", "₹ 450", "$-12.5" or "1.5E3".
+     * Commas, currency symbols and surrounding whitespace are skipped. The result is
+     * identical to Double.parseDouble on the cleaned text.
+     *
+     * @return the value, 0 for blank text, or NaN if the text is not a number
+     */
+    public static double parseAmount(CharSequence text) {
+        int end = text.length();
+        int i = 0;
+        while (i < end && isIgnorable(text.charAt(i))) i++;
+        while (end > i && isIgnorable(text.charAt(end - 1))) end--;
+        if (i == end) {
+            return 0;
+        }
+
+        boolean negative = false;
+        char first = text.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            // Currency symbol after the sign, e.g. "-₹ 100"
+            while (i < end && isIgnorable(text.charAt(i))) i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        boolean exact = true;
+        for (; i < end; i++) {
+            char ch = text.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && ch == '0') {
+                    if (seenPoint) scale++;
+                    continue;
+                }
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (ch - '0');
+                    digits++;
+                    if (seenPoint) scale++;
+                } else {
+                    exact = false;
+                    if (!seenPoint) scale--;
+                }
+            } else if (ch == '.' && !seenPoint) {
+                seenPoint = true;
+            } else if (ch == ',') {
+                continue;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit) {
+            return Double.NaN;
+        }
+
+        int exponent = 0;
+        if (i < end && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+                negativeExponent = text.charAt(i) == '-';
+                i++;
+            }
+            int start = i;
+            for (; i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9'; i++) {
+                if (exponent < 10_000) exponent = exponent * 10 + (text.charAt(i) - '0');
+            }
+            if (i == start) {
+                return Double.NaN;
+            }
+            if (negativeExponent) exponent = -exponent;
+        }
+        if (i != end) {
+            return Double.NaN;
+        }
+
+        // Fast path: an exact mantissa and power of ten give a correctly rounded result in one operation
+        int power = exponent - scale;
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (exact && mantissa <= MAX_EXACT_MANTISSA && power >= -22 && power <= 22) {
+            value = power < 0 ? mantissa / POWERS_OF_TEN[-power] : mantissa * POWERS_OF_TEN[power];
+        } else {
+            value = parseSlow(text);
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Rare path for long or extreme numbers: strip the separators and let the JDK round
+     */
+    private static double parseSlow(CharSequence text) {
+        StringBuilder cleaned = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if ((ch >= '0' && ch <= '9') || ch == '.' || ch == 'e' || ch == 'E' || ch == '+') {
+                cleaned.append(ch);
+            } else if (ch == '-' && cleaned.length() > 0) {
+                // Only an exponent sign survives; the leading sign is applied by the caller
+                cleaned.append(ch);
+            }
+        }
+        return Double.parseDouble(cleaned.toString());
+    }
+
+    private static boolean isIgnorable(char ch) {
+        return ch == ',' || ch == '₹' || ch == '$' || Character.isWhitespace(ch) || ch == '\u00A0';
+    }
+
+    /**
+     * Parse a date written as dd/MM/yyyy (or d/M/yyyy) or ISO yyyy-MM-dd, ignoring
+     * surrounding whitespace
+     *
+     * @return epoch day, or NO_DATE if the text is not a valid date in either form
+     */
+    public static long parseEpochDay(CharSequence text) {
+        int end = text.length();
+        int i = 0;
+        while (i < end && Character.isWhitespace(text.charAt(i))) i++;
+        while (end > i && Character.isWhitespace(text.charAt(end - 1))) end--;
+
+        int first = 0;
+        int firstDigits = 0;
+        for (; i < end && isDigit(text.charAt(i)); i++, firstDigits++) {
+            if (firstDigits < 4) first = first * 10 + (text.charAt(i) - '0');
+        }
+        if (i >= end || firstDigits == 0) {
+            return NO_DATE;
+        }
+        char separator = text.charAt(i++);
+
+        int second = 0;
+        int secondDigits = 0;
+        for (; i < end && isDigit(text.charAt(i)); i++, secondDigits++) {
+            second = second * 10 + (text.charAt(i) - '0');
+        }
+        if (i >= end || text.charAt(i++) != separator || secondDigits == 0 || secondDigits > 2) {
+            return NO_DATE;
+        }
+
+        int third = 0;
+        int thirdDigits = 0;
+        for (; i < end && isDigit(text.charAt(i)); i++, thirdDigits++) {
+            if (thirdDigits < 4) third = third * 10 + (text.charAt(i) - '0');
+        }
+        if (i != end) {
+            return NO_DATE;
+        }
+
+        if (separator == '-' && firstDigits == 4 && secondDigits == 2 && thirdDigits == 2) {
+            return epochDay(first, second, third);
+        }
+        if (separator == '/' && firstDigits <= 2 && thirdDigits == 4) {
+            return epochDay(third, second, first);
+        }
+        return NO_DATE;
+    }
+
+    /**
+     * Epoch day for an Excel date serial, with the same millisecond rounding as POI's DateUtil
+     *
+     * @return epoch day, or NO_DATE for a negative or non-numeric serial
+     */
+    public static long excelSerialToEpochDay(double serial, boolean date1904) {
+        if (!(serial >= 0)) {
+            return NO_DATE;
+        }
+        long wholeDays = (long) serial;
+        if (Math.round((serial - wholeDays) * 86_400_000L) >= 86_400_000L) {
+            wholeDays++;
+        }
+        if (date1904) {
+            return wholeDays - 24_107; // 1904-01-01 is serial 0
+        }
+        // 1900 system: serial 1 is 1900-01-01, and Excel counts a 29 Feb 1900 that never was
+        return wholeDays < 61 ? wholeDays - 25_568 : wholeDays - 25_569;
+    }
+
+    /**
+     * Epoch day for a calendar date, the same arithmetic as LocalDate.toEpochDay
+     *
+     * @return epoch day, or NO_DATE if the month or day is out of range
+     */
+    public static long epochDay(int year, int month, int day) {
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return NO_DATE;
+        }
+        long y = year;
+        long total = 365 * y;
+        if (y >= 0) {
+            total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        } else {
+            total -= y / -4 - y / -100 + y / -400;
+        }
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) {
+                total--;
+            }
+        }
+        // Days from year 0 to 1970
+        return total - 719528;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2: return isLeapYear(year) ? 29 : 28;
+            case 4: case 6: case 9: case 11: return 30;
+            default: return 31;
+        }
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+}
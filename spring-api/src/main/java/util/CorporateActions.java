@@ -0,0 +1,161 @@
+package util;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Splits and bonus issues by symbol, each an ex-date and a ratio of shares after to shares
+ * before (a 1:5 split is 5, a 1:1 bonus 2, a 1:2 bonus 1.5). Each symbol keeps its actions
+ * in ex-date order with the cumulative factor up to each one, so the factor between any two
+ * days is one lookup at each end. A bonus is treated like a split: open lots keep their buy
+ * day and cost, spread over the larger quantity.
+ */
+public final class CorporateActions {
+
+    private final Map<String, Actions> bySymbol = new HashMap<>();
+
+    /**
+     * Add an action; a holding open before the ex-date is adjusted, a buy on it is not
+     *
+     * @throws IllegalArgumentException if the ratio is not positive
+     */
+    public CorporateActions add(String symbol, LocalDate exDate, double ratio) {
+        return add(symbol, TransactionStore.toEpochDay(exDate), ratio);
+    }
+
+    public CorporateActions add(String symbol, long exEpochDay, double ratio) {
+        if (!(ratio > 0) || Double.isInfinite(ratio)) {
+            throw new IllegalArgumentException("Corporate action ratio must be positive: " + ratio);
+        }
+        bySymbol.computeIfAbsent(symbol, s -> new Actions()).add(exEpochDay, ratio);
+        return this;
+    }
+
+    /**
+     * Parse actions written as SYMBOL:yyyy-MM-dd:ratio, separated by commas
+     *
+     * @throws IllegalArgumentException for a malformed entry
+     */
+    public static CorporateActions parse(String spec) {
+        CorporateActions actions = new CorporateActions();
+        if (spec == null || spec.isBlank()) {
+            return actions;
+        }
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 3 || parts[0].isBlank()) {
+                throw new IllegalArgumentException("Corporate action must be SYMBOL:yyyy-MM-dd:ratio, got: " + entry);
+            }
+            try {
+                actions.add(parts[0].trim(), LocalDate.parse(parts[1].trim()), Double.parseDouble(parts[2].trim()));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid corporate action: " + entry, e);
+            }
+        }
+        return actions;
+    }
+
+    public boolean isEmpty() {
+        return bySymbol.isEmpty();
+    }
+
+    /**
+     * Factor a holding's quantity is multiplied by between the two days: the product of the
+     * symbol's actions with fromDay < ex-date <= toDay
+     */
+    public double factorBetween(String symbol, long fromDay, long toDay) {
+        Actions actions = bySymbol.get(symbol);
+        return actions == null ? 1 : actions.factorBetween(fromDay, toDay);
+    }
+
+    /**
+     * The actions as parse() reads them, symbols sorted and each symbol's actions in ex-date
+     * order, so equal sets of actions give equal strings
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Actions> entry : new TreeMap<>(bySymbol).entrySet()) {
+            Actions actions = entry.getValue();
+            for (int i = 0; i < actions.size(); i++) {
+                if (text.length() > 0) text.append(',');
+                text.append(entry.getKey()).append(':')
+                    .append(LocalDate.ofEpochDay(actions.getExEpochDay(i))).append(':')
+                    .append(actions.getRatio(i));
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Actions of one symbol, or null if it has none
+     */
+    Actions forSymbol(String symbol) {
+        return bySymbol.get(symbol);
+    }
+
+    /**
+     * One symbol's actions in ex-date order; cumulative[i] is the product of the first i ratios
+     */
+    static final class Actions {
+        private long[] exEpochDays = new long[0];
+        private double[] ratios = new double[0];
+        private double[] cumulative = {1};
+
+        private void add(long exEpochDay, double ratio) {
+            int n = exEpochDays.length;
+            int at = countThrough(exEpochDay);
+            exEpochDays = Arrays.copyOf(exEpochDays, n + 1);
+            ratios = Arrays.copyOf(ratios, n + 1);
+            System.arraycopy(exEpochDays, at, exEpochDays, at + 1, n - at);
+            System.arraycopy(ratios, at, ratios, at + 1, n - at);
+            exEpochDays[at] = exEpochDay;
+            ratios[at] = ratio;
+            cumulative = new double[n + 2];
+            cumulative[0] = 1;
+            for (int i = 0; i <= n; i++) {
+                cumulative[i + 1] = cumulative[i] * ratios[i];
+            }
+        }
+
+        int size() {
+            return exEpochDays.length;
+        }
+
+        long getExEpochDay(int i) {
+            return exEpochDays[i];
+        }
+
+        double getRatio(int i) {
+            return ratios[i];
+        }
+
+        /**
+         * Number of actions with ex-date on or before the day
+         */
+        int countThrough(long epochDay) {
+            int low = 0;
+            int high = exEpochDays.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (exEpochDays[mid] <= epochDay) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        double factorBetween(long fromDay, long toDay) {
+            if (toDay <= fromDay) {
+                return 1;
+            }
+            return cumulative[countThrough(toDay)] / cumulative[countThrough(fromDay)];
+        }
+    }
+}
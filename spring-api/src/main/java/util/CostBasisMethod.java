@@ -0,0 +1,37 @@
+package util;
+
+/**
+ * Where the cost of each sale comes from.
+ * BROKER       => the buy amount of each row as exported, the original behaviour
+ * FIFO         => lots re-matched first in, first out per symbol from the rows' quantities and buy dates
+ * LIFO         => lots re-matched last in, first out
+ * AVERAGE      => lots used up oldest first, each sale costing the weighted average of the open lots
+ * SPECIFIC_LOT => each sale matched against the buy leg of its own row, falling back to FIFO
+ */
+public enum CostBasisMethod {
+    BROKER,
+    FIFO,
+    LIFO,
+    AVERAGE,
+    SPECIFIC_LOT;
+
+    /**
+     * Lot matching strategy for one calculator
+     *
+     * @throws IllegalStateException for BROKER, which does not re-match lots
+     */
+    public CostBasisStrategy newStrategy() {
+        switch (this) {
+            case FIFO:
+                return FifoStrategy.INSTANCE;
+            case LIFO:
+                return LifoStrategy.INSTANCE;
+            case AVERAGE:
+                return new AverageCostStrategy();
+            case SPECIFIC_LOT:
+                return SpecificLotStrategy.INSTANCE;
+            default:
+                throw new IllegalStateException(this + " does not re-match lots");
+        }
+    }
+}
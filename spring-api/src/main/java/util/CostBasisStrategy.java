@@ -0,0 +1,65 @@
+package util;
+
+/**
+ * Chooses which open lots a sale is matched against and what they cost. Every strategy
+ * works on the same LotQueue, so switching methods changes no storage, and each take is
+ * O(1) amortized. A strategy may keep state (an average-cost pool), so each calculator
+ * gets its own from CostBasisMethod.newStrategy().
+ */
+public interface CostBasisStrategy {
+
+    /**
+     * Take up to the given quantity for one match. The lot's buy day comes from
+     * lots.getTakenBuyEpochDay(); its cost from takenUnitCost() and takenPaise().
+     *
+     * @param lotId id of the lot the sale names, or -1; only specific-lot matching uses it
+     * @return the quantity taken, 0 if no lot is open
+     */
+    double take(LotQueue lots, double quantity, int lotId);
+
+    /**
+     * Whether take() uses the lot a sale names; replays then look up lots restored from a
+     * checkpoint by the sale's buy date
+     */
+    default boolean usesNamedLots() {
+        return false;
+    }
+
+    /**
+     * Called for each lot added to the queue, with what is left of it
+     */
+    default void lotAdded(double quantity, double cost, long units, long paise) {
+    }
+
+    /**
+     * Called after the open lots' quantities are multiplied by the ratio for a corporate action
+     */
+    default void adjust(double ratio) {
+    }
+
+    /** Unit cost charged for the last take */
+    default double takenUnitCost(LotQueue lots) {
+        return lots.getTakenUnitCost();
+    }
+
+    /** Exact cost in paise charged for the last take */
+    default long takenPaise(LotQueue lots) {
+        return lots.getTakenPaise();
+    }
+
+    /** Cost still attached to the open lots */
+    default double pendingCost(LotQueue lots) {
+        return lots.getPendingCost();
+    }
+
+    /** Exact cost in paise still attached to the open lots */
+    default long pendingPaise(LotQueue lots) {
+        return lots.getPendingPaise();
+    }
+
+    /**
+     * Bring the lots' own costs in line with the strategy before they are read or saved
+     */
+    default void settle(LotQueue lots) {
+    }
+}
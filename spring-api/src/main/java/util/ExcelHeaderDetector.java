@@ -36,73 +36,132 @@ public class ExcelHeaderDetector {
     public static BrokerDetectionResult detectBrokerFormat(String filePath) throws Exception {
         try (FileInputStream fis = new FileInputStream(new File(filePath));
              XSSFWorkbook workbook = new XSSFWorkbook(fis)) {
+            return detectBrokerFormat(workbook);
+        }
+    }
+    
+    /**
+     * Detect broker type and column mapping from an already opened workbook
+     */
+    public static BrokerDetectionResult detectBrokerFormat(XSSFWorkbook workbook) {
+        // Try to detect broker from workbook metadata or sheet names
+        BrokerType detectedBroker = detectBrokerFromMetadata(workbook);
+        
+        // Try multiple sheets to find data
+        for (int sheetIdx = 0; sheetIdx < Math.min(3, workbook.getNumberOfSheets()); sheetIdx++) {
+            XSSFSheet sheet = workbook.getSheetAt(sheetIdx);
             
-            // Try to detect broker from workbook metadata or sheet names
-            BrokerType detectedBroker = detectBrokerFromMetadata(workbook);
-            
-            // Try multiple sheets to find data
-            for (int sheetIdx = 0; sheetIdx < Math.min(3, workbook.getNumberOfSheets()); sheetIdx++) {
-                XSSFSheet sheet = workbook.getSheetAt(sheetIdx);
+            // Try to find header row (look in first 30 rows)
+            for (int rowIdx = 0; rowIdx < Math.min(30, sheet.getPhysicalNumberOfRows()); rowIdx++) {
+                Row row = sheet.getRow(rowIdx);
+                if (row == null) continue;
                 
-                // Try to find header row (look in first 30 rows)
-                for (int rowIdx = 0; rowIdx < Math.min(30, sheet.getPhysicalNumberOfRows()); rowIdx++) {
-                    Row row = sheet.getRow(rowIdx);
-                    if (row == null) continue;
-                    
-                    Map<String, Integer> headerMap = analyzeHeaderRow(row);
+                Map<String, Integer> headerMap = analyzeHeaderRow(row);
+                
+                // Check if this looks like a valid header
+                if (headerMap.containsKey("BUY") && headerMap.containsKey("SELL")) {
+                    // Detect end row (last row with data)
+                    ColumnMapping mapping = buildColumnMapping(
+                        detectedBroker, 
+                        sheetIdx, 
+                        rowIdx, 
+                        headerMap,
+                        sheet.getLastRowNum()
+                    );
                     
-                    // Check if this looks like a valid header
-                    if (headerMap.containsKey("BUY") && headerMap.containsKey("SELL")) {
-                        ColumnMapping mapping = buildColumnMapping(
-                            detectedBroker, 
-                            sheetIdx, 
-                            rowIdx, 
-                            headerMap,
-                            sheet
-                        );
-                        
-                        return new BrokerDetectionResult(
-                            detectedBroker,
-                            mapping,
-                            true,
-                            "Successfully detected " + detectedBroker.getDisplayName() + " format"
-                        );
-                    }
+                    return new BrokerDetectionResult(
+                        detectedBroker,
+                        mapping,
+                        true,
+                        "Successfully detected " + detectedBroker.getDisplayName() + " format"
+                    );
                 }
             }
+        }
+        
+        return fallbackResult(detectedBroker);
+    }
+    
+    /**
+     * Detect broker type and column mapping using the streaming (SAX) reader.
+     * Only the first rows of the leading sheets are parsed, so no workbook DOM is built.
+     */
+    public static BrokerDetectionResult detectBrokerFormat(StreamingSheetReader reader) throws Exception {
+        BrokerType detectedBroker = detectBrokerFromMetadata(reader);
+        
+        for (int sheetIdx = 0; sheetIdx < Math.min(3, reader.getNumberOfSheets()); sheetIdx++) {
+            final int[] headerRowIdx = { -1 };
+            final Map<String, Integer> headerMap = new HashMap<>();
             
-            // Fallback: If broker detected from metadata but no header match, use broker template
-            if (detectedBroker != BrokerType.UNKNOWN) {
-                HurdleLogger.info("Using template for detected broker: " + detectedBroker.getDisplayName());
-                ColumnMapping brokerMapping;
-                switch (detectedBroker) {
-                    case ZERODHA:
-                        brokerMapping = ColumnMapping.createZerodhaMapping();
-                        break;
-                    case UPSTOX:
-                        brokerMapping = ColumnMapping.createUpstoxMapping();
-                        break;
-                    default:
-                        brokerMapping = ColumnMapping.createGenericMapping();
+            // Try to find header row (look in first 30 rows)
+            reader.readSheet(sheetIdx, row -> {
+                if (row.getRowNum() >= 30) return false;
+                
+                Map<String, Integer> candidate = analyzeHeaderRow(row);
+                if (candidate.containsKey("BUY") && candidate.containsKey("SELL")) {
+                    headerRowIdx[0] = row.getRowNum();
+                    headerMap.putAll(candidate);
+                    return false;
                 }
+                return true;
+            });
+            
+            if (headerRowIdx[0] >= 0) {
+                // End row is unknown until the sheet is streamed, read till the end
+                ColumnMapping mapping = buildColumnMapping(
+                    detectedBroker,
+                    sheetIdx,
+                    headerRowIdx[0],
+                    headerMap,
+                    null
+                );
+                
                 return new BrokerDetectionResult(
                     detectedBroker,
-                    brokerMapping,
+                    mapping,
                     true,
-                    "Detected " + detectedBroker.getDisplayName() + " from file metadata, using template mapping"
+                    "Successfully detected " + detectedBroker.getDisplayName() + " format"
                 );
             }
-            
-            // Fallback: Use Upstox format if no detection worked
-            HurdleLogger.warn("Could not auto-detect format, using Upstox default");
+        }
+        
+        return fallbackResult(detectedBroker);
+    }
+    
+    /**
+     * Result used when no header row could be matched
+     */
+    private static BrokerDetectionResult fallbackResult(BrokerType detectedBroker) {
+        // Fallback: If broker detected from metadata but no header match, use broker template
+        if (detectedBroker != BrokerType.UNKNOWN) {
+            HurdleLogger.info("Using template for detected broker: " + detectedBroker.getDisplayName());
+            ColumnMapping brokerMapping;
+            switch (detectedBroker) {
+                case ZERODHA:
+                    brokerMapping = ColumnMapping.createZerodhaMapping();
+                    break;
+                case UPSTOX:
+                    brokerMapping = ColumnMapping.createUpstoxMapping();
+                    break;
+                default:
+                    brokerMapping = ColumnMapping.createGenericMapping();
+            }
             return new BrokerDetectionResult(
-                BrokerType.UPSTOX,
-                ColumnMapping.createUpstoxMapping(),
-                false,
-                "Auto-detection failed, using Upstox default format"
+                detectedBroker,
+                brokerMapping,
+                true,
+                "Detected " + detectedBroker.getDisplayName() + " from file metadata, using template mapping"
             );
-            
         }
+        
+        // Fallback: Use Upstox format if no detection worked
+        HurdleLogger.warn("Could not auto-detect format, using Upstox default");
+        return new BrokerDetectionResult(
+            BrokerType.UPSTOX,
+            ColumnMapping.createUpstoxMapping(),
+            false,
+            "Auto-detection failed, using Upstox default format"
+        );
     }
     
     /**
@@ -111,14 +170,8 @@ public class ExcelHeaderDetector {
     private static BrokerType detectBrokerFromMetadata(XSSFWorkbook workbook) {
         // Check sheet names
         for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
-            String sheetName = workbook.getSheetName(i).toLowerCase();
-            
-            if (sheetName.contains("upstox")) return BrokerType.UPSTOX;
-            if (sheetName.contains("zerodha") || sheetName.contains("tradewise exits")) return BrokerType.ZERODHA;
-            if (sheetName.contains("icici")) return BrokerType.ICICI_DIRECT;
-            if (sheetName.contains("groww")) return BrokerType.GROWW;
-            if (sheetName.contains("angel")) return BrokerType.ANGEL_ONE;
-            if (sheetName.contains("hdfc")) return BrokerType.HDFC_SECURITIES;
+            BrokerType broker = detectBrokerFromSheetName(workbook.getSheetName(i));
+            if (broker != null) return broker;
         }
         
         // Check for specific patterns in first few rows
@@ -129,15 +182,8 @@ public class ExcelHeaderDetector {
             
             for (Cell cell : row) {
                 if (cell.getCellType() == CellType.STRING) {
-                    String value = cell.getStringCellValue().toLowerCase();
-                    
-                    if (value.contains("upstox")) return BrokerType.UPSTOX;
-                    if (value.contains("zerodha") || value.contains("view zerodha")) return BrokerType.ZERODHA;
-                    if (value.contains("icici direct")) return BrokerType.ICICI_DIRECT;
-                    if (value.contains("groww")) return BrokerType.GROWW;
-                    if (value.contains("angel one") || value.contains("angel broking")) 
-                        return BrokerType.ANGEL_ONE;
-                    if (value.contains("hdfc securities")) return BrokerType.HDFC_SECURITIES;
+                    BrokerType broker = detectBrokerFromText(cell.getStringCellValue());
+                    if (broker != null) return broker;
                 }
             }
         }
@@ -145,6 +191,61 @@ public class ExcelHeaderDetector {
         return BrokerType.UNKNOWN;
     }
     
+    /**
+     * Streaming variant of metadata detection
+     */
+    private static BrokerType detectBrokerFromMetadata(StreamingSheetReader reader) throws Exception {
+        for (int i = 0; i < reader.getNumberOfSheets(); i++) {
+            BrokerType broker = detectBrokerFromSheetName(reader.getSheetName(i));
+            if (broker != null) return broker;
+        }
+        
+        if (reader.getNumberOfSheets() == 0) {
+            return BrokerType.UNKNOWN;
+        }
+        
+        final BrokerType[] found = { BrokerType.UNKNOWN };
+        reader.readSheet(0, row -> {
+            if (row.getRowNum() >= 10) return false;
+            for (int col = Math.max(0, row.getFirstCellNum()); col < row.getLastCellNum(); col++) {
+                if (row.getKind(col) == StreamingSheetReader.CellKind.STRING) {
+                    BrokerType broker = detectBrokerFromText(row.getString(col));
+                    if (broker != null) {
+                        found[0] = broker;
+                        return false;
+                    }
+                }
+            }
+            return true;
+        });
+        return found[0];
+    }
+    
+    private static BrokerType detectBrokerFromSheetName(String name) {
+        String sheetName = name.toLowerCase();
+        
+        if (sheetName.contains("upstox")) return BrokerType.UPSTOX;
+        if (sheetName.contains("zerodha") || sheetName.contains("tradewise exits")) return BrokerType.ZERODHA;
+        if (sheetName.contains("icici")) return BrokerType.ICICI_DIRECT;
+        if (sheetName.contains("groww")) return BrokerType.GROWW;
+        if (sheetName.contains("angel")) return BrokerType.ANGEL_ONE;
+        if (sheetName.contains("hdfc")) return BrokerType.HDFC_SECURITIES;
+        return null;
+    }
+    
+    private static BrokerType detectBrokerFromText(String text) {
+        String value = text.toLowerCase();
+        
+        if (value.contains("upstox")) return BrokerType.UPSTOX;
+        if (value.contains("zerodha") || value.contains("view zerodha")) return BrokerType.ZERODHA;
+        if (value.contains("icici direct")) return BrokerType.ICICI_DIRECT;
+        if (value.contains("groww")) return BrokerType.GROWW;
+        if (value.contains("angel one") || value.contains("angel broking")) 
+            return BrokerType.ANGEL_ONE;
+        if (value.contains("hdfc securities")) return BrokerType.HDFC_SECURITIES;
+        return null;
+    }
+    
     /**
      * Analyze a row to see if it contains header information
      */
@@ -153,39 +254,56 @@ public class ExcelHeaderDetector {
         
         for (Cell cell : row) {
             if (cell.getCellType() != CellType.STRING) continue;
-            
-            String header = cell.getStringCellValue().trim();
-            if (header.isEmpty()) continue;
-            
-            int colIdx = cell.getColumnIndex();
-            
-            // Match against known patterns
-            if (BUY_PATTERN.matcher(header).matches()) {
-                headerMap.put("BUY", colIdx);
-            } else if (SELL_PATTERN.matcher(header).matches()) {
-                headerMap.put("SELL", colIdx);
-            } else if (DATE_PATTERN.matcher(header).matches()) {
-                if (!headerMap.containsKey("DATE")) {
-                    headerMap.put("DATE", colIdx);
-                } else if (!headerMap.containsKey("SELL_DATE")) {
-                    headerMap.put("SELL_DATE", colIdx);
-                }
-            } else if (SYMBOL_PATTERN.matcher(header).matches()) {
-                headerMap.put("SYMBOL", colIdx);
-            } else if (DAYS_PATTERN.matcher(header).matches()) {
-                headerMap.put("DAYS", colIdx);
-            } else if (STCG_PATTERN.matcher(header).matches()) {
-                headerMap.put("STCG", colIdx);
-            } else if (SPECULATION_PATTERN.matcher(header).matches()) {
-                headerMap.put("SPECULATION", colIdx);
-            } else if (QUANTITY_PATTERN.matcher(header).matches()) {
-                headerMap.put("QUANTITY", colIdx);
-            }
+            matchHeader(headerMap, cell.getColumnIndex(), cell.getStringCellValue());
+        }
+        
+        return headerMap;
+    }
+    
+    /**
+     * Streaming variant of header row analysis
+     */
+    private static Map<String, Integer> analyzeHeaderRow(StreamingSheetReader.SheetRow row) {
+        Map<String, Integer> headerMap = new HashMap<>();
+        
+        for (int col = Math.max(0, row.getFirstCellNum()); col < row.getLastCellNum(); col++) {
+            if (row.getKind(col) != StreamingSheetReader.CellKind.STRING) continue;
+            matchHeader(headerMap, col, row.getString(col));
         }
         
         return headerMap;
     }
     
+    /**
+     * Match a single header cell against known patterns
+     */
+    private static void matchHeader(Map<String, Integer> headerMap, int colIdx, String text) {
+        String header = text.trim();
+        if (header.isEmpty()) return;
+        
+        if (BUY_PATTERN.matcher(header).matches()) {
+            headerMap.put("BUY", colIdx);
+        } else if (SELL_PATTERN.matcher(header).matches()) {
+            headerMap.put("SELL", colIdx);
+        } else if (DATE_PATTERN.matcher(header).matches()) {
+            if (!headerMap.containsKey("DATE")) {
+                headerMap.put("DATE", colIdx);
+            } else if (!headerMap.containsKey("SELL_DATE")) {
+                headerMap.put("SELL_DATE", colIdx);
+            }
+        } else if (SYMBOL_PATTERN.matcher(header).matches()) {
+            headerMap.put("SYMBOL", colIdx);
+        } else if (DAYS_PATTERN.matcher(header).matches()) {
+            headerMap.put("DAYS", colIdx);
+        } else if (STCG_PATTERN.matcher(header).matches()) {
+            headerMap.put("STCG", colIdx);
+        } else if (SPECULATION_PATTERN.matcher(header).matches()) {
+            headerMap.put("SPECULATION", colIdx);
+        } else if (QUANTITY_PATTERN.matcher(header).matches()) {
+            headerMap.put("QUANTITY", colIdx);
+        }
+    }
+    
     /**
      * Build ColumnMapping from detected headers
      */
@@ -194,7 +312,7 @@ public class ExcelHeaderDetector {
             int sheetIdx,
             int headerRow,
             Map<String, Integer> headerMap,
-            XSSFSheet sheet) {
+            Integer dataEndRow) {
         
         ColumnMapping mapping = new ColumnMapping(broker);
         mapping.setSheetIndex(sheetIdx);
@@ -230,9 +348,7 @@ public class ExcelHeaderDetector {
             mapping.setQuantityColumn(headerMap.get("QUANTITY"));
         }
         
-        // Detect end row (last row with data)
-        int lastRow = sheet.getLastRowNum();
-        mapping.setDataEndRow(lastRow);
+        mapping.setDataEndRow(dataEndRow);
         
         HurdleLogger.info("Built column mapping: " + mapping);
         
@@ -8,6 +8,7 @@ import com.investinghurdle.api.dto.TaxCalculationResponse;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import logging.HurdleLogger;
 import org.apache.poi.ss.usermodel.Cell;
@@ -28,6 +29,15 @@ public class ExcelSummaryExporter {
 
     public void export(File outputFile, TaxCalculationResponse response) throws IOException {
         HurdleLogger.info("Exporting Excel summary to: " + outputFile.getAbsolutePath());
+        try (FileOutputStream fos = new FileOutputStream(outputFile)) {
+            export(fos, response);
+        }
+    }
+
+    /**
+     * Write the summary workbook to a stream, e.g. an in-memory buffer for HTTP responses.
+     */
+    public void export(OutputStream out, TaxCalculationResponse response) throws IOException {
         try (Workbook workbook = new XSSFWorkbook()) {
             CellStyle headerStyle = buildHeaderStyle(workbook);
             CellStyle moneyStyle = buildMoneyStyle(workbook);
@@ -43,9 +53,7 @@ public class ExcelSummaryExporter {
             buildQuarterSheet(workbook, "Speculation Quarterly", response.getSpeculationQuarterlyBreakdown(), false, false, true,
                     headerStyle, moneyStyle, dateStyle, greenStyle, redStyle);
 
-            try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-                workbook.write(fos);
-            }
+            workbook.write(out);
         }
     }
 
@@ -13,33 +13,70 @@ import java.util.List;
  *
  */
 public class FIFOAllocation {
-	private LocalDate sellDate;
+	private long sellEpochDay;
 	private double sellQuantity;
 	private double sellAmount;
-	private List<BuyOrderMatch> matches;
+	// Matches are the range [firstMatch, firstMatch + matchCount) of the log
+	private MatchLog matchLog;
+	private int firstMatch;
+	private int matchCount;
 	private double totalCostOfAcquisition;
 	private double profitOrLoss;
+	private long totalCostPaise;
+	private double unmatchedQuantity;
 	
 	public FIFOAllocation(LocalDate sellDate, double sellQuantity, double sellAmount) {
-		this.sellDate = sellDate;
+		this(TransactionStore.toEpochDay(sellDate), sellQuantity, sellAmount, null);
+	}
+	
+	/**
+	 * Allocation whose matches are appended to a log shared with the other sells of a FIFO run
+	 */
+	FIFOAllocation(long sellEpochDay, double sellQuantity, double sellAmount, MatchLog matchLog) {
+		this.sellEpochDay = sellEpochDay;
 		this.sellQuantity = sellQuantity;
 		this.sellAmount = sellAmount;
-		this.matches = new ArrayList<>();
+		this.matchLog = matchLog;
+		this.firstMatch = matchLog == null ? 0 : matchLog.size();
 		this.totalCostOfAcquisition = 0;
 		this.profitOrLoss = 0;
 	}
 	
 	public void addMatch(BuyOrderMatch match) {
-		matches.add(match);
-		totalCostOfAcquisition += match.getCostOfAcquisition();
+		addMatch(TransactionStore.toEpochDay(match.getBuyDate()), match.getBuyQuantity(), match.getUnitCost(),
+			match.getCostOfAcquisition(), match.getCostOfAcquisitionPaise());
+	}
+	
+	void addMatch(long buyEpochDay, double buyQuantity, double unitCost, double cost, long costPaise) {
+		if (matchLog == null || matchLog.size() != firstMatch + matchCount) {
+			// Not at the end of a shared log any more: continue in a log of our own
+			MatchLog own = new MatchLog(matchCount + 1);
+			for (int i = firstMatch; i < firstMatch + matchCount; i++) {
+				own.add(matchLog.getBuyEpochDay(i), matchLog.getQuantity(i), matchLog.getUnitCost(i),
+					matchLog.getCostPaise(i));
+			}
+			matchLog = own;
+			firstMatch = 0;
+		}
+		matchLog.add(buyEpochDay, buyQuantity, unitCost, costPaise);
+		matchCount++;
+		totalCostOfAcquisition += cost;
+		totalCostPaise += costPaise;
 	}
 	
 	public LocalDate getSellDate() {
-		return sellDate;
+		return TransactionStore.toDate(sellEpochDay);
 	}
 	
 	public void setSellDate(LocalDate sellDate) {
-		this.sellDate = sellDate;
+		this.sellEpochDay = TransactionStore.toEpochDay(sellDate);
+	}
+	
+	/**
+	 * Sell date as epoch day, or TransactionStore.NO_DATE
+	 */
+	public long getSellEpochDay() {
+		return sellEpochDay;
 	}
 	
 	public double getSellQuantity() {
@@ -58,7 +95,16 @@ public class FIFOAllocation {
 		this.sellAmount = sellAmount;
 	}
 	
+	/**
+	 * Matched buy lots, oldest first; built on each call
+	 */
 	public List<BuyOrderMatch> getMatches() {
+		List<BuyOrderMatch> matches = new ArrayList<>(matchCount);
+		LocalDate sellDate = getSellDate();
+		for (int i = firstMatch; i < firstMatch + matchCount; i++) {
+			matches.add(new BuyOrderMatch(TransactionStore.toDate(matchLog.getBuyEpochDay(i)), matchLog.getQuantity(i),
+				matchLog.getUnitCost(i), sellDate, matchLog.getCostPaise(i)));
+		}
 		return matches;
 	}
 	
@@ -75,18 +121,66 @@ public class FIFOAllocation {
 		return profitOrLoss;
 	}
 	
+	/**
+	 * Exact cost of acquisition, summed in paise over the matches
+	 */
+	public long getTotalCostPaise() {
+		return totalCostPaise;
+	}
+	
+	public long getProfitOrLossPaise() {
+		return Paise.of(sellAmount) - totalCostPaise;
+	}
+	
+	/**
+	 * Report cost and profit from the exact paise sums instead of the double ones
+	 */
+	public void useExactTotals() {
+		this.totalCostOfAcquisition = Paise.toRupees(totalCostPaise);
+		this.profitOrLoss = Paise.toRupees(getProfitOrLossPaise());
+	}
+	
 	private void calculateProfitOrLoss() {
 		this.profitOrLoss = sellAmount - totalCostOfAcquisition;
 	}
 	
+	/**
+	 * Sold quantity no open lot was left for
+	 */
+	public double getUnmatchedQuantity() {
+		return unmatchedQuantity;
+	}
+	
+	void setUnmatchedQuantity(double unmatchedQuantity) {
+		this.unmatchedQuantity = unmatchedQuantity;
+	}
+	
 	public int getNumberOfBuysMatched() {
-		return matches.size();
+		return matchCount;
+	}
+	
+	// Match i of getNumberOfBuysMatched(), oldest lot first, without building BuyOrderMatch objects
+	
+	long getMatchBuyEpochDay(int i) {
+		return matchLog.getBuyEpochDay(firstMatch + i);
+	}
+	
+	double getMatchQuantity(int i) {
+		return matchLog.getQuantity(firstMatch + i);
+	}
+	
+	double getMatchCost(int i) {
+		return matchLog.getQuantity(firstMatch + i) * matchLog.getUnitCost(firstMatch + i);
+	}
+	
+	long getMatchCostPaise(int i) {
+		return matchLog.getCostPaise(firstMatch + i);
 	}
 	
 	@Override
 	public String toString() {
-		return "FIFOAllocation [sellDate=" + sellDate + ", sellQuantity=" + sellQuantity + ", sellAmount="
-				+ sellAmount + ", matches=" + matches.size() + ", totalCostOfAcquisition=" + totalCostOfAcquisition
+		return "FIFOAllocation [sellDate=" + getSellDate() + ", sellQuantity=" + sellQuantity + ", sellAmount="
+				+ sellAmount + ", matches=" + matchCount + ", totalCostOfAcquisition=" + totalCostOfAcquisition
 				+ ", profitOrLoss=" + profitOrLoss + "]";
 	}
 }
@@ -5,40 +5,377 @@ package util;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Queue;
 
 import logging.HurdleLogger;
 
 /**
  * Implements FIFO (First-In-First-Out) cost basis calculation for equity trading
- * Tracks buy orders chronologically and matches them against sell orders
+ * Tracks buy orders chronologically and matches them against sell orders.
+ * Open lots and matches live in primitive arrays (LotQueue, MatchLog), so a symbol with
+ * tens of thousands of lots allocates one FIFOAllocation per sell and little else; matchSells
+ * and the buffered replay write into a reusable SellMatchBuffer and allocate nothing per sell.
+ * FIFO is the default; LIFO, average cost and specific-lot matching use the same lots
+ * through another CostBasisStrategy. Splits and bonus issues rescale the open lots in O(1)
+ * through LotQueue.adjust, so their cost does not grow with the number of lots.
  * @author ajay
  *
  */
 public class FIFOCalculator {
-	private Queue<BuyOrder> pendingBuys;
+	private LotQueue pendingBuys;
+	private MatchLog matches;
 	private List<FIFOAllocation> completedAllocations;
+	private double unmatchedSellQuantity;
 	private String symbol;
+	private final ArithmeticMode arithmeticMode;
+	private final CostBasisMethod costBasisMethod;
+	private CostBasisStrategy strategy;
+	private CorporateActions.Actions corporateActions;
 	
 	public FIFOCalculator(String symbol) {
+		this(symbol, ArithmeticMode.DOUBLE);
+	}
+	
+	/**
+	 * In PAISE mode allocation costs and profits come from exact paise sums
+	 */
+	public FIFOCalculator(String symbol, ArithmeticMode arithmeticMode) {
+		this(symbol, arithmeticMode, CostBasisMethod.FIFO);
+	}
+	
+	/**
+	 * Match sells with the given cost basis method instead of FIFO
+	 *
+	 * @throws IllegalStateException for BROKER, which does not match lots
+	 */
+	public FIFOCalculator(String symbol, ArithmeticMode arithmeticMode, CostBasisMethod costBasisMethod) {
 		this.symbol = symbol;
-		this.pendingBuys = new LinkedList<>();
+		this.arithmeticMode = arithmeticMode;
+		this.costBasisMethod = costBasisMethod;
+		this.strategy = costBasisMethod.newStrategy();
+		this.pendingBuys = new LotQueue();
+		this.matches = new MatchLog(16);
 		this.completedAllocations = new ArrayList<>();
 	}
 	
+	/**
+	 * Replay one symbol's rows from a transaction store through FIFO matching.
+	 * Each row contributes a buy leg on its buy date and a sell leg on its sell date;
+	 * legs are replayed in date order with buys first on the same day. Rows without
+	 * both dates or a quantity are skipped.
+	 */
+	public static FIFOCalculator replay(TransactionStore transactions, int symbolId) {
+		return replay(transactions, symbolId, ArithmeticMode.DOUBLE);
+	}
+	
+	public static FIFOCalculator replay(TransactionStore transactions, int symbolId, ArithmeticMode arithmeticMode) {
+		int[] rows = new int[transactions.size()];
+		int count = 0;
+		for (int i = 0; i < transactions.size(); i++) {
+			if (transactions.getSymbolId(i) == symbolId) {
+				rows[count++] = i;
+			}
+		}
+		return replay(transactions, symbolId, rows, 0, count, arithmeticMode);
+	}
+	
+	/**
+	 * Replay the given rows of one symbol, rows[from, to), as replay(TransactionStore, int) does
+	 */
+	public static FIFOCalculator replay(TransactionStore transactions, int symbolId, int[] rows, int from, int to,
+			ArithmeticMode arithmeticMode) {
+		FIFOCalculator calculator = new FIFOCalculator(transactions.symbolForId(symbolId), arithmeticMode);
+		calculator.replay(transactions, rows, from, to, Long.MIN_VALUE + 1, Long.MAX_VALUE);
+		return calculator;
+	}
+	
+	/**
+	 * Replay the buy and sell legs of rows[from, to) dated firstDay..lastDay (epoch days) on top
+	 * of the lots already open. A leg outside the window is skipped on its own: a buy before
+	 * firstDay is taken to be among the open lots already, as openAt makes sure, and a sell after lastDay belongs to
+	 * a later run. Buys left after the last sell in the window stay open. Each sell names the
+	 * lot of its own row's buy leg, for specific-lot matching; a leg before the window names
+	 * the open lot bought that day with the row's quantity and amount.
+	 * Corporate actions set on the calculator with an ex-date in the window are applied in
+	 * date order, before the legs of their ex-date. A row's quantity is taken as of its sell
+	 * date, as P&L statements report it, so its buy leg is added as that quantity divided by
+	 * the actions between the two dates.
+	 */
+	public void replay(TransactionStore transactions, int[] rows, int from, int to, long firstDay, long lastDay) {
+		replay(transactions, rows, from, to, firstDay, lastDay, null);
+	}
+	
+	/**
+	 * Replay as above, matching the sells through matchSells into the buffer, which is
+	 * overwritten, instead of keeping an allocation per sell
+	 */
+	public void replay(TransactionStore transactions, int[] rows, int from, int to, long firstDay, long lastDay,
+			SellMatchBuffer out) {
+		// Sort keys pack the epoch day above the position in rows, so sorting needs no boxing
+		long[] buys = new long[to - from];
+		long[] sells = new long[to - from];
+		int[] lotIds = new int[to - from];
+		Arrays.fill(lotIds, -1);
+		int buyCount = 0;
+		int sellCount = 0;
+		for (int r = from; r < to; r++) {
+			int i = rows[r];
+			long buyDay = transactions.getBuyEpochDay(i);
+			long sellDay = transactions.getSellEpochDay(i);
+			if (transactions.getQuantity(i) <= 0 || buyDay == TransactionStore.NO_DATE
+					|| sellDay == TransactionStore.NO_DATE) {
+				continue;
+			}
+			if (buyDay >= firstDay && buyDay <= lastDay) {
+				buys[buyCount++] = (buyDay << 32) | (r - from);
+			}
+			if (sellDay >= firstDay && sellDay <= lastDay) {
+				sells[sellCount++] = (sellDay << 32) | (r - from);
+			}
+		}
+		Arrays.sort(buys, 0, buyCount);
+		Arrays.sort(sells, 0, sellCount);
+		
+		// The sells in date order as the parallel arrays matchSells takes
+		long[] sellDays = new long[sellCount];
+		double[] sellQuantities = new double[sellCount];
+		double[] sellAmounts = new double[sellCount];
+		int[] sellLots = new int[sellCount];
+		for (int s = 0; s < sellCount; s++) {
+			int row = rows[from + (int) sells[s]];
+			sellDays[s] = sells[s] >> 32;
+			sellQuantities[s] = transactions.getQuantity(row);
+			sellAmounts[s] = transactions.getSellAmount(row);
+		}
+		if (out != null) {
+			out.reset(sellCount);
+		}
+		
+		// Actions before the window are already in the lots it opens with
+		int nextAction = corporateActions == null ? 0 : corporateActions.countThrough(firstDay - 1);
+		int nextBuy = 0;
+		int s = 0;
+		while (s < sellCount) {
+			while (nextBuy < buyCount && (buys[nextBuy] >> 32) <= sellDays[s]) {
+				int position = (int) buys[nextBuy];
+				nextAction = applyCorporateActions(nextAction, buys[nextBuy++] >> 32);
+				lotIds[position] = addReplayedBuy(transactions, rows[from + position]);
+			}
+			nextAction = applyCorporateActions(nextAction, sellDays[s]);
+			// Sells with no buy or action before them are matched in one call
+			int end = s + 1;
+			while (end < sellCount && (nextBuy == buyCount || (buys[nextBuy] >> 32) > sellDays[end])
+					&& (corporateActions == null || nextAction == corporateActions.size()
+						|| corporateActions.getExEpochDay(nextAction) > sellDays[end])) {
+				end++;
+			}
+			for (int k = s; k < end; k++) {
+				int position = (int) sells[k];
+				int row = rows[from + position];
+				sellLots[k] = lotIds[position];
+				if (sellLots[k] < 0 && strategy.usesNamedLots()) {
+					// Buy leg before the window: its lot came from a checkpoint
+					sellLots[k] = pendingBuys.findOpenLot(transactions.getBuyEpochDay(row),
+						transactions.getQuantity(row), transactions.getBuyAmount(row));
+				}
+			}
+			if (out != null) {
+				appendSells(sellDays, sellQuantities, sellAmounts, sellLots, s, end, out);
+			} else {
+				for (int k = s; k < end; k++) {
+					calculateCostBasis(sellDays[k], sellQuantities[k], sellAmounts[k], sellLots[k]);
+				}
+			}
+			s = end;
+		}
+		// Buys after the last sell stay open
+		while (nextBuy < buyCount) {
+			nextAction = applyCorporateActions(nextAction, buys[nextBuy] >> 32);
+			addReplayedBuy(transactions, rows[from + (int) buys[nextBuy++]]);
+		}
+		applyCorporateActions(nextAction, lastDay);
+	}
+	
+	/**
+	 * Add a row's buy leg as a lot. The row's quantity is as of its sell date, so it is
+	 * divided by the corporate actions between the two dates.
+	 */
+	private int addReplayedBuy(TransactionStore transactions, int row) {
+		long buyDay = transactions.getBuyEpochDay(row);
+		double quantity = transactions.getQuantity(row);
+		if (corporateActions != null) {
+			quantity /= corporateActions.factorBetween(buyDay, transactions.getSellEpochDay(row));
+		}
+		return addBuyOrder(buyDay, quantity, transactions.getBuyAmount(row));
+	}
+	
+	/**
+	 * Apply the set corporate actions from index next with an ex-date on or before the day
+	 *
+	 * @return index of the first action not applied
+	 */
+	private int applyCorporateActions(int next, long epochDay) {
+		if (corporateActions == null) {
+			return next;
+		}
+		while (next < corporateActions.size() && corporateActions.getExEpochDay(next) <= epochDay) {
+			applyCorporateAction(corporateActions.getRatio(next++));
+		}
+		return next;
+	}
+	
+	/**
+	 * Use this symbol's actions from the given set when replaying; null for none
+	 */
+	public void setCorporateActions(CorporateActions actions) {
+		this.corporateActions = actions == null ? null : actions.forSymbol(symbol);
+	}
+	
+	/**
+	 * Apply a split or bonus issue to the open lots now: quantities are multiplied by the
+	 * ratio (shares after per share before) and each lot keeps its buy day and cost. O(1);
+	 * lots are rescaled as they are next matched or read.
+	 *
+	 * @throws IllegalArgumentException if the ratio is not positive
+	 */
+	public void applyCorporateAction(double ratio) {
+		pendingBuys.adjust(ratio);
+		strategy.adjust(ratio);
+		HurdleLogger.debug("Symbol: " + symbol + " - Adjusted open lots by corporate action ratio " + ratio);
+	}
+	
+	/**
+	 * Open lots as they are now, costed by the cost basis method, for callers in this package
+	 * that only read them
+	 */
+	LotQueue openLots() {
+		strategy.settle(pendingBuys);
+		return pendingBuys;
+	}
+	
+	/**
+	 * Append open lots carried over from an earlier run, e.g. a checkpoint, after any already open
+	 */
+	public void restoreOpenLots(LotQueue lots) {
+		for (int i = 0; i < lots.size(); i++) {
+			restoreOpenLot(lots, i);
+		}
+	}
+	
+	private void restoreOpenLot(LotQueue lots, int i) {
+		pendingBuys.addCopy(lots, i);
+		double remaining = lots.getRemainingQuantity(i);
+		strategy.lotAdded(remaining, remaining * lots.getTotalAmount(i) / lots.getQuantity(i),
+			lots.getRemainingUnits(i), lots.getRemainingPaise(i));
+	}
+	
+	/**
+	 * Open an empty book at a checkpoint's boundary day for this symbol's rows[from, to), which
+	 * need not come from the statement that wrote the checkpoint. A per-year P&L statement never
+	 * lists lots sold in a later year, so the book gets the checkpoint's lots plus every buy leg
+	 * bought before the boundary and sold on or after it that the checkpoint does not hold, in
+	 * buy date order. A leg is held by unclaimed checkpoint quantity bought the same day or,
+	 * failing that, on any day, since FIFO may have sold part of its lot for another row. A
+	 * replay from the boundary then skips these legs as open already.
+	 *
+	 * @param lots the checkpoint's lots of this symbol, or null for none
+	 */
+	public void openAt(long boundaryEpochDay, LotQueue lots, TransactionStore transactions, int[] rows, int from,
+			int to) {
+		long[] legs = new long[to - from];
+		int legCount = 0;
+		for (int r = from; r < to; r++) {
+			int i = rows[r];
+			long buyDay = transactions.getBuyEpochDay(i);
+			long sellDay = transactions.getSellEpochDay(i);
+			if (transactions.getQuantity(i) > 0 && buyDay != TransactionStore.NO_DATE && buyDay < boundaryEpochDay
+					&& sellDay != TransactionStore.NO_DATE && sellDay >= boundaryEpochDay) {
+				legs[legCount++] = (buyDay << 32) | (r - from);
+			}
+		}
+		Arrays.sort(legs, 0, legCount);
+		
+		// Leg quantities as of the boundary, like the checkpoint's lots
+		double[] quantities = new double[legCount];
+		long[] missing = new long[legCount];
+		for (int k = 0; k < legCount; k++) {
+			int row = rows[from + (int) legs[k]];
+			quantities[k] = transactions.getQuantity(row);
+			if (corporateActions != null) {
+				quantities[k] /= corporateActions.factorBetween(boundaryEpochDay - 1, transactions.getSellEpochDay(row));
+			}
+			missing[k] = Paise.quantityUnits(quantities[k]);
+		}
+		int lotCount = lots == null ? 0 : lots.size();
+		long[] unclaimed = new long[lotCount];
+		for (int i = 0; i < lotCount; i++) {
+			unclaimed[i] = lots.getRemainingUnits(i);
+		}
+		int lot = 0;
+		for (int k = 0; k < legCount; k++) {
+			long buyDay = legs[k] >> 32;
+			while (lot < lotCount && lots.getBuyEpochDay(lot) < buyDay) {
+				lot++;
+			}
+			for (int i = lot; i < lotCount && lots.getBuyEpochDay(i) == buyDay && missing[k] > 0; i++) {
+				long claimed = Math.min(missing[k], unclaimed[i]);
+				missing[k] -= claimed;
+				unclaimed[i] -= claimed;
+			}
+		}
+		lot = 0;
+		for (int k = 0; k < legCount; k++) {
+			while (missing[k] > 0 && lot < lotCount) {
+				long claimed = Math.min(missing[k], unclaimed[lot]);
+				missing[k] -= claimed;
+				unclaimed[lot] -= claimed;
+				if (unclaimed[lot] == 0) {
+					lot++;
+				}
+			}
+		}
+		
+		int next = 0;
+		for (int k = 0; k <= legCount; k++) {
+			long buyDay = k < legCount ? legs[k] >> 32 : Long.MAX_VALUE;
+			while (next < lotCount && lots.getBuyEpochDay(next) <= buyDay) {
+				restoreOpenLot(lots, next++);
+			}
+			if (k < legCount && missing[k] > 0) {
+				long units = Paise.quantityUnits(quantities[k]);
+				double share = missing[k] == units ? 1 : (double) missing[k] / units;
+				addBuyOrder(buyDay, quantities[k] * share,
+					transactions.getBuyAmount(rows[from + (int) legs[k]]) * share);
+			}
+		}
+	}
+	
 	/**
 	 * Add a buy order to the pending queue
 	 */
 	public void addBuyOrder(LocalDate buyDate, double quantity, double totalAmount) {
+		addBuyOrder(TransactionStore.toEpochDay(buyDate), quantity, totalAmount);
+	}
+	
+	/**
+	 * Add a buy order dated by epoch day
+	 *
+	 * @return id of the new lot, for a sell that names it; -1 if the order was skipped
+	 */
+	public int addBuyOrder(long buyEpochDay, double quantity, double totalAmount) {
 		if (quantity <= 0) {
 			HurdleLogger.warn("Skipping buy order with invalid quantity: " + quantity);
-			return;
+			return -1;
+		}
+		int lotId = pendingBuys.add(buyEpochDay, quantity, totalAmount);
+		strategy.lotAdded(quantity, totalAmount, Paise.quantityUnits(quantity), Paise.of(totalAmount));
+		if (HurdleLogger.isDebugEnabled()) {
+			HurdleLogger.debug("Added buy order: " + new BuyOrder(TransactionStore.toDate(buyEpochDay), quantity,
+				totalAmount));
 		}
-		BuyOrder order = new BuyOrder(buyDate, quantity, totalAmount);
-		pendingBuys.offer(order);
-		HurdleLogger.debug("Added buy order: " + order);
+		return lotId;
 	}
 	
 	/**
@@ -46,81 +383,155 @@ public class FIFOCalculator {
 	 * Matches sell quantity against pending buy orders in chronological order
 	 */
 	public FIFOAllocation calculateCostBasis(LocalDate sellDate, double sellQuantity, double sellAmount) {
+		return calculateCostBasis(TransactionStore.toEpochDay(sellDate), sellQuantity, sellAmount);
+	}
+	
+	/**
+	 * Calculate cost basis for a sell order dated by epoch day
+	 */
+	public FIFOAllocation calculateCostBasis(long sellEpochDay, double sellQuantity, double sellAmount) {
+		return calculateCostBasis(sellEpochDay, sellQuantity, sellAmount, -1);
+	}
+	
+	/**
+	 * Calculate cost basis for a sell order that names the lot it sells, as returned by
+	 * addBuyOrder; only specific-lot matching uses the lot, -1 names none
+	 */
+	public FIFOAllocation calculateCostBasis(long sellEpochDay, double sellQuantity, double sellAmount, int lotId) {
 		if (sellQuantity <= 0) {
 			HurdleLogger.warn("Skipping sell order with invalid quantity: " + sellQuantity);
-			return new FIFOAllocation(sellDate, sellQuantity, sellAmount);
+			return new FIFOAllocation(sellEpochDay, sellQuantity, sellAmount, null);
 		}
 		
-		FIFOAllocation allocation = new FIFOAllocation(sellDate, sellQuantity, sellAmount);
+		FIFOAllocation allocation = new FIFOAllocation(sellEpochDay, sellQuantity, sellAmount, matches);
 		double remainingSellQty = sellQuantity;
 		
 		while (remainingSellQty > 0 && !pendingBuys.isEmpty()) {
-			BuyOrder currentBuy = pendingBuys.peek();
-			
-			if (currentBuy.getRemainingQuantity() <= 0) {
-				pendingBuys.poll();
-				continue;
-			}
-			
-			// Allocate quantity from current buy order
-			double allocatedQty = currentBuy.allocateQuantity(remainingSellQty);
-			BuyOrderMatch match = new BuyOrderMatch(
-				currentBuy.getBuyDate(),
-				allocatedQty,
-				currentBuy.getUnitCost(),
-				sellDate
-			);
-			
-			allocation.addMatch(match);
+			// Allocate quantity from the lot the method picks; the queue drops it once fully consumed
+			double allocatedQty = strategy.take(pendingBuys, remainingSellQty, lotId);
+			double unitCost = strategy.takenUnitCost(pendingBuys);
+			allocation.addMatch(pendingBuys.getTakenBuyEpochDay(), allocatedQty, unitCost, allocatedQty * unitCost,
+				strategy.takenPaise(pendingBuys));
 			remainingSellQty -= allocatedQty;
-			
-			// Remove buy order if fully consumed
-			if (currentBuy.getRemainingQuantity() <= 0) {
-				pendingBuys.poll();
-			}
 		}
 		
 		if (remainingSellQty > 0) {
-			HurdleLogger.warn("Symbol: " + symbol + " - Unable to match all sell quantity. " +
-				"Unmatched qty: " + remainingSellQty + " out of " + sellQuantity);
+			allocation.setUnmatchedQuantity(remainingSellQty);
+			unmatchedSellQuantity += remainingSellQty;
+			if (HurdleLogger.isDebugEnabled()) {
+				HurdleLogger.debug("Symbol: " + symbol + " - Unable to match all sell quantity. " +
+					"Unmatched qty: " + remainingSellQty + " out of " + sellQuantity);
+			}
 		}
 		
-		allocation.setTotalCostOfAcquisition(allocation.getTotalCostOfAcquisition());
+		if (arithmeticMode == ArithmeticMode.PAISE) {
+			allocation.useExactTotals();
+		} else {
+			allocation.setTotalCostOfAcquisition(allocation.getTotalCostOfAcquisition());
+		}
 		completedAllocations.add(allocation);
 		
 		return allocation;
 	}
 	
 	/**
-	 * Get all pending buy orders
+	 * Match sells[from, to), given as parallel arrays in date order, against the open lots
+	 * and write the results into the buffer, overwriting it. Unlike calculateCostBasis this
+	 * keeps no allocations and logs nothing; unmatched quantity is still added to
+	 * getUnmatchedSellQuantity(). Buys dated after a sell should be added between calls.
+	 *
+	 * @return number of matched lots written
+	 */
+	public int matchSells(long[] sellEpochDays, double[] quantities, double[] amounts, int from, int to,
+			SellMatchBuffer out) {
+		return matchSells(sellEpochDays, quantities, amounts, null, from, to, out);
+	}
+	
+	/**
+	 * matchSells with the lot each sell names, as returned by addBuyOrder (-1 for none); only
+	 * specific-lot matching uses them
+	 */
+	public int matchSells(long[] sellEpochDays, double[] quantities, double[] amounts, int[] lotIds, int from,
+			int to, SellMatchBuffer out) {
+		out.reset(to - from);
+		appendSells(sellEpochDays, quantities, amounts, lotIds, from, to, out);
+		return out.getMatchCount();
+	}
+	
+	/**
+	 * Match sells[from, to) into the buffer after the sells already in it
+	 */
+	private void appendSells(long[] sellEpochDays, double[] quantities, double[] amounts, int[] lotIds, int from,
+			int to, SellMatchBuffer out) {
+		for (int i = from; i < to; i++) {
+			int lotId = lotIds == null ? -1 : lotIds[i];
+			int sell = out.beginSell(sellEpochDays[i], quantities[i], amounts[i]);
+			double remainingSellQty = quantities[i];
+			while (remainingSellQty > 0 && !pendingBuys.isEmpty()) {
+				double allocatedQty = strategy.take(pendingBuys, remainingSellQty, lotId);
+				out.addMatch(pendingBuys.getTakenBuyEpochDay(), allocatedQty,
+					allocatedQty * strategy.takenUnitCost(pendingBuys), strategy.takenPaise(pendingBuys));
+				remainingSellQty -= allocatedQty;
+			}
+			if (remainingSellQty > 0) {
+				unmatchedSellQuantity += remainingSellQty;
+				out.setUnmatchedQuantity(sell, remainingSellQty);
+			}
+			if (arithmeticMode == ArithmeticMode.PAISE) {
+				out.useExactCost(sell);
+			}
+		}
+	}
+	
+	/**
+	 * Get all pending buy orders, as copies of the open lots
 	 */
 	public List<BuyOrder> getPendingBuyOrders() {
-		return new ArrayList<>(pendingBuys);
+		strategy.settle(pendingBuys);
+		List<BuyOrder> orders = new ArrayList<>(pendingBuys.size());
+		for (int i = 0; i < pendingBuys.size(); i++) {
+			orders.add(pendingBuys.toBuyOrder(i));
+		}
+		return orders;
 	}
 	
 	/**
-	 * Get all completed allocations
+	 * Get all completed allocations, as a read-only view that later sells add to
 	 */
 	public List<FIFOAllocation> getCompletedAllocations() {
-		return new ArrayList<>(completedAllocations);
+		return Collections.unmodifiableList(completedAllocations);
 	}
 	
 	/**
-	 * Get total cost of pending buys
+	 * Sold quantity that found no open lot, over all sells so far
+	 */
+	public double getUnmatchedSellQuantity() {
+		return unmatchedSellQuantity;
+	}
+	
+	/**
+	 * Get total cost of pending buys, kept as a running total
 	 */
 	public double getTotalPendingBuysCost() {
-		return pendingBuys.stream()
-			.mapToDouble(buy -> buy.getRemainingQuantity() * buy.getUnitCost())
-			.sum();
+		if (arithmeticMode == ArithmeticMode.PAISE) {
+			return Paise.toRupees(strategy.pendingPaise(pendingBuys));
+		}
+		return strategy.pendingCost(pendingBuys);
 	}
 	
 	/**
-	 * Get total pending buy quantity
+	 * Get total pending buy quantity, kept as a running total
 	 */
 	public double getTotalPendingBuysQuantity() {
-		return pendingBuys.stream()
-			.mapToDouble(BuyOrder::getRemainingQuantity)
-			.sum();
+		return pendingBuys.getPendingQuantity();
+	}
+	
+	public String getSymbol() {
+		return symbol;
+	}
+	
+	public CostBasisMethod getCostBasisMethod() {
+		return costBasisMethod;
 	}
 	
 	/**
@@ -135,23 +546,38 @@ public class FIFOCalculator {
 	 */
 	public void reset() {
 		pendingBuys.clear();
+		strategy = costBasisMethod.newStrategy();
+		// Earlier allocations keep the old log
+		matches = new MatchLog(16);
 		completedAllocations.clear();
-		HurdleLogger.debug("FIFO Calculator reset for symbol: " + symbol);
+		unmatchedSellQuantity = 0;
+		HurdleLogger.debug(costBasisMethod + " Calculator reset for symbol: " + symbol);
 	}
 	
 	/**
 	 * Get summary statistics
 	 */
 	public String getSummary() {
-		double totalBuyCost = completedAllocations.stream()
-			.mapToDouble(FIFOAllocation::getTotalCostOfAcquisition)
-			.sum();
-		double totalSellAmount = completedAllocations.stream()
-			.mapToDouble(FIFOAllocation::getSellAmount)
-			.sum();
-		double totalProfit = totalSellAmount - totalBuyCost;
+		double totalBuyCost;
+		double totalSellAmount;
+		double totalProfit;
+		if (arithmeticMode == ArithmeticMode.PAISE) {
+			long costPaise = completedAllocations.stream().mapToLong(FIFOAllocation::getTotalCostPaise).sum();
+			long sellPaise = completedAllocations.stream().mapToLong(a -> Paise.of(a.getSellAmount())).sum();
+			totalBuyCost = Paise.toRupees(costPaise);
+			totalSellAmount = Paise.toRupees(sellPaise);
+			totalProfit = Paise.toRupees(sellPaise - costPaise);
+		} else {
+			totalBuyCost = completedAllocations.stream()
+				.mapToDouble(FIFOAllocation::getTotalCostOfAcquisition)
+				.sum();
+			totalSellAmount = completedAllocations.stream()
+				.mapToDouble(FIFOAllocation::getSellAmount)
+				.sum();
+			totalProfit = totalSellAmount - totalBuyCost;
+		}
 		
-		return "FIFO Summary [Symbol: " + symbol + "]" +
+		return costBasisMethod + " Summary [Symbol: " + symbol + "]" +
 			"\n  Total Allocations: " + completedAllocations.size() +
 			"\n  Total Buy Cost: " + totalBuyCost +
 			"\n  Total Sell Amount: " + totalSellAmount +
@@ -0,0 +1,17 @@
+package util;
+
+/**
+ * First in, first out: the oldest open lot is sold first
+ */
+final class FifoStrategy implements CostBasisStrategy {
+
+    static final FifoStrategy INSTANCE = new FifoStrategy();
+
+    private FifoStrategy() {
+    }
+
+    @Override
+    public double take(LotQueue lots, double quantity, int lotId) {
+        return lots.take(quantity);
+    }
+}
@@ -139,6 +139,56 @@ public class JSONReportExporter implements ReportExporter {
 		}
 	}
 	
+	@Override
+	public void exportDetailedTransactions(File outputFile, TransactionStore transactions) throws IOException {
+		HurdleLogger.info("Exporting detailed transactions to: " + outputFile.getAbsolutePath());
+		
+		try (FileWriter writer = new FileWriter(outputFile)) {
+			StringBuilder json = new StringBuilder();
+			json.append("{\n");
+			json.append("  \"reportMetadata\": {\n");
+			json.append("    \"reportType\": \"Detailed Transactions\",\n");
+			json.append("    \"generatedDate\": \"").append(DATE_TIME_FORMATTER.format(LocalDateTime.now())).append("\",\n");
+			json.append("    \"totalRecords\": ").append(transactions.size()).append("\n");
+			json.append("  },\n");
+			
+			json.append("  \"transactions\": [\n");
+			
+			for (int i = 0; i < transactions.size(); i++) {
+				int category = transactions.getCategory(i);
+				double profit = transactions.getProfit(i);
+				json.append("    {\n");
+				json.append("      \"buyDate\": \"").append(formatDate(transactions.getBuyDate(i))).append("\",\n");
+				json.append("      \"sellDate\": \"").append(formatDate(transactions.getSellDate(i))).append("\",\n");
+				json.append("      \"symbol\": \"").append(escapeJson(transactions.getSymbol(i))).append("\",\n");
+				json.append("      \"quantity\": ").append(transactions.getQuantity(i)).append(",\n");
+				json.append("      \"buyAmount\": ").append(transactions.getBuyAmount(i)).append(",\n");
+				json.append("      \"sellAmount\": ").append(transactions.getSellAmount(i)).append(",\n");
+				json.append("      \"holdingDays\": ").append(transactions.getDaysHeld(i)).append(",\n");
+				json.append("      \"speculation\": ").append(category == TransactionStore.INTRADAY ? profit : 0.0).append(",\n");
+				json.append("      \"stcg\": ").append(category == TransactionStore.STCG ? profit : 0.0).append(",\n");
+				json.append("      \"ltcg\": ").append(category == TransactionStore.LTCG ? profit : 0.0).append(",\n");
+				json.append("      \"transactionType\": \"").append(TransactionStore.categoryName(category)).append("\"\n");
+				json.append("    }");
+				
+				if (i < transactions.size() - 1) {
+					json.append(",");
+				}
+				json.append("\n");
+			}
+			
+			json.append("  ]\n");
+			json.append("}\n");
+			
+			writer.write(json.toString());
+			writer.flush();
+			HurdleLogger.info("Detailed transactions exported successfully: " + transactions.size() + " records");
+		} catch (IOException e) {
+			HurdleLogger.error("Failed to export detailed transactions: " + e.getMessage(), e);
+			throw e;
+		}
+	}
+	
 	@Override
 	public void exportQuarterlyReport(File outputFile, QuarterlyBreakdown breakdown) throws IOException {
 		HurdleLogger.info("Exporting quarterly report to: " + outputFile.getAbsolutePath());
@@ -0,0 +1,17 @@
+package util;
+
+/**
+ * Last in, first out: the newest open lot is sold first
+ */
+final class LifoStrategy implements CostBasisStrategy {
+
+    static final LifoStrategy INSTANCE = new LifoStrategy();
+
+    private LifoStrategy() {
+    }
+
+    @Override
+    public double take(LotQueue lots, double quantity, int lotId) {
+        return lots.takeNewest(quantity);
+    }
+}
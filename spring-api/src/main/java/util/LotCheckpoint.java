@@ -0,0 +1,136 @@
+package util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Open lots per symbol as of the start of a day, usually the first day of a financial year,
+ * so the next year's FIFO run can start from them instead of replaying every earlier trade.
+ * The binary form is a header followed by each symbol and its lots as fixed-width fields:
+ * <pre>
+ * int magic "HLOT", short version, long boundary epoch day, int symbol count,
+ * per symbol: UTF name, int lot count,
+ * per lot: long buy day, double quantity, double amount, double remaining quantity,
+ *          long remaining quantity units, long remaining paise
+ * </pre>
+ */
+public final class LotCheckpoint {
+
+    private static final int MAGIC = 0x484C4F54;
+    private static final short VERSION = 1;
+
+    private final long boundaryEpochDay;
+    private final Map<String, LotQueue> lots;
+
+    /**
+     * @param boundaryEpochDay first day not covered: the lots are those open at its start
+     */
+    public LotCheckpoint(long boundaryEpochDay) {
+        this.boundaryEpochDay = boundaryEpochDay;
+        this.lots = new LinkedHashMap<>();
+    }
+
+    public long getBoundaryEpochDay() {
+        return boundaryEpochDay;
+    }
+
+    /**
+     * Record a copy of a symbol's open lots; symbols without open lots are left out
+     */
+    public void put(String symbol, LotQueue open) {
+        if (open.isEmpty()) {
+            lots.remove(symbol);
+            return;
+        }
+        LotQueue copy = new LotQueue(open.size());
+        for (int i = 0; i < open.size(); i++) {
+            copy.addCopy(open, i);
+        }
+        lots.put(symbol, copy);
+    }
+
+    /**
+     * Open lots of a symbol, or null if it had none
+     */
+    public LotQueue get(String symbol) {
+        return lots.get(symbol);
+    }
+
+    /**
+     * Open lots by symbol, in the order they were put
+     */
+    public Map<String, LotQueue> getLots() {
+        return Collections.unmodifiableMap(lots);
+    }
+
+    public int getLotCount() {
+        int count = 0;
+        for (LotQueue queue : lots.values()) {
+            count += queue.size();
+        }
+        return count;
+    }
+
+    /**
+     * Write the binary form; the stream is not closed
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeLong(boundaryEpochDay);
+        data.writeInt(lots.size());
+        for (Map.Entry<String, LotQueue> entry : lots.entrySet()) {
+            LotQueue queue = entry.getValue();
+            data.writeUTF(entry.getKey());
+            data.writeInt(queue.size());
+            for (int i = 0; i < queue.size(); i++) {
+                data.writeLong(queue.getBuyEpochDay(i));
+                data.writeDouble(queue.getQuantity(i));
+                data.writeDouble(queue.getTotalAmount(i));
+                data.writeDouble(queue.getRemainingQuantity(i));
+                data.writeLong(queue.getRemainingUnits(i));
+                data.writeLong(queue.getRemainingPaise(i));
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Read the binary form written by write()
+     *
+     * @throws IOException if the stream is not a checkpoint of a known version, or ends early
+     */
+    public static LotCheckpoint read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a lot checkpoint");
+        }
+        short version = data.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported lot checkpoint version " + version);
+        }
+        LotCheckpoint checkpoint = new LotCheckpoint(data.readLong());
+        int symbols = data.readInt();
+        for (int s = 0; s < symbols; s++) {
+            String symbol = data.readUTF();
+            int count = data.readInt();
+            if (count < 0) {
+                throw new IOException("Corrupt lot checkpoint: negative lot count for " + symbol);
+            }
+            LotQueue queue = new LotQueue(Math.min(count, 1 << 16));
+            for (int i = 0; i < count; i++) {
+                queue.add(data.readLong(), data.readDouble(), data.readDouble(), data.readDouble(),
+                    data.readLong(), data.readLong());
+            }
+            checkpoint.lots.put(symbol, queue);
+        }
+        return checkpoint;
+    }
+}
@@ -0,0 +1,504 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Open buy lots of one symbol in the order they were added, held in growable parallel
+ * primitive arrays with head and tail indexes instead of one object per lot. Lots can be
+ * taken from either end or by the id add() returned; a lot used up in the middle is left
+ * as a hole that the ends skip once they reach it, so every take is O(1) amortized.
+ * Pending quantity and cost are kept as running totals, so reading them costs the same
+ * however many lots are open. In exact mode each lot also carries its remaining quantity
+ * units and paise; takeFrom charges each take its share of the lot's paise by quantity
+ * units, the take that uses the lot up getting the remainder.
+ * A split or bonus issue is O(1): adjust() records a new cumulative factor, and each lot,
+ * stamped with the factor it was last stored at, is rescaled only when it is next read.
+ */
+public final class LotQueue {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] buyEpochDays;
+    private double[] quantities;
+    private double[] totalAmounts;
+    private double[] unitCosts;
+    private double[] remainingQuantities;
+    private long[] remainingUnits;
+    private long[] remainingPaise;
+    private int[] lotIds;
+    /** Index into factors of the adjustment each lot's fields are stored at */
+    private int[] lotEpochs;
+    private int head;
+    private int tail;
+    private int nextId;
+    /** Used-up lots between head and tail */
+    private int holes;
+
+    /** Cumulative quantity factor of each adjustment since the queue was last empty */
+    private double[] factors = {1};
+    private int epoch;
+
+    private double pendingQuantity;
+    private double pendingCost;
+    private long pendingPaise;
+
+    /** Lot and paise cost of the quantity taken by the last take */
+    private long takenBuyEpochDay;
+    private double takenUnitCost;
+    private long takenPaise;
+
+    public LotQueue() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public LotQueue(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        buyEpochDays = new long[capacity];
+        quantities = new double[capacity];
+        totalAmounts = new double[capacity];
+        unitCosts = new double[capacity];
+        remainingQuantities = new double[capacity];
+        remainingUnits = new long[capacity];
+        remainingPaise = new long[capacity];
+        lotIds = new int[capacity];
+        lotEpochs = new int[capacity];
+    }
+
+    /**
+     * Append a lot; quantity must be positive
+     *
+     * @return id of the lot for takeLot(), increasing with each add
+     */
+    public int add(long buyEpochDay, double quantity, double totalAmount) {
+        return add(buyEpochDay, quantity, totalAmount, quantity, Paise.quantityUnits(quantity), Paise.of(totalAmount));
+    }
+
+    /**
+     * Append a lot that was partly used elsewhere, e.g. one restored from a checkpoint
+     */
+    public int add(long buyEpochDay, double quantity, double totalAmount, double remainingQuantity,
+                   long remainingUnits, long remainingPaise) {
+        if (tail == buyEpochDays.length) {
+            makeRoom();
+        }
+        double unitCost = totalAmount / quantity;
+        buyEpochDays[tail] = buyEpochDay;
+        quantities[tail] = quantity;
+        totalAmounts[tail] = totalAmount;
+        unitCosts[tail] = unitCost;
+        remainingQuantities[tail] = remainingQuantity;
+        this.remainingUnits[tail] = remainingUnits;
+        this.remainingPaise[tail] = remainingPaise;
+        lotIds[tail] = nextId;
+        lotEpochs[tail] = epoch;
+        tail++;
+
+        pendingQuantity += remainingQuantity;
+        pendingCost += remainingQuantity * unitCost;
+        pendingPaise += remainingPaise;
+        return nextId++;
+    }
+
+    /**
+     * Append a copy of the i-th open lot of another queue
+     */
+    public int addCopy(LotQueue other, int i) {
+        int k = other.checkIndex(i);
+        return add(other.buyEpochDays[k], other.quantities[k], other.totalAmounts[k], other.remainingQuantities[k],
+            other.remainingUnits[k], other.remainingPaise[k]);
+    }
+
+    /**
+     * Slide the open lots back to index 0, or double the arrays if more than half are open
+     */
+    private void makeRoom() {
+        int size = tail - head;
+        int capacity = buyEpochDays.length;
+        if (size > capacity / 2) {
+            capacity *= 2;
+        }
+        buyEpochDays = move(buyEpochDays, capacity);
+        quantities = move(quantities, capacity);
+        totalAmounts = move(totalAmounts, capacity);
+        unitCosts = move(unitCosts, capacity);
+        remainingQuantities = move(remainingQuantities, capacity);
+        remainingUnits = move(remainingUnits, capacity);
+        remainingPaise = move(remainingPaise, capacity);
+        lotIds = move(lotIds, capacity);
+        lotEpochs = move(lotEpochs, capacity);
+        head = 0;
+        tail = size;
+    }
+
+    private int[] move(int[] array, int capacity) {
+        int[] target = capacity == array.length ? array : new int[capacity];
+        System.arraycopy(array, head, target, 0, tail - head);
+        return target;
+    }
+
+    private long[] move(long[] array, int capacity) {
+        long[] target = capacity == array.length ? array : new long[capacity];
+        System.arraycopy(array, head, target, 0, tail - head);
+        return target;
+    }
+
+    private double[] move(double[] array, int capacity) {
+        double[] target = capacity == array.length ? array : new double[capacity];
+        System.arraycopy(array, head, target, 0, tail - head);
+        return target;
+    }
+
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * Number of open lots
+     */
+    public int size() {
+        return tail - head - holes;
+    }
+
+    /**
+     * Take up to the given quantity from the oldest lot, removing the lot once it is used up.
+     * The lot's buy day and unit cost, and the exact cost of what was taken, are then
+     * available from the getTaken getters.
+     *
+     * @return the quantity taken, 0 if the queue is empty
+     */
+    public double take(double quantity) {
+        return head == tail ? takeNothing() : takeFrom(head, quantity);
+    }
+
+    /**
+     * take() from the newest lot instead of the oldest
+     */
+    public double takeNewest(double quantity) {
+        return head == tail ? takeNothing() : takeFrom(tail - 1, quantity);
+    }
+
+    /**
+     * take() from the lot with the given id
+     *
+     * @return the quantity taken, 0 if that lot is no longer open
+     */
+    public double takeLot(int lotId, double quantity) {
+        int k = slotOf(lotId);
+        return k < 0 ? takeNothing() : takeFrom(k, quantity);
+    }
+
+    /**
+     * Whether the lot with the given id still has quantity left
+     */
+    public boolean isOpen(int lotId) {
+        return slotOf(lotId) >= 0;
+    }
+
+    /**
+     * Id of the oldest open lot bought on the given day with that quantity and amount, else
+     * of the oldest open lot bought that day; -1 if there is none. Lots must have been added
+     * in buy date order, as a replay adds them.
+     */
+    public int findOpenLot(long buyEpochDay, double quantity, double totalAmount) {
+        int k = Arrays.binarySearch(buyEpochDays, head, tail, buyEpochDay);
+        if (k < 0) {
+            return -1;
+        }
+        // Step back to the first lot of the day, then forward past used-up ones
+        while (k > head && buyEpochDays[k - 1] == buyEpochDay) {
+            k--;
+        }
+        int sameDay = -1;
+        for (; k < tail && buyEpochDays[k] == buyEpochDay; k++) {
+            if (remainingQuantities[k] > 0) {
+                normalize(k);
+                if (quantities[k] == quantity && totalAmounts[k] == totalAmount) {
+                    return lotIds[k];
+                }
+                if (sameDay < 0) {
+                    sameDay = lotIds[k];
+                }
+            }
+        }
+        return sameDay;
+    }
+
+    /**
+     * Slot of an open lot, or -1. Ids grow with the slots, so without compaction the offset
+     * from the head's id is the slot; after it a binary search finds it.
+     */
+    private int slotOf(int lotId) {
+        if (head == tail || lotId < lotIds[head] || lotId > lotIds[tail - 1]) {
+            return -1;
+        }
+        int k = head + (lotId - lotIds[head]);
+        if (k >= tail || lotIds[k] != lotId) {
+            k = Arrays.binarySearch(lotIds, head, tail, lotId);
+        }
+        return k >= 0 && remainingQuantities[k] > 0 ? k : -1;
+    }
+
+    private double takeNothing() {
+        takenPaise = 0;
+        return 0;
+    }
+
+    private double takeFrom(int k, double quantity) {
+        normalize(k);
+        double remaining = remainingQuantities[k];
+        double taken = Math.min(quantity, remaining);
+        remaining -= taken;
+        remainingQuantities[k] = remaining;
+
+        // Once the lot is used up the last allocation takes whatever cost is left
+        long units = remaining <= 0
+            ? remainingUnits[k]
+            : Math.min(Paise.quantityUnits(taken), remainingUnits[k]);
+        takenPaise = Paise.proportion(remainingPaise[k], units, remainingUnits[k]);
+        takenBuyEpochDay = buyEpochDays[k];
+        takenUnitCost = unitCosts[k];
+        remainingUnits[k] -= units;
+        remainingPaise[k] -= takenPaise;
+
+        pendingQuantity -= taken;
+        pendingCost -= taken * unitCosts[k];
+        pendingPaise -= takenPaise;
+        if (remaining <= 0) {
+            holes++;
+            trim();
+        }
+        return taken;
+    }
+
+    /**
+     * Move head and tail past used-up lots, dropping everything once none is open
+     */
+    private void trim() {
+        while (head < tail && remainingQuantities[head] <= 0) {
+            head++;
+            holes--;
+        }
+        while (head < tail && remainingQuantities[tail - 1] <= 0) {
+            tail--;
+            holes--;
+        }
+        if (head == tail) {
+            clear();
+        }
+    }
+
+    public long getTakenBuyEpochDay() {
+        return takenBuyEpochDay;
+    }
+
+    public double getTakenUnitCost() {
+        return takenUnitCost;
+    }
+
+    public long getTakenPaise() {
+        return takenPaise;
+    }
+
+    /**
+     * Epoch day of the oldest open lot
+     */
+    public long peekBuyEpochDay() {
+        return buyEpochDays[checkHead()];
+    }
+
+    /**
+     * Unit cost of the oldest open lot
+     */
+    public double peekUnitCost() {
+        int k = checkHead();
+        normalize(k);
+        return unitCosts[k];
+    }
+
+    private int checkHead() {
+        if (head == tail) {
+            throw new IllegalStateException("No open lots");
+        }
+        return head;
+    }
+
+    public double getPendingQuantity() {
+        return pendingQuantity;
+    }
+
+    /**
+     * Remaining quantity times unit cost over the open lots
+     */
+    public double getPendingCost() {
+        return pendingCost;
+    }
+
+    /**
+     * Exact cost in paise still attached to the open lots
+     */
+    public long getPendingPaise() {
+        return pendingPaise;
+    }
+
+    // Fields of the i-th open lot, 0 being the oldest
+
+    public long getBuyEpochDay(int i) {
+        return buyEpochDays[checkIndex(i)];
+    }
+
+    public double getQuantity(int i) {
+        return quantities[checkIndex(i)];
+    }
+
+    public double getTotalAmount(int i) {
+        return totalAmounts[checkIndex(i)];
+    }
+
+    public double getRemainingQuantity(int i) {
+        return remainingQuantities[checkIndex(i)];
+    }
+
+    public long getRemainingUnits(int i) {
+        return remainingUnits[checkIndex(i)];
+    }
+
+    public long getRemainingPaise(int i) {
+        return remainingPaise[checkIndex(i)];
+    }
+
+    private int checkIndex(int i) {
+        if (holes > 0) {
+            compact();
+        }
+        int k = head + i;
+        if (i < 0 || k >= tail) {
+            throw new IndexOutOfBoundsException("Lot " + i + " of " + size());
+        }
+        normalize(k);
+        return k;
+    }
+
+    /**
+     * Close the holes so the i-th open lot is at head + i; lot ids stay with their lots
+     */
+    private void compact() {
+        int to = head;
+        for (int k = head; k < tail; k++) {
+            if (remainingQuantities[k] > 0) {
+                buyEpochDays[to] = buyEpochDays[k];
+                quantities[to] = quantities[k];
+                totalAmounts[to] = totalAmounts[k];
+                unitCosts[to] = unitCosts[k];
+                remainingQuantities[to] = remainingQuantities[k];
+                remainingUnits[to] = remainingUnits[k];
+                remainingPaise[to] = remainingPaise[k];
+                lotIds[to] = lotIds[k];
+                lotEpochs[to] = lotEpochs[k];
+                to++;
+            }
+        }
+        tail = to;
+        holes = 0;
+    }
+
+    /**
+     * Set every open lot to the same unit cost so the lots carry the given pending cost and
+     * paise, e.g. the pool of an average-cost method. Paise are shared by quantity units, the
+     * newest lot taking the remainder.
+     */
+    public void revalue(double cost, long paise) {
+        if (holes > 0) {
+            compact();
+        }
+        if (head == tail) {
+            return;
+        }
+        double unitCost = cost / pendingQuantity;
+        long units = 0;
+        for (int k = head; k < tail; k++) {
+            normalize(k);
+            units += remainingUnits[k];
+        }
+        long paiseLeft = paise;
+        for (int k = head; k < tail; k++) {
+            unitCosts[k] = unitCost;
+            totalAmounts[k] = unitCost * quantities[k];
+            long share = k == tail - 1 ? paiseLeft : Paise.proportion(paise, remainingUnits[k], units);
+            remainingPaise[k] = share;
+            paiseLeft -= share;
+        }
+        pendingCost = cost;
+        pendingPaise = paise;
+    }
+
+    /**
+     * Multiply the quantity of every open lot by the ratio, keeping its cost and buy day, for
+     * a split or bonus issue (shares after per share before). Only the running totals change
+     * now; each lot is rescaled when it is next read.
+     *
+     * @throws IllegalArgumentException if the ratio is not positive
+     */
+    public void adjust(double ratio) {
+        if (!(ratio > 0) || Double.isInfinite(ratio)) {
+            throw new IllegalArgumentException("Adjustment ratio must be positive: " + ratio);
+        }
+        if (head == tail || ratio == 1) {
+            return;
+        }
+        if (epoch + 1 == factors.length) {
+            factors = Arrays.copyOf(factors, factors.length * 2);
+        }
+        factors[epoch + 1] = factors[epoch] * ratio;
+        epoch++;
+        pendingQuantity *= ratio;
+    }
+
+    /**
+     * Bring a lot stored at an earlier adjustment up to the current one. Quantities within
+     * rounding error of whole quantity units are snapped to them, so a lot bought as
+     * q / ratio comes back as exactly q.
+     */
+    private void normalize(int k) {
+        int stored = lotEpochs[k];
+        if (stored == epoch) {
+            return;
+        }
+        double factor = factors[epoch] / factors[stored];
+        quantities[k] = toWholeUnits(quantities[k] * factor);
+        remainingQuantities[k] = toWholeUnits(remainingQuantities[k] * factor);
+        remainingUnits[k] = Paise.quantityUnits(remainingQuantities[k]);
+        unitCosts[k] = totalAmounts[k] / quantities[k];
+        lotEpochs[k] = epoch;
+    }
+
+    /**
+     * Quantity snapped to whole quantity units when it is off by no more than rounding error
+     */
+    private static double toWholeUnits(double quantity) {
+        double whole = Paise.quantityUnits(quantity) / (double) Paise.QUANTITY_SCALE;
+        return whole > 0 && Math.abs(whole - quantity) <= 1e-9 * quantity ? whole : quantity;
+    }
+
+    /**
+     * Copy of the i-th open lot (0 is the oldest) as a BuyOrder
+     */
+    public BuyOrder toBuyOrder(int i) {
+        int k = checkIndex(i);
+        BuyOrder order = new BuyOrder(TransactionStore.toDate(buyEpochDays[k]), quantities[k], totalAmounts[k]);
+        order.setRemainingQuantity(remainingQuantities[k]);
+        return order;
+    }
+
+    /**
+     * Drop all lots; totals restart from zero so rounding drift does not carry over
+     */
+    public void clear() {
+        head = 0;
+        tail = 0;
+        holes = 0;
+        epoch = 0;
+        pendingQuantity = 0;
+        pendingCost = 0;
+        pendingPaise = 0;
+    }
+}
@@ -0,0 +1,59 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Buy lot matches of a FIFO run in growable parallel primitive arrays. Each FIFOAllocation
+ * refers to its own contiguous range, so a sell costs no list and no object per matched lot.
+ */
+final class MatchLog {
+
+    private long[] buyEpochDays;
+    private double[] quantities;
+    private double[] unitCosts;
+    private long[] costPaise;
+    private int size;
+
+    MatchLog(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        buyEpochDays = new long[capacity];
+        quantities = new double[capacity];
+        unitCosts = new double[capacity];
+        costPaise = new long[capacity];
+    }
+
+    void add(long buyEpochDay, double quantity, double unitCost, long paise) {
+        if (size == buyEpochDays.length) {
+            int capacity = size * 2;
+            buyEpochDays = Arrays.copyOf(buyEpochDays, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            unitCosts = Arrays.copyOf(unitCosts, capacity);
+            costPaise = Arrays.copyOf(costPaise, capacity);
+        }
+        buyEpochDays[size] = buyEpochDay;
+        quantities[size] = quantity;
+        unitCosts[size] = unitCost;
+        costPaise[size] = paise;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getBuyEpochDay(int i) {
+        return buyEpochDays[i];
+    }
+
+    double getQuantity(int i) {
+        return quantities[i];
+    }
+
+    double getUnitCost(int i) {
+        return unitCosts[i];
+    }
+
+    long getCostPaise(int i) {
+        return costPaise[i];
+    }
+}
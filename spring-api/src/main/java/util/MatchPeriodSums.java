@@ -0,0 +1,102 @@
+package util;
+
+/**
+ * Sums lot matches into the periods of several quarter configs, a SellMatchBuffer at a time,
+ * so a replay produces the quarterly intraday/STCG/LTCG tables without keeping an allocation
+ * per sell. Each match is classified from its own lot's buy day, not a broker days-held
+ * column. Sale proceeds are shared across a sell's matches by quantity; in paise the match
+ * that completes the sell takes the remainder, as lot costs do.
+ */
+public final class MatchPeriodSums {
+
+    private final QuarterConfig[] configs;
+    private final PeriodAccumulator[] sums;
+    private final boolean exact;
+
+    // Current sell
+    private final int[] periods;
+    private long sellEpochDay;
+    private double sellQuantity;
+    private double sellAmount;
+    private long sellPaise;
+    private long sellUnits;
+
+    public MatchPeriodSums(QuarterConfig[] configs, ArithmeticMode arithmeticMode) {
+        this.configs = configs;
+        this.exact = arithmeticMode == ArithmeticMode.PAISE;
+        this.sums = new PeriodAccumulator[configs.length];
+        for (int k = 0; k < configs.length; k++) {
+            sums[k] = new PeriodAccumulator(configs[k].getQuarterCount(), arithmeticMode);
+        }
+        this.periods = new int[configs.length];
+    }
+
+    /**
+     * Add every sell in the buffer, as written by FIFOCalculator.matchSells or a buffered replay
+     */
+    public void add(SellMatchBuffer matches) {
+        for (int s = 0; s < matches.getSellCount(); s++) {
+            beginSell(matches.getSellEpochDay(s), matches.getSellQuantity(s), matches.getSellAmount(s));
+            int end = matches.getFirstMatch(s + 1);
+            boolean complete = matches.getUnmatchedQuantity(s) <= 0;
+            for (int m = matches.getFirstMatch(s); m < end; m++) {
+                addMatch(matches.getMatchBuyEpochDay(m), matches.getMatchQuantity(m), matches.getMatchCost(m),
+                    matches.getMatchCostPaise(m), complete && m == end - 1);
+            }
+        }
+    }
+
+    /**
+     * Start a sell; its matches follow until the next call
+     */
+    void beginSell(long sellEpochDay, double sellQuantity, double sellAmount) {
+        this.sellEpochDay = sellEpochDay;
+        this.sellQuantity = sellQuantity;
+        this.sellAmount = sellAmount;
+        this.sellPaise = Paise.of(sellAmount);
+        this.sellUnits = Paise.quantityUnits(sellQuantity);
+        for (int k = 0; k < configs.length; k++) {
+            periods[k] = configs[k].getQuarterNumber(sellEpochDay);
+        }
+    }
+
+    /**
+     * Add a match of the current sell
+     *
+     * @param completesSell whether this match leaves none of the sell unmatched
+     */
+    void addMatch(long buyEpochDay, double quantity, double cost, long costPaise, boolean completesSell) {
+        int category = TransactionStore.categoryOf((int) (sellEpochDay - buyEpochDay));
+        if (exact) {
+            long units = completesSell ? sellUnits : Math.min(Paise.quantityUnits(quantity), sellUnits);
+            long proceedsPaise = Paise.proportion(sellPaise, units, sellUnits);
+            sellPaise -= proceedsPaise;
+            sellUnits -= units;
+            for (int k = 0; k < configs.length; k++) {
+                sums[k].addPaise(category, periods[k], costPaise, proceedsPaise);
+            }
+        } else {
+            double proceeds = sellAmount * quantity / sellQuantity;
+            for (int k = 0; k < configs.length; k++) {
+                sums[k].add(category, periods[k], cost, proceeds);
+            }
+        }
+    }
+
+    /**
+     * Sums for the k-th config
+     */
+    public PeriodAccumulator get(int k) {
+        return sums[k];
+    }
+
+    /**
+     * Add another instance's sums, over the same configs, into this one
+     */
+    public MatchPeriodSums merge(MatchPeriodSums other) {
+        for (int k = 0; k < sums.length; k++) {
+            sums[k].merge(other.sums[k]);
+        }
+        return this;
+    }
+}
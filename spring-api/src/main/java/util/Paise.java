@@ -0,0 +1,64 @@
+package util;
+
+/**
+ * Fixed-point helpers for exact amount arithmetic: rupee amounts as long paise and
+ * quantities as long ten-thousandths of a share. Each amount is rounded to the nearest
+ * paisa once, which recovers the exact value for the usual two-decimal statement amounts
+ * (brokers that report sub-paisa amounts get them rounded per row), and sums of longs
+ * never drift however many rows are added.
+ */
+public final class Paise {
+
+    /** Quantity units per share */
+    public static final long QUANTITY_SCALE = 10_000;
+
+    /** How far below a half-paisa, in ulps of the scaled amount, still rounds as the half */
+    private static final int HALF_TOLERANCE_ULPS = 4;
+
+    private Paise() {}
+
+    /**
+     * Rupees to paise, rounding half away from zero. A written half-paisa such as 1.005 is
+     * stored a few ulps below the half, so anything that close to a half counts as one.
+     */
+    public static long of(double rupees) {
+        double scaled = Math.abs(rupees) * 100;
+        long paise = (long) (scaled + 0.5 + HALF_TOLERANCE_ULPS * Math.ulp(scaled));
+        return rupees >= 0 ? paise : -paise;
+    }
+
+    /** Paise to rupees; a single division, so the result is the double nearest the exact amount */
+    public static double toRupees(long paise) {
+        return paise / 100.0;
+    }
+
+    /** Shares to quantity units */
+    public static long quantityUnits(double quantity) {
+        return quantity >= 0 ? (long) (quantity * QUANTITY_SCALE + 0.5) : -(long) (-quantity * QUANTITY_SCALE + 0.5);
+    }
+
+    /**
+     * Share of an amount for part of a quantity, rounded to the nearest paisa:
+     * amountPaise * units / totalUnits without overflowing for large lots
+     */
+    public static long proportion(long amountPaise, long units, long totalUnits) {
+        if (totalUnits == 0) {
+            return 0;
+        }
+        if (units == totalUnits) {
+            return amountPaise;
+        }
+        long high = Math.multiplyHigh(amountPaise, units);
+        long low = amountPaise * units;
+        if ((high == 0 && low >= 0) || (high == -1 && low < 0)) {
+            long quotient = low / totalUnits;
+            long remainder = Math.abs(low % totalUnits);
+            if (remainder * 2 >= Math.abs(totalUnits)) {
+                quotient += (low < 0) != (totalUnits < 0) ? -1 : 1;
+            }
+            return quotient;
+        }
+        // Product beyond long range; double keeps 15+ significant digits, far below a paisa here
+        return Math.round((double) amountPaise * units / totalUnits);
+    }
+}
@@ -0,0 +1,168 @@
+package util;
+
+/**
+ * Sums transaction rows per category, period bucket and metric in one flat primitive array
+ * indexed [category][bucket][metric]. Bucket 0 is the whole year and buckets 1..periods are
+ * the periods of a scheme, so quarters, months or advance-tax installments all cost the same
+ * per row. Doubles are summed as read; PAISE mode sums long paise and converts each value to
+ * rupees once, when it is read.
+ */
+public final class PeriodAccumulator {
+
+    /** Metrics kept for every category and bucket */
+    public static final int BUY = 0;
+    public static final int SELL = 1;
+    /** Broker STCG value for short-term rows, sell - buy otherwise */
+    public static final int PROFIT = 2;
+    /** abs(PROFIT) per row */
+    public static final int TURNOVER = 3;
+    public static final int METRIC_COUNT = 4;
+
+    /** Bucket holding the whole-year sums */
+    public static final int TOTAL = 0;
+
+    private final int periodCount;
+    private final int buckets;
+    private final ArithmeticMode arithmeticMode;
+    private final double[] values;
+    private final long[] paise;
+
+    /**
+     * @param periodCount number of periods; rows are added with a period of 1..periodCount
+     */
+    public PeriodAccumulator(int periodCount, ArithmeticMode arithmeticMode) {
+        if (periodCount < 0) {
+            throw new IllegalArgumentException("Negative period count: " + periodCount);
+        }
+        this.periodCount = periodCount;
+        this.buckets = periodCount + 1;
+        this.arithmeticMode = arithmeticMode;
+        int size = TransactionStore.CATEGORY_COUNT * buckets * METRIC_COUNT;
+        boolean exact = arithmeticMode == ArithmeticMode.PAISE;
+        this.values = exact ? null : new double[size];
+        this.paise = exact ? new long[size] : null;
+    }
+
+    /**
+     * Add one stored row to the year total and, if period is 1..periodCount, to that period
+     */
+    public void add(TransactionStore transactions, int row, int period) {
+        int category = transactions.getCategory(row);
+        int total = index(category, TOTAL, 0);
+        boolean inPeriod = period > 0 && period <= periodCount;
+        int bucket = inPeriod ? index(category, period, 0) : -1;
+
+        if (paise != null) {
+            long buy = Paise.of(transactions.getBuyAmount(row));
+            long sell = Paise.of(transactions.getSellAmount(row));
+            long profit = category == TransactionStore.STCG ? Paise.of(transactions.getStcgValue(row)) : sell - buy;
+            addExact(total, buy, sell, profit);
+            if (inPeriod) {
+                addExact(bucket, buy, sell, profit);
+            }
+        } else {
+            double buy = transactions.getBuyAmount(row);
+            double sell = transactions.getSellAmount(row);
+            double profit = category == TransactionStore.STCG ? transactions.getStcgValue(row) : sell - buy;
+            addDouble(total, buy, sell, profit);
+            if (inPeriod) {
+                addDouble(bucket, buy, sell, profit);
+            }
+        }
+    }
+
+    /**
+     * Add amounts that did not come from a stored row, e.g. one FIFO match, with profit
+     * sell - buy. Period as for add(TransactionStore, int, int).
+     */
+    public void add(int category, int period, double buy, double sell) {
+        if (paise != null) {
+            addPaise(category, period, Paise.of(buy), Paise.of(sell));
+            return;
+        }
+        addDouble(index(category, TOTAL, 0), buy, sell, sell - buy);
+        if (period > 0 && period <= periodCount) {
+            addDouble(index(category, period, 0), buy, sell, sell - buy);
+        }
+    }
+
+    /**
+     * add(int, int, double, double) with amounts already in exact paise
+     */
+    public void addPaise(int category, int period, long buy, long sell) {
+        if (paise == null) {
+            add(category, period, Paise.toRupees(buy), Paise.toRupees(sell));
+            return;
+        }
+        addExact(index(category, TOTAL, 0), buy, sell, sell - buy);
+        if (period > 0 && period <= periodCount) {
+            addExact(index(category, period, 0), buy, sell, sell - buy);
+        }
+    }
+
+    private void addExact(int base, long buy, long sell, long profit) {
+        paise[base + BUY] += buy;
+        paise[base + SELL] += sell;
+        paise[base + PROFIT] += profit;
+        paise[base + TURNOVER] += Math.abs(profit);
+    }
+
+    private void addDouble(int base, double buy, double sell, double profit) {
+        values[base + BUY] += buy;
+        values[base + SELL] += sell;
+        values[base + PROFIT] += profit;
+        values[base + TURNOVER] += Math.abs(profit);
+    }
+
+    /**
+     * Add another accumulator's sums into this one; both must have the same shape and mode
+     */
+    public PeriodAccumulator merge(PeriodAccumulator other) {
+        if (other.periodCount != periodCount || other.arithmeticMode != arithmeticMode) {
+            throw new IllegalArgumentException("Cannot merge accumulators of different shape");
+        }
+        if (paise != null) {
+            for (int i = 0; i < paise.length; i++) {
+                paise[i] += other.paise[i];
+            }
+        } else {
+            for (int i = 0; i < values.length; i++) {
+                values[i] += other.values[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Sum of one metric for a category in a bucket (TOTAL or 1..periodCount)
+     */
+    public double get(int category, int bucket, int metric) {
+        int i = index(category, bucket, metric);
+        return paise != null ? Paise.toRupees(paise[i]) : values[i];
+    }
+
+    /**
+     * Sell - buy for a category in a bucket, exact in PAISE mode
+     */
+    public double getGain(int category, int bucket) {
+        int i = index(category, bucket, 0);
+        return paise != null
+            ? Paise.toRupees(paise[i + SELL] - paise[i + BUY])
+            : values[i + SELL] - values[i + BUY];
+    }
+
+    public int getPeriodCount() {
+        return periodCount;
+    }
+
+    public ArithmeticMode getArithmeticMode() {
+        return arithmeticMode;
+    }
+
+    private int index(int category, int bucket, int metric) {
+        if (bucket < 0 || bucket > periodCount) {
+            throw new IndexOutOfBoundsException("Bucket " + bucket + " of " + periodCount + " periods");
+        }
+        return (category * buckets + bucket) * METRIC_COUNT + metric;
+    }
+}
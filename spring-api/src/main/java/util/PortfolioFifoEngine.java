@@ -0,0 +1,308 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs FIFO cost basis over a whole statement: rows are grouped by symbol, each symbol is
+ * replayed through its own FIFOCalculator, and every match is summed by holding period
+ * (intraday, STCG, LTCG from the lot's buy date) into the periods of each quarter config.
+ * Symbols are independent, so with a pool they run in parallel. Symbol groups and merge
+ * order depend only on the symbol count, so results are identical with or without a pool.
+ * Lots are matched FIFO unless another cost basis method is given.
+ * With opening lots and a last day, only that window's trades are replayed and the lots
+ * left open come back as the checkpoint for the next window.
+ * Corporate actions, when set, adjust each symbol's open lots on their ex-dates.
+ */
+public final class PortfolioFifoEngine {
+
+    /** Symbols replayed by one task before the range is split no further */
+    static final int SYMBOLS_PER_TASK = 32;
+
+    /** Initial sells and matches of a task's buffer; it grows to the task's largest symbol */
+    private static final int MATCH_BUFFER_CAPACITY = 256;
+
+    private final ArithmeticMode arithmeticMode;
+    private final CostBasisMethod costBasisMethod;
+    private ForkJoinPool pool;
+    private LotCheckpoint openingLots;
+    private long lastDay = Long.MAX_VALUE;
+    private CorporateActions corporateActions;
+
+    public PortfolioFifoEngine(ArithmeticMode arithmeticMode) {
+        this(arithmeticMode, CostBasisMethod.FIFO);
+    }
+
+    /**
+     * @throws IllegalArgumentException for BROKER, which does not match lots
+     */
+    public PortfolioFifoEngine(ArithmeticMode arithmeticMode, CostBasisMethod costBasisMethod) {
+        if (costBasisMethod == CostBasisMethod.BROKER) {
+            throw new IllegalArgumentException("The broker cost basis does not match lots");
+        }
+        this.arithmeticMode = arithmeticMode;
+        this.costBasisMethod = costBasisMethod;
+    }
+
+    /**
+     * Pool for running symbols in parallel; null (the default) runs them on the calling thread
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Start every symbol from the lots open at the checkpoint's boundary day and replay only
+     * legs dated from that day on; null (the default) replays every leg from an empty book.
+     * Buy legs before the boundary that the checkpoint does not hold, as in a statement of one
+     * year's sales, are opened from their rows (see FIFOCalculator.openAt).
+     */
+    public void setOpeningLots(LotCheckpoint openingLots) {
+        this.openingLots = openingLots;
+    }
+
+    /**
+     * Replay only legs dated up to this epoch day; the result then has the lots still open
+     * after it as a checkpoint for the next day
+     */
+    public void setLastDay(long lastDay) {
+        this.lastDay = lastDay;
+    }
+
+    /**
+     * Splits and bonus issues to apply while replaying; null for none
+     */
+    public void setCorporateActions(CorporateActions corporateActions) {
+        this.corporateActions = corporateActions;
+    }
+
+    /**
+     * Replay every symbol of the store and sum the matches per period of each config.
+     * Rows without a symbol, quantity, buy date or sell date are skipped.
+     *
+     * @param periodConfigs configs to bucket by sell date; result sums are in the same order
+     */
+    public Result run(TransactionStore transactions, List<QuarterConfig> periodConfigs) {
+        // Counting sort of row indexes by symbol id
+        int symbolCount = transactions.getSymbolCount();
+        int[] offsets = new int[symbolCount + 1];
+        int skipped = 0;
+        for (int i = 0; i < transactions.size(); i++) {
+            if (isReplayable(transactions, i)) {
+                offsets[transactions.getSymbolId(i) + 1]++;
+            } else {
+                skipped++;
+            }
+        }
+        for (int s = 0; s < symbolCount; s++) {
+            offsets[s + 1] += offsets[s];
+        }
+        int[] rows = new int[offsets[symbolCount]];
+        int[] next = Arrays.copyOf(offsets, symbolCount);
+        for (int i = 0; i < transactions.size(); i++) {
+            if (isReplayable(transactions, i)) {
+                rows[next[transactions.getSymbolId(i)]++] = i;
+            }
+        }
+
+        QuarterConfig[] configs = periodConfigs.toArray(new QuarterConfig[0]);
+        FIFOCalculator[] calculators = new FIFOCalculator[symbolCount];
+        SymbolTask task = new SymbolTask(transactions, rows, offsets, configs, calculators, 0, symbolCount);
+        MatchPeriodSums sums;
+        if (pool != null && symbolCount > SYMBOLS_PER_TASK) {
+            // Build the day tables once, before the workers read them
+            for (QuarterConfig config : configs) {
+                config.getQuarterNumber(0);
+            }
+            sums = pool.invoke(task);
+        } else {
+            sums = task.compute();
+        }
+
+        double unmatchedQuantity = 0;
+        for (FIFOCalculator calculator : calculators) {
+            if (calculator != null) {
+                unmatchedQuantity += calculator.getUnmatchedSellQuantity();
+            }
+        }
+        return new Result(sums, calculators, skipped, unmatchedQuantity, closingLots(transactions, calculators));
+    }
+
+    /**
+     * Lots open after lastDay: each replayed symbol's queue, plus opening lots of symbols with
+     * nothing to replay. Null when no last day was set.
+     */
+    private LotCheckpoint closingLots(TransactionStore transactions, FIFOCalculator[] calculators) {
+        if (lastDay == Long.MAX_VALUE) {
+            return null;
+        }
+        LotCheckpoint closing = new LotCheckpoint(lastDay + 1);
+        for (FIFOCalculator calculator : calculators) {
+            if (calculator != null) {
+                closing.put(calculator.getSymbol(), calculator.openLots());
+            }
+        }
+        if (openingLots != null) {
+            openingLots.getLots().forEach((symbol, open) -> {
+                Integer id = transactions.symbolIdOf(symbol);
+                if (id == null || calculators[id] == null) {
+                    closing.put(symbol, adjusted(symbol, open));
+                }
+            });
+        }
+        return closing;
+    }
+
+    /**
+     * Opening lots of a symbol with nothing to replay, after its actions in the window
+     */
+    private LotQueue adjusted(String symbol, LotQueue open) {
+        double factor = corporateActions == null ? 1
+            : corporateActions.factorBetween(symbol, openingLots.getBoundaryEpochDay() - 1, lastDay);
+        if (factor == 1) {
+            return open;
+        }
+        LotQueue lots = new LotQueue(open.size());
+        for (int i = 0; i < open.size(); i++) {
+            lots.addCopy(open, i);
+        }
+        lots.adjust(factor);
+        return lots;
+    }
+
+    private static boolean isReplayable(TransactionStore transactions, int row) {
+        return transactions.getSymbolId(row) != TransactionStore.NO_SYMBOL
+            && transactions.getQuantity(row) > 0
+            && transactions.getBuyEpochDay(row) != TransactionStore.NO_DATE
+            && transactions.getSellEpochDay(row) != TransactionStore.NO_DATE;
+    }
+
+    /**
+     * Replays symbols [from, to), splitting in halves down to SYMBOLS_PER_TASK and merging
+     * left before right
+     */
+    private final class SymbolTask extends RecursiveTask<MatchPeriodSums> {
+        private static final long serialVersionUID = 1L;
+        private final TransactionStore transactions;
+        private final int[] rows;
+        private final int[] offsets;
+        private final QuarterConfig[] configs;
+        private final FIFOCalculator[] calculators;
+        private final int from;
+        private final int to;
+
+        SymbolTask(TransactionStore transactions, int[] rows, int[] offsets, QuarterConfig[] configs,
+                   FIFOCalculator[] calculators, int from, int to) {
+            this.transactions = transactions;
+            this.rows = rows;
+            this.offsets = offsets;
+            this.configs = configs;
+            this.calculators = calculators;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected MatchPeriodSums compute() {
+            if (to - from > SYMBOLS_PER_TASK) {
+                int mid = from + (to - from) / 2;
+                SymbolTask left = new SymbolTask(transactions, rows, offsets, configs, calculators, from, mid);
+                SymbolTask right = new SymbolTask(transactions, rows, offsets, configs, calculators, mid, to);
+                MatchPeriodSums merged;
+                MatchPeriodSums rightSums;
+                if (inForkJoinPool()) {
+                    left.fork();
+                    rightSums = right.compute();
+                    merged = left.join();
+                } else {
+                    merged = left.compute();
+                    rightSums = right.compute();
+                }
+                return merged.merge(rightSums);
+            }
+
+            // Each symbol's matches go into one reused buffer and are summed from there
+            MatchPeriodSums sums = new MatchPeriodSums(configs, arithmeticMode);
+            SellMatchBuffer matches = new SellMatchBuffer(MATCH_BUFFER_CAPACITY, MATCH_BUFFER_CAPACITY);
+            for (int symbol = from; symbol < to; symbol++) {
+                if (offsets[symbol] == offsets[symbol + 1]) {
+                    continue;
+                }
+                FIFOCalculator calculator = new FIFOCalculator(transactions.symbolForId(symbol), arithmeticMode,
+                    costBasisMethod);
+                calculator.setCorporateActions(corporateActions);
+                long firstDay = Long.MIN_VALUE + 1;
+                if (openingLots != null) {
+                    firstDay = openingLots.getBoundaryEpochDay();
+                    calculator.openAt(firstDay, openingLots.get(calculator.getSymbol()), transactions, rows,
+                        offsets[symbol], offsets[symbol + 1]);
+                }
+                calculator.replay(transactions, rows, offsets[symbol], offsets[symbol + 1], firstDay, lastDay,
+                    matches);
+                sums.add(matches);
+                calculators[symbol] = calculator;
+            }
+            return sums;
+        }
+    }
+
+    /**
+     * Sums per period config, the calculator of each symbol, and what could not be matched
+     */
+    public static final class Result {
+        private final MatchPeriodSums periods;
+        private final FIFOCalculator[] calculators;
+        private final int skippedRows;
+        private final double unmatchedSellQuantity;
+        private final LotCheckpoint closingLots;
+
+        Result(MatchPeriodSums periods, FIFOCalculator[] calculators, int skippedRows,
+               double unmatchedSellQuantity, LotCheckpoint closingLots) {
+            this.periods = periods;
+            this.calculators = calculators;
+            this.skippedRows = skippedRows;
+            this.unmatchedSellQuantity = unmatchedSellQuantity;
+            this.closingLots = closingLots;
+        }
+
+        /**
+         * Sums for the k-th period config passed to run()
+         */
+        public PeriodAccumulator getPeriods(int k) {
+            return periods.get(k);
+        }
+
+        /**
+         * Calculators of the symbols that had replayable rows, in symbol id order. Sells were
+         * matched in bulk, so they hold open lots and unmatched quantity but no allocations.
+         */
+        public List<FIFOCalculator> getCalculators() {
+            List<FIFOCalculator> list = new ArrayList<>();
+            for (FIFOCalculator calculator : calculators) {
+                if (calculator != null) {
+                    list.add(calculator);
+                }
+            }
+            return Collections.unmodifiableList(list);
+        }
+
+        /** Rows left out for lack of a symbol, quantity, buy date or sell date */
+        public int getSkippedRows() {
+            return skippedRows;
+        }
+
+        /** Sold quantity that found no open lot, over all symbols */
+        public double getUnmatchedSellQuantity() {
+            return unmatchedSellQuantity;
+        }
+
+        /** Lots open after the engine's last day, or null if it had none */
+        public LotCheckpoint getClosingLots() {
+            return closingLots;
+        }
+    }
+}
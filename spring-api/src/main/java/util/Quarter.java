@@ -12,14 +12,15 @@ import logging.HurdleLogger;
 /**
  * Configuration for financial year quarters
  * Manages quarter definitions and date ranges for tax year allocation
+ * Immutable, so quarters can be shared between cached configs
  * @author ajay
  *
  */
 public class Quarter {
-	private String name;
-	private String code;
-	private LocalDate startDate;
-	private LocalDate endDate;
+	private final String name;
+	private final String code;
+	private final LocalDate startDate;
+	private final LocalDate endDate;
 	
 	public Quarter(String code, String name, LocalDate startDate, LocalDate endDate) {
 		this.code = code;
@@ -32,34 +33,18 @@ public class Quarter {
 		return name;
 	}
 	
-	public void setName(String name) {
-		this.name = name;
-	}
-	
 	public String getCode() {
 		return code;
 	}
 	
-	public void setCode(String code) {
-		this.code = code;
-	}
-	
 	public LocalDate getStartDate() {
 		return startDate;
 	}
 	
-	public void setStartDate(LocalDate startDate) {
-		this.startDate = startDate;
-	}
-	
 	public LocalDate getEndDate() {
 		return endDate;
 	}
 	
-	public void setEndDate(LocalDate endDate) {
-		this.endDate = endDate;
-	}
-	
 	/**
 	 * Check if a date falls within this quarter
 	 */
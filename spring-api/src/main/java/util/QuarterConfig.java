@@ -4,20 +4,42 @@
 package util;
 
 import java.time.LocalDate;
+import java.time.format.TextStyle;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import logging.HurdleLogger;
 
 /**
  * Configuration manager for financial year quarters
  * Maintains quarter definitions and provides methods to find quarters for given dates
+ * Configs from forFinancialYear() are shared and frozen; build your own with createForFinancialYear()
  * @author ajay
  *
  */
 public class QuarterConfig {
-	private String financialYear;
-	private List<Quarter> quarters;
+	/** Shared frozen configs by financial year start and scheme; bounded since the year comes from requests */
+	private static final ConcurrentMap<RegistryKey, QuarterConfig> REGISTRY = new ConcurrentHashMap<>();
+	private static final int REGISTRY_LIMIT = 256;
+	/** "FY 2024-25", also without "FY" or with a four-digit end year */
+	private static final Pattern FINANCIAL_YEAR = Pattern.compile("(?:FY\\s*)?(\\d{4})-(\\d{2}|\\d{4})",
+		Pattern.CASE_INSENSITIVE);
+	/** Periods per config; the day table stores period numbers as bytes */
+	public static final int MAX_PERIODS = Byte.MAX_VALUE;
+	
+	private final String financialYear;
+	private final List<Quarter> quarters;
+	private volatile boolean frozen;
+	
+	/** Quarter number (1-based, 0 = none) per day from lookupFirstDay; built on first lookup */
+	private volatile byte[] quarterByDay;
+	private long lookupFirstDay;
 	
 	public QuarterConfig(String financialYear) {
 		this.financialYear = financialYear;
@@ -25,7 +47,14 @@ public class QuarterConfig {
 	}
 	
 	public void addQuarter(Quarter quarter) {
+		if (frozen) {
+			throw new IllegalStateException("Quarter config " + financialYear + " is shared and cannot be changed");
+		}
+		if (quarters.size() >= MAX_PERIODS) {
+			throw new IllegalStateException("Quarter config " + financialYear + " cannot hold more than " + MAX_PERIODS + " periods");
+		}
 		quarters.add(quarter);
+		quarterByDay = null;
 		HurdleLogger.debug("Added quarter: " + quarter);
 	}
 	
@@ -33,12 +62,24 @@ public class QuarterConfig {
 		return financialYear;
 	}
 	
-	public void setFinancialYear(String financialYear) {
-		this.financialYear = financialYear;
+	/**
+	 * Read-only view of the quarters, in order
+	 */
+	public List<Quarter> getQuarters() {
+		return Collections.unmodifiableList(quarters);
 	}
 	
-	public List<Quarter> getQuarters() {
-		return new ArrayList<>(quarters);
+	/**
+	 * Stop further changes and build the lookup table up front, so the config can be shared
+	 */
+	public QuarterConfig freeze() {
+		frozen = true;
+		quarterLookup();
+		return this;
+	}
+	
+	public boolean isFrozen() {
+		return frozen;
 	}
 	
 	/**
@@ -48,27 +89,61 @@ public class QuarterConfig {
 		if (date == null) {
 			return 0;
 		}
-		for (int i = 0; i < quarters.size(); i++) {
-			if (quarters.get(i).contains(date)) {
-				return i + 1;
-			}
+		return getQuarterNumber(date.toEpochDay());
+	}
+	
+	/**
+	 * Get quarter number (1-5) for a date given as epoch day, or 0 if not found
+	 */
+	public int getQuarterNumber(long epochDay) {
+		byte[] table = quarterLookup();
+		long offset = epochDay - lookupFirstDay;
+		if (offset < 0 || offset >= table.length) {
+			return 0;
 		}
-		return 0;
+		return table[(int) offset];
 	}
 	
 	/**
 	 * Get quarter object for a given date
 	 */
 	public Quarter getQuarterForDate(LocalDate date) {
-		if (date == null) {
-			return null;
+		int number = getQuarterNumber(date);
+		return number > 0 ? quarters.get(number - 1) : null;
+	}
+	
+	/**
+	 * Dense day-to-quarter table over the span of all quarters, so a lookup is one array
+	 * read. Where quarters overlap the first one wins, as with a linear scan.
+	 */
+	private byte[] quarterLookup() {
+		byte[] table = quarterByDay;
+		if (table != null) {
+			return table;
 		}
-		for (Quarter q : quarters) {
-			if (q.contains(date)) {
-				return q;
+		synchronized (this) {
+			if (quarterByDay != null) {
+				return quarterByDay;
 			}
+			long first = Long.MAX_VALUE;
+			long last = Long.MIN_VALUE;
+			for (Quarter q : quarters) {
+				first = Math.min(first, q.getStartDate().toEpochDay());
+				last = Math.max(last, q.getEndDate().toEpochDay());
+			}
+			table = new byte[quarters.isEmpty() || last < first ? 0 : (int) (last - first + 1)];
+			for (int i = quarters.size() - 1; i >= 0; i--) {
+				Quarter q = quarters.get(i);
+				int from = (int) (q.getStartDate().toEpochDay() - first);
+				int to = (int) (q.getEndDate().toEpochDay() - first);
+				for (int day = Math.max(from, 0); day <= to; day++) {
+					table[day] = (byte) (i + 1);
+				}
+			}
+			lookupFirstDay = first;
+			quarterByDay = table;
+			return table;
 		}
-		return null;
 	}
 	
 	/**
@@ -203,6 +278,48 @@ public class QuarterConfig {
 		return config;
 	}
 	
+	/**
+	 * Shared, frozen config for a financial year and quarter scheme, built on first use.
+	 * Labels of the same year, such as "FY 2024-25" and "2024-25", share one config.
+	 *
+	 * @throws IllegalArgumentException if the financial year cannot be parsed
+	 */
+	public static QuarterConfig forFinancialYear(String fy, QuarterScheme scheme) {
+		RegistryKey key = new RegistryKey(parseFinancialYear(fy), scheme);
+		QuarterConfig config = REGISTRY.get(key);
+		if (config != null) {
+			return config;
+		}
+		config = createForFinancialYear(financialYearLabel(key.startYear()), scheme).freeze();
+		if (REGISTRY.size() >= REGISTRY_LIMIT) {
+			return config;
+		}
+		QuarterConfig existing = REGISTRY.putIfAbsent(key, config);
+		return existing != null ? existing : config;
+	}
+	
+	private record RegistryKey(int startYear, QuarterScheme scheme) {
+	}
+	
+	/**
+	 * Start year of a financial year given as "FY 2024-25", "2024-25" or "FY 2024-2025"
+	 *
+	 * @throws IllegalArgumentException if the label is not in that form or does not end the
+	 *                                  year after it starts
+	 */
+	public static int parseFinancialYear(String fy) {
+		Matcher matcher = fy == null ? null : FINANCIAL_YEAR.matcher(fy.trim());
+		if (matcher == null || !matcher.matches()) {
+			throw new IllegalArgumentException("Financial year must look like FY 2024-25, got: " + fy);
+		}
+		int startYear = Integer.parseInt(matcher.group(1));
+		int endYear = Integer.parseInt(matcher.group(2));
+		if (endYear != (matcher.group(2).length() == 2 ? (startYear + 1) % 100 : startYear + 1)) {
+			throw new IllegalArgumentException("Financial year " + fy.trim() + " must end the year after it starts");
+		}
+		return startYear;
+	}
+	
 	/**
 	 * Factory method to create config for any financial year
 	 * Dynamically generates quarters based on FY start year
@@ -226,7 +343,8 @@ public class QuarterConfig {
 			String[] parts = fy.trim().replace("FY ", "").split("-");
 			if (parts.length == 2) {
 				int startYear = Integer.parseInt(parts[0]);
-				int endYear = Integer.parseInt(parts[1]);
+				// The suffix is two digits ("FY 2025-26"); the year always ends the next March
+				int endYear = startYear + 1;
 				
 				return buildDynamic(fy, startYear, endYear, scheme);
 			}
@@ -251,6 +369,14 @@ public class QuarterConfig {
 				LocalDate.of(startYear, 12, 16), LocalDate.of(endYear, 3, 15)));
 			config.addQuarter(new Quarter("Q5", "Mar-Mar", 
 				LocalDate.of(endYear, 3, 16), LocalDate.of(endYear, 3, 31)));
+		} else if (scheme == QuarterScheme.MONTHLY) {
+			LocalDate month = LocalDate.of(startYear, 4, 1);
+			for (int i = 1; i <= 12; i++) {
+				config.addQuarter(new Quarter(String.format("M%02d", i),
+					month.getMonth().getDisplayName(TextStyle.SHORT, Locale.ENGLISH) + " " + month.getYear(),
+					month, month.withDayOfMonth(month.lengthOfMonth())));
+				month = month.plusMonths(1);
+			}
 		} else {
 			// Standard 4 quarters
 			config.addQuarter(new Quarter("Q1", "Apr-Jun", 
@@ -279,6 +405,21 @@ public class QuarterConfig {
 		return buildDynamic("FY 2024-25", 2024, 2025, scheme);
 	}
 	
+	/**
+	 * Start year of the April-to-March financial year containing an epoch day
+	 */
+	public static int financialYearStart(long epochDay) {
+		LocalDate date = LocalDate.ofEpochDay(epochDay);
+		return date.getMonthValue() >= 4 ? date.getYear() : date.getYear() - 1;
+	}
+	
+	/**
+	 * Label of the financial year starting in April of startYear, e.g. "FY 2024-25"
+	 */
+	public static String financialYearLabel(int startYear) {
+		return String.format("FY %d-%02d", startYear, (startYear + 1) % 100);
+	}
+	
 	@Override
 	public String toString() {
 		return "QuarterConfig [financialYear=" + financialYear + ", quarters=" + quarters.size() + "]";
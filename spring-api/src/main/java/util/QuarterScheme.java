@@ -4,8 +4,10 @@ package util;
  * Quarter scheme selector.
  * Q5_IT_PORTAL => 5-quarter split used by IT portal (Q1-Q5 with Mar 16-31 as Q5)
  * STANDARD_Q4  => Standard 4-quarter split (Q1-Q4)
+ * MONTHLY      => One period per calendar month, Apr-Mar (M01-M12)
  */
 public enum QuarterScheme {
     Q5_IT_PORTAL,
-    STANDARD_Q4
+    STANDARD_Q4,
+    MONTHLY
 }
\ No newline at end of file
@@ -24,6 +24,11 @@ public interface ReportExporter {
 	 */
 	void exportDetailedTransactions(File outputFile, List<TransactionRecord> transactions) throws Exception;
 	
+	/**
+	 * Export detailed transaction report straight from the columnar store
+	 */
+	void exportDetailedTransactions(File outputFile, TransactionStore transactions) throws Exception;
+	
 	/**
 	 * Export quarterly breakdown report
 	 */
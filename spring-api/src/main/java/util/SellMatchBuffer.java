@@ -0,0 +1,214 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Output of bulk sell matching in reusable parallel primitive arrays: one entry per sell with
+ * its cost, matched quantity and quantity per holding category, and one entry per matched lot
+ * with its buy day, quantity, cost and days held. Each call to FIFOCalculator.matchSells or a
+ * buffered replay overwrites the buffer from index 0; the arrays only grow, so a buffer sized
+ * for the largest symbol allocates nothing afterwards.
+ */
+public final class SellMatchBuffer {
+
+    // Per sell
+    private long[] sellEpochDays;
+    private double[] sellQuantities;
+    private double[] sellAmounts;
+    private double[] costs;
+    private long[] costPaise;
+    private double[] matchedQuantities;
+    private double[] unmatchedQuantities;
+    /** [sell * CATEGORY_COUNT + category] */
+    private double[] categoryQuantities;
+    private int[] firstMatches;
+    private int sellCount;
+
+    // Per matched lot
+    private long[] matchBuyEpochDays;
+    private double[] matchQuantities;
+    private double[] matchCosts;
+    private long[] matchCostPaise;
+    private int[] matchDaysHeld;
+    private int matchCount;
+
+    public SellMatchBuffer(int sellCapacity, int matchCapacity) {
+        allocateSells(Math.max(sellCapacity, 1));
+        allocateMatches(Math.max(matchCapacity, 1));
+    }
+
+    private void allocateSells(int capacity) {
+        sellEpochDays = new long[capacity];
+        sellQuantities = new double[capacity];
+        sellAmounts = new double[capacity];
+        costs = new double[capacity];
+        costPaise = new long[capacity];
+        matchedQuantities = new double[capacity];
+        unmatchedQuantities = new double[capacity];
+        categoryQuantities = new double[capacity * TransactionStore.CATEGORY_COUNT];
+        firstMatches = new int[capacity + 1];
+    }
+
+    private void allocateMatches(int capacity) {
+        matchBuyEpochDays = new long[capacity];
+        matchQuantities = new double[capacity];
+        matchCosts = new double[capacity];
+        matchCostPaise = new long[capacity];
+        matchDaysHeld = new int[capacity];
+    }
+
+    /**
+     * Empty the buffer, making room for at least the given number of sells
+     */
+    void reset(int sells) {
+        if (sells > costs.length) {
+            allocateSells(Math.max(sells, costs.length * 2));
+        }
+        sellCount = 0;
+        matchCount = 0;
+    }
+
+    /**
+     * Start the next sell; its matches follow until the next call
+     *
+     * @return index of the sell
+     */
+    int beginSell(long sellEpochDay, double quantity, double amount) {
+        if (sellCount == costs.length) {
+            int capacity = sellCount * 2;
+            sellEpochDays = Arrays.copyOf(sellEpochDays, capacity);
+            sellQuantities = Arrays.copyOf(sellQuantities, capacity);
+            sellAmounts = Arrays.copyOf(sellAmounts, capacity);
+            costs = Arrays.copyOf(costs, capacity);
+            costPaise = Arrays.copyOf(costPaise, capacity);
+            matchedQuantities = Arrays.copyOf(matchedQuantities, capacity);
+            unmatchedQuantities = Arrays.copyOf(unmatchedQuantities, capacity);
+            categoryQuantities = Arrays.copyOf(categoryQuantities, capacity * TransactionStore.CATEGORY_COUNT);
+            firstMatches = Arrays.copyOf(firstMatches, capacity + 1);
+        }
+        int s = sellCount++;
+        sellEpochDays[s] = sellEpochDay;
+        sellQuantities[s] = quantity;
+        sellAmounts[s] = amount;
+        costs[s] = 0;
+        costPaise[s] = 0;
+        matchedQuantities[s] = 0;
+        unmatchedQuantities[s] = 0;
+        Arrays.fill(categoryQuantities, s * TransactionStore.CATEGORY_COUNT,
+            (s + 1) * TransactionStore.CATEGORY_COUNT, 0);
+        firstMatches[s] = matchCount;
+        firstMatches[s + 1] = matchCount;
+        return s;
+    }
+
+    /**
+     * Add a matched lot to the current sell
+     */
+    void addMatch(long buyEpochDay, double quantity, double cost, long paise) {
+        if (matchCount == matchQuantities.length) {
+            int capacity = matchCount * 2;
+            matchBuyEpochDays = Arrays.copyOf(matchBuyEpochDays, capacity);
+            matchQuantities = Arrays.copyOf(matchQuantities, capacity);
+            matchCosts = Arrays.copyOf(matchCosts, capacity);
+            matchCostPaise = Arrays.copyOf(matchCostPaise, capacity);
+            matchDaysHeld = Arrays.copyOf(matchDaysHeld, capacity);
+        }
+        int s = sellCount - 1;
+        int daysHeld = (int) (sellEpochDays[s] - buyEpochDay);
+        matchBuyEpochDays[matchCount] = buyEpochDay;
+        matchQuantities[matchCount] = quantity;
+        matchCosts[matchCount] = cost;
+        matchCostPaise[matchCount] = paise;
+        matchDaysHeld[matchCount] = daysHeld;
+        matchCount++;
+        firstMatches[s + 1] = matchCount;
+
+        costs[s] += cost;
+        costPaise[s] += paise;
+        matchedQuantities[s] += quantity;
+        categoryQuantities[s * TransactionStore.CATEGORY_COUNT + TransactionStore.categoryOf(daysHeld)] += quantity;
+    }
+
+    void setUnmatchedQuantity(int sell, double quantity) {
+        unmatchedQuantities[sell] = quantity;
+    }
+
+    /**
+     * In exact mode a sell's cost is its paise total, as FIFOAllocation.useExactTotals does
+     */
+    void useExactCost(int sell) {
+        costs[sell] = Paise.toRupees(costPaise[sell]);
+    }
+
+    public int getSellCount() {
+        return sellCount;
+    }
+
+    public int getMatchCount() {
+        return matchCount;
+    }
+
+    public long getSellEpochDay(int sell) {
+        return sellEpochDays[sell];
+    }
+
+    public double getSellQuantity(int sell) {
+        return sellQuantities[sell];
+    }
+
+    public double getSellAmount(int sell) {
+        return sellAmounts[sell];
+    }
+
+    /** Cost of acquisition of the sell's matched quantity */
+    public double getCost(int sell) {
+        return costs[sell];
+    }
+
+    /** Exact cost of acquisition in paise */
+    public long getCostPaise(int sell) {
+        return costPaise[sell];
+    }
+
+    public double getMatchedQuantity(int sell) {
+        return matchedQuantities[sell];
+    }
+
+    /** Sold quantity no open lot was left for */
+    public double getUnmatchedQuantity(int sell) {
+        return unmatchedQuantities[sell];
+    }
+
+    /**
+     * Matched quantity of the sell held for the given TransactionStore category
+     * (INTRADAY, STCG or LTCG)
+     */
+    public double getCategoryQuantity(int sell, int category) {
+        return categoryQuantities[sell * TransactionStore.CATEGORY_COUNT + category];
+    }
+
+    /** Index of the sell's first match; its matches run up to getFirstMatch(sell + 1) */
+    public int getFirstMatch(int sell) {
+        return firstMatches[sell];
+    }
+
+    public long getMatchBuyEpochDay(int match) {
+        return matchBuyEpochDays[match];
+    }
+
+    public double getMatchQuantity(int match) {
+        return matchQuantities[match];
+    }
+
+    public double getMatchCost(int match) {
+        return matchCosts[match];
+    }
+
+    public long getMatchCostPaise(int match) {
+        return matchCostPaise[match];
+    }
+
+    public int getMatchDaysHeld(int match) {
+        return matchDaysHeld[match];
+    }
+}
@@ -0,0 +1,28 @@
+package util;
+
+/**
+ * Specific identification: a sale is matched against the lot it names, e.g. the buy leg of
+ * its own statement row, or for a lot restored from a checkpoint the open lot with the
+ * row's buy date, quantity and amount. Whatever that lot cannot cover, and sales naming no open lot, fall back to
+ * the oldest lots.
+ */
+final class SpecificLotStrategy implements CostBasisStrategy {
+
+    static final SpecificLotStrategy INSTANCE = new SpecificLotStrategy();
+
+    private SpecificLotStrategy() {
+    }
+
+    @Override
+    public boolean usesNamedLots() {
+        return true;
+    }
+
+    @Override
+    public double take(LotQueue lots, double quantity, int lotId) {
+        if (lotId >= 0 && lots.isOpen(lotId)) {
+            return lots.takeLot(lotId, quantity);
+        }
+        return lots.take(quantity);
+    }
+}
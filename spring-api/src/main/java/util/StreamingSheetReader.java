@@ -0,0 +1,403 @@
+package util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.ooxml.POIXMLException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.xmlbeans.XmlException;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheet;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.WorkbookDocument;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import exception.InvalidSecurityException;
+
+/**
+ * Reads .xlsx sheets row by row through POI's XSSFReader/SAX event API
+ * Only the current row is held in memory, so heap use does not grow with the sheet size
+ */
+public class StreamingSheetReader implements Closeable {
+
+    /**
+     * Callback invoked for every physical row of a sheet
+     */
+    public interface RowHandler {
+        /**
+         * @return false to stop reading the rest of the sheet
+         */
+        boolean handleRow(SheetRow row);
+    }
+
+    /**
+     * Cell kinds mirroring the XSSFCell types the loaders care about
+     */
+    public enum CellKind { BLANK, NUMERIC, STRING, FORMULA, BOOLEAN, ERROR }
+
+    private final OPCPackage opcPackage;
+    private final XSSFReader xssfReader;
+    private final ReadOnlySharedStringsTable sharedStrings;
+    private final List<String> sheetNames = new ArrayList<>();
+    private final List<String> sheetRelationIds = new ArrayList<>();
+    private boolean date1904;
+
+    public StreamingSheetReader(File file) throws IOException {
+        this(openPackage(file));
+    }
+
+    /**
+     * Read a workbook from a stream. The zip package is buffered in memory, so prefer the File
+     * constructor for large workbooks.
+     */
+    public StreamingSheetReader(InputStream in) throws IOException {
+        this(openPackage(in));
+    }
+
+    private StreamingSheetReader(OPCPackage opcPackage) throws IOException {
+        this.opcPackage = opcPackage;
+        try {
+            this.xssfReader = new XSSFReader(opcPackage);
+            this.sharedStrings = new ReadOnlySharedStringsTable(opcPackage, false);
+            readWorkbookInfo();
+        } catch (OpenXML4JException | SAXException | XmlException | POIXMLException e) {
+            opcPackage.revert();
+            throw new InvalidSecurityException(InvalidSecurityException.ErrorCode.PARSE_ERROR,
+                "Unable to read workbook structure: " + e.getMessage(), e);
+        }
+    }
+
+    private static OPCPackage openPackage(File file) {
+        try {
+            return OPCPackage.open(file, PackageAccess.READ);
+        } catch (Exception e) {
+            throw new InvalidSecurityException(InvalidSecurityException.ErrorCode.PARSE_ERROR,
+                "Unable to open workbook: " + file.getName(), e);
+        }
+    }
+
+    private static OPCPackage openPackage(InputStream in) throws IOException {
+        try {
+            return OPCPackage.open(in);
+        } catch (OpenXML4JException e) {
+            throw new InvalidSecurityException(InvalidSecurityException.ErrorCode.PARSE_ERROR,
+                "Unable to open workbook: " + e.getMessage(), e);
+        }
+    }
+
+    private void readWorkbookInfo() throws IOException, OpenXML4JException, XmlException {
+        try (InputStream workbookData = xssfReader.getWorkbookData()) {
+            CTWorkbook workbook = WorkbookDocument.Factory.parse(workbookData).getWorkbook();
+            for (CTSheet sheet : workbook.getSheets().getSheetArray()) {
+                sheetNames.add(sheet.getName());
+                sheetRelationIds.add(sheet.getId());
+            }
+            date1904 = workbook.isSetWorkbookPr() && workbook.getWorkbookPr().getDate1904();
+        }
+    }
+
+    public int getNumberOfSheets() {
+        return sheetNames.size();
+    }
+
+    public String getSheetName(int sheetIndex) {
+        return sheetNames.get(sheetIndex);
+    }
+
+    public boolean isDate1904() {
+        return date1904;
+    }
+
+    /**
+     * Stream every row of the given sheet to the handler, in sheet order
+     */
+    public void readSheet(int sheetIndex, RowHandler handler) throws IOException {
+        if (sheetIndex < 0 || sheetIndex >= sheetNames.size()) {
+            throw new InvalidSecurityException(InvalidSecurityException.ErrorCode.INVALID_DATA,
+                "Data sheet not found at index: " + sheetIndex);
+        }
+
+        try (InputStream sheetData = xssfReader.getSheet(sheetRelationIds.get(sheetIndex))) {
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(new SheetHandler(handler));
+            parser.parse(new InputSource(sheetData));
+        } catch (StopReadingException e) {
+            // Handler asked to stop early
+        } catch (SAXException | OpenXML4JException | ParserConfigurationException e) {
+            throw new InvalidSecurityException(InvalidSecurityException.ErrorCode.PARSE_ERROR,
+                "Failed to read sheet " + sheetNames.get(sheetIndex) + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Opened read-only, so revert rather than save on close
+        opcPackage.revert();
+    }
+
+    /**
+     * A reusable view of the row currently being parsed.
+     * Values are only valid for the duration of the handleRow callback.
+     */
+    public class SheetRow {
+        private int rowNum;
+        private int firstCellNum = -1;
+        private int lastCellNum = -1;
+        private CellKind[] kinds = new CellKind[32];
+        private double[] numbers = new double[32];
+        private String[] strings = new String[32];
+
+        private void reset(int rowNum) {
+            if (lastCellNum > 0) {
+                Arrays.fill(kinds, 0, lastCellNum, null);
+                Arrays.fill(strings, 0, lastCellNum, null);
+            }
+            this.rowNum = rowNum;
+            this.firstCellNum = -1;
+            this.lastCellNum = -1;
+        }
+
+        private void set(int column, CellKind kind, double number, String string) {
+            if (column >= kinds.length) {
+                int size = Math.max(column + 1, kinds.length * 2);
+                kinds = Arrays.copyOf(kinds, size);
+                numbers = Arrays.copyOf(numbers, size);
+                strings = Arrays.copyOf(strings, size);
+            }
+            kinds[column] = kind;
+            numbers[column] = number;
+            strings[column] = string;
+            if (firstCellNum < 0 || column < firstCellNum) firstCellNum = column;
+            if (column + 1 > lastCellNum) lastCellNum = column + 1;
+        }
+
+        /** 0-based row index */
+        public int getRowNum() { return rowNum; }
+
+        /** Index of the first defined cell, or -1 if the row has no cells */
+        public int getFirstCellNum() { return firstCellNum; }
+
+        /** Index of the last defined cell plus one, or -1 if the row has no cells */
+        public int getLastCellNum() { return lastCellNum; }
+
+        /** Kind of the cell at the given column, or null if the cell is not defined */
+        public CellKind getKind(int column) {
+            if (column < 0 || column >= lastCellNum) return null;
+            return kinds[column];
+        }
+
+        /** Numeric value of a NUMERIC or FORMULA cell (NaN if the formula result is not numeric) */
+        public double getNumeric(int column) {
+            return numbers[column];
+        }
+
+        /** Text of a STRING cell */
+        public String getString(int column) {
+            return strings[column];
+        }
+
+        /** Date of a NUMERIC cell as epoch day, honouring the workbook's 1904 date system; NO_DATE if negative */
+        public long getEpochDay(int column) {
+            return CellDecoder.excelSerialToEpochDay(numbers[column], date1904);
+        }
+
+        public boolean isEmpty() {
+            for (int i = Math.max(firstCellNum, 0); i < lastCellNum; i++) {
+                if (kinds[i] != null && kinds[i] != CellKind.BLANK) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Thrown from the SAX callbacks to abort parsing once the handler is done
+     */
+    private static final class StopReadingException extends SAXException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * SAX handler for worksheet XML (&lt;row&gt;/&lt;c&gt;/&lt;v&gt; elements)
+     */
+    private final class SheetHandler extends DefaultHandler {
+        private final RowHandler rowHandler;
+        private final SheetRow row = new SheetRow();
+        private final StringBuilder text = new StringBuilder();
+
+        private int lastRowNum = -1;
+        private int nextColumn;
+        private int column;
+        private String cellReference;
+        private String cellType;
+        private boolean hasFormula;
+        private boolean hasValue;
+        private boolean collecting;
+
+        SheetHandler(RowHandler rowHandler) {
+            this.rowHandler = rowHandler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row":
+                    String r = attributes.getValue("r");
+                    lastRowNum = r != null ? Integer.parseInt(r) - 1 : lastRowNum + 1;
+                    row.reset(lastRowNum);
+                    nextColumn = 0;
+                    break;
+                case "c":
+                    cellReference = attributes.getValue("r");
+                    column = cellReference != null ? columnIndex(cellReference) : nextColumn;
+                    cellType = attributes.getValue("t");
+                    hasFormula = false;
+                    hasValue = false;
+                    text.setLength(0);
+                    break;
+                case "f":
+                    hasFormula = true;
+                    break;
+                case "v":
+                case "t":
+                    // <t> only carries cell text inside inline strings (<is>)
+                    collecting = true;
+                    hasValue = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (collecting) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName) {
+                case "v":
+                case "t":
+                    collecting = false;
+                    break;
+                case "c":
+                    finishCell();
+                    nextColumn = column + 1;
+                    break;
+                case "row":
+                    if (!rowHandler.handleRow(row)) {
+                        throw new StopReadingException();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void finishCell() throws SAXException {
+            if (hasFormula) {
+                double value = Double.NaN;
+                if (hasValue && (cellType == null || "n".equals(cellType))) {
+                    value = parseNumber();
+                }
+                row.set(column, CellKind.FORMULA, value, null);
+                return;
+            }
+            if (!hasValue) {
+                row.set(column, CellKind.BLANK, 0, null);
+                return;
+            }
+            if (cellType == null || "n".equals(cellType)) {
+                row.set(column, CellKind.NUMERIC, parseNumber(), null);
+            } else if ("s".equals(cellType)) {
+                row.set(column, CellKind.STRING, 0, sharedString(sharedStringIndex()));
+            } else if ("inlineStr".equals(cellType) || "str".equals(cellType)) {
+                row.set(column, CellKind.STRING, 0, text.toString());
+            } else if ("b".equals(cellType)) {
+                row.set(column, CellKind.BOOLEAN, 0, null);
+            } else {
+                row.set(column, CellKind.ERROR, 0, null);
+            }
+        }
+
+        /** Value of the collected text, read in place; NaN if it is empty or not a number */
+        private double parseNumber() {
+            return text.length() == 0 ? Double.NaN : CellDecoder.parseAmount(text);
+        }
+
+        /**
+         * Shared string index from the collected text, read in place
+         *
+         * @throws SAXException naming the cell if the index is not a number in the table
+         */
+        private int sharedStringIndex() throws SAXException {
+            long index = 0;
+            boolean seenDigit = false;
+            for (int i = 0; i < text.length(); i++) {
+                char ch = text.charAt(i);
+                if (ch >= '0' && ch <= '9') {
+                    index = Math.min(index * 10 + (ch - '0'), Integer.MAX_VALUE);
+                    seenDigit = true;
+                } else if (!Character.isWhitespace(ch)) {
+                    throw new SAXException("Bad shared string index '" + text + "' in cell " + cellReference());
+                }
+            }
+            if (!seenDigit) {
+                throw new SAXException("Empty shared string index in cell " + cellReference());
+            }
+            return (int) index;
+        }
+
+        private String sharedString(int index) throws SAXException {
+            try {
+                return sharedStrings.getItemAt(index).getString();
+            } catch (IndexOutOfBoundsException e) {
+                throw new SAXException("Shared string index " + index + " out of range in cell " + cellReference(), e);
+            }
+        }
+
+        /** A1-style reference of the current cell, built from its position if the sheet omits it */
+        private String cellReference() {
+            if (cellReference != null) {
+                return cellReference;
+            }
+            StringBuilder letters = new StringBuilder();
+            for (int n = column + 1; n > 0; n = (n - 1) / 26) {
+                letters.insert(0, (char) ('A' + (n - 1) % 26));
+            }
+            return letters.append(lastRowNum + 1).toString();
+        }
+    }
+
+    /**
+     * Convert the column part of an A1-style reference to a 0-based index
+     */
+    private static int columnIndex(String cellReference) {
+        int index = 0;
+        for (int i = 0; i < cellReference.length(); i++) {
+            char ch = cellReference.charAt(i);
+            if (ch < 'A' || ch > 'Z') break;
+            index = index * 26 + (ch - 'A' + 1);
+        }
+        return index - 1;
+    }
+}
@@ -0,0 +1,242 @@
+package util;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar store of the normalized transaction rows read from a broker statement.
+ * Parsing fills it once; aggregation, exports and FIFO read it back without going
+ * through POI again. Each column is a primitive array, and symbols are dictionary
+ * encoded, so a row costs about 56 bytes however long its symbol is.
+ * Not thread-safe while being filled, read-only afterwards.
+ */
+public class TransactionStore {
+
+    /** Epoch day stored for rows without a readable date */
+    public static final long NO_DATE = CellDecoder.NO_DATE;
+
+    /** Symbol id stored for rows without a symbol */
+    public static final int NO_SYMBOL = -1;
+
+    /** Row categories, by days held */
+    public static final int INTRADAY = 0;
+    public static final int STCG = 1;
+    public static final int LTCG = 2;
+    public static final int CATEGORY_COUNT = 3;
+
+    private int size;
+    private long[] sellEpochDays;
+    private long[] buyEpochDays;
+    private int[] daysHeld;
+    private int[] symbolIds;
+    private double[] quantities;
+    private double[] buyAmounts;
+    private double[] sellAmounts;
+    private double[] stcgValues;
+
+    private final List<String> symbols = new ArrayList<>();
+    private final Map<String, Integer> symbolIndex = new HashMap<>();
+
+    public TransactionStore() {
+        this(256);
+    }
+
+    public TransactionStore(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        this.sellEpochDays = new long[capacity];
+        this.buyEpochDays = new long[capacity];
+        this.daysHeld = new int[capacity];
+        this.symbolIds = new int[capacity];
+        this.quantities = new double[capacity];
+        this.buyAmounts = new double[capacity];
+        this.sellAmounts = new double[capacity];
+        this.stcgValues = new double[capacity];
+    }
+
+    /**
+     * Append one transaction row without symbol, quantity or buy date
+     */
+    public void add(LocalDate sellDate, int daysHeld, double buyAmount, double sellAmount, double stcgValue) {
+        add(null, sellDate, null, 0, daysHeld, buyAmount, sellAmount, stcgValue);
+    }
+
+    /**
+     * Append one transaction row
+     *
+     * @param buyDate  null if unknown
+     * @param sellDate null if unreadable
+     * @param symbol   null if the statement has no symbol column
+     * @param quantity 0 if the statement has no quantity column
+     */
+    public void add(LocalDate buyDate, LocalDate sellDate, String symbol, double quantity,
+                    int daysHeld, double buyAmount, double sellAmount, double stcgValue) {
+        add(buyDate == null ? NO_DATE : buyDate.toEpochDay(), sellDate == null ? NO_DATE : sellDate.toEpochDay(),
+            symbol, quantity, daysHeld, buyAmount, sellAmount, stcgValue);
+    }
+
+    /**
+     * Append one transaction row with dates already decoded to epoch days (NO_DATE if unknown)
+     */
+    public void add(long buyEpochDay, long sellEpochDay, String symbol, double quantity,
+                    int daysHeld, double buyAmount, double sellAmount, double stcgValue) {
+        if (size == buyAmounts.length) {
+            grow(Math.max(size * 2, 16));
+        }
+        this.buyEpochDays[size] = buyEpochDay;
+        this.sellEpochDays[size] = sellEpochDay;
+        this.symbolIds[size] = symbolId(symbol);
+        this.quantities[size] = quantity;
+        this.daysHeld[size] = daysHeld;
+        this.buyAmounts[size] = buyAmount;
+        this.sellAmounts[size] = sellAmount;
+        this.stcgValues[size] = stcgValue;
+        size++;
+    }
+
+    /**
+     * Dictionary id for a symbol, adding it on first sight
+     */
+    private int symbolId(String symbol) {
+        if (symbol == null || symbol.isEmpty()) return NO_SYMBOL;
+        Integer id = symbolIndex.get(symbol);
+        if (id == null) {
+            id = symbols.size();
+            symbols.add(symbol);
+            symbolIndex.put(symbol, id);
+        }
+        return id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Sell date as epoch day, or NO_DATE */
+    public long getSellEpochDay(int index) {
+        return sellEpochDays[index];
+    }
+
+    /** Sell date, or null if the row had none */
+    public LocalDate getSellDate(int index) {
+        return toDate(sellEpochDays[index]);
+    }
+
+    /** Buy date as epoch day, or NO_DATE */
+    public long getBuyEpochDay(int index) {
+        return buyEpochDays[index];
+    }
+
+    /** Buy date, or null if the row had none */
+    public LocalDate getBuyDate(int index) {
+        return toDate(buyEpochDays[index]);
+    }
+
+    public int getDaysHeld(int index) {
+        return daysHeld[index];
+    }
+
+    /** Dictionary id of the row's symbol, or NO_SYMBOL */
+    public int getSymbolId(int index) {
+        return symbolIds[index];
+    }
+
+    /** Symbol of the row, or null */
+    public String getSymbol(int index) {
+        int id = symbolIds[index];
+        return id == NO_SYMBOL ? null : symbols.get(id);
+    }
+
+    /** Number of distinct symbols */
+    public int getSymbolCount() {
+        return symbols.size();
+    }
+
+    /** Dictionary id of a symbol, or null if no row has it */
+    public Integer symbolIdOf(String symbol) {
+        return symbolIndex.get(symbol);
+    }
+
+    /** Symbol for a dictionary id */
+    public String symbolForId(int symbolId) {
+        return symbols.get(symbolId);
+    }
+
+    /** Quantity, or 0 if the statement has no quantity column */
+    public double getQuantity(int index) {
+        return quantities[index];
+    }
+
+    public double getBuyAmount(int index) {
+        return buyAmounts[index];
+    }
+
+    public double getSellAmount(int index) {
+        return sellAmounts[index];
+    }
+
+    /** STCG column value for short-term rows, otherwise sell - buy */
+    public double getStcgValue(int index) {
+        return stcgValues[index];
+    }
+
+    /** INTRADAY, STCG or LTCG */
+    public int getCategory(int index) {
+        return categoryOf(daysHeld[index]);
+    }
+
+    /**
+     * Realized gain: the broker's STCG value for short-term rows, sell - buy otherwise
+     */
+    public double getProfit(int index) {
+        return categoryOf(daysHeld[index]) == STCG ? stcgValues[index] : sellAmounts[index] - buyAmounts[index];
+    }
+
+    /** Display name for a category */
+    public static String categoryName(int category) {
+        switch (category) {
+            case INTRADAY: return "Speculation";
+            case STCG: return "STCG";
+            default: return "LTCG";
+        }
+    }
+
+    /**
+     * Category for a holding period: same day is intraday, up to 365 days short term, longer is long term
+     */
+    public static int categoryOf(int daysHeld) {
+        if (daysHeld == 0) return INTRADAY;
+        return daysHeld <= 365 ? STCG : LTCG;
+    }
+
+    /**
+     * Release unused capacity once loading is done
+     */
+    public void trimToSize() {
+        if (size < buyAmounts.length) {
+            grow(size);
+        }
+    }
+
+    private void grow(int capacity) {
+        sellEpochDays = Arrays.copyOf(sellEpochDays, capacity);
+        buyEpochDays = Arrays.copyOf(buyEpochDays, capacity);
+        daysHeld = Arrays.copyOf(daysHeld, capacity);
+        symbolIds = Arrays.copyOf(symbolIds, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        buyAmounts = Arrays.copyOf(buyAmounts, capacity);
+        sellAmounts = Arrays.copyOf(sellAmounts, capacity);
+        stcgValues = Arrays.copyOf(stcgValues, capacity);
+    }
+
+    static LocalDate toDate(long epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    static long toEpochDay(LocalDate date) {
+        return date == null ? NO_DATE : date.toEpochDay();
+    }
+}
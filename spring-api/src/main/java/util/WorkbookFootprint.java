@@ -0,0 +1,137 @@
+package util;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.poi.ss.util.CellReference;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Cheap size survey of an .xlsx package, taken without parsing it: the used range of
+ * each worksheet (from its &lt;dimension&gt; element), the shared string count and the
+ * uncompressed XML sizes. Used to estimate how much heap a parse will need.
+ */
+public class WorkbookFootprint {
+
+    /** Enough of a sheet part to get past the XML prolog and sheetPr to the dimension */
+    private static final int HEAD_BYTES = 4096;
+
+    private static final Pattern DIMENSION = Pattern.compile("<(?:\\w+:)?dimension\\s+ref=\"([A-Z]+\\d+)(?::([A-Z]+\\d+))?\"");
+    private static final Pattern UNIQUE_COUNT = Pattern.compile("uniqueCount=\"(\\d+)\"");
+
+    private final long compressedSize;
+    private long totalCells;
+    private int maxRows;
+    private long sharedStrings;
+    private long sheetXmlBytes;
+
+    private WorkbookFootprint(long compressedSize) {
+        this.compressedSize = compressedSize;
+    }
+
+    /**
+     * Survey a workbook on disk, reading only the heads of the parts it needs
+     */
+    public static WorkbookFootprint scan(File file) throws IOException {
+        WorkbookFootprint footprint = new WorkbookFootprint(file.length());
+        try (ZipFile zip = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (isRelevant(entry.getName())) {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        footprint.read(entry.getName(), entry.getSize(), in.readNBytes(HEAD_BYTES));
+                    }
+                }
+            }
+        }
+        return footprint;
+    }
+
+    /**
+     * Survey a workbook from a stream of the given length
+     */
+    public static WorkbookFootprint scan(InputStream in, long compressedSize) throws IOException {
+        WorkbookFootprint footprint = new WorkbookFootprint(compressedSize);
+        // commons-compress, like POI, copes with the local headers some spreadsheet writers produce
+        ZipArchiveInputStream zin = new ZipArchiveInputStream(in, "UTF-8", true, true);
+        ZipArchiveEntry entry;
+        while ((entry = zin.getNextZipEntry()) != null) {
+            if (isRelevant(entry.getName())) {
+                byte[] head = zin.readNBytes(HEAD_BYTES);
+                long size = entry.getSize() >= 0 ? entry.getSize() : head.length + zin.transferTo(OutputStream.nullOutputStream());
+                footprint.read(entry.getName(), size, head);
+            }
+        }
+        return footprint;
+    }
+
+    /**
+     * Footprint for a package that could not be surveyed, so only its size is known
+     */
+    public static WorkbookFootprint unknown(long compressedSize) {
+        return new WorkbookFootprint(compressedSize);
+    }
+
+    private static boolean isRelevant(String name) {
+        return (name.startsWith("xl/worksheets/") && name.endsWith(".xml"))
+            || name.equals("xl/sharedStrings.xml");
+    }
+
+    private void read(String name, long uncompressedSize, byte[] head) {
+        String text = new String(head, StandardCharsets.UTF_8);
+        if (name.equals("xl/sharedStrings.xml")) {
+            Matcher m = UNIQUE_COUNT.matcher(text);
+            if (m.find()) {
+                sharedStrings = Long.parseLong(m.group(1));
+            }
+            return;
+        }
+
+        sheetXmlBytes += Math.max(0, uncompressedSize);
+        Matcher m = DIMENSION.matcher(text);
+        if (!m.find()) {
+            return;
+        }
+        CellReference last = new CellReference(m.group(2) != null ? m.group(2) : m.group(1));
+        long rows = last.getRow() + 1L;
+        long cols = last.getCol() + 1L;
+        totalCells += rows * cols;
+        maxRows = (int) Math.max(maxRows, Math.min(rows, Integer.MAX_VALUE));
+    }
+
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    /**
+     * Cells in the declared used range of all sheets. Ranges may be sparse, and some writers
+     * only ever declare A1, so treat this as one signal alongside getSheetXmlBytes().
+     */
+    public long getTotalCells() {
+        return totalCells;
+    }
+
+    /** Rows in the tallest sheet */
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    public long getSharedStrings() {
+        return sharedStrings;
+    }
+
+    /** Uncompressed size of all worksheet XML parts, 0 if unknown */
+    public long getSheetXmlBytes() {
+        return sheetXmlBytes;
+    }
+}
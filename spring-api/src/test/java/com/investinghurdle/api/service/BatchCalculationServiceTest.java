@@ -0,0 +1,143 @@
+package com.investinghurdle.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import com.investinghurdle.api.dto.BatchCalculationResponse;
+import com.investinghurdle.api.dto.BatchItemResponse;
+import com.investinghurdle.api.dto.QuarterDetailResponse;
+import com.investinghurdle.api.dto.StcgResponse;
+import com.investinghurdle.api.dto.TaxCalculationResponse;
+
+import util.ArithmeticMode;
+
+class BatchCalculationServiceTest {
+
+    /**
+     * Calculates each workbook as a fixed STCG result once released, counting the workbooks
+     * read off the request and the calculations started
+     */
+    private static final class StubCalculationService extends TaxCalculationService {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger read = new AtomicInteger();
+        final AtomicInteger calculating = new AtomicInteger();
+
+        StubCalculationService() {
+            ReflectionTestUtils.setField(this, "uploadDir", System.getProperty("java.io.tmpdir"));
+        }
+
+        @Override
+        UploadedWorkbook openUpload(String name, InputStream in, long maxSize) throws IOException {
+            read.incrementAndGet();
+            return super.openUpload(name, in, maxSize);
+        }
+
+        @Override
+        TaxCalculationResponse calculate(UploadedWorkbook upload, String financialYear, String quarterScheme,
+                                         String arithmetic, PeriodBreakdowns periodBreakdowns,
+                                         LotMatching lotMatching, IntConsumer progressListener) throws Exception {
+            calculating.incrementAndGet();
+            release.await(10, TimeUnit.SECONDS);
+            TaxCalculationResponse response = new TaxCalculationResponse();
+            response.setBrokerType("ZERODHA");
+            response.setStcg(new StcgResponse(100.10, 90.00, 10.10));
+            return response;
+        }
+    }
+
+    private static BatchCalculationService service(StubCalculationService calculations, int parallelism) {
+        BatchCalculationService service = new BatchCalculationService(parallelism, 500, DataSize.ofMegabytes(1), false);
+        ReflectionTestUtils.setField(service, "calculationService", calculations);
+        return service;
+    }
+
+    private static MockMultipartFile zipOf(int workbooks) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < workbooks; i++) {
+                zip.putNextEntry(new ZipEntry("client-" + i + ".xlsx"));
+                zip.write(("workbook " + i).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return new MockMultipartFile("files", "clients.zip", "application/zip", bytes.toByteArray());
+    }
+
+    @Test
+    void readsNoMoreWorkbooksAheadThanThePoolCalculates() throws Exception {
+        StubCalculationService calculations = new StubCalculationService();
+        BatchCalculationService service = service(calculations, 2);
+        try {
+            CompletableFuture<BatchCalculationResponse> batch = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return service.calculate(List.of(zipOf(6)), "FY 2024-25", null, null);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (calculations.calculating.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+            // Both threads are busy, so the third entry stays in the zip
+            assertEquals(2, calculations.read.get());
+
+            calculations.release.countDown();
+            BatchCalculationResponse response = batch.get(10, TimeUnit.SECONDS);
+            assertEquals(6, calculations.read.get());
+            assertEquals(6, response.getResults().size());
+            assertTrue(response.getResults().stream().allMatch(BatchItemResponse::isCompleted));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void paiseTotalsAreSummedExactly() {
+        List<BatchItemResponse> items = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            TaxCalculationResponse result = new TaxCalculationResponse();
+            result.setBrokerType("ZERODHA");
+            result.setStcg(new StcgResponse(0.10, 0.00, 0.10));
+            result.setStcgQuarterlyBreakdown(List.of(QuarterDetailResponse.forStcg(1, "Q1", "Apr - Jun",
+                "2024-04-01", "2024-06-30", 0.10, 0.10, 0.00)));
+            items.add(BatchItemResponse.completed("client-" + i + ".xlsx", result));
+        }
+        items.add(BatchItemResponse.failed("broken.xlsx", "Unreadable"));
+        BatchCalculationService service = new BatchCalculationService(1, 500, DataSize.ofMegabytes(1), false);
+        try {
+            TaxCalculationResponse exact = service.consolidate(items, "FY 2024-25", ArithmeticMode.PAISE);
+            assertEquals(1.00, exact.getStcg().getTotalStcg());
+            assertEquals(1.00, exact.getStcg().getFullValueOfConsideration());
+            assertEquals(1.00, exact.getStcgQuarterlyBreakdown().get(0).getStcgAmount());
+            assertEquals("PAISE", exact.getArithmetic());
+
+            // Doubles keep the drift of adding 0.1 ten times
+            TaxCalculationResponse doubles = service.consolidate(items, "FY 2024-25", ArithmeticMode.DOUBLE);
+            assertEquals(0.9999999999999999, doubles.getStcg().getTotalStcg());
+            assertEquals("ZERODHA", doubles.getBrokerType());
+        } finally {
+            service.shutdown();
+        }
+    }
+}
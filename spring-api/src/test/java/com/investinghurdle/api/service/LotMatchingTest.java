@@ -0,0 +1,56 @@
+package com.investinghurdle.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import util.CostBasisMethod;
+
+class LotMatchingTest {
+
+    @Test
+    void corporateActionsAreParsedAndPartOfTheCacheKey() {
+        LotMatching plain = LotMatching.parse("fifo", null, " ");
+        LotMatching split = LotMatching.parse("fifo", null, "TCS:2023-01-17:1.5, INFY:2024-06-14:2");
+        LotMatching sameSplit = LotMatching.parse("FIFO", null, "INFY:2024-06-14:2,TCS:2023-01-17:1.5");
+
+        assertNull(plain.getCorporateActions());
+        assertEquals("FIFO", plain.cacheKey());
+        assertEquals(2, split.getCorporateActions().factorBetween("INFY", 0, Long.MAX_VALUE));
+        assertNotEquals(plain.cacheKey(), split.cacheKey());
+        assertEquals(sameSplit.cacheKey(), split.cacheKey());
+        assertEquals("FIFO|INFY:2024-06-14:2.0,TCS:2023-01-17:1.5", split.cacheKey());
+    }
+
+    @Test
+    void corporateActionsNeedRematching() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> LotMatching.parse(null, null, "INFY:2024-06-14:2"));
+        assertEquals("Corporate actions need a cost basis other than BROKER: broker amounts do not use open lots",
+            e.getMessage());
+        assertSame(LotMatching.BROKER, LotMatching.of(CostBasisMethod.BROKER, LotMatching.parseActions("INFY:2024-06-14:2")));
+    }
+
+    @Test
+    void malformedCorporateActionsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> LotMatching.parse("FIFO", null, "INFY:2024-06-14"));
+        assertThrows(IllegalArgumentException.class, () -> LotMatching.parse("FIFO", null, "INFY:14/06/2024:2"));
+        assertThrows(IllegalArgumentException.class, () -> LotMatching.parse("FIFO", null, "INFY:2024-06-14:0"));
+        assertThrows(IllegalArgumentException.class, () -> LotMatching.parse("FIFO", null, "INFY:2024-06-14:two"));
+    }
+
+    @Test
+    void checkpointsAreSavedOnlyWhenAsked() {
+        assertFalse(LotMatching.parse("FIFO", "main", null).isSaveCheckpoint());
+        assertTrue(LotMatching.parse("FIFO", "main", null, true).isSaveCheckpoint());
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> LotMatching.parse("FIFO", " ", null, true));
+        assertEquals("Saving a checkpoint needs an account", e.getMessage());
+    }
+}
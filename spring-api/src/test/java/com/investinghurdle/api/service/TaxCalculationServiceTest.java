@@ -0,0 +1,30 @@
+package com.investinghurdle.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import util.ArithmeticMode;
+
+class TaxCalculationServiceTest {
+
+    @Test
+    void resolvesArithmeticCaseInsensitivelyWithConfiguredDefault() {
+        TaxCalculationService service = new TaxCalculationService();
+        ReflectionTestUtils.setField(service, "defaultArithmetic", ArithmeticMode.PAISE);
+        assertEquals(ArithmeticMode.PAISE, service.resolveArithmetic(null));
+        assertEquals(ArithmeticMode.PAISE, service.resolveArithmetic(" "));
+        assertEquals(ArithmeticMode.DOUBLE, service.resolveArithmetic(" double "));
+        assertEquals(ArithmeticMode.PAISE, service.resolveArithmetic("Paise"));
+    }
+
+    @Test
+    void unknownArithmeticIsRejected() {
+        TaxCalculationService service = new TaxCalculationService();
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> service.resolveArithmetic("decimal"));
+        assertEquals("Unknown arithmetic: decimal. Supported: [DOUBLE, PAISE]", e.getMessage());
+    }
+}
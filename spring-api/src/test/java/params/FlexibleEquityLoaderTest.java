@@ -0,0 +1,208 @@
+package params;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import params.FlexibleEquityLoader.ReadMode;
+import util.ArithmeticMode;
+import util.PeriodAccumulator;
+import util.QuarterConfig;
+import util.QuarterScheme;
+import util.TransactionStore;
+
+class FlexibleEquityLoaderTest {
+
+    @TempDir
+    static Path dir;
+
+    static Path workbook;
+
+    @BeforeAll
+    static void writeFixture() throws IOException {
+        workbook = dir.resolve("tradebook.xlsx");
+        try (XSSFWorkbook book = new XSSFWorkbook(); OutputStream out = new FileOutputStream(workbook.toFile())) {
+            CellStyle date = book.createCellStyle();
+            date.setDataFormat(book.getCreationHelper().createDataFormat().getFormat("dd-mm-yyyy"));
+            Sheet sheet = book.createSheet("Trades");
+            Row header = sheet.createRow(0);
+            String[] names = { "Symbol", "Buy Date", "Sell Date", "Quantity", "Buy Value", "Sell Value",
+                    "Short Term Profit", "Days Held" };
+            for (int i = 0; i < names.length; i++) {
+                header.createCell(i).setCellValue(names[i]);
+            }
+            int next = 1;
+            // Q1 intraday, plus thirty 10-paise trades that drift when summed as doubles
+            next = row(sheet, date, next, "INFY", "2023-05-10", "2023-05-10", 10, 100.10, 100.30, 0.20, 0);
+            for (int i = 0; i < 30; i++) {
+                next = row(sheet, date, next, "IDEA", "2023-06-01", "2023-06-01", 1, 0.10, 0.20, 0.10, 0);
+            }
+            // Q2 and Q3 short term; the broker's profit column is what STCG reports
+            next = row(sheet, date, next, "TCS", "2023-07-01", "2023-08-10", 5, 200.20, 250.05, 49.80, 40);
+            next = row(sheet, date, next, "TCS", "2023-09-01", "2023-11-20", 3, 1000.35, 990.10, -10.25, 80);
+            // Negative holding period from a bad buy date is still short term, as before the columnar store
+            next = row(sheet, date, next, "WIPRO", "2023-12-05", "2023-12-01", 1, 50.00, 55.00, 4.50, -4);
+            // Q4 long term
+            row(sheet, date, next, "HDFC", "2022-06-01", "2024-01-15", 2, 300.00, 412.34, 112.34, 593);
+            book.write(out);
+        }
+    }
+
+    private static int row(Sheet sheet, CellStyle date, int index, String symbol, String bought, String sold,
+                           double quantity, double buy, double sell, double profit, int days) {
+        Row row = sheet.createRow(index);
+        row.createCell(0).setCellValue(symbol);
+        row.createCell(1).setCellValue(LocalDate.parse(bought));
+        row.getCell(1).setCellStyle(date);
+        row.createCell(2).setCellValue(LocalDate.parse(sold));
+        row.getCell(2).setCellStyle(date);
+        row.createCell(3).setCellValue(quantity);
+        row.createCell(4).setCellValue(buy);
+        row.createCell(5).setCellValue(sell);
+        row.createCell(6).setCellValue(profit);
+        row.createCell(7).setCellValue(days);
+        return index + 1;
+    }
+
+    private static FlexibleEquityLoader load(ReadMode readMode, ArithmeticMode arithmeticMode) throws Exception {
+        QuarterConfig fy = QuarterConfig.forFinancialYear("FY 2023-24", QuarterScheme.STANDARD_Q4);
+        FlexibleEquityLoader loader = new FlexibleEquityLoader(workbook.toString(), fy, readMode);
+        loader.setArithmeticMode(arithmeticMode);
+        loader.initialize();
+        return loader;
+    }
+
+    @Test
+    void totalsBeforeInitializeAreAnError() throws Exception {
+        QuarterConfig fy = QuarterConfig.forFinancialYear("FY 2023-24", QuarterScheme.STANDARD_Q4);
+        FlexibleEquityLoader loader = new FlexibleEquityLoader(workbook.toString(), fy, ReadMode.WORKBOOK);
+        IllegalStateException e = assertThrows(IllegalStateException.class, loader::getTotalStcg);
+        assertEquals("Totals are not available before initialize()", e.getMessage());
+        assertThrows(IllegalStateException.class, loader::getPeriods);
+        loader.initialize();
+        assertEquals(112.34, loader.getTotalLtcg(), 1e-9);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ReadMode.class)
+    void paiseTotalsAreExact(ReadMode readMode) throws Exception {
+        FlexibleEquityLoader loader = load(readMode, ArithmeticMode.PAISE);
+
+        assertEquals(35, loader.getProcessedCount());
+        assertEquals(103.10, loader.getTotalIntraBuy());
+        assertEquals(106.30, loader.getTotalIntraSell());
+        assertEquals(3.20, loader.getTotalIntraProfit());
+        assertEquals(3.20, loader.getTotalIntraTurnover());
+        assertEquals(1250.55, loader.getTotalStcgBuy());
+        assertEquals(1295.15, loader.getTotalStcgSell());
+        assertEquals(44.60, loader.getTotalStcg());
+        assertEquals(300.00, loader.getTotalLtcgBuy());
+        assertEquals(412.34, loader.getTotalLtcgSell());
+        assertEquals(112.34, loader.getTotalLtcg());
+
+        PeriodAccumulator periods = loader.getPeriods();
+        assertEquals(3.20, periods.get(TransactionStore.INTRADAY, 1, PeriodAccumulator.PROFIT));
+        assertEquals(49.80, periods.get(TransactionStore.STCG, 2, PeriodAccumulator.PROFIT));
+        assertEquals(-5.75, periods.get(TransactionStore.STCG, 3, PeriodAccumulator.PROFIT));
+        assertEquals(112.34, periods.get(TransactionStore.LTCG, 4, PeriodAccumulator.PROFIT));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ReadMode.class)
+    void doubleTotalsAgreeWithPaise(ReadMode readMode) throws Exception {
+        FlexibleEquityLoader exact = load(readMode, ArithmeticMode.PAISE);
+        FlexibleEquityLoader approximate = load(readMode, ArithmeticMode.DOUBLE);
+
+        PeriodAccumulator expected = exact.getPeriods();
+        PeriodAccumulator actual = approximate.getPeriods();
+        for (int category = 0; category < TransactionStore.CATEGORY_COUNT; category++) {
+            for (int bucket = PeriodAccumulator.TOTAL; bucket <= expected.getPeriodCount(); bucket++) {
+                for (int metric = 0; metric < PeriodAccumulator.METRIC_COUNT; metric++) {
+                    assertEquals(expected.get(category, bucket, metric), actual.get(category, bucket, metric), 1e-6,
+                            TransactionStore.categoryName(category) + " bucket " + bucket + " metric " + metric);
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArithmeticMode.class)
+    void readModesAgree(ArithmeticMode arithmeticMode) throws Exception {
+        FlexibleEquityLoader workbookLoad = load(ReadMode.WORKBOOK, arithmeticMode);
+        FlexibleEquityLoader streamingLoad = load(ReadMode.STREAMING, arithmeticMode);
+        assertEquals(workbookLoad.getTotalStcg(), streamingLoad.getTotalStcg());
+        assertEquals(workbookLoad.getTotalLtcgSell(), streamingLoad.getTotalLtcgSell());
+        assertEquals(workbookLoad.getTotalIntraBuy(), streamingLoad.getTotalIntraBuy());
+    }
+
+    /**
+     * Totals the way the row-by-row loader summed them before the columnar store: days held 0 is
+     * intraday, up to 365 (negative included) short term with the broker's profit column per
+     * quarter, longer is long term. Indexed [category][bucket][BUY, SELL, PROFIT].
+     */
+    private static double[][][] baselineTotals(QuarterConfig fy) throws Exception {
+        double[][][] sums = new double[TransactionStore.CATEGORY_COUNT][fy.getQuarterCount() + 1][3];
+        try (XSSFWorkbook book = new XSSFWorkbook(workbook.toFile())) {
+            Sheet sheet = book.getSheetAt(0);
+            for (int r = 1; r <= sheet.getLastRowNum(); r++) {
+                Row row = sheet.getRow(r);
+                LocalDate sold = row.getCell(2).getLocalDateTimeCellValue().toLocalDate();
+                double buy = row.getCell(4).getNumericCellValue();
+                double sell = row.getCell(5).getNumericCellValue();
+                int days = (int) row.getCell(7).getNumericCellValue();
+                int category = days == 0 ? TransactionStore.INTRADAY
+                        : days <= 365 ? TransactionStore.STCG : TransactionStore.LTCG;
+                double profit = category == TransactionStore.STCG ? row.getCell(6).getNumericCellValue() : sell - buy;
+                double[] total = sums[category][PeriodAccumulator.TOTAL];
+                total[0] += buy;
+                total[1] += sell;
+                total[2] += sell - buy;
+                int quarter = fy.getQuarterNumber(sold);
+                if (quarter > 0) {
+                    double[] bucket = sums[category][quarter];
+                    bucket[0] += buy;
+                    bucket[1] += sell;
+                    bucket[2] += profit;
+                }
+            }
+        }
+        return sums;
+    }
+
+    @ParameterizedTest
+    @EnumSource(ReadMode.class)
+    void columnarTotalsMatchTheRowByRowBaseline(ReadMode readMode) throws Exception {
+        FlexibleEquityLoader loader = load(readMode, ArithmeticMode.DOUBLE);
+        double[][][] expected = baselineTotals(loader.getQuarterConfig());
+
+        PeriodAccumulator periods = loader.getPeriods();
+        for (int category = 0; category < TransactionStore.CATEGORY_COUNT; category++) {
+            for (int bucket = PeriodAccumulator.TOTAL; bucket <= periods.getPeriodCount(); bucket++) {
+                String where = TransactionStore.categoryName(category) + " bucket " + bucket;
+                assertEquals(expected[category][bucket][0], periods.get(category, bucket, PeriodAccumulator.BUY), 1e-9, where);
+                assertEquals(expected[category][bucket][1], periods.get(category, bucket, PeriodAccumulator.SELL), 1e-9, where);
+                if (bucket != PeriodAccumulator.TOTAL) {
+                    assertEquals(expected[category][bucket][2], periods.get(category, bucket, PeriodAccumulator.PROFIT), 1e-9, where);
+                }
+            }
+        }
+        assertEquals(expected[TransactionStore.STCG][PeriodAccumulator.TOTAL][2], loader.getTotalStcg(), 1e-9);
+        assertEquals(expected[TransactionStore.LTCG][PeriodAccumulator.TOTAL][2], loader.getTotalLtcg(), 1e-9);
+        assertEquals(expected[TransactionStore.INTRADAY][PeriodAccumulator.TOTAL][2], loader.getTotalIntraProfit(), 1e-9);
+    }
+}
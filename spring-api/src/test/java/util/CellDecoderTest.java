@@ -0,0 +1,113 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class CellDecoderTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+        "0                   | 0",
+        "42                  | 42",
+        "-42                 | -42",
+        "+42                 | 42",
+        "450.75              | 450.75",
+        "0.1                 | 0.1",
+        "'1,23,456.78'       | 123456.78",
+        "'1,234,567.89'      | 1234567.89",
+        "'₹ 450'             | 450",
+        "'₹1,00,000.50'      | 100000.50",
+        "'-₹ 100'            | -100",
+        "'$-12.5'            | -12.5",
+        "'$ 3,000'           | 3000",
+        "'  17.25  '         | 17.25",
+        "'\u00A0 99'         | 99",
+        "1.5E3               | 1500",
+        "1.5e+3              | 1500",
+        "2.5E-2              | 0.025",
+        "-7E0                | -7",
+        "1e308               | 1e308",
+        "4.9e-324            | 4.9e-324",
+        "12345678901234567890.5 | 12345678901234567890.5",
+        "0.000000000000000000000001 | 1e-24",
+        "3.14159265358979323846 | 3.14159265358979323846",
+    })
+    void parsesAmountsLikeDoubleParseDouble(String text, double expected) {
+        assertEquals(expected, CellDecoder.parseAmount(text));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "", " ", "\t", "₹", "$ ", ",", "\u00A0 " })
+    void blankAmountIsZero(String text) {
+        assertEquals(0, CellDecoder.parseAmount(text));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "abc", "-", "12abc", "1.2.3", "1e", "1e+", "--5", "N/A", "12 34", "." })
+    void badAmountIsNaN(String text) {
+        assertEquals(Double.NaN, CellDecoder.parseAmount(text));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "01/04/2023, 2023-04-01",
+        "1/4/2023, 2023-04-01",
+        "31/03/2024, 2024-03-31",
+        "29/02/2024, 2024-02-29",
+        "' 15/08/1947 ', 1947-08-15",
+        "2023-04-01, 2023-04-01",
+        "1999-12-31, 1999-12-31",
+    })
+    void parsesDayMonthYearAndIsoDates(String text, LocalDate expected) {
+        assertEquals(expected.toEpochDay(), CellDecoder.parseEpochDay(text));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "", "2023", "29/02/2023", "31/04/2023", "00/01/2023", "01/13/2023", "2023/04/01",
+        "01-04-2023", "2023-4-1", "01/04/23", "01/04/2023 10:00", "1/4-2023", "abc" })
+    void rejectsOtherDateText(String text) {
+        assertEquals(CellDecoder.NO_DATE, CellDecoder.parseEpochDay(text));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "1, false, 1900-01-01",
+        "59, false, 1900-02-28",
+        "61, false, 1900-03-01",
+        "45017, false, 2023-04-01",
+        "45017.75, false, 2023-04-01",
+        "45016.9999999999, false, 2023-04-01",
+        "0, true, 1904-01-01",
+        "43555, true, 2023-04-01",
+        "43555.5, true, 2023-04-01",
+    })
+    void convertsExcelSerials(double serial, boolean date1904, LocalDate expected) {
+        assertEquals(expected.toEpochDay(), CellDecoder.excelSerialToEpochDay(serial, date1904));
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = { -1, -0.5, Double.NaN })
+    void rejectsNegativeOrMissingSerials(double serial) {
+        assertEquals(CellDecoder.NO_DATE, CellDecoder.excelSerialToEpochDay(serial, false));
+        assertEquals(CellDecoder.NO_DATE, CellDecoder.excelSerialToEpochDay(serial, true));
+    }
+
+    @Test
+    void serialsAgreeWithPoi() {
+        for (double serial = 61; serial < 80_000; serial += 13.37) {
+            for (boolean date1904 : new boolean[] { false, true }) {
+                LocalDateTime poi = DateUtil.getLocalDateTime(serial, date1904);
+                assertEquals(poi.toLocalDate().toEpochDay(), CellDecoder.excelSerialToEpochDay(serial, date1904),
+                    serial + (date1904 ? " (1904)" : " (1900)"));
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class CorporateActionsTest {
+
+    private static long day(String date) {
+        return LocalDate.parse(date).toEpochDay();
+    }
+
+    @Test
+    void factorCountsActionsAfterTheFromDayThroughTheToDay() {
+        CorporateActions actions = CorporateActions.parse("INFY:2024-06-14:5,INFY:2023-09-01:2");
+        assertEquals(10, actions.factorBetween("INFY", day("2023-01-01"), day("2024-12-31")));
+        assertEquals(5, actions.factorBetween("INFY", day("2023-09-01"), day("2024-06-14")));
+        assertEquals(2, actions.factorBetween("INFY", day("2023-08-31"), day("2024-06-13")));
+        assertEquals(1, actions.factorBetween("INFY", day("2024-06-14"), day("2024-12-31")));
+        assertEquals(1, actions.factorBetween("INFY", day("2024-12-31"), day("2023-01-01")));
+        assertEquals(1, actions.factorBetween("TCS", day("2023-01-01"), day("2024-12-31")));
+    }
+
+    @Test
+    void textFormRoundTripsInCanonicalOrder() {
+        CorporateActions actions = new CorporateActions()
+            .add("TCS", LocalDate.parse("2023-01-17"), 1.5)
+            .add("INFY", LocalDate.parse("2024-06-14"), 5)
+            .add("INFY", LocalDate.parse("2023-09-01"), 2);
+        String text = "INFY:2023-09-01:2.0,INFY:2024-06-14:5.0,TCS:2023-01-17:1.5";
+        assertEquals(text, actions.toString());
+        assertEquals(text, CorporateActions.parse(text).toString());
+        assertTrue(CorporateActions.parse(" ").isEmpty());
+    }
+
+    @Test
+    void engineSplitsLotsCarriedInFromACheckpoint() {
+        // Ten shares open at the year start, split 1:2 in June, twenty sold in July
+        LotQueue open = new LotQueue();
+        open.add(day("2023-05-01"), 10, 1000.00);
+        LotCheckpoint opening = new LotCheckpoint(day("2024-04-01"));
+        opening.put("INFY", open);
+        TransactionStore rows = new TransactionStore();
+        rows.add(LocalDate.parse("2023-05-01"), LocalDate.parse("2024-07-01"), "INFY", 20, 427, 1000.00, 1500.00, 0);
+        List<QuarterConfig> year = List.of(QuarterConfig.forFinancialYear("FY 2024-25", QuarterScheme.STANDARD_Q4));
+
+        // Unsplit, the checkpoint holds only half the row's buy leg, so the rest is opened at the row's cost
+        PortfolioFifoEngine.Result unadjusted = run(opening, null, rows, year);
+        assertEquals(0, unadjusted.getUnmatchedSellQuantity());
+        assertEquals(1500.00, unadjusted.getPeriods(0).get(TransactionStore.LTCG, 2, PeriodAccumulator.BUY));
+
+        PortfolioFifoEngine.Result split = run(opening, CorporateActions.parse("INFY:2024-06-14:2"), rows, year);
+        assertEquals(0, split.getUnmatchedSellQuantity());
+        assertEquals(1000.00, split.getPeriods(0).get(TransactionStore.LTCG, 2, PeriodAccumulator.BUY));
+        assertEquals(1500.00, split.getPeriods(0).get(TransactionStore.LTCG, 2, PeriodAccumulator.SELL));
+        assertEquals(0, split.getClosingLots().getLotCount());
+    }
+
+    private static PortfolioFifoEngine.Result run(LotCheckpoint opening, CorporateActions actions,
+                                                  TransactionStore rows, List<QuarterConfig> configs) {
+        PortfolioFifoEngine engine = new PortfolioFifoEngine(ArithmeticMode.PAISE, CostBasisMethod.FIFO);
+        engine.setOpeningLots(opening);
+        engine.setLastDay(day("2025-03-31"));
+        engine.setCorporateActions(actions);
+        return engine.run(rows, configs);
+    }
+}
@@ -0,0 +1,129 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class CostBasisStrategyTest {
+
+    private static final long FIRST = LocalDate.parse("2023-04-10").toEpochDay();
+    private static final long SECOND = LocalDate.parse("2023-06-10").toEpochDay();
+    private static final long SOLD = LocalDate.parse("2023-09-01").toEpochDay();
+
+    /** Ten shares at 100, then ten at 200 */
+    private static FIFOCalculator calculator(CostBasisMethod method, ArithmeticMode mode) {
+        FIFOCalculator calculator = new FIFOCalculator("INFY", mode, method);
+        calculator.addBuyOrder(FIRST, 10, 1000.00);
+        calculator.addBuyOrder(SECOND, 10, 2000.00);
+        return calculator;
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArithmeticMode.class)
+    void fifoSellsTheOldestLotsFirst(ArithmeticMode mode) {
+        FIFOAllocation sale = calculator(CostBasisMethod.FIFO, mode).calculateCostBasis(SOLD, 15, 3000.00, -1);
+        assertEquals(2000.00, sale.getTotalCostOfAcquisition(), 1e-9);
+        assertEquals(LocalDate.ofEpochDay(FIRST), sale.getMatches().get(0).getBuyDate());
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArithmeticMode.class)
+    void lifoSellsTheNewestLotsFirst(ArithmeticMode mode) {
+        FIFOCalculator calculator = calculator(CostBasisMethod.LIFO, mode);
+        FIFOAllocation sale = calculator.calculateCostBasis(SOLD, 15, 3000.00, -1);
+
+        List<BuyOrderMatch> matches = sale.getMatches();
+        assertEquals(LocalDate.ofEpochDay(SECOND), matches.get(0).getBuyDate());
+        assertEquals(10, matches.get(0).getBuyQuantity());
+        assertEquals(LocalDate.ofEpochDay(FIRST), matches.get(1).getBuyDate());
+        assertEquals(5, matches.get(1).getBuyQuantity());
+        assertEquals(2500.00, sale.getTotalCostOfAcquisition(), 1e-9);
+        assertEquals(500.00, calculator.getTotalPendingBuysCost(), 1e-9);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArithmeticMode.class)
+    void averageCostPoolsTheLotsButDatesThemOldestFirst(ArithmeticMode mode) {
+        FIFOCalculator calculator = calculator(CostBasisMethod.AVERAGE, mode);
+        FIFOAllocation sale = calculator.calculateCostBasis(SOLD, 15, 3000.00, -1);
+
+        assertEquals(2250.00, sale.getTotalCostOfAcquisition(), 1e-9);
+        assertEquals(LocalDate.ofEpochDay(FIRST), sale.getMatches().get(0).getBuyDate());
+        assertEquals(150.00, sale.getMatches().get(1).getUnitCost(), 1e-9);
+        assertEquals(750.00, calculator.getTotalPendingBuysCost(), 1e-9);
+
+        // Settled lots carry the pool's unit cost
+        List<BuyOrder> open = calculator.getPendingBuyOrders();
+        assertEquals(1, open.size());
+        assertEquals(150.00, open.get(0).getUnitCost(), 1e-9);
+
+        FIFOAllocation rest = calculator.calculateCostBasis(SOLD, 5, 1000.00, -1);
+        assertEquals(750.00, rest.getTotalCostOfAcquisition(), 1e-9);
+        assertEquals(0, calculator.getTotalPendingBuysCost(), 1e-9);
+    }
+
+    @Test
+    void averageCostSharesPaiseExactly() {
+        FIFOCalculator calculator = new FIFOCalculator("INFY", ArithmeticMode.PAISE, CostBasisMethod.AVERAGE);
+        calculator.addBuyOrder(FIRST, 1, 100.00);
+        calculator.addBuyOrder(SECOND, 2, 100.01);
+        long total = 0;
+        for (int i = 0; i < 3; i++) {
+            total += calculator.calculateCostBasis(SOLD, 1, 70.00, -1).getTotalCostPaise();
+        }
+        assertEquals(20_001, total);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArithmeticMode.class)
+    void specificLotSellsTheNamedLot(ArithmeticMode mode) {
+        FIFOCalculator calculator = new FIFOCalculator("INFY", mode, CostBasisMethod.SPECIFIC_LOT);
+        calculator.addBuyOrder(FIRST, 10, 1000.00);
+        int second = calculator.addBuyOrder(SECOND, 10, 2000.00);
+
+        FIFOAllocation sale = calculator.calculateCostBasis(SOLD, 4, 1000.00, second);
+        assertEquals(1, sale.getMatches().size());
+        assertEquals(LocalDate.ofEpochDay(SECOND), sale.getMatches().get(0).getBuyDate());
+        assertEquals(800.00, sale.getTotalCostOfAcquisition(), 1e-9);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArithmeticMode.class)
+    void specificLotFallsBackToTheOldestWhenTheNamedLotIsNotOpen(ArithmeticMode mode) {
+        FIFOCalculator calculator = new FIFOCalculator("INFY", mode, CostBasisMethod.SPECIFIC_LOT);
+        calculator.addBuyOrder(FIRST, 10, 1000.00);
+        int second = calculator.addBuyOrder(SECOND, 10, 2000.00);
+        calculator.addBuyOrder(SOLD, 10, 3000.00);
+        calculator.calculateCostBasis(SOLD, 10, 2500.00, second);
+
+        // The second lot is used up, so its name no longer counts
+        FIFOAllocation sale = calculator.calculateCostBasis(SOLD, 12, 3600.00, second);
+        List<BuyOrderMatch> matches = sale.getMatches();
+        assertEquals(LocalDate.ofEpochDay(FIRST), matches.get(0).getBuyDate());
+        assertEquals(10, matches.get(0).getBuyQuantity());
+        assertEquals(LocalDate.ofEpochDay(SOLD), matches.get(1).getBuyDate());
+        assertEquals(2, matches.get(1).getBuyQuantity());
+        assertEquals(1600.00, sale.getTotalCostOfAcquisition(), 1e-9);
+
+        // A lot id that was never issued behaves the same
+        FIFOAllocation unknown = calculator.calculateCostBasis(SOLD, 1, 300.00, 99);
+        assertEquals(300.00, unknown.getTotalCostOfAcquisition(), 1e-9);
+        assertEquals(0, unknown.getUnmatchedQuantity());
+    }
+
+    @Test
+    void specificLotTakesTheRestOfAnOversizedSaleFromTheOldest() {
+        FIFOCalculator calculator = new FIFOCalculator("INFY", ArithmeticMode.PAISE, CostBasisMethod.SPECIFIC_LOT);
+        calculator.addBuyOrder(FIRST, 10, 1000.00);
+        int second = calculator.addBuyOrder(SECOND, 10, 2000.00);
+        FIFOAllocation sale = calculator.calculateCostBasis(SOLD, 25, 5000.00, second);
+        assertEquals(3000.00, sale.getTotalCostOfAcquisition());
+        assertEquals(5, sale.getUnmatchedQuantity());
+        assertEquals(5, calculator.getUnmatchedSellQuantity());
+    }
+}
@@ -0,0 +1,222 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class LotCheckpointTest {
+
+    private static long day(String date) {
+        return LocalDate.parse(date).toEpochDay();
+    }
+
+    private static byte[] bytes(LotCheckpoint checkpoint) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        checkpoint.write(out);
+        return out.toByteArray();
+    }
+
+    private static LotCheckpoint read(byte[] bytes) throws IOException {
+        return LotCheckpoint.read(new ByteArrayInputStream(bytes));
+    }
+
+    private static void assertSameLots(LotQueue expected, LotQueue actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getBuyEpochDay(i), actual.getBuyEpochDay(i));
+            assertEquals(expected.getQuantity(i), actual.getQuantity(i));
+            assertEquals(expected.getTotalAmount(i), actual.getTotalAmount(i));
+            assertEquals(expected.getRemainingQuantity(i), actual.getRemainingQuantity(i));
+            assertEquals(expected.getRemainingUnits(i), actual.getRemainingUnits(i));
+            assertEquals(expected.getRemainingPaise(i), actual.getRemainingPaise(i));
+        }
+    }
+
+    @Test
+    void writesTheVersionOneLayout() throws IOException {
+        LotQueue open = new LotQueue();
+        open.add(day("2023-06-01"), 10, 1234.56);
+        open.take(4);
+        LotCheckpoint checkpoint = new LotCheckpoint(day("2024-04-01"));
+        checkpoint.put("INFY", open);
+        byte[] written = bytes(checkpoint);
+
+        assertArrayEquals(new byte[] { 'H', 'L', 'O', 'T', 0, 1 }, Arrays.copyOf(written, 6));
+        // Header, then the symbol's name and count, then six fixed-width fields per lot
+        assertEquals(4 + 2 + 8 + 4 + (2 + 4) + 4 + 6 * 8, written.length);
+
+        LotCheckpoint reread = read(written);
+        assertEquals(day("2024-04-01"), reread.getBoundaryEpochDay());
+        assertSameLots(open, reread.get("INFY"));
+        assertEquals(6, reread.get("INFY").getRemainingQuantity(0));
+        assertEquals(74_074, reread.get("INFY").getRemainingPaise(0));
+    }
+
+    @Test
+    void keepsACopyAndLeavesOutSymbolsWithoutLots() {
+        LotQueue open = new LotQueue();
+        open.add(day("2023-06-01"), 10, 1000.00);
+        LotCheckpoint checkpoint = new LotCheckpoint(day("2024-04-01"));
+        checkpoint.put("INFY", open);
+        checkpoint.put("TCS", new LotQueue());
+        open.take(10);
+
+        assertEquals(1, checkpoint.getLotCount());
+        assertEquals(10, checkpoint.get("INFY").getRemainingQuantity(0));
+        assertNull(checkpoint.get("TCS"));
+    }
+
+    @Test
+    void rejectsOtherStreams() throws IOException {
+        LotCheckpoint checkpoint = new LotCheckpoint(day("2024-04-01"));
+        LotQueue open = new LotQueue();
+        open.add(day("2023-06-01"), 10, 1000.00);
+        checkpoint.put("INFY", open);
+        byte[] written = bytes(checkpoint);
+
+        byte[] badMagic = written.clone();
+        badMagic[0] = 'X';
+        assertEquals("Not a lot checkpoint", assertThrows(IOException.class, () -> read(badMagic)).getMessage());
+        byte[] badVersion = written.clone();
+        badVersion[5] = 2;
+        assertEquals("Unsupported lot checkpoint version 2",
+            assertThrows(IOException.class, () -> read(badVersion)).getMessage());
+        assertThrows(EOFException.class, () -> read(Arrays.copyOf(written, written.length - 1)));
+    }
+
+    private static final String[][] TRADES = {
+        { "2023-05-01", "2023-08-01", "INFY", "5", "92", "500.00", "600.00", "100.00" },
+        { "2023-06-01", "2024-05-01", "INFY", "20", "335", "1200.00", "1500.00", "300.00" },
+        { "2024-01-10", "2024-09-01", "INFY", "6", "235", "330.33", "420.00", "89.67" },
+        { "2024-02-01", "2025-02-03", "INFY", "4", "368", "250.00", "300.00", "0" },
+        { "2023-07-01", "2024-06-01", "TCS", "3", "336", "900.00", "1000.00", "100.00" },
+        { "2024-05-01", "2024-05-20", "TCS", "1", "19", "310.00", "305.00", "-5.00" },
+        { "2023-09-01", "2025-06-02", "HDFC", "2", "640", "3000.00", "3300.00", "0" },
+    };
+
+    /**
+     * Rows of two years of trades, with a 1:2 split in the second, sold from..to as a P&L
+     * statement of those days lists them; row quantities are as of the sell date
+     */
+    private static TransactionStore sold(String from, String to) {
+        TransactionStore rows = new TransactionStore();
+        for (String[] trade : TRADES) {
+            LocalDate sellDate = LocalDate.parse(trade[1]);
+            if (!sellDate.isBefore(LocalDate.parse(from)) && !sellDate.isAfter(LocalDate.parse(to))) {
+                rows.add(LocalDate.parse(trade[0]), sellDate, trade[2], Double.parseDouble(trade[3]),
+                    Integer.parseInt(trade[4]), Double.parseDouble(trade[5]), Double.parseDouble(trade[6]),
+                    Double.parseDouble(trade[7]));
+            }
+        }
+        return rows;
+    }
+
+    private static TransactionStore allYears() {
+        return sold("2000-01-01", "2099-12-31");
+    }
+
+    private static PortfolioFifoEngine engine(ArithmeticMode mode, LotCheckpoint opening, String lastDay) {
+        PortfolioFifoEngine engine = new PortfolioFifoEngine(mode, CostBasisMethod.FIFO);
+        engine.setOpeningLots(opening);
+        engine.setLastDay(day(lastDay));
+        engine.setCorporateActions(CorporateActions.parse("INFY:2024-04-15:2"));
+        return engine;
+    }
+
+    private static final List<QuarterConfig> FIRST_YEAR =
+        List.of(QuarterConfig.forFinancialYear("FY 2023-24", QuarterScheme.STANDARD_Q4));
+    private static final List<QuarterConfig> SECOND_YEAR =
+        List.of(QuarterConfig.forFinancialYear("FY 2024-25", QuarterScheme.STANDARD_Q4));
+
+    /**
+     * The full replay's totals also hold the first year's sells, so compare the quarters
+     */
+    private static void assertSameQuarters(PeriodAccumulator expected, PeriodAccumulator actual) {
+        for (int category = 0; category < TransactionStore.CATEGORY_COUNT; category++) {
+            for (int bucket = 1; bucket <= expected.getPeriodCount(); bucket++) {
+                for (int metric = 0; metric < PeriodAccumulator.METRIC_COUNT; metric++) {
+                    assertEquals(expected.get(category, bucket, metric), actual.get(category, bucket, metric), 1e-9,
+                        TransactionStore.categoryName(category) + " bucket " + bucket + " metric " + metric);
+                }
+            }
+        }
+        // INFY's twenty post-split shares and both TCS sales
+        assertEquals(1500.00 + 305.00 + 1000.00, actual.get(TransactionStore.STCG, 1, PeriodAccumulator.SELL), 1e-9);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArithmeticMode.class)
+    void nextYearsStatementRunFromLastYearsCheckpointMatchesAFullReplay(ArithmeticMode mode) throws IOException {
+        // Each year's statement lists only that year's sales, so last year's leaves no lot open
+        LotCheckpoint yearEnd = engine(mode, null, "2024-03-31").run(sold("2023-04-01", "2024-03-31"), FIRST_YEAR)
+            .getClosingLots();
+        assertEquals(day("2024-04-01"), yearEnd.getBoundaryEpochDay());
+        assertEquals(0, yearEnd.getLotCount());
+        LotCheckpoint reloaded = read(bytes(yearEnd));
+
+        // The lots bought last year and sold this year come from this year's rows
+        PortfolioFifoEngine.Result fromCheckpoint = engine(mode, reloaded, "2025-03-31")
+            .run(sold("2024-04-01", "2025-03-31"), SECOND_YEAR);
+        PortfolioFifoEngine.Result replayed = engine(mode, null, "2025-03-31").run(allYears(), SECOND_YEAR);
+
+        assertEquals(0, fromCheckpoint.getUnmatchedSellQuantity());
+        assertSameQuarters(replayed.getPeriods(0), fromCheckpoint.getPeriods(0));
+        // HDFC is sold in a later year's statement
+        assertEquals(day("2025-04-01"), fromCheckpoint.getClosingLots().getBoundaryEpochDay());
+        assertEquals(0, fromCheckpoint.getClosingLots().getLotCount());
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArithmeticMode.class)
+    void checkpointLotsAreNotOpenedTwiceFromTheStoreThatWroteThem(ArithmeticMode mode) throws IOException {
+        TransactionStore rows = allYears();
+        LotCheckpoint yearEnd = engine(mode, null, "2024-03-31").run(rows, FIRST_YEAR).getClosingLots();
+        assertEquals(10, yearEnd.get("INFY").getRemainingQuantity(0));
+        LotCheckpoint reloaded = read(bytes(yearEnd));
+
+        PortfolioFifoEngine.Result fromCheckpoint = engine(mode, reloaded, "2025-03-31").run(rows, SECOND_YEAR);
+        PortfolioFifoEngine.Result replayed = engine(mode, null, "2025-03-31").run(rows, SECOND_YEAR);
+
+        assertEquals(0, fromCheckpoint.getUnmatchedSellQuantity());
+        assertSameQuarters(replayed.getPeriods(0), fromCheckpoint.getPeriods(0));
+        LotCheckpoint closing = fromCheckpoint.getClosingLots();
+        assertEquals(1, closing.getLotCount());
+        assertSameLots(replayed.getClosingLots().get("HDFC"), closing.get("HDFC"));
+    }
+
+    @Test
+    void legsPartlyHeldByTheCheckpointOpenOnlyTheRest() {
+        // The checkpoint holds 4 of a 10-share leg bought on 2023-06-01
+        LotQueue held = new LotQueue();
+        held.add(day("2023-06-01"), 10, 1000.00);
+        held.take(6);
+        TransactionStore rows = new TransactionStore();
+        rows.add(LocalDate.parse("2023-06-01"), LocalDate.parse("2024-05-01"), "INFY", 10, 335, 1000.00, 1500.00, 0);
+        rows.add(LocalDate.parse("2023-05-01"), LocalDate.parse("2024-05-02"), "INFY", 2, 367, 180.00, 300.00, 0);
+
+        FIFOCalculator calculator = new FIFOCalculator("INFY");
+        calculator.openAt(day("2024-04-01"), held, rows, new int[] { 0, 1 }, 0, 2);
+
+        List<BuyOrder> open = calculator.getPendingBuyOrders();
+        assertEquals(3, open.size());
+        // In buy date order: the missing May leg, the checkpoint's lot, then the rest of the June leg
+        assertEquals(LocalDate.parse("2023-05-01"), open.get(0).getBuyDate());
+        assertEquals(2, open.get(0).getRemainingQuantity());
+        assertEquals(4, open.get(1).getRemainingQuantity());
+        assertEquals(6, open.get(2).getRemainingQuantity());
+        assertEquals(180.00 + 400.00 + 600.00, calculator.getTotalPendingBuysCost(), 1e-9);
+    }
+}
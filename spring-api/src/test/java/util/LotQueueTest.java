@@ -0,0 +1,184 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LotQueueTest {
+
+    @Test
+    void takesOldestFirstAcrossLots() {
+        LotQueue lots = new LotQueue();
+        lots.add(100, 10, 1000.00);
+        lots.add(200, 10, 2000.00);
+
+        assertEquals(4, lots.take(4));
+        assertEquals(100, lots.getTakenBuyEpochDay());
+        assertEquals(100.00, lots.getTakenUnitCost());
+        assertEquals(40_000, lots.getTakenPaise());
+        assertEquals(6, lots.take(9));
+        assertEquals(60_000, lots.getTakenPaise());
+        assertEquals(1, lots.size());
+        assertEquals(200, lots.peekBuyEpochDay());
+        assertEquals(10, lots.getPendingQuantity());
+        assertEquals(2000.00, lots.getPendingCost(), 1e-9);
+        assertEquals(200_000, lots.getPendingPaise());
+    }
+
+    @Test
+    void lastTakeOfALotGetsThePaiseLeft() {
+        LotQueue lots = new LotQueue();
+        lots.add(100, 3, 100.00);
+        long total = 0;
+        for (int i = 0; i < 3; i++) {
+            lots.take(1);
+            total += lots.getTakenPaise();
+        }
+        assertEquals(10_000, total);
+        assertTrue(lots.isEmpty());
+        assertEquals(0, lots.getPendingPaise());
+        assertEquals(0, lots.take(1));
+        assertEquals(0, lots.getTakenPaise());
+    }
+
+    @Test
+    void wrapsThroughASmallBufferInOrder() {
+        LotQueue lots = new LotQueue(2);
+        long lastTaken = -1;
+        for (int day = 0; day < 1000; day++) {
+            lots.add(day, 1, 10.00 + day);
+            lots.add(day, 1, 10.00 + day);
+            // A lot and a half a day, oldest first, so the buffer slides and grows as it fills
+            double wanted = 1.5;
+            while (wanted > 0) {
+                wanted -= lots.take(wanted);
+                assertTrue(lots.getTakenBuyEpochDay() >= lastTaken);
+                lastTaken = lots.getTakenBuyEpochDay();
+            }
+        }
+        assertEquals(500, lots.getPendingQuantity(), 1e-9);
+        assertEquals(500, lots.size());
+        assertEquals(750, lots.getBuyEpochDay(0));
+        assertEquals(1, lots.getRemainingQuantity(0));
+        assertEquals(999, lots.getBuyEpochDay(499));
+    }
+
+    @Test
+    void usedUpMiddleLotsAreHolesUntilCompacted() {
+        LotQueue lots = new LotQueue();
+        int first = lots.add(100, 1, 10);
+        int second = lots.add(200, 2, 20);
+        int third = lots.add(300, 3, 30);
+        int fourth = lots.add(400, 4, 40);
+
+        assertEquals(2, lots.takeLot(second, 5));
+        assertEquals(3, lots.takeLot(third, 3));
+        assertFalse(lots.isOpen(second));
+        assertEquals(0, lots.takeLot(third, 1));
+        assertEquals(2, lots.size());
+
+        // Reading by index compacts; ids still find their lots afterwards
+        assertEquals(400, lots.getBuyEpochDay(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> lots.getBuyEpochDay(2));
+        assertTrue(lots.isOpen(fourth));
+        assertEquals(1, lots.takeLot(fourth, 1));
+        assertEquals(400, lots.getTakenBuyEpochDay());
+        assertEquals(1, lots.take(5));
+        assertEquals(100, lots.getTakenBuyEpochDay());
+        assertFalse(lots.isOpen(first));
+
+        assertEquals(3, lots.takeNewest(10));
+        assertTrue(lots.isEmpty());
+        assertThrows(IllegalStateException.class, lots::peekBuyEpochDay);
+    }
+
+    @Test
+    void findsTheOpenLotOfADay() {
+        LotQueue lots = new LotQueue();
+        lots.add(100, 1, 10);
+        int sameDay = lots.add(200, 2, 20);
+        int exact = lots.add(200, 3, 33);
+        lots.add(300, 4, 40);
+        assertEquals(exact, lots.findOpenLot(200, 3, 33));
+        assertEquals(sameDay, lots.findOpenLot(200, 5, 50));
+        lots.takeLot(sameDay, 2);
+        assertEquals(exact, lots.findOpenLot(200, 5, 50));
+        assertEquals(-1, lots.findOpenLot(250, 1, 10));
+    }
+
+    @Test
+    void splitBetweenTwoPartialSellsRescalesOnRead() {
+        LotQueue lots = new LotQueue();
+        lots.add(100, 10, 1000.00);
+        lots.add(200, 5, 600.00);
+
+        lots.take(4);
+        lots.adjust(2);
+        // Only the totals change at once; lots pick up the factor when read
+        assertEquals(22, lots.getPendingQuantity());
+        assertEquals(1600.00 - 400.00, lots.getPendingCost(), 1e-9);
+
+        assertEquals(3, lots.take(3));
+        assertEquals(50.00, lots.getTakenUnitCost());
+        assertEquals(15_000, lots.getTakenPaise());
+        assertEquals(9, lots.getRemainingQuantity(0));
+        assertEquals(20, lots.getQuantity(0));
+        assertEquals(10, lots.getRemainingQuantity(1));
+        assertEquals(45_000 + 60_000, lots.getPendingPaise());
+        assertEquals(19, lots.getPendingQuantity());
+    }
+
+    @Test
+    void lotsSkippingSeveralAdjustmentsTakeTheirProduct() {
+        LotQueue lots = new LotQueue();
+        lots.add(100, 10, 1000.00);
+        lots.adjust(2);
+        lots.add(200, 4, 400.00);      // bought after the first split
+        lots.adjust(1.5);
+        lots.adjust(1);                // no-op
+
+        assertEquals(30, lots.getRemainingQuantity(0));
+        assertEquals(6, lots.getRemainingQuantity(1));
+        assertEquals(36, lots.getPendingQuantity(), 1e-9);
+        assertEquals(1000.00 / 30, lots.peekUnitCost(), 1e-12);
+        assertEquals(140_000, lots.getPendingPaise());
+        assertEquals(300_000, lots.getRemainingUnits(0));
+    }
+
+    @Test
+    void adjustmentSnapsBackToWholeQuantityUnits() {
+        LotQueue lots = new LotQueue();
+        lots.add(100, 10 / 3.0, 500.00);
+        lots.adjust(3);
+        assertEquals(10.0, lots.getQuantity(0));
+        assertEquals(100_000, lots.getRemainingUnits(0));
+        assertEquals(10, lots.take(10));
+        assertTrue(lots.isEmpty());
+        assertEquals(50_000, lots.getTakenPaise());
+    }
+
+    @Test
+    void adjustmentRatioMustBePositive() {
+        LotQueue lots = new LotQueue();
+        lots.add(100, 1, 10);
+        assertThrows(IllegalArgumentException.class, () -> lots.adjust(0));
+        assertThrows(IllegalArgumentException.class, () -> lots.adjust(-2));
+        assertThrows(IllegalArgumentException.class, () -> lots.adjust(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> lots.adjust(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    void clearingForgetsEarlierAdjustments() {
+        LotQueue lots = new LotQueue();
+        lots.add(100, 1, 10);
+        lots.adjust(5);
+        lots.take(5);
+        assertTrue(lots.isEmpty());
+        lots.add(200, 2, 20);
+        assertEquals(2, lots.getRemainingQuantity(0));
+        assertEquals(2, lots.getPendingQuantity());
+    }
+}
@@ -0,0 +1,88 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class MatchPeriodSumsTest {
+
+    private static final QuarterConfig QUARTERS = QuarterConfig.forFinancialYear("FY 2023-24", QuarterScheme.STANDARD_Q4);
+    private static final QuarterConfig MONTHS = QuarterConfig.forFinancialYear("FY 2023-24", QuarterScheme.MONTHLY);
+
+    private static long day(String date) {
+        return LocalDate.parse(date).toEpochDay();
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArithmeticMode.class)
+    void classifiesEachMatchByItsOwnLot(ArithmeticMode mode) {
+        MatchPeriodSums sums = new MatchPeriodSums(new QuarterConfig[] { QUARTERS, MONTHS }, mode);
+        sums.beginSell(day("2024-03-20"), 3, 300.00);
+        sums.addMatch(day("2024-03-20"), 1, 90.00, 9000, false);  // same day
+        sums.addMatch(day("2023-03-21"), 1, 80.00, 8000, false);  // 365 days
+        sums.addMatch(day("2023-03-20"), 1, 70.00, 7000, true);   // 366 days
+
+        for (int k = 0; k < 2; k++) {
+            PeriodAccumulator periods = sums.get(k);
+            int last = periods.getPeriodCount();
+            assertEquals(90.00, periods.get(TransactionStore.INTRADAY, last, PeriodAccumulator.BUY), 1e-9);
+            assertEquals(80.00, periods.get(TransactionStore.STCG, last, PeriodAccumulator.BUY), 1e-9);
+            assertEquals(70.00, periods.get(TransactionStore.LTCG, last, PeriodAccumulator.BUY), 1e-9);
+            assertEquals(30.00, periods.get(TransactionStore.LTCG, PeriodAccumulator.TOTAL, PeriodAccumulator.PROFIT), 1e-9);
+            assertEquals(0, periods.get(TransactionStore.STCG, 1, PeriodAccumulator.SELL));
+        }
+    }
+
+    @Test
+    void paiseProceedsAddUpToTheSale() {
+        MatchPeriodSums sums = new MatchPeriodSums(new QuarterConfig[] { QUARTERS }, ArithmeticMode.PAISE);
+        sums.beginSell(day("2023-06-01"), 3, 100.00);
+        sums.addMatch(day("2023-06-01"), 1, 10, 1000, false);
+        sums.addMatch(day("2023-05-01"), 1, 10, 1000, false);
+        sums.addMatch(day("2021-05-01"), 1, 10, 1000, true);
+
+        PeriodAccumulator periods = sums.get(0);
+        // Each match takes its share of what is left of the sale, rounded to the paisa
+        assertEquals(33.33, periods.get(TransactionStore.INTRADAY, 1, PeriodAccumulator.SELL));
+        assertEquals(33.34, periods.get(TransactionStore.STCG, 1, PeriodAccumulator.SELL));
+        assertEquals(33.33, periods.get(TransactionStore.LTCG, 1, PeriodAccumulator.SELL));
+    }
+
+    @Test
+    void sellOutsideTheYearCountsOnlyInTheTotal() {
+        MatchPeriodSums sums = new MatchPeriodSums(new QuarterConfig[] { QUARTERS }, ArithmeticMode.PAISE);
+        sums.beginSell(day("2024-04-02"), 1, 120.00);
+        sums.addMatch(day("2024-01-02"), 1, 100.00, 10_000, true);
+        PeriodAccumulator periods = sums.get(0);
+        assertEquals(20.00, periods.get(TransactionStore.STCG, PeriodAccumulator.TOTAL, PeriodAccumulator.PROFIT));
+        for (int quarter = 1; quarter <= periods.getPeriodCount(); quarter++) {
+            assertEquals(0, periods.get(TransactionStore.STCG, quarter, PeriodAccumulator.SELL));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArithmeticMode.class)
+    void replayClassifiesByMatchedLotNotByRow(ArithmeticMode mode) {
+        // The broker pairs each sell with its own row's buy; FIFO gives the first sell the older lot
+        TransactionStore rows = new TransactionStore();
+        rows.add(LocalDate.parse("2022-04-01"), LocalDate.parse("2023-05-10"), "INFY", 5, 404, 500.00, 600.00, 0);
+        rows.add(LocalDate.parse("2023-04-20"), LocalDate.parse("2023-05-01"), "INFY", 5, 11, 550.00, 560.00, 10.00);
+        MatchPeriodSums sums = new MatchPeriodSums(new QuarterConfig[] { QUARTERS }, mode);
+        FIFOCalculator calculator = new FIFOCalculator("INFY", mode);
+        SellMatchBuffer matches = new SellMatchBuffer(1, 1);
+        calculator.replay(rows, new int[] { 0, 1 }, 0, 2, Long.MIN_VALUE + 1, Long.MAX_VALUE, matches);
+        sums.add(matches);
+
+        PeriodAccumulator periods = sums.get(0);
+        assertEquals(500.00, periods.get(TransactionStore.LTCG, 1, PeriodAccumulator.BUY), 1e-9);
+        assertEquals(560.00, periods.get(TransactionStore.LTCG, 1, PeriodAccumulator.SELL), 1e-9);
+        assertEquals(550.00, periods.get(TransactionStore.STCG, 1, PeriodAccumulator.BUY), 1e-9);
+        assertEquals(600.00, periods.get(TransactionStore.STCG, 1, PeriodAccumulator.SELL), 1e-9);
+        assertEquals(0, calculator.getPendingBuyOrderCount());
+        assertEquals(0, calculator.getUnmatchedSellQuantity());
+    }
+}
@@ -0,0 +1,59 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class PaiseTest {
+
+    @ParameterizedTest
+    @CsvSource({
+        "0, 0",
+        "0.01, 1",
+        "0.004, 0",
+        "0.005, 1",
+        "0.015, 2",
+        "1.005, 101",
+        "2.675, 268",
+        "10.235, 1024",
+        "1234.565, 123457",
+        "99999.995, 10000000",
+        "12345678.905, 1234567891",
+        "-0.005, -1",
+        "-1.005, -101",
+        "-2.674, -267",
+    })
+    void roundsHalfAwayFromZero(double rupees, long paise) {
+        assertEquals(paise, Paise.of(rupees));
+    }
+
+    @Test
+    void twoDecimalAmountsRoundTrip() {
+        for (long paise = -100_000; paise <= 10_000_000; paise += 7) {
+            assertEquals(paise, Paise.of(Paise.toRupees(paise)));
+        }
+        assertEquals(1234.56, Paise.toRupees(123456));
+        assertEquals(-0.05, Paise.toRupees(-5));
+    }
+
+    @Test
+    void quantityUnitsAreTenThousandthsOfAShare() {
+        assertEquals(10_000, Paise.quantityUnits(1));
+        assertEquals(5, Paise.quantityUnits(0.0005));
+        assertEquals(-15_000, Paise.quantityUnits(-1.5));
+    }
+
+    @Test
+    void proportionRoundsToTheNearestPaisa() {
+        assertEquals(333, Paise.proportion(1000, 1, 3));
+        assertEquals(667, Paise.proportion(1000, 2, 3));
+        assertEquals(5, Paise.proportion(10, 1, 2));
+        assertEquals(-5, Paise.proportion(-10, 1, 2));
+        assertEquals(1000, Paise.proportion(1000, 3, 3));
+        assertEquals(0, Paise.proportion(1000, 1, 0));
+        // Product beyond long range
+        assertEquals(500_000_000_000L, Paise.proportion(1_000_000_000_000L, 50_000_000, 100_000_000));
+    }
+}
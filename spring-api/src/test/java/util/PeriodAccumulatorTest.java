@@ -0,0 +1,89 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class PeriodAccumulatorTest {
+
+    private static final LocalDate SOLD = LocalDate.of(2023, 6, 1);
+
+    @ParameterizedTest
+    @EnumSource(ArithmeticMode.class)
+    void sumsRowsByCategoryIntoTotalAndPeriod(ArithmeticMode mode) {
+        TransactionStore rows = new TransactionStore();
+        rows.add(SOLD, 0, 100.10, 100.30, 0);       // intraday
+        rows.add(SOLD, 40, 200.20, 250.05, 49.80);  // STCG, broker profit differs from sell - buy
+        rows.add(SOLD, 400, 300.00, 280.00, 0);     // LTCG loss
+        PeriodAccumulator sums = new PeriodAccumulator(4, mode);
+        sums.add(rows, 0, 1);
+        sums.add(rows, 1, 2);
+        sums.add(rows, 2, 0);                       // outside every period
+
+        int total = PeriodAccumulator.TOTAL;
+        assertEquals(100.10, sums.get(TransactionStore.INTRADAY, total, PeriodAccumulator.BUY), 1e-9);
+        assertEquals(0.20, sums.get(TransactionStore.INTRADAY, 1, PeriodAccumulator.PROFIT), 1e-9);
+        assertEquals(0.20, sums.get(TransactionStore.INTRADAY, 1, PeriodAccumulator.TURNOVER), 1e-9);
+        assertEquals(49.80, sums.get(TransactionStore.STCG, 2, PeriodAccumulator.PROFIT), 1e-9);
+        assertEquals(49.85, sums.getGain(TransactionStore.STCG, 2), 1e-9);
+        assertEquals(-20.00, sums.get(TransactionStore.LTCG, total, PeriodAccumulator.PROFIT), 1e-9);
+        assertEquals(20.00, sums.get(TransactionStore.LTCG, total, PeriodAccumulator.TURNOVER), 1e-9);
+        for (int period = 1; period <= 4; period++) {
+            assertEquals(0, sums.get(TransactionStore.LTCG, period, PeriodAccumulator.SELL));
+        }
+    }
+
+    @Test
+    void paiseSumsAreExactWhereDoublesDrift() {
+        PeriodAccumulator exact = new PeriodAccumulator(1, ArithmeticMode.PAISE);
+        PeriodAccumulator approximate = new PeriodAccumulator(1, ArithmeticMode.DOUBLE);
+        for (int i = 0; i < 30; i++) {
+            exact.add(TransactionStore.INTRADAY, 1, 0.10, 0.20);
+            approximate.add(TransactionStore.INTRADAY, 1, 0.10, 0.20);
+        }
+        double exactBuy = exact.get(TransactionStore.INTRADAY, 1, PeriodAccumulator.BUY);
+        double approximateBuy = approximate.get(TransactionStore.INTRADAY, 1, PeriodAccumulator.BUY);
+        assertEquals(3.00, exactBuy);
+        assertNotEquals(3.00, approximateBuy);
+        assertEquals(exactBuy, approximateBuy, 1e-9);
+        assertEquals(3.00, exact.getGain(TransactionStore.INTRADAY, PeriodAccumulator.TOTAL));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArithmeticMode.class)
+    void paiseAndDoubleAmountsAddTheSame(ArithmeticMode mode) {
+        PeriodAccumulator sums = new PeriodAccumulator(2, mode);
+        sums.add(TransactionStore.STCG, 2, 10.25, 12.50);
+        sums.addPaise(TransactionStore.STCG, 2, 1025, 1250);
+        assertEquals(20.50, sums.get(TransactionStore.STCG, 2, PeriodAccumulator.BUY), 1e-9);
+        assertEquals(4.50, sums.get(TransactionStore.STCG, PeriodAccumulator.TOTAL, PeriodAccumulator.PROFIT), 1e-9);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArithmeticMode.class)
+    void mergeAddsEveryBucket(ArithmeticMode mode) {
+        PeriodAccumulator left = new PeriodAccumulator(3, mode);
+        PeriodAccumulator right = new PeriodAccumulator(3, mode);
+        left.add(TransactionStore.LTCG, 3, 100, 150);
+        right.add(TransactionStore.LTCG, 3, 50, 40);
+        left.merge(right);
+        assertEquals(150, left.get(TransactionStore.LTCG, 3, PeriodAccumulator.BUY), 1e-9);
+        assertEquals(40, left.get(TransactionStore.LTCG, 3, PeriodAccumulator.PROFIT), 1e-9);
+        assertEquals(60, left.get(TransactionStore.LTCG, 3, PeriodAccumulator.TURNOVER), 1e-9);
+    }
+
+    @Test
+    void rejectsMismatchedShapesAndBuckets() {
+        PeriodAccumulator sums = new PeriodAccumulator(4, ArithmeticMode.PAISE);
+        assertThrows(IllegalArgumentException.class, () -> sums.merge(new PeriodAccumulator(5, ArithmeticMode.PAISE)));
+        assertThrows(IllegalArgumentException.class, () -> sums.merge(new PeriodAccumulator(4, ArithmeticMode.DOUBLE)));
+        assertThrows(IndexOutOfBoundsException.class, () -> sums.get(TransactionStore.STCG, 5, PeriodAccumulator.BUY));
+        assertThrows(IllegalArgumentException.class, () -> new PeriodAccumulator(-1, ArithmeticMode.DOUBLE));
+    }
+}
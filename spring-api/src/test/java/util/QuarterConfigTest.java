@@ -0,0 +1,44 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class QuarterConfigTest {
+
+    @Test
+    void labelsOfTheSameYearShareOneConfig() {
+        QuarterConfig config = QuarterConfig.forFinancialYear("FY 2026-27", QuarterScheme.STANDARD_Q4);
+        assertSame(config, QuarterConfig.forFinancialYear(" 2026-27 ", QuarterScheme.STANDARD_Q4));
+        assertSame(config, QuarterConfig.forFinancialYear("fy 2026-2027", QuarterScheme.STANDARD_Q4));
+        assertEquals("FY 2026-27", config.getFinancialYear());
+        assertEquals(LocalDate.of(2026, 4, 1), config.getQuarters().get(0).getStartDate());
+        assertEquals(LocalDate.of(2027, 3, 31), config.getQuarters().get(config.getQuarterCount() - 1).getEndDate());
+    }
+
+    @Test
+    void parsesTheStartYear() {
+        assertEquals(2024, QuarterConfig.parseFinancialYear("FY 2024-25"));
+        assertEquals(1999, QuarterConfig.parseFinancialYear("FY 1999-00"));
+        assertEquals(2099, QuarterConfig.parseFinancialYear("2099-2100"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "", "FY", "2024", "FY 2024-26", "FY 2024-2026", "FY 24-25", "FY 2024-25x", "next year" })
+    void rejectsOtherLabels(String label) {
+        assertThrows(IllegalArgumentException.class, () -> QuarterConfig.parseFinancialYear(label));
+        assertThrows(IllegalArgumentException.class, () -> QuarterConfig.forFinancialYear(label, QuarterScheme.MONTHLY));
+    }
+
+    @Test
+    void rejectsNoLabel() {
+        assertEquals("Financial year must look like FY 2024-25, got: null",
+            assertThrows(IllegalArgumentException.class, () -> QuarterConfig.parseFinancialYear(null)).getMessage());
+    }
+}
@@ -0,0 +1,144 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class SellMatchBufferTest {
+
+    private static long day(String date) {
+        return LocalDate.parse(date).toEpochDay();
+    }
+
+    /** Ten shares at 100.01 bought 2022-04-01, ten at 200.03 on 2023-06-10, five at 150 on 2023-09-01 */
+    private static FIFOCalculator calculator(CostBasisMethod method, ArithmeticMode mode) {
+        FIFOCalculator calculator = new FIFOCalculator("INFY", mode, method);
+        calculator.addBuyOrder(day("2022-04-01"), 10, 1000.10);
+        calculator.addBuyOrder(day("2023-06-10"), 10, 2000.30);
+        calculator.addBuyOrder(day("2023-09-01"), 5, 750.00);
+        return calculator;
+    }
+
+    private static final long[] SELL_DAYS = { day("2023-09-01"), day("2023-09-01"), day("2024-01-15") };
+    private static final double[] QUANTITIES = { 4, 12, 12 };
+    private static final double[] AMOUNTS = { 700.00, 2100.35, 2000.00 };
+
+    @ParameterizedTest
+    @EnumSource(ArithmeticMode.class)
+    void bulkMatchingEqualsOneSellAtATime(ArithmeticMode mode) {
+        for (CostBasisMethod method : new CostBasisMethod[] { CostBasisMethod.FIFO, CostBasisMethod.LIFO,
+                CostBasisMethod.AVERAGE }) {
+            FIFOCalculator single = calculator(method, mode);
+            FIFOCalculator bulk = calculator(method, mode);
+            SellMatchBuffer out = new SellMatchBuffer(1, 1);
+            int matchCount = bulk.matchSells(SELL_DAYS, QUANTITIES, AMOUNTS, 0, 3, out);
+
+            assertEquals(3, out.getSellCount());
+            assertEquals(matchCount, out.getMatchCount());
+            int match = 0;
+            for (int s = 0; s < 3; s++) {
+                FIFOAllocation allocation = single.calculateCostBasis(SELL_DAYS[s], QUANTITIES[s], AMOUNTS[s]);
+                assertEquals(allocation.getTotalCostOfAcquisition(), out.getCost(s), method + " sell " + s);
+                assertEquals(allocation.getTotalCostPaise(), out.getCostPaise(s));
+                assertEquals(allocation.getUnmatchedQuantity(), out.getUnmatchedQuantity(s));
+                assertEquals(match, out.getFirstMatch(s));
+                for (BuyOrderMatch expected : allocation.getMatches()) {
+                    assertEquals(expected.getBuyDate().toEpochDay(), out.getMatchBuyEpochDay(match));
+                    assertEquals(expected.getBuyQuantity(), out.getMatchQuantity(match));
+                    assertEquals(expected.getCostOfAcquisitionPaise(), out.getMatchCostPaise(match));
+                    assertEquals((int) expected.getHoldingDays(), out.getMatchDaysHeld(match));
+                    match++;
+                }
+            }
+            assertEquals(match, out.getMatchCount());
+            assertEquals(single.getUnmatchedSellQuantity(), bulk.getUnmatchedSellQuantity());
+            assertEquals(single.getTotalPendingBuysCost(), bulk.getTotalPendingBuysCost());
+        }
+    }
+
+    @Test
+    void splitsEachSellByHoldingPeriod() {
+        FIFOCalculator calculator = calculator(CostBasisMethod.FIFO, ArithmeticMode.PAISE);
+        SellMatchBuffer out = new SellMatchBuffer(3, 8);
+        calculator.matchSells(SELL_DAYS, QUANTITIES, AMOUNTS, 0, 3, out);
+
+        // 4 from the 2022 lot (518 days)
+        assertEquals(4, out.getCategoryQuantity(0, TransactionStore.LTCG));
+        assertEquals(4, out.getMatchedQuantity(0));
+        // 6 more from the 2022 lot, 6 from the June lot (83 days)
+        assertEquals(6, out.getCategoryQuantity(1, TransactionStore.LTCG));
+        assertEquals(6, out.getCategoryQuantity(1, TransactionStore.STCG));
+        assertEquals(1800.24, out.getCost(1));
+        // 4 left of the June lot, then the whole same-day lot, which is STCG by January: 3 unmatched
+        assertEquals(9, out.getCategoryQuantity(2, TransactionStore.STCG));
+        assertEquals(0, out.getCategoryQuantity(2, TransactionStore.INTRADAY));
+        assertEquals(3, out.getUnmatchedQuantity(2));
+        assertEquals(3, calculator.getUnmatchedSellQuantity());
+        assertEquals(0, calculator.getPendingBuyOrderCount());
+    }
+
+    @Test
+    void sameDaySellIsIntradayAndNamedLotsAreHonoured() {
+        FIFOCalculator calculator = new FIFOCalculator("INFY", ArithmeticMode.DOUBLE, CostBasisMethod.SPECIFIC_LOT);
+        calculator.addBuyOrder(day("2023-04-10"), 10, 1000.00);
+        int sameDay = calculator.addBuyOrder(day("2023-09-01"), 10, 1500.00);
+        SellMatchBuffer out = new SellMatchBuffer(1, 1);
+        calculator.matchSells(new long[] { day("2023-09-01") }, new double[] { 5 }, new double[] { 800.00 },
+            new int[] { sameDay }, 0, 1, out);
+
+        assertEquals(5, out.getCategoryQuantity(0, TransactionStore.INTRADAY));
+        assertEquals(750.00, out.getCost(0), 1e-9);
+        assertEquals(0, out.getMatchDaysHeld(0));
+    }
+
+    @Test
+    void eachCallOverwritesTheBuffer() {
+        FIFOCalculator calculator = calculator(CostBasisMethod.FIFO, ArithmeticMode.DOUBLE);
+        SellMatchBuffer out = new SellMatchBuffer(1, 1);
+        calculator.matchSells(SELL_DAYS, QUANTITIES, AMOUNTS, 0, 2, out);
+        assertEquals(2, out.getSellCount());
+
+        calculator.matchSells(SELL_DAYS, QUANTITIES, AMOUNTS, 2, 3, out);
+        assertEquals(1, out.getSellCount());
+        assertEquals(SELL_DAYS[2], out.getSellEpochDay(0));
+        assertEquals(0, out.getFirstMatch(0));
+        assertEquals(2, out.getMatchCount());
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArithmeticMode.class)
+    void bufferedReplayEqualsReplayWithAllocations(ArithmeticMode mode) {
+        // Buys, sells and a 1:2 split interleaved, so the replay matches in several batches
+        TransactionStore rows = new TransactionStore();
+        rows.add(LocalDate.parse("2022-04-01"), LocalDate.parse("2023-05-10"), "INFY", 5, 404, 500.00, 600.00, 0);
+        rows.add(LocalDate.parse("2023-04-20"), LocalDate.parse("2023-05-10"), "INFY", 5, 20, 550.00, 610.00, 0);
+        rows.add(LocalDate.parse("2023-05-10"), LocalDate.parse("2023-05-11"), "INFY", 3, 1, 330.00, 333.33, 0);
+        rows.add(LocalDate.parse("2023-04-25"), LocalDate.parse("2023-08-01"), "INFY", 10, 98, 570.00, 410.00, 0);
+        rows.add(LocalDate.parse("2023-07-03"), LocalDate.parse("2023-08-01"), "INFY", 4, 29, 170.00, 164.00, 0);
+        CorporateActions split = new CorporateActions().add("INFY", LocalDate.parse("2023-06-01"), 2);
+        int[] order = { 0, 1, 2, 3, 4 };
+
+        FIFOCalculator expected = new FIFOCalculator("INFY", mode);
+        expected.setCorporateActions(split);
+        expected.replay(rows, order, 0, 5, Long.MIN_VALUE + 1, Long.MAX_VALUE);
+        FIFOCalculator bulk = new FIFOCalculator("INFY", mode);
+        bulk.setCorporateActions(split);
+        SellMatchBuffer out = new SellMatchBuffer(1, 1);
+        bulk.replay(rows, order, 0, 5, Long.MIN_VALUE + 1, Long.MAX_VALUE, out);
+
+        List<FIFOAllocation> allocations = expected.getCompletedAllocations();
+        assertEquals(allocations.size(), out.getSellCount());
+        for (int s = 0; s < allocations.size(); s++) {
+            assertEquals(allocations.get(s).getSellEpochDay(), out.getSellEpochDay(s));
+            assertEquals(allocations.get(s).getTotalCostOfAcquisition(), out.getCost(s));
+            assertEquals(allocations.get(s).getUnmatchedQuantity(), out.getUnmatchedQuantity(s));
+        }
+        assertEquals(0, bulk.getUnmatchedSellQuantity());
+        assertEquals(expected.getTotalPendingBuysQuantity(), bulk.getTotalPendingBuysQuantity());
+    }
+}
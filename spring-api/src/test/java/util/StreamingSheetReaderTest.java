@@ -0,0 +1,95 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import exception.InvalidSecurityException;
+
+class StreamingSheetReaderTest {
+
+    @Test
+    void readsStringsAndNumbers() throws IOException {
+        List<String> cells = new ArrayList<>();
+        try (StreamingSheetReader reader = new StreamingSheetReader(new ByteArrayInputStream(workbook()))) {
+            reader.readSheet(0, row -> {
+                cells.add(row.getString(0) + "=" + row.getNumeric(1));
+                return true;
+            });
+        }
+        assertEquals(List.of("INFY=10.5", "TCS=3.0"), cells);
+    }
+
+    @Test
+    void corruptSharedStringIndexIsAParseErrorNamingTheCell() throws IOException {
+        byte[] corrupt = replaceInSheet(workbook(), "<c r=\"A2\" t=\"s\"><v>1</v>", "<c r=\"A2\" t=\"s\"><v>1x</v>");
+        InvalidSecurityException e = readAll(corrupt);
+        assertEquals(InvalidSecurityException.ErrorCode.PARSE_ERROR, e.getErrorCode());
+        assertTrue(e.getMessage().contains("A2"), e.getMessage());
+    }
+
+    @Test
+    void sharedStringIndexOutOfRangeIsAParseErrorNamingTheCell() throws IOException {
+        byte[] corrupt = replaceInSheet(workbook(), "<c r=\"A2\" t=\"s\"><v>1</v>", "<c r=\"A2\" t=\"s\"><v>99999999999</v>");
+        InvalidSecurityException e = readAll(corrupt);
+        assertEquals(InvalidSecurityException.ErrorCode.PARSE_ERROR, e.getErrorCode());
+        assertTrue(e.getMessage().contains("A2"), e.getMessage());
+    }
+
+    private static InvalidSecurityException readAll(byte[] xlsx) {
+        return assertThrows(InvalidSecurityException.class, () -> {
+            try (StreamingSheetReader reader = new StreamingSheetReader(new ByteArrayInputStream(xlsx))) {
+                reader.readSheet(0, row -> true);
+            }
+        });
+    }
+
+    private static byte[] workbook() throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            XSSFSheet sheet = workbook.createSheet("Trades");
+            XSSFRow first = sheet.createRow(0);
+            first.createCell(0).setCellValue("INFY");
+            first.createCell(1).setCellValue(10.5);
+            XSSFRow second = sheet.createRow(1);
+            second.createCell(0).setCellValue("TCS");
+            second.createCell(1).setCellValue(3);
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    /** Copy of the workbook with text replaced in the first sheet's XML */
+    private static byte[] replaceInSheet(byte[] xlsx, String target, String replacement) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(xlsx));
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (ZipEntry entry; (entry = in.getNextEntry()) != null; ) {
+                byte[] data = in.readAllBytes();
+                if (entry.getName().equals("xl/worksheets/sheet1.xml")) {
+                    String xml = new String(data, StandardCharsets.UTF_8);
+                    assertTrue(xml.contains(target), xml);
+                    data = xml.replace(target, replacement).getBytes(StandardCharsets.UTF_8);
+                }
+                zip.putNextEntry(new ZipEntry(entry.getName()));
+                zip.write(data);
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,76 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class TransactionStoreTest {
+
+    @ParameterizedTest
+    @CsvSource({
+        "0, 0",
+        "1, 1",
+        "365, 1",
+        "366, 2",
+        "-4, 1",
+    })
+    void categoryByDaysHeld(int daysHeld, int category) {
+        assertEquals(category, TransactionStore.categoryOf(daysHeld));
+    }
+
+    @Test
+    void storesColumnsAndGrowsPastInitialCapacity() {
+        TransactionStore store = new TransactionStore(1);
+        LocalDate sold = LocalDate.of(2023, 6, 1);
+        for (int i = 0; i < 100; i++) {
+            store.add(sold.minusDays(i), sold, i % 2 == 0 ? "INFY" : "TCS", i + 0.5, i, 100 + i, 110 + i, 7);
+        }
+        assertEquals(100, store.size());
+        assertEquals(2, store.getSymbolCount());
+        assertEquals(store.getSymbolId(0), store.symbolIdOf("INFY"));
+        assertEquals("TCS", store.getSymbol(99));
+        assertEquals("TCS", store.symbolForId(store.getSymbolId(99)));
+        assertEquals(sold.minusDays(99), store.getBuyDate(99));
+        assertEquals(sold.toEpochDay(), store.getSellEpochDay(99));
+        assertEquals(99.5, store.getQuantity(99));
+        assertEquals(199, store.getBuyAmount(99));
+        assertEquals(209, store.getSellAmount(99));
+        assertEquals(99, store.getDaysHeld(99));
+        store.trimToSize();
+        assertEquals(209, store.getSellAmount(99));
+    }
+
+    @Test
+    void profitUsesStcgValueOnlyForShortTermRows() {
+        TransactionStore store = new TransactionStore();
+        LocalDate sold = LocalDate.of(2023, 6, 1);
+        store.add(sold, 0, 100, 103, 9);
+        store.add(sold, 30, 100, 103, 9);
+        store.add(sold, -4, 100, 103, 9);
+        store.add(sold, 400, 100, 103, 9);
+        assertEquals(TransactionStore.INTRADAY, store.getCategory(0));
+        assertEquals(3, store.getProfit(0));
+        assertEquals(9, store.getProfit(1));
+        assertEquals(TransactionStore.STCG, store.getCategory(2));
+        assertEquals(9, store.getProfit(2));
+        assertEquals(TransactionStore.LTCG, store.getCategory(3));
+        assertEquals(3, store.getProfit(3));
+    }
+
+    @Test
+    void missingSymbolAndDatesAreMarked() {
+        TransactionStore store = new TransactionStore();
+        store.add(null, null, "", 0, 5, 1, 2, 1);
+        assertEquals(TransactionStore.NO_SYMBOL, store.getSymbolId(0));
+        assertNull(store.getSymbol(0));
+        assertNull(store.getBuyDate(0));
+        assertNull(store.getSellDate(0));
+        assertEquals(TransactionStore.NO_DATE, store.getSellEpochDay(0));
+        assertNull(store.symbolIdOf("INFY"));
+    }
+}